@@ -4,16 +4,15 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.CharStreams;
-import net.bramp.ffmpeg.io.ProcessUtils;
 
 import javax.annotation.Nonnull;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -47,13 +46,17 @@ abstract class FFcommon {
 
   protected void throwOnError(Process p) throws IOException {
     try {
-      // TODO In java 8 use waitFor(long timeout, TimeUnit unit)
-      if (ProcessUtils.waitForWithTimeout(p, 1, TimeUnit.SECONDS) != 0) {
-        // TODO Parse the error
-        throw new IOException(path + " returned non-zero exit status. Check stdout.");
+      if (!p.waitFor(1, TimeUnit.SECONDS)) {
+        throw new IOException("Timed out waiting for " + path + " to finish.");
       }
-    } catch (TimeoutException e) {
-      throw new IOException("Timed out waiting for " + path + " to finish.");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for " + path + " to finish.");
+    }
+
+    if (p.exitValue() != 0) {
+      // TODO Parse the error
+      throw new IOException(path + " returned non-zero exit status. Check stdout.");
     }
   }
 
@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableList;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
 import net.bramp.ffmpeg.info.Codec;
 import net.bramp.ffmpeg.info.Format;
+import net.bramp.ffmpeg.progress.ByteProgressParser;
 import net.bramp.ffmpeg.progress.ProgressListener;
 import net.bramp.ffmpeg.progress.ProgressParser;
 import net.bramp.ffmpeg.progress.TcpProgressParser;
@@ -172,7 +173,9 @@ public class FFmpeg extends FFcommon {
     try {
       // Default to TCP because it is supported across all OSes, and is better than UDP because it
       // provides good properties such as in-order packets, reliability, error checking, etc.
-      return new TcpProgressParser(checkNotNull(listener));
+      // Streams report progress for hours, so parse without allocating. The listener gets the same
+      // Progress for every report.
+      return new TcpProgressParser(new ByteProgressParser(checkNotNull(listener)));
     } catch (URISyntaxException e) {
       throw new IOException(e);
     }
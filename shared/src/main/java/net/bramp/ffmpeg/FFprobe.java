@@ -3,15 +3,24 @@ package net.bramp.ffmpeg;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import net.bramp.ffmpeg.io.LoggingFilterReader;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.ProbeResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -27,6 +36,13 @@ public class FFprobe extends FFcommon {
   static final String DEFAULT_PATH = MoreObjects.firstNonNull(System.getenv("FFPROBE"), FFPROBE);
 
   static final Gson gson = FFmpegUtils.getGson();
+  static final TypeAdapter<FFmpegProbeResult> RESULT_ADAPTER =
+      gson.getAdapter(FFmpegProbeResult.class);
+
+  @Nullable final ProbeResultCache cache;
+
+  // Set once the binary has been checked, so it's only run with -version once
+  private volatile boolean validated = false;
 
   public FFprobe() throws IOException {
     this(DEFAULT_PATH, new RunProcessFunction());
@@ -41,7 +57,19 @@ public class FFprobe extends FFcommon {
   }
 
   public FFprobe(@Nonnull String path, @Nonnull ProcessFunction runFunction) {
+    this(path, runFunction, null);
+  }
+
+  /**
+   * @param cache Results of probing local files are kept in, and returned from, this cache. URLs
+   *     are always probed.
+   */
+  public FFprobe(
+      @Nonnull String path,
+      @Nonnull ProcessFunction runFunction,
+      @Nullable ProbeResultCache cache) {
     super(path, runFunction);
+    this.cache = cache;
   }
 
   public FFmpegProbeResult probe(String mediaPath) throws IOException {
@@ -66,10 +94,14 @@ public class FFprobe extends FFcommon {
    * @throws IOException If a I/O error occurs while executing ffprobe.
    */
   private void checkIfFFprobe() throws IllegalArgumentException, IOException {
+    if (validated) {
+      return;
+    }
     if (!isFFprobe()) {
       throw new IllegalArgumentException(
           "This binary '" + path + "' is not a supported version of ffprobe");
     }
+    validated = true;
   }
 
   @Override
@@ -82,6 +114,25 @@ public class FFprobe extends FFcommon {
   public FFmpegProbeResult probe(String mediaPath, @Nullable String userAgent) throws IOException {
     checkIfFFprobe();
 
+    // Stat before probing, so a file that changes mid-probe is probed again next time
+    ProbeResultCache.Key key = cache == null ? null : ProbeResultCache.Key.of(mediaPath);
+    if (key != null) {
+      FFmpegProbeResult cached = cache.get(key);
+      if (cached != null) {
+        LOG.debug("Probe result cache hit: {}", key);
+        return cached;
+      }
+    }
+
+    FFmpegProbeResult result = runProbe(mediaPath, userAgent);
+    if (key != null) {
+      cache.put(key, result);
+    }
+    return result;
+  }
+
+  private FFmpegProbeResult runProbe(String mediaPath, @Nullable String userAgent)
+      throws IOException {
     ImmutableList.Builder<String> args = new ImmutableList.Builder<String>();
 
     // TODO Add:
@@ -102,12 +153,13 @@ public class FFprobe extends FFcommon {
 
     Process p = runFunc.run(args.build());
     try {
-      Reader reader = wrapInReader(p);
-      if (LOG.isDebugEnabled()) {
+      // Decoded as it's read, JsonReader does its own buffering
+      Reader reader = new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8);
+      if (LOG.isTraceEnabled()) {
         reader = new LoggingFilterReader(reader, LOG);
       }
 
-      FFmpegProbeResult result = gson.fromJson(reader, FFmpegProbeResult.class);
+      FFmpegProbeResult result = read(new JsonReader(reader));
 
       throwOnError(p);
 
@@ -121,4 +173,25 @@ public class FFprobe extends FFcommon {
       p.destroy();
     }
   }
+
+  // Same as Gson.fromJson(Reader, Class), without looking up the adapter each time
+  @Nullable
+  static FFmpegProbeResult read(JsonReader json) throws IOException {
+    json.setLenient(true);
+    try {
+      json.peek();
+    } catch (EOFException e) {
+      return null; // No output, throwOnError will say why
+    }
+
+    try {
+      FFmpegProbeResult result = RESULT_ADAPTER.read(json);
+      if (json.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonIOException("JSON document was not fully consumed.");
+      }
+      return result;
+    } catch (IllegalStateException | NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
 }
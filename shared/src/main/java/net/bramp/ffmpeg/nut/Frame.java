@@ -4,7 +4,9 @@ import com.google.common.base.MoreObjects;
 import org.apache.commons.lang3.math.Fraction;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -27,12 +29,17 @@ public class Frame {
   Stream stream;
   long flags;
   long pts;
+  int size;
+  int headerIdx;
+
+  // NutReader copies the data into an array, NutChannelReader hands out a view of its buffer
   byte[] data;
+  ByteBuffer payload;
 
   Map<String, Object> sideData;
   Map<String, Object> metaData;
 
-  protected Map<String, Object> readMetaData(NutDataInputStream in) throws IOException {
+  protected Map<String, Object> readMetaData(NutInput in) throws IOException {
     Map<String, Object> data = new TreeMap<String, Object>();
     long count = in.readVarLong();
     for (int i = 0; i < count; i++) {
@@ -73,11 +80,28 @@ public class Frame {
   }
 
   public void read(NutReader nut, NutDataInputStream in, int code) throws IOException {
+    readHeader(nut.header, nut.streams, in, code);
+
+    // TODO Use some kind of byte pool
+    data = new byte[size];
+
+    byte[] elision = nut.header.elision.get(headerIdx);
+    System.arraycopy(elision, 0, data, 0, elision.length);
+    in.readFully(data, elision.length, size - elision.length);
+  }
+
+  /**
+   * Reads everything up to the frame's data, leaving the input at the start of the data. The data
+   * is {@link #size} bytes, the first of which are the elision header {@link #headerIdx}, which
+   * isn't stored in the file.
+   */
+  void readHeader(MainHeaderPacket header, List<Stream> streams, NutInput in, int code)
+      throws IOException {
     if (code == 'N') {
       throw new IOException("Illegal frame code: " + code);
     }
 
-    FrameCode fc = nut.header.frameCodes.get(code);
+    FrameCode fc = header.frameCodes.get(code);
     flags = fc.flags;
     if ((flags & FLAG_INVALID) == FLAG_INVALID) {
       throw new IOException("Using invalid framecode: " + code);
@@ -97,15 +121,15 @@ public class Frame {
 
     if ((flags & FLAG_STREAM_ID) == FLAG_STREAM_ID) {
       stream_id = in.readVarInt();
-      if (stream_id >= nut.streams.size()) {
+      if (stream_id >= streams.size()) {
         throw new IOException(
-            "Illegal stream id value " + stream_id + " must be < " + nut.streams.size());
+            "Illegal stream id value " + stream_id + " must be < " + streams.size());
       }
     } else {
       stream_id = fc.streamId;
     }
 
-    stream = nut.streams.get(stream_id);
+    stream = streams.get(stream_id);
 
     if ((flags & FLAG_CODED_PTS) == FLAG_CODED_PTS) {
       coded_pts = in.readVarLong();
@@ -131,9 +155,9 @@ public class Frame {
     }
     if ((flags & FLAG_HEADER_IDX) == FLAG_HEADER_IDX) {
       header_idx = in.readVarInt();
-      if (header_idx >= nut.header.elision.size()) {
+      if (header_idx >= header.elision.size()) {
         throw new IOException(
-            "Illegal header index " + header_idx + " must be < " + nut.header.elision.size());
+            "Illegal header index " + header_idx + " must be < " + header.elision.size());
       }
     }
     if ((flags & FLAG_RESERVED) == FLAG_RESERVED) {
@@ -157,7 +181,7 @@ public class Frame {
     if ((flags & FLAG_SM_DATA) == FLAG_SM_DATA) {
       // TODO Test this path.
 
-      if (nut.header.version < 4) {
+      if (header.version < 4) {
         throw new IOException("Frame SM Data not allowed in version 4 or less");
       }
       long pos = in.offset();
@@ -170,12 +194,36 @@ public class Frame {
       metaData = null;
     }
 
-    // TODO Use some kind of byte pool
-    data = new byte[size];
+    this.size = size;
+    this.headerIdx = header_idx;
+  }
 
-    byte[] elision = nut.header.elision.get(header_idx);
-    System.arraycopy(elision, 0, data, 0, elision.length);
-    in.readFully(data, elision.length, size - elision.length);
+  public Stream getStream() {
+    return stream;
+  }
+
+  public long getPts() {
+    return pts;
+  }
+
+  public boolean isKeyframe() {
+    return (flags & FLAG_KEY) == FLAG_KEY;
+  }
+
+  /** @return a read only view of the frame's data */
+  public ByteBuffer getPayload() {
+    return payload != null ? payload.duplicate() : ByteBuffer.wrap(data).asReadOnlyBuffer();
+  }
+
+  /**
+   * @return the frame's data, copied out of the demuxer's buffer if it was read by NutChannelReader
+   */
+  public byte[] getData() {
+    if (data == null) {
+      data = new byte[payload.remaining()];
+      payload.duplicate().get(data);
+    }
+    return data;
   }
 
   @Override
@@ -183,7 +231,7 @@ public class Frame {
     return MoreObjects.toStringHelper(this)
         .add("id", stream.header.id)
         .add("pts", pts)
-        .add("data", String.format("(%d bytes)", data.length))
+        .add("data", String.format("(%d bytes)", size))
         .toString();
   }
 }
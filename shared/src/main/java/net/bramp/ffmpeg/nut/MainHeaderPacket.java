@@ -24,7 +24,7 @@ public class MainHeaderPacket extends Packet {
   public MainHeaderPacket() {}
 
   @Override
-  protected void readBody(NutDataInputStream in) throws IOException {
+  protected void readBody(NutInput in) throws IOException {
     frameCodes.clear();
 
     version = in.readVarLong();
@@ -0,0 +1,258 @@
+package net.bramp.ffmpeg.nut;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads Nut datatypes straight out of a ByteBuffer, decoding varints from the buffer and computing
+ * checksums over whole ranges at once.
+ *
+ * <p>A {@link FileChannel} is memory mapped a window at a time, so slices of it stay valid after
+ * the window moves on. Any other channel is read into a reusable buffer, so slices of it are only
+ * valid until the next read.
+ */
+public class NutChannelInput implements NutInput {
+
+  static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  // Files bigger than this are mapped in several windows
+  static final long MAP_WINDOW_SIZE = 256L * 1024 * 1024;
+
+  final ReadableByteChannel channel;
+  final FileChannel file; // null unless mapping
+
+  ByteBuffer buffer;
+  long bufferOffset; // Offset of buffer index 0 in the input
+  boolean endOfChannel = false;
+
+  // Checksum of buffer[crcFrom, position) is still to be added to crc
+  boolean crcActive = false;
+  int crc;
+  int crcFrom;
+
+  public NutChannelInput(ReadableByteChannel channel) throws IOException {
+    this.channel = checkNotNull(channel);
+    this.file = channel instanceof FileChannel ? (FileChannel) channel : null;
+    if (file != null) {
+      this.bufferOffset = file.position();
+      map(bufferOffset);
+    } else {
+      this.bufferOffset = 0;
+      this.buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+      buffer.flip();
+    }
+  }
+
+  /** @return true if the input can {@link #seek(long)} */
+  public boolean isSeekable() {
+    return file != null;
+  }
+
+  /** Moves to an offset, e.g. a syncpoint from a {@link NutIndex}. Only a mapped file can seek. */
+  public void seek(long offset) throws IOException {
+    if (file == null) {
+      throw new IOException("Only file channels can seek");
+    }
+    checkArgument(offset >= 0 && offset <= file.size(), "offset %s out of range", offset);
+    crcActive = false;
+    if (offset >= bufferOffset && offset <= bufferOffset + buffer.limit()) {
+      buffer.position((int) (offset - bufferOffset));
+    } else {
+      map(offset);
+    }
+  }
+
+  /** @return true if every byte has been read */
+  public boolean isAtEnd() throws IOException {
+    return !buffer.hasRemaining() && !fill(1);
+  }
+
+  /**
+   * Makes sure the next n bytes are in the buffer.
+   *
+   * @throws EOFException if the input ends first
+   */
+  void require(int n) throws IOException {
+    if (buffer.remaining() < n && !fill(n)) {
+      throw new EOFException("wanted " + n + " bytes at offset " + offset());
+    }
+  }
+
+  /** @return false if the input ends before n bytes are available */
+  private boolean fill(int n) throws IOException {
+    foldCrc();
+    final long position = offset();
+
+    if (file != null) {
+      if (position + n > file.size()) {
+        return false;
+      }
+      map(position);
+      return true;
+    }
+
+    if (n > buffer.capacity()) {
+      ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(n, buffer.capacity() * 2));
+      bigger.put(buffer);
+      bigger.flip();
+      buffer = bigger;
+    } else {
+      buffer.compact();
+      buffer.flip();
+    }
+    bufferOffset = position;
+    crcFrom = 0;
+
+    while (buffer.remaining() < n && !endOfChannel) {
+      // Read after what's already there, then go back to reading from where we were
+      int start = buffer.position();
+      buffer.position(buffer.limit());
+      buffer.limit(buffer.capacity());
+      int read = channel.read(buffer);
+      buffer.limit(buffer.position());
+      buffer.position(start);
+      if (read < 0) {
+        endOfChannel = true;
+      }
+    }
+    return buffer.remaining() >= n;
+  }
+
+  private void map(long offset) throws IOException {
+    long size = Math.min(MAP_WINDOW_SIZE, file.size() - offset);
+    buffer = file.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    bufferOffset = offset;
+    crcFrom = 0;
+  }
+
+  // Adds everything read so far to the checksum, before those bytes leave the buffer
+  private void foldCrc() {
+    if (crcActive) {
+      crc = NutCrc.update(crc, buffer, crcFrom, buffer.position());
+      crcFrom = buffer.position();
+    }
+  }
+
+  private int readUnsignedByte() throws IOException {
+    if (!buffer.hasRemaining()) {
+      require(1);
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int readVarInt() throws IOException {
+    return (int) readVarLong();
+  }
+
+  @Override
+  public long readVarLong() throws IOException {
+    long result = 0;
+    int b;
+    do {
+      b = readUnsignedByte();
+      result = (result << 7) | (b & 0x7F);
+    } while ((b & 0x80) != 0);
+    return result;
+  }
+
+  @Override
+  public long readSignedVarInt() throws IOException {
+    long temp = readVarLong() + 1;
+    if ((temp & 1) == 1) {
+      return -(temp >> 1);
+    }
+    return temp >> 1;
+  }
+
+  @Override
+  public byte[] readVarArray() throws IOException {
+    int len = (int) readVarLong();
+    byte[] result = new byte[len];
+    readFully(result, 0, len);
+    return result;
+  }
+
+  @Override
+  public long readStartCode() throws IOException {
+    int frameCode = readUnsignedByte();
+    if (frameCode != 'N') {
+      return frameCode;
+    }
+    // Otherwise read the remaining 64bit startCode
+    require(7);
+    long startcode = frameCode;
+    for (int i = 0; i < 7; i++) {
+      startcode = (startcode << 8) | (buffer.get() & 0xFF);
+    }
+    return startcode;
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    require(4);
+    return buffer.getInt();
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    require(len);
+    buffer.get(b, off, len);
+  }
+
+  /**
+   * Reads the next bytes without copying them.
+   *
+   * @return a read only view of the next length bytes
+   */
+  public ByteBuffer slice(int length) throws IOException {
+    require(length);
+    ByteBuffer view = buffer.duplicate();
+    view.limit(view.position() + length);
+    buffer.position(buffer.position() + length);
+    return view.slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public int skipBytes(int n) throws IOException {
+    int skipped = 0;
+    while (skipped < n) {
+      if (!buffer.hasRemaining() && !fill(1)) {
+        break;
+      }
+      int step = Math.min(n - skipped, buffer.remaining());
+      buffer.position(buffer.position() + step);
+      skipped += step;
+    }
+    return skipped;
+  }
+
+  @Override
+  public long offset() {
+    return bufferOffset + buffer.position();
+  }
+
+  @Override
+  public void resetCRC() {
+    crcActive = true;
+    crc = 0;
+    crcFrom = buffer.position();
+  }
+
+  /** Stops checksumming until the next {@link #resetCRC()}, e.g. while reading frames. */
+  public void stopCRC() {
+    crcActive = false;
+  }
+
+  @Override
+  public long getCRC() {
+    foldCrc();
+    return crc & 0xFFFFFFFFL;
+  }
+}
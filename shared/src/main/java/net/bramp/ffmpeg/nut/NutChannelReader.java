@@ -0,0 +1,193 @@
+package net.bramp.ffmpeg.nut;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.lang3.math.Fraction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static net.bramp.ffmpeg.nut.Packet.Startcode;
+
+/**
+ * Demuxer for the FFmpeg Nut file format that reads from a channel through {@link
+ * NutChannelInput} instead of a stack of InputStreams, and parses the same packets as {@link
+ * NutReader}.
+ *
+ * <p>Unlike NutReader it checks every packet's checksum, and hands frames to the listener as read
+ * only views of its buffer instead of copies, except frames with an elision header, which have to
+ * be copied to prepend it. For a {@link FileChannel} those views stay valid; for any other channel
+ * they're only valid until the listener returns.
+ *
+ * <p>Syncpoints and keyframes are added to an index as they're read, which {@link
+ * #readFrom(NutIndex.SyncPoint)} can seek with.
+ */
+public class NutChannelReader {
+
+  public MainHeaderPacket header;
+  public final List<Stream> streams = new ArrayList<>();
+
+  final NutChannelInput in;
+  final NutReaderListener listener;
+  final NutIndex index = new NutIndex();
+
+  // The syncpoint frames are being read after
+  NutIndex.SyncPoint syncPoint;
+
+  public NutChannelReader(ReadableByteChannel channel, NutReaderListener listener)
+      throws IOException {
+    this.in = new NutChannelInput(channel);
+    this.listener = checkNotNull(listener);
+  }
+
+  public NutIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Demux the channel
+   *
+   * @throws IOException If a I/O error occurs, or a checksum is wrong
+   */
+  public void read() throws IOException {
+    readFileId();
+    demux();
+  }
+
+  /**
+   * Demux a file from a syncpoint onwards. The headers must have been read already, by {@link
+   * #read()}.
+   *
+   * @throws IOException If a I/O error occurs, or a checksum is wrong
+   */
+  public void readFrom(NutIndex.SyncPoint syncPoint) throws IOException {
+    checkState(header != null, "Headers have not been read");
+    in.seek(syncPoint.getOffset());
+    demux();
+  }
+
+  protected void readFileId() throws IOException {
+    byte[] b = new byte[NutReader.HEADER.length];
+    in.readFully(b, 0, b.length);
+
+    if (!Arrays.equals(b, NutReader.HEADER)) {
+      throw new IOException(
+          "file_id_string does not match. got: " + new String(b, Charsets.ISO_8859_1));
+    }
+  }
+
+  void demux() throws IOException {
+    while (!in.isAtEnd()) {
+      long offset = in.offset();
+      in.resetCRC(); // The header checksum starts at the startcode
+      long startcode = in.readStartCode();
+
+      if (startcode > 0xFF) {
+        readPacket(startcode, offset);
+      } else {
+        in.stopCRC();
+        readFrame((int) startcode);
+      }
+    }
+  }
+
+  private void readPacket(long startcode, long offset) throws IOException {
+    if (Startcode.MAIN.equalsCode(startcode)) {
+      readHeaders(startcode);
+
+    } else if (Startcode.SYNCPOINT.equalsCode(startcode)) {
+      checkHeaderRead(startcode);
+      SyncPointPacket packet = new SyncPointPacket(header);
+      read(packet, startcode);
+      resetTimestamps(packet);
+      syncPoint = index.addSyncPoint(offset, packet.getTime());
+
+    } else if (Startcode.STREAM.equalsCode(startcode)) {
+      throw new IOException("stream header found outside the main headers");
+
+    } else {
+      // Info, index, or something reserved; none of which are used yet
+      read(new Packet(), startcode);
+    }
+  }
+
+  private void readHeaders(long startcode) throws IOException {
+    header = new MainHeaderPacket();
+    read(header, startcode);
+
+    streams.clear();
+    for (int i = 0; i < header.streamCount; i++) {
+      in.resetCRC();
+      startcode = in.readStartCode();
+      if (!Startcode.STREAM.equalsCode(startcode)) {
+        throw new IOException(String.format("expected stream header found: 0x%X", startcode));
+      }
+
+      StreamHeaderPacket streamHeader = new StreamHeaderPacket();
+      read(streamHeader, startcode);
+
+      Stream stream = new Stream(header, streamHeader);
+      streams.add(stream);
+      listener.stream(stream);
+    }
+  }
+
+  private void read(Packet packet, long startcode) throws IOException {
+    packet.read(in, startcode);
+    in.stopCRC();
+    if (!packet.footer.valid) {
+      throw new IOException(
+          String.format(
+              "invalid %s packet checksum %X, ending at %d",
+              Startcode.toString(startcode), packet.footer.checksum, in.offset()));
+    }
+  }
+
+  private void readFrame(int code) throws IOException {
+    checkHeaderRead(code);
+
+    Frame frame = new Frame();
+    frame.readHeader(header, streams, in, code);
+
+    byte[] elision =
+        frame.headerIdx < header.elision.size() ? header.elision.get(frame.headerIdx) : null;
+    if (elision == null || elision.length == 0) {
+      frame.payload = in.slice(frame.size);
+    } else {
+      ByteBuffer data = ByteBuffer.allocate(frame.size);
+      data.put(elision);
+      data.put(in.slice(frame.size - elision.length));
+      data.flip();
+      frame.payload = data.asReadOnlyBuffer();
+    }
+
+    if (frame.isKeyframe() && syncPoint != null) {
+      index.addKeyframe(frame, syncPoint);
+    }
+
+    listener.frame(frame);
+  }
+
+  private void checkHeaderRead(long startcode) throws IOException {
+    if (header == null) {
+      throw new IOException(
+          "expected main header found: " + Startcode.toString(startcode) + " at " + in.offset());
+    }
+  }
+
+  // After a syncpoint, each stream's pts is coded relative to the syncpoint's
+  private void resetTimestamps(SyncPointPacket syncPoint) {
+    Fraction timeBase = header.timeBase[syncPoint.timeBaseId];
+    for (Stream stream : streams) {
+      long numerator = (long) timeBase.getNumerator() * stream.timeBase.getDenominator();
+      long denominator = (long) timeBase.getDenominator() * stream.timeBase.getNumerator();
+      stream.last_pts = Math.floorDiv(syncPoint.globalKeyPts * numerator, denominator);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package net.bramp.ffmpeg.nut;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The checksum Nut uses: CRC-32 with generator polynomial 0x104C11DB7, starting at zero, most
+ * significant bit first and without a final xor (ffmpeg's AV_CRC_32_IEEE). Note this is not what
+ * java.util.zip.CRC32 computes, which is bit reversed and inverted.
+ *
+ * <p>Works on whole ranges of a buffer at once, four bytes a step (slicing-by-4).
+ */
+final class NutCrc {
+
+  static final int POLYNOMIAL = 0x04C11DB7;
+
+  // TABLES[k][b] is the crc of byte b followed by k zero bytes
+  private static final int[][] TABLES = new int[4][256];
+
+  static {
+    for (int b = 0; b < 256; b++) {
+      int crc = b << 24;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+      }
+      TABLES[0][b] = crc;
+    }
+    for (int b = 0; b < 256; b++) {
+      for (int k = 1; k < 4; k++) {
+        int previous = TABLES[k - 1][b];
+        TABLES[k][b] = (previous << 8) ^ TABLES[0][previous >>> 24];
+      }
+    }
+  }
+
+  private NutCrc() {}
+
+  /**
+   * Continues a checksum over buffer[from, to), without moving the buffer's position.
+   *
+   * @param crc the checksum so far, 0 to start
+   * @return the checksum including the range
+   */
+  static int update(int crc, ByteBuffer buffer, int from, int to) {
+    final int[] t0 = TABLES[0];
+    final int[] t1 = TABLES[1];
+    final int[] t2 = TABLES[2];
+    final int[] t3 = TABLES[3];
+
+    int i = from;
+    for (; i + 4 <= to; i += 4) {
+      crc ^= buffer.getInt(i); // big endian, so the first byte is the most significant
+      crc = t3[crc >>> 24] ^ t2[(crc >>> 16) & 0xFF] ^ t1[(crc >>> 8) & 0xFF] ^ t0[crc & 0xFF];
+    }
+    for (; i < to; i++) {
+      crc = (crc << 8) ^ t0[((crc >>> 24) ^ buffer.get(i)) & 0xFF];
+    }
+    return crc;
+  }
+
+  static int update(int crc, byte[] bytes, int from, int to) {
+    return update(crc, ByteBuffer.wrap(bytes), from, to);
+  }
+}
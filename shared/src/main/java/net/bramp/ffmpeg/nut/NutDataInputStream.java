@@ -11,7 +11,7 @@ import java.io.InputStream;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /** A DataInputStream that implements a couple of custom FFmpeg Nut datatypes. */
-public class NutDataInputStream implements DataInput {
+public class NutDataInputStream implements DataInput, NutInput {
 
   final DataInputStream in;
   final CRC32InputStream crc;
@@ -28,17 +28,20 @@ public class NutDataInputStream implements DataInput {
     this.in = new DataInputStream(crc);
   }
 
+  @Override
   public void resetCRC() {
     startCrcRange = count.getCount();
     crc.resetCrc();
   }
 
+  @Override
   public long getCRC() {
     endCrcRange = count.getCount();
     return crc.getValue();
   }
 
   // Read a simple var int up to 32 bits
+  @Override
   public int readVarInt() throws IOException {
     boolean more;
     int result = 0;
@@ -54,6 +57,7 @@ public class NutDataInputStream implements DataInput {
   }
 
   // Read a simple var int up to 64 bits
+  @Override
   public long readVarLong() throws IOException {
     boolean more;
     long result = 0;
@@ -69,6 +73,7 @@ public class NutDataInputStream implements DataInput {
   }
 
   // Read a signed var int
+  @Override
   public long readSignedVarInt() throws IOException {
     long temp = readVarLong() + 1;
     if ((temp & 1) == 1) {
@@ -78,6 +83,7 @@ public class NutDataInputStream implements DataInput {
   }
 
   // Read a array with a varint prefixed length
+  @Override
   public byte[] readVarArray() throws IOException {
     int len = (int) readVarLong();
     byte[] result = new byte[len];
@@ -86,6 +92,7 @@ public class NutDataInputStream implements DataInput {
   }
 
   // Returns the start code, OR frame_code if the code doesn't start with 'N'
+  @Override
   public long readStartCode() throws IOException {
     byte frameCode = in.readByte();
     if (frameCode != 'N') {
@@ -106,6 +113,7 @@ public class NutDataInputStream implements DataInput {
         + ((buffer[7] & 255) << 0));
   }
 
+  @Override
   public long offset() {
     return count.getCount();
   }
@@ -0,0 +1,160 @@
+package net.bramp.ffmpeg.nut;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The syncpoints and keyframes seen while demuxing, in file order, for seeking with {@link
+ * NutChannelReader#readFrom(SyncPoint)}. Not thread safe; it's built by the reader as it goes.
+ */
+public class NutIndex {
+
+  /** A syncpoint: decoding can start at its offset. */
+  public static class SyncPoint {
+    final long offset;
+    final double time;
+
+    SyncPoint(long offset, double time) {
+      this.offset = offset;
+      this.time = time;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    /** @return the global key pts in seconds */
+    public double getTime() {
+      return time;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("offset", offset).add("time", time).toString();
+    }
+  }
+
+  /** A keyframe, and the syncpoint to start reading from to decode it. */
+  public static class Keyframe {
+    final int streamId;
+    final long pts;
+    final double time;
+    final SyncPoint syncPoint;
+
+    Keyframe(int streamId, long pts, double time, SyncPoint syncPoint) {
+      this.streamId = streamId;
+      this.pts = pts;
+      this.time = time;
+      this.syncPoint = syncPoint;
+    }
+
+    public int getStreamId() {
+      return streamId;
+    }
+
+    public long getPts() {
+      return pts;
+    }
+
+    public double getTime() {
+      return time;
+    }
+
+    public SyncPoint getSyncPoint() {
+      return syncPoint;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("streamId", streamId)
+          .add("pts", pts)
+          .add("time", time)
+          .add("syncPoint", syncPoint)
+          .toString();
+    }
+  }
+
+  private static final Comparator<SyncPoint> BY_OFFSET =
+      Comparator.comparingLong(SyncPoint::getOffset);
+
+  private final List<SyncPoint> syncPoints = new ArrayList<>();
+  private final Map<Integer, List<Keyframe>> keyframes = new HashMap<>();
+
+  /**
+   * Records a syncpoint, unless it's already known (e.g. read again after seeking back).
+   *
+   * @return the syncpoint
+   */
+  SyncPoint addSyncPoint(long offset, double time) {
+    if (!syncPoints.isEmpty()) {
+      SyncPoint last = syncPoints.get(syncPoints.size() - 1);
+      if (offset <= last.offset) {
+        SyncPoint syncPoint = new SyncPoint(offset, time);
+        int i = Collections.binarySearch(syncPoints, syncPoint, BY_OFFSET);
+        return i >= 0 ? syncPoints.get(i) : syncPoint;
+      }
+    }
+    SyncPoint syncPoint = new SyncPoint(offset, time);
+    syncPoints.add(syncPoint);
+    return syncPoint;
+  }
+
+  void addKeyframe(Frame frame, SyncPoint syncPoint) {
+    List<Keyframe> stream =
+        keyframes.computeIfAbsent(frame.stream.getId(), id -> new ArrayList<>());
+    if (stream.isEmpty() || frame.pts > stream.get(stream.size() - 1).pts) {
+      double time = frame.pts * frame.stream.timeBase.doubleValue();
+      stream.add(new Keyframe(frame.stream.getId(), frame.pts, time, syncPoint));
+    }
+  }
+
+  public List<SyncPoint> getSyncPoints() {
+    return Collections.unmodifiableList(syncPoints);
+  }
+
+  public List<Keyframe> getKeyframes(int streamId) {
+    return Collections.unmodifiableList(keyframes.getOrDefault(streamId, Collections.emptyList()));
+  }
+
+  /** @return the last syncpoint at or before the time, or null if there's none */
+  public SyncPoint syncPointBefore(double seconds) {
+    int low = 0;
+    int high = syncPoints.size() - 1;
+    SyncPoint found = null;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (syncPoints.get(mid).time <= seconds) {
+        found = syncPoints.get(mid);
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return found;
+  }
+
+  /** @return the stream's last keyframe at or before the time, or null if there's none */
+  public Keyframe keyframeBefore(int streamId, double seconds) {
+    List<Keyframe> stream = keyframes.getOrDefault(streamId, Collections.emptyList());
+    int low = 0;
+    int high = stream.size() - 1;
+    Keyframe found = null;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (stream.get(mid).time <= seconds) {
+        found = stream.get(mid);
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return found;
+  }
+}
@@ -0,0 +1,40 @@
+package net.bramp.ffmpeg.nut;
+
+import java.io.IOException;
+
+/**
+ * The Nut datatypes the packet and frame parsers read, so the same parsers work over a stream
+ * ({@link NutDataInputStream}) or a buffer ({@link NutChannelInput}).
+ */
+public interface NutInput {
+
+  // Read a simple var int up to 32 bits
+  int readVarInt() throws IOException;
+
+  // Read a simple var int up to 64 bits
+  long readVarLong() throws IOException;
+
+  // Read a signed var int
+  long readSignedVarInt() throws IOException;
+
+  // Read a array with a varint prefixed length
+  byte[] readVarArray() throws IOException;
+
+  // Returns the start code, OR frame_code if the code doesn't start with 'N'
+  long readStartCode() throws IOException;
+
+  int readInt() throws IOException;
+
+  void readFully(byte[] b, int off, int len) throws IOException;
+
+  int skipBytes(int n) throws IOException;
+
+  /** @return the number of bytes read so far */
+  long offset();
+
+  /** Starts a new checksum from the current offset. */
+  void resetCRC();
+
+  /** @return the checksum of everything read since the last {@link #resetCRC()} */
+  long getCRC();
+}
@@ -62,18 +62,18 @@ public class Packet {
   public final PacketHeader header = new PacketHeader();
   public final PacketFooter footer = new PacketFooter();
 
-  protected void readBody(NutDataInputStream in) throws IOException {
+  protected void readBody(NutInput in) throws IOException {
     // Default implementation does nothing
   }
 
-  public void read(NutDataInputStream in, long startcode) throws IOException {
+  public void read(NutInput in, long startcode) throws IOException {
     header.read(in, startcode);
     readBody(in);
     seekToPacketFooter(in);
     footer.read(in);
   }
 
-  public void seekToPacketFooter(NutDataInputStream in) throws IOException {
+  public void seekToPacketFooter(NutInput in) throws IOException {
     long current = in.offset();
     if (current > header.end) {
       throw new IOException("Can not seek backwards at:" + current + " end:" + header.end);
@@ -6,11 +6,13 @@ import java.io.IOException;
 
 public class PacketFooter {
   int checksum;
+  boolean valid;
 
-  public void read(NutDataInputStream in) throws IOException {
+  public void read(NutInput in) throws IOException {
     long expected = in.getCRC();
     checksum = in.readInt();
-    if (checksum != expected) {
+    valid = (checksum & 0xFFFFFFFFL) == expected;
+    if (!valid) {
       // throw new IOException(String.format("invalid packet checksum %X want %X", expected,
       // checksum));
       Packet.LOG.debug("invalid packet checksum {} want {}", expected, checksum);
@@ -12,13 +12,13 @@ public class PacketHeader {
 
   long end; // End byte of packet
 
-  public void read(NutDataInputStream in, long startcode) throws IOException {
+  public void read(NutInput in, long startcode) throws IOException {
     this.startcode = startcode;
     forwardPtr = in.readVarLong();
     if (forwardPtr > 4096) {
       long expected = in.getCRC();
       checksum = in.readInt();
-      if (checksum != expected) {
+      if ((checksum & 0xFFFFFFFFL) != expected) {
         // TODO This code path has never been tested.
         throw new IOException(
             String.format("invalid header checksum %X want %X", expected, checksum));
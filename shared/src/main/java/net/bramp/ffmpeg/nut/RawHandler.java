@@ -40,7 +40,7 @@ public class RawHandler {
     BufferedImage img = new BufferedImage(header.width, header.height, type);
 
     // TODO Avoid this conversion.
-    int[] data = bytesToInts(frame.data);
+    int[] data = bytesToInts(frame.getData());
     int stride = header.width; // TODO Check this is true
     img.setRGB(0, 0, header.width, header.height, data, 0, stride);
 
@@ -138,8 +138,8 @@ public class RawHandler {
     checkArgument(header.type == StreamHeaderPacket.AUDIO);
 
     AudioFormat format = streamToAudioFormat(header);
-    InputStream stream = new ByteArrayInputStream(frame.data);
+    InputStream stream = new ByteArrayInputStream(frame.getData());
 
-    return new AudioInputStream(stream, format, frame.data.length / format.getFrameSize());
+    return new AudioInputStream(stream, format, frame.size / format.getFrameSize());
   }
 }
@@ -18,4 +18,12 @@ public class Stream {
     }
     this.timeBase = header.timeBase[streamHeader.timeBaseId];
   }
+
+  public int getId() {
+    return header.id;
+  }
+
+  public Fraction getTimeBase() {
+    return timeBase;
+  }
 }
@@ -39,7 +39,7 @@ public class StreamHeaderPacket extends Packet {
   }
 
   @Override
-  protected void readBody(NutDataInputStream in) throws IOException {
+  protected void readBody(NutInput in) throws IOException {
 
     id = in.readVarInt();
     type = in.readVarLong();
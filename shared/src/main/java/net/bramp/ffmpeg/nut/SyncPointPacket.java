@@ -1,4 +1,47 @@
 package net.bramp.ffmpeg.nut;
 
-// TODO
-public class SyncPointPacket {}
+import com.google.common.base.MoreObjects;
+
+import java.io.IOException;
+
+/**
+ * Marks a point decoding can start from: every stream's next frame is a keyframe at or after the
+ * global pts.
+ */
+public class SyncPointPacket extends Packet {
+
+  long globalKeyPts;
+  int timeBaseId;
+  long backPtrDiv16;
+
+  final MainHeaderPacket main;
+
+  public SyncPointPacket(MainHeaderPacket main) {
+    this.main = main;
+  }
+
+  @Override
+  protected void readBody(NutInput in) throws IOException {
+    // A "t" coded timestamp: the time base is folded into the value
+    long tmp = in.readVarLong();
+    timeBaseId = (int) (tmp % main.timeBase.length);
+    globalKeyPts = tmp / main.timeBase.length;
+    backPtrDiv16 = in.readVarLong();
+  }
+
+  /** @return the global pts in seconds */
+  public double getTime() {
+    return globalKeyPts * main.timeBase[timeBaseId].doubleValue();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("header", header)
+        .add("globalKeyPts", globalKeyPts)
+        .add("timeBaseId", timeBaseId)
+        .add("backPtrDiv16", backPtrDiv16)
+        .add("footer", footer)
+        .toString();
+  }
+}
@@ -0,0 +1,39 @@
+package net.bramp.ffmpeg.probe;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link ProbeResultCache} holding up to a maximum number of results in memory, evicting the least
+ * recently used. A changed file has a different key, so its old result is never returned, and is
+ * eventually evicted.
+ */
+public class InMemoryProbeResultCache implements ProbeResultCache {
+
+  final Cache<Key, FFmpegProbeResult> results;
+
+  public InMemoryProbeResultCache(long maximumSize) {
+    checkArgument(maximumSize > 0, "maximumSize must be positive");
+    this.results = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+  }
+
+  @Nullable
+  @Override
+  public FFmpegProbeResult get(@Nonnull Key key) {
+    return results.getIfPresent(key);
+  }
+
+  @Override
+  public void put(@Nonnull Key key, @Nonnull FFmpegProbeResult result) {
+    results.put(key, result);
+  }
+
+  public long size() {
+    return results.size();
+  }
+}
@@ -0,0 +1,100 @@
+package net.bramp.ffmpeg.probe;
+
+import com.google.common.base.MoreObjects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Holds ffprobe results for local files, so a file that hasn't changed isn't probed again. Results
+ * are shared between callers, and must not be modified.
+ *
+ * @see net.bramp.ffmpeg.FFprobe#FFprobe(String, net.bramp.ffmpeg.ProcessFunction,
+ *     ProbeResultCache)
+ */
+public interface ProbeResultCache {
+
+  @Nullable
+  FFmpegProbeResult get(@Nonnull Key key);
+
+  void put(@Nonnull Key key, @Nonnull FFmpegProbeResult result);
+
+  /** Identifies a version of a file: its absolute path, size and modification time. */
+  final class Key {
+    final String path;
+    final long size;
+    final long lastModified;
+
+    public Key(@Nonnull String path, long size, long lastModified) {
+      this.path = checkNotNull(path);
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the key of the file at mediaPath, or null if it isn't a regular file (e.g. a URL).
+     */
+    @Nullable
+    public static Key of(@Nonnull String mediaPath) {
+      try {
+        Path path = Paths.get(mediaPath).toAbsolutePath();
+        // One stat for both the size and modification time
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+          return null;
+        }
+        return new Key(
+            path.toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
+      } catch (InvalidPathException | IOException e) {
+        return null;
+      }
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return size == key.size && lastModified == key.lastModified && path.equals(key.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, size, lastModified);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("path", path)
+          .add("size", size)
+          .add("lastModified", lastModified)
+          .toString();
+    }
+  }
+}
@@ -18,7 +18,11 @@ public abstract class AbstractSocketProgressParser implements ProgressParser {
   Thread thread; // Thread for handling incoming connections
 
   public AbstractSocketProgressParser(ProgressListener listener) {
-    this.parser = new StreamProgressParser(listener);
+    this(new StreamProgressParser(listener));
+  }
+
+  public AbstractSocketProgressParser(StreamProgressParser parser) {
+    this.parser = checkNotNull(parser);
   }
 
   /**
@@ -0,0 +1,418 @@
+package net.bramp.ffmpeg.progress;
+
+import org.apache.commons.lang3.math.Fraction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Parses the same progress output as {@link StreamProgressParser}, but straight from bytes and without allocating
+ * per line or per report. Input is read into a reusable buffer, keys are matched byte by byte, and values are parsed
+ * in place into a single {@link Progress} that is reset after every report.
+ *
+ * <p>The listener is handed that same Progress every time, so it must not keep a reference to it past its call. Use
+ * {@link Progress#Progress(Progress)} to keep a copy.
+ *
+ * <p>Chunks passed to {@link #processBytes(byte[], int, int)} don't need to end on a line or report boundary: a
+ * partial line is carried over to the next chunk, so reports split across UDP packets are handled.
+ *
+ * <p>Not thread safe; each parser should be fed by one thread.
+ */
+public class ByteProgressParser extends StreamProgressParser {
+
+  static final int BUFFER_SIZE = 8192;
+
+  // Longer lines aren't progress output, and are skipped
+  static final int MAX_LINE_LENGTH = 256;
+
+  private static final byte[] FRAME = ascii("frame");
+  private static final byte[] FPS = ascii("fps");
+  private static final byte[] BITRATE = ascii("bitrate");
+  private static final byte[] TOTAL_SIZE = ascii("total_size");
+  private static final byte[] OUT_TIME = ascii("out_time");
+  private static final byte[] OUT_TIME_MS = ascii("out_time_ms");
+  private static final byte[] OUT_TIME_US = ascii("out_time_us");
+  private static final byte[] DUP_FRAMES = ascii("dup_frames");
+  private static final byte[] DROP_FRAMES = ascii("drop_frames");
+  private static final byte[] SPEED = ascii("speed");
+  private static final byte[] PROGRESS = ascii("progress");
+  private static final byte[] STREAM_PREFIX = ascii("stream_");
+  private static final byte[] NOT_AVAILABLE = ascii("N/A");
+  private static final byte[] CONTINUE = ascii("continue");
+  private static final byte[] END = ascii("end");
+
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+  };
+
+  private final Progress progress = new Progress();
+
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  private final byte[] line = new byte[MAX_LINE_LENGTH];
+  private int lineLength = 0;
+  private boolean lineTooLong = false;
+
+  // The fps value rarely changes, so the last one is kept rather than building a new Fraction every report
+  private final byte[] lastFps = new byte[MAX_LINE_LENGTH];
+  private int lastFpsLength = -1;
+  private Fraction lastFpsFraction = Fraction.ZERO;
+
+  // Set by parseDecimal, to tell where the number ended
+  private int decimalEnd;
+
+  public ByteProgressParser(ProgressListener listener) {
+    super(listener);
+  }
+
+  /**
+   * Parses a whole stream of progress output. Anything left over from a previous stream or chunk is discarded
+   * first.
+   */
+  @Override
+  public void processStream(InputStream stream) throws IOException {
+    checkNotNull(stream);
+    reset();
+
+    int read;
+    while ((read = stream.read(buffer)) != -1) {
+      processBytes(buffer, 0, read);
+    }
+
+    // The last line might not be terminated
+    endLine();
+  }
+
+  @Override
+  public void processBytes(byte[] bytes, int offset, int length) {
+    checkNotNull(bytes);
+    final int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      final byte b = bytes[i];
+      if (b == '\n') {
+        endLine();
+      } else if (lineLength < MAX_LINE_LENGTH) {
+        line[lineLength++] = b;
+      } else {
+        lineTooLong = true;
+      }
+    }
+  }
+
+  /** Forgets any partial line or report. */
+  public void reset() {
+    lineLength = 0;
+    lineTooLong = false;
+    progress.reset();
+  }
+
+  private void endLine() {
+    boolean reportPending = false;
+    try {
+      if (!lineTooLong && parseLine(0, lineLength)) {
+        listener.progress(progress);
+      } else {
+        reportPending = true;
+      }
+    } finally {
+      // A line that failed to parse is cleared all the same, along with the report it was part of, so the bytes after
+      // it start a fresh line
+      if (!reportPending) {
+        progress.reset();
+      }
+      lineLength = 0;
+      lineTooLong = false;
+    }
+  }
+
+  /**
+   * Byte equivalent of {@link Progress#parseLine(String)}.
+   *
+   * @return true if the report is finished
+   */
+  private boolean parseLine(int start, int end) {
+    // Trim, which also drops the \r of \r\n
+    while (start < end && line[start] <= ' ') {
+      start++;
+    }
+    while (end > start && line[end - 1] <= ' ') {
+      end--;
+    }
+
+    int equals = indexOf('=', start, end);
+    if (equals < 0) {
+      // Empty or invalid line, so skip
+      return false;
+    }
+
+    final int keyLength = equals - start;
+
+    // ffmpeg pads some values, e.g. "bitrate= 512.0kbits/s"
+    int valueStart = equals + 1;
+    while (valueStart < end && line[valueStart] == ' ') {
+      valueStart++;
+    }
+
+    if (keyEquals(FRAME, start, keyLength)) {
+      progress.frame = parseLong(valueStart, end);
+
+    } else if (keyEquals(FPS, start, keyLength)) {
+      progress.fps = parseFps(valueStart, end);
+
+    } else if (keyEquals(BITRATE, start, keyLength)) {
+      if (valueEquals(NOT_AVAILABLE, valueStart, end)) {
+        progress.bitrate = -1;
+      } else {
+        double kbits = parseDecimal(valueStart, end);
+        if (Double.isNaN(kbits) || !startsWith("kbits/s", decimalEnd, end)) {
+          throw new IllegalArgumentException("Invalid bitrate '" + string(valueStart, end) + "'");
+        }
+        progress.bitrate = (long) ((float) kbits * 1000);
+      }
+
+    } else if (keyEquals(TOTAL_SIZE, start, keyLength)) {
+      progress.total_size = valueEquals(NOT_AVAILABLE, valueStart, end) ? -1 : parseLong(valueStart, end);
+
+    } else if (keyEquals(OUT_TIME, start, keyLength)) {
+      progress.out_time_ns = parseTimecode(valueStart, end);
+
+    } else if (keyEquals(OUT_TIME_MS, start, keyLength) || keyEquals(OUT_TIME_US, start, keyLength)) {
+      // Duplicates of "out_time", see Progress.parseLine
+
+    } else if (keyEquals(DUP_FRAMES, start, keyLength)) {
+      progress.dup_frames = parseLong(valueStart, end);
+
+    } else if (keyEquals(DROP_FRAMES, start, keyLength)) {
+      progress.drop_frames = parseLong(valueStart, end);
+
+    } else if (keyEquals(SPEED, start, keyLength)) {
+      if (valueEquals(NOT_AVAILABLE, valueStart, end)) {
+        progress.speed = -1;
+      } else {
+        double speed = parseDecimal(valueStart, end);
+        if (Double.isNaN(speed)) {
+          throw new NumberFormatException("Invalid speed '" + string(valueStart, end) + "'");
+        }
+        progress.speed = (float) speed;
+      }
+
+    } else if (keyEquals(PROGRESS, start, keyLength)) {
+      if (valueEqualsIgnoreCase(CONTINUE, valueStart, end)) {
+        progress.status = Progress.Status.CONTINUE;
+      } else if (valueEqualsIgnoreCase(END, valueStart, end)) {
+        progress.status = Progress.Status.END;
+      } else {
+        throw new IllegalArgumentException("invalid progress status '" + string(valueStart, end) + "'");
+      }
+      return true; // The status field is always last in the record
+
+    } else if (!keyStartsWith(STREAM_PREFIX, start, keyLength) && Progress.LOG.isDebugEnabled()) {
+      // Progress.parseLine warns about these, but at one report a second that's a lot of garbage and noise for
+      // fields newer ffmpeg versions add
+      Progress.LOG.debug("skipping unhandled key: {}", string(start, end));
+    }
+
+    return false;
+  }
+
+  private Fraction parseFps(int start, int end) {
+    final int length = end - start;
+    if (length == lastFpsLength && regionEquals(lastFps, line, start, length)) {
+      return lastFpsFraction;
+    }
+
+    double fps = parseDecimal(start, end);
+    if (Double.isNaN(fps) || decimalEnd != end) {
+      // Not a plain decimal, so let Fraction deal with it as Progress.parseLine does
+      lastFpsFraction = Fraction.getFraction(string(start, end));
+    } else {
+      lastFpsFraction = Fraction.getFraction(fps);
+    }
+    System.arraycopy(line, start, lastFps, 0, length);
+    lastFpsLength = length;
+    return lastFpsFraction;
+  }
+
+  /** Parses a whole value as a long, like Long.parseLong. */
+  private long parseLong(int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (line[i] == '-' || line[i] == '+')) {
+      negative = line[i] == '-';
+      i++;
+    }
+    if (i == end) {
+      throw new NumberFormatException("For input string: \"" + string(start, end) + "\"");
+    }
+
+    long value = 0;
+    for (; i < end; i++) {
+      int digit = line[i] - '0';
+      if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+        throw new NumberFormatException("For input string: \"" + string(start, end) + "\"");
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses an unsigned decimal number like "12.34" at the start of the range, setting decimalEnd to just after it.
+   * Dividing the exact digits by an exact power of ten gives the same correctly rounded double as
+   * Double.parseDouble, as long as the digits fit in 53 bits; longer numbers fall back to it.
+   *
+   * @return the number, or NaN if the range doesn't start with one
+   */
+  private double parseDecimal(int start, int end) {
+    long digits = 0;
+    int scale = 0;
+    int significant = 0;
+    boolean seenPoint = false;
+    boolean seenDigit = false;
+
+    int i = start;
+    for (; i < end; i++) {
+      final byte b = line[i];
+      if (b >= '0' && b <= '9') {
+        seenDigit = true;
+        if (digits != 0 || b != '0') {
+          significant++;
+        }
+        digits = digits * 10 + (b - '0');
+        if (seenPoint) {
+          scale++;
+        }
+        if (significant > 15 || scale >= POWERS_OF_TEN.length) {
+          // Out of exact range, which progress values never are
+          i = skipDecimal(i, end);
+          decimalEnd = i;
+          return Double.parseDouble(string(start, i));
+        }
+      } else if (b == '.' && !seenPoint) {
+        seenPoint = true;
+      } else {
+        break;
+      }
+    }
+
+    decimalEnd = i;
+    return seenDigit ? digits / POWERS_OF_TEN[scale] : Double.NaN;
+  }
+
+  private int skipDecimal(int i, int end) {
+    while (i < end && ((line[i] >= '0' && line[i] <= '9') || line[i] == '.')) {
+      i++;
+    }
+    return i;
+  }
+
+  /** Byte equivalent of FFmpegUtils.fromTimecode, for HH:MM:SS.ssssss */
+  private long parseTimecode(int start, int end) {
+    // fromTimecode finds the first match, so skips anything before the digits, e.g. a minus sign
+    int i = start;
+    while (i < end && (line[i] < '0' || line[i] > '9')) {
+      i++;
+    }
+
+    long hours = 0;
+    long minutes = 0;
+    double seconds = Double.NaN;
+    int field = 0;
+    int fieldStart = i;
+    for (; i <= end; i++) {
+      if (i == end || line[i] == ':') {
+        if (field < 2) {
+          long value = parseLong(fieldStart, i);
+          if (field == 0) {
+            hours = value;
+          } else {
+            minutes = value;
+          }
+          field++;
+          fieldStart = i + 1;
+        } else {
+          break;
+        }
+      } else if (field == 2) {
+        seconds = parseDecimal(i, end);
+        break;
+      }
+    }
+
+    if (Double.isNaN(seconds)) {
+      throw new IllegalArgumentException("invalid time '" + string(start, end) + "'");
+    }
+
+    return HOURS.toNanos(hours) + MINUTES.toNanos(minutes) + (long) (SECONDS.toNanos(1) * seconds);
+  }
+
+  private int indexOf(char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (line[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean keyEquals(byte[] key, int start, int length) {
+    return key.length == length && regionEquals(key, line, start, length);
+  }
+
+  private boolean keyStartsWith(byte[] prefix, int start, int length) {
+    return prefix.length <= length && regionEquals(prefix, line, start, prefix.length);
+  }
+
+  private boolean valueEquals(byte[] value, int start, int end) {
+    return value.length == end - start && regionEquals(value, line, start, value.length);
+  }
+
+  private boolean valueEqualsIgnoreCase(byte[] value, int start, int end) {
+    if (value.length != end - start) {
+      return false;
+    }
+    for (int i = 0; i < value.length; i++) {
+      // ASCII letters only differ in case by 0x20
+      if ((value[i] | 0x20) != (line[start + i] | 0x20)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean startsWith(String prefix, int start, int end) {
+    if (prefix.length() > end - start) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (line[start + i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean regionEquals(byte[] expected, byte[] actual, int start, int length) {
+    for (int i = 0; i < length; i++) {
+      if (expected[i] != actual[start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Only for error messages and the rare value that needs a String
+  private String string(int start, int end) {
+    return new String(line, start, end - start, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -102,6 +102,36 @@ public class Progress {
     this.status = status;
   }
 
+  /**
+   * Copies another progress report, e.g. to keep one delivered by a {@link ByteProgressParser}, which reuses its
+   * Progress for every report.
+   */
+  public Progress(Progress other) {
+    checkNotNull(other);
+    this.frame = other.frame;
+    this.fps = other.fps;
+    this.bitrate = other.bitrate;
+    this.total_size = other.total_size;
+    this.out_time_ns = other.out_time_ns;
+    this.dup_frames = other.dup_frames;
+    this.drop_frames = other.drop_frames;
+    this.speed = other.speed;
+    this.status = other.status;
+  }
+
+  /** Returns every field to its initial value, so the object can hold the next report. */
+  void reset() {
+    frame = 0;
+    fps = Fraction.ZERO;
+    bitrate = 0;
+    total_size = 0;
+    out_time_ns = 0;
+    dup_frames = 0;
+    drop_frames = 0;
+    speed = 0;
+    status = null;
+  }
+
   /**
    * Parses values from the line, into this object.
    *
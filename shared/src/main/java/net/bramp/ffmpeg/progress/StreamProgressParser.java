@@ -29,6 +29,18 @@ public class StreamProgressParser {
     processReader(new InputStreamReader(stream, Charsets.UTF_8));
   }
 
+  /**
+   * Parses a chunk of progress output, e.g. one UDP packet.
+   *
+   * @param bytes the output
+   * @param offset where the chunk starts in bytes
+   * @param length the length of the chunk
+   * @throws IOException if the chunk can't be read
+   */
+  public void processBytes(byte[] bytes, int offset, int length) throws IOException {
+    processStream(new ByteArrayInputStream(bytes, offset, length));
+  }
+
   public void processReader(Reader reader) throws IOException {
     final BufferedReader in = wrapInBufferedReader(reader);
 
@@ -18,7 +18,16 @@ public class TcpProgressParser extends AbstractSocketProgressParser {
 
   public TcpProgressParser(ProgressListener listener, int port, InetAddress addr)
       throws IOException, URISyntaxException {
-    super(listener);
+    this(new StreamProgressParser(listener), port, addr);
+  }
+
+  public TcpProgressParser(StreamProgressParser parser) throws IOException, URISyntaxException {
+    this(parser, 0, InetAddress.getLoopbackAddress());
+  }
+
+  public TcpProgressParser(StreamProgressParser parser, int port, InetAddress addr)
+      throws IOException, URISyntaxException {
+    super(parser);
     this.server = new ServerSocket(port, 0, addr);
     this.address = createUri("tcp", server.getInetAddress(), server.getLocalPort());
   }
@@ -17,8 +17,17 @@ public class UdpProgressParser extends AbstractSocketProgressParser {
 
   public UdpProgressParser(ProgressListener listener, int port, InetAddress addr)
       throws SocketException, URISyntaxException {
+    this(new StreamProgressParser(listener), port, addr);
+  }
+
+  public UdpProgressParser(StreamProgressParser parser) throws SocketException, URISyntaxException {
+    this(parser, 0, InetAddress.getLoopbackAddress());
+  }
+
+  public UdpProgressParser(StreamProgressParser parser, int port, InetAddress addr)
+      throws SocketException, URISyntaxException {
 
-    super(listener);
+    super(parser);
 
     this.socket = new DatagramSocket(port, checkNotNull(addr));
     this.address = createUri("udp", socket.getLocalAddress(), socket.getLocalPort());
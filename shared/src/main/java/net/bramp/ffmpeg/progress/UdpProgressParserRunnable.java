@@ -1,6 +1,5 @@
 package net.bramp.ffmpeg.progress;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
@@ -33,16 +32,14 @@ class UdpProgressParserRunnable implements Runnable {
       startSignal.countDown();
 
       try {
-        // TODO This doesn't handle the case of a progress being split across two packets
+        // A progress split across two packets is only handled by ByteProgressParser
         socket.receive(packet);
 
         if (packet.getLength() == 0) {
           continue;
         }
 
-        final ByteArrayInputStream in =
-            new ByteArrayInputStream(packet.getData(), packet.getOffset(), packet.getLength());
-        parser.processStream(in);
+        parser.processBytes(packet.getData(), packet.getOffset(), packet.getLength());
 
       } catch (SocketException e) {
         // Most likley a Socket closed exception, which we can safely ignore
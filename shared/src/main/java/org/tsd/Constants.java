@@ -38,6 +38,8 @@ public class Constants {
         public static final String TSDTV_STREAM_URL = "tsdtvStreamUrl";
         public static final String TSDTV_CHANNEL = "tsdtvChannel";
         public static final String TSDTV_SCHEDULE = "tsdtvSchedule";
+
+        public static final String CPU_EXECUTOR = "cpuExecutor";
     }
 
     public static class Auth {
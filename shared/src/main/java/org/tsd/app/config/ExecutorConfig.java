@@ -0,0 +1,47 @@
+package org.tsd.app.config;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class ExecutorConfig {
+
+    public enum Mode {
+        // one fixed pool, sized to the CPU count, shared by all async work
+        FIXED,
+        // I/O work gets a thread per task up to maxIoThreads; CPU work keeps its own small pool
+        ELASTIC
+    }
+
+    @NotNull
+    private Mode mode = Mode.ELASTIC;
+
+    @Min(1)
+    private int maxIoThreads = 256;
+
+    @Min(1)
+    private int cpuThreads = Runtime.getRuntime().availableProcessors();
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getMaxIoThreads() {
+        return maxIoThreads;
+    }
+
+    public void setMaxIoThreads(int maxIoThreads) {
+        this.maxIoThreads = maxIoThreads;
+    }
+
+    public int getCpuThreads() {
+        return cpuThreads;
+    }
+
+    public void setCpuThreads(int cpuThreads) {
+        this.cpuThreads = cpuThreads;
+    }
+}
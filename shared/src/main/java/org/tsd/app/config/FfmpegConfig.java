@@ -10,6 +10,9 @@ public class FfmpegConfig {
     @NotNull
     private String ffprobeExec;
 
+    // ffprobe results of unchanged files kept in memory, 0 (the default) to probe every time
+    private int probeCacheSize = 0;
+
     public String getFfmpegExec() {
         return ffmpegExec;
     }
@@ -25,4 +28,12 @@ public class FfmpegConfig {
     public void setFfprobeExec(String ffprobeExec) {
         this.ffprobeExec = ffprobeExec;
     }
+
+    public int getProbeCacheSize() {
+        return probeCacheSize;
+    }
+
+    public void setProbeCacheSize(int probeCacheSize) {
+        this.probeCacheSize = probeCacheSize;
+    }
 }
@@ -0,0 +1,101 @@
+package org.tsd.app.config;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.HashMap;
+import java.util.Map;
+
+public class HttpClientConfig {
+
+    @Min(1)
+    private int maxTotalConnections = 100;
+
+    @Min(1)
+    private int maxConnectionsPerHost = 10;
+
+    // overrides of maxConnectionsPerHost, keyed by scheme://host[:port]
+    @NotNull
+    private Map<String, Integer> hostMaxConnections = new HashMap<>();
+
+    @Min(1)
+    private int connectTimeoutMillis = 5_000;
+
+    // longest wait for data on an open connection
+    @Min(1)
+    private int socketTimeoutMillis = 30_000;
+
+    // longest wait for a free connection from the pool
+    @Min(1)
+    private int connectionRequestTimeoutMillis = 10_000;
+
+    @Min(1)
+    private long idleEvictionSeconds = 30;
+
+    // used when the server doesn't say how long to keep a connection, and as a cap when it does
+    @Min(1)
+    private long keepAliveSeconds = 60;
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public void setMaxTotalConnections(int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public Map<String, Integer> getHostMaxConnections() {
+        return hostMaxConnections;
+    }
+
+    public void setHostMaxConnections(Map<String, Integer> hostMaxConnections) {
+        this.hostMaxConnections = hostMaxConnections;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    public int getConnectionRequestTimeoutMillis() {
+        return connectionRequestTimeoutMillis;
+    }
+
+    public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+        this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+    }
+
+    public long getIdleEvictionSeconds() {
+        return idleEvictionSeconds;
+    }
+
+    public void setIdleEvictionSeconds(long idleEvictionSeconds) {
+        this.idleEvictionSeconds = idleEvictionSeconds;
+    }
+
+    public long getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public void setKeepAliveSeconds(long keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+}
@@ -3,6 +3,8 @@ package org.tsd.app.module;
 import com.google.inject.AbstractModule;
 import net.bramp.ffmpeg.FFmpeg;
 import net.bramp.ffmpeg.FFprobe;
+import net.bramp.ffmpeg.RunProcessFunction;
+import net.bramp.ffmpeg.probe.InMemoryProbeResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.app.config.FfmpegConfig;
@@ -21,8 +23,12 @@ public class FfmpegModule extends AbstractModule {
     protected void configure() {
         FFprobe ffProbe;
         try {
-            log.info("Binding FFprobe to: {}", ffmpegConfig.getFfprobeExec());
-            ffProbe = new FFprobe(ffmpegConfig.getFfprobeExec());
+            log.info("Binding FFprobe to: {}, probeCacheSize={}",
+                    ffmpegConfig.getFfprobeExec(), ffmpegConfig.getProbeCacheSize());
+            ffProbe = new FFprobe(ffmpegConfig.getFfprobeExec(),
+                    new RunProcessFunction(),
+                    ffmpegConfig.getProbeCacheSize() > 0 ?
+                            new InMemoryProbeResultCache(ffmpegConfig.getProbeCacheSize()) : null);
             bind(FFprobe.class)
                     .toInstance(ffProbe);
         } catch (Exception e) {
@@ -1,28 +1,64 @@
 package org.tsd.app.module;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
 import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.tsd.Constants;
+import org.tsd.app.config.ExecutorConfig;
+import org.tsd.app.config.HttpClientConfig;
+import org.tsd.util.NamedExecutors;
+import org.tsd.util.PooledHttpClients;
 
 import java.time.Clock;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class UtilityModule extends AbstractModule {
 
+    private final ExecutorConfig executorConfig;
+    private final HttpClientConfig httpClientConfig;
+    private final MetricRegistry metricRegistry;
+
+    public UtilityModule(ExecutorConfig executorConfig,
+                         HttpClientConfig httpClientConfig,
+                         MetricRegistry metricRegistry) {
+        this.executorConfig = executorConfig;
+        this.httpClientConfig = httpClientConfig;
+        this.metricRegistry = metricRegistry;
+    }
+
     @Override
     protected void configure() {
         install(new QuartzModule());
 
-        HttpClient httpClient = HttpClients.createDefault();
+        CloseableHttpClient httpClient = PooledHttpClients.create("shared", httpClientConfig, metricRegistry);
         bind(HttpClient.class)
                 .toInstance(httpClient);
+        bind(CloseableHttpClient.class)
+                .toInstance(httpClient);
+
+        /*
+        The unqualified ExecutorService is for work that mostly waits on HTTP, S3 or ffmpeg. CPU-heavy work such
+        as image processing should ask for the CPU executor so it can't crowd out the I/O pool, or vice versa.
+         */
+        ExecutorService ioExecutor;
+        ExecutorService cpuExecutor;
+        if (executorConfig.getMode() == ExecutorConfig.Mode.FIXED) {
+            ioExecutor = NamedExecutors.fixed("shared", executorConfig.getCpuThreads(), metricRegistry);
+            cpuExecutor = ioExecutor;
+        } else {
+            ioExecutor = NamedExecutors.elastic("io", executorConfig.getMaxIoThreads(), metricRegistry);
+            cpuExecutor = NamedExecutors.fixed("cpu", executorConfig.getCpuThreads(), metricRegistry);
+        }
+
+        bind(ExecutorService.class)
+                .toInstance(ioExecutor);
 
-        ExecutorService executorService
-                = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
         bind(ExecutorService.class)
-                .toInstance(executorService);
+                .annotatedWith(Names.named(Constants.Annotations.CPU_EXECUTOR))
+                .toInstance(cpuExecutor);
 
         bind(Clock.class)
                 .toInstance(Clock.systemUTC());
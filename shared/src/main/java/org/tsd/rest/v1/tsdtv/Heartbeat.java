@@ -6,7 +6,15 @@ public class Heartbeat {
 
     private String agentId;
     private Inventory inventory;
+    // version of the full inventory above
+    private Long inventoryVersion;
+    // sent instead of a full inventory once the server has acknowledged a version
+    private InventoryDelta inventoryDelta;
     private Double uploadBitrate;
+    // smoothed throughput of recent streams, null if nothing has streamed lately
+    private Double sustainedUploadBitrate;
+    // null if the agent doesn't pre-encode
+    private MezzanineStatus mezzanineStatus;
     private boolean healthy;
     private String unhealthyReason;
 
@@ -34,6 +42,38 @@ public class Heartbeat {
         this.inventory = inventory;
     }
 
+    public Long getInventoryVersion() {
+        return inventoryVersion;
+    }
+
+    public void setInventoryVersion(Long inventoryVersion) {
+        this.inventoryVersion = inventoryVersion;
+    }
+
+    public InventoryDelta getInventoryDelta() {
+        return inventoryDelta;
+    }
+
+    public void setInventoryDelta(InventoryDelta inventoryDelta) {
+        this.inventoryDelta = inventoryDelta;
+    }
+
+    public Double getSustainedUploadBitrate() {
+        return sustainedUploadBitrate;
+    }
+
+    public void setSustainedUploadBitrate(Double sustainedUploadBitrate) {
+        this.sustainedUploadBitrate = sustainedUploadBitrate;
+    }
+
+    public MezzanineStatus getMezzanineStatus() {
+        return mezzanineStatus;
+    }
+
+    public void setMezzanineStatus(MezzanineStatus mezzanineStatus) {
+        this.mezzanineStatus = mezzanineStatus;
+    }
+
     public Double getUploadBitrate() {
         return uploadBitrate;
     }
@@ -55,7 +95,11 @@ public class Heartbeat {
         return new ToStringBuilder(this)
                 .append("agentId", agentId)
                 .append("inventory", inventory)
+                .append("inventoryVersion", inventoryVersion)
+                .append("inventoryDelta", inventoryDelta)
                 .append("uploadBitrate", uploadBitrate)
+                .append("sustainedUploadBitrate", sustainedUploadBitrate)
+                .append("mezzanineStatus", mezzanineStatus)
                 .append("healthy", healthy)
                 .append("unhealthyReason", unhealthyReason)
                 .toString();
@@ -5,6 +5,8 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 public class HeartbeatResponse {
     private int sleepSeconds;
     private boolean sendInventory;
+    // the inventory version the server now holds for the agent, null if it holds none
+    private Long inventoryVersion;
 
     public boolean isSendInventory() {
         return sendInventory;
@@ -14,6 +16,14 @@ public class HeartbeatResponse {
         this.sendInventory = sendInventory;
     }
 
+    public Long getInventoryVersion() {
+        return inventoryVersion;
+    }
+
+    public void setInventoryVersion(Long inventoryVersion) {
+        this.inventoryVersion = inventoryVersion;
+    }
+
     public int getSleepSeconds() {
         return sleepSeconds;
     }
@@ -27,6 +37,7 @@ public class HeartbeatResponse {
         return new ToStringBuilder(this)
                 .append("sleepSeconds", sleepSeconds)
                 .append("sendInventory", sendInventory)
+                .append("inventoryVersion", inventoryVersion)
                 .toString();
     }
 }
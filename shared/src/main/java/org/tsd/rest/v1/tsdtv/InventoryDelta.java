@@ -0,0 +1,87 @@
+package org.tsd.rest.v1.tsdtv;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Changes to an agent's inventory since a version the server has acknowledged. Movies are keyed by id and series by
+ * name; a series whose episodes changed is sent whole.
+ */
+public class InventoryDelta {
+
+    private long baseVersion;
+    private long version;
+    private List<Movie> upsertedMovies = new LinkedList<>();
+    private List<Integer> removedMovies = new LinkedList<>();
+    private List<Series> upsertedSeries = new LinkedList<>();
+    private List<String> removedSeries = new LinkedList<>();
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public void setBaseVersion(long baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<Movie> getUpsertedMovies() {
+        return upsertedMovies;
+    }
+
+    public void setUpsertedMovies(List<Movie> upsertedMovies) {
+        this.upsertedMovies = upsertedMovies;
+    }
+
+    public List<Integer> getRemovedMovies() {
+        return removedMovies;
+    }
+
+    public void setRemovedMovies(List<Integer> removedMovies) {
+        this.removedMovies = removedMovies;
+    }
+
+    public List<Series> getUpsertedSeries() {
+        return upsertedSeries;
+    }
+
+    public void setUpsertedSeries(List<Series> upsertedSeries) {
+        this.upsertedSeries = upsertedSeries;
+    }
+
+    public List<String> getRemovedSeries() {
+        return removedSeries;
+    }
+
+    public void setRemovedSeries(List<String> removedSeries) {
+        this.removedSeries = removedSeries;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return upsertedMovies.isEmpty() && removedMovies.isEmpty()
+                && upsertedSeries.isEmpty() && removedSeries.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("baseVersion", baseVersion)
+                .append("version", version)
+                .append("upsertedMovies", upsertedMovies.size())
+                .append("removedMovies", removedMovies)
+                .append("upsertedSeries", upsertedSeries.size())
+                .append("removedSeries", removedSeries)
+                .toString();
+    }
+}
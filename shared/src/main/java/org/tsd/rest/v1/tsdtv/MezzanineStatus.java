@@ -0,0 +1,90 @@
+package org.tsd.rest.v1.tsdtv;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * An agent's stream-ready encodes of its inventory: how much disk they use and what's being encoded
+ */
+public class MezzanineStatus {
+
+    private int count;
+    private long usedBytes;
+    private long quotaBytes;
+    // inventory items still waiting for a mezzanine
+    private int pending;
+    // the source being encoded, null if the encoder is idle
+    private String encoding;
+    // 0 to 1, across both passes of a two pass encode
+    private Double progress;
+    // encoding speed as a multiple of real time
+    private Double speed;
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void setUsedBytes(long usedBytes) {
+        this.usedBytes = usedBytes;
+    }
+
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    public void setQuotaBytes(long quotaBytes) {
+        this.quotaBytes = quotaBytes;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public void setPending(int pending) {
+        this.pending = pending;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    public Double getProgress() {
+        return progress;
+    }
+
+    public void setProgress(Double progress) {
+        this.progress = progress;
+    }
+
+    public Double getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(Double speed) {
+        this.speed = speed;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("count", count)
+                .append("usedBytes", usedBytes)
+                .append("quotaBytes", quotaBytes)
+                .append("pending", pending)
+                .append("encoding", encoding)
+                .append("progress", progress)
+                .append("speed", speed)
+                .toString();
+    }
+}
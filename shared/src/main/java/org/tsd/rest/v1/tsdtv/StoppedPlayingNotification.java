@@ -6,6 +6,9 @@ public class StoppedPlayingNotification {
     private String agentId;
     private int mediaId;
     private boolean error;
+    // the cued media the agent started in its place, if any
+    private Integer nextMediaId;
+    private Long nextTimeStarted;
 
     public boolean isError() {
         return error;
@@ -15,6 +18,22 @@ public class StoppedPlayingNotification {
         this.error = error;
     }
 
+    public Integer getNextMediaId() {
+        return nextMediaId;
+    }
+
+    public void setNextMediaId(Integer nextMediaId) {
+        this.nextMediaId = nextMediaId;
+    }
+
+    public Long getNextTimeStarted() {
+        return nextTimeStarted;
+    }
+
+    public void setNextTimeStarted(Long nextTimeStarted) {
+        this.nextTimeStarted = nextTimeStarted;
+    }
+
     public String getAgentId() {
         return agentId;
     }
@@ -37,6 +56,8 @@ public class StoppedPlayingNotification {
                 .append("agentId", agentId)
                 .append("mediaId", mediaId)
                 .append("error", error)
+                .append("nextMediaId", nextMediaId)
+                .append("nextTimeStarted", nextTimeStarted)
                 .toString();
     }
 }
@@ -5,6 +5,8 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 public class TSDTVPlayJob extends Job {
     private int mediaId;
     private String targetUrl;
+    // start when the media playing now ends, instead of right away
+    private boolean cue;
 
     public String getTargetUrl() {
         return targetUrl;
@@ -14,6 +16,14 @@ public class TSDTVPlayJob extends Job {
         this.targetUrl = targetUrl;
     }
 
+    public boolean isCue() {
+        return cue;
+    }
+
+    public void setCue(boolean cue) {
+        this.cue = cue;
+    }
+
     public int getMediaId() {
         return mediaId;
     }
@@ -27,6 +37,7 @@ public class TSDTVPlayJob extends Job {
         return new ToStringBuilder(this)
                 .append("mediaId", mediaId)
                 .append("targetUrl", targetUrl)
+                .append("cue", cue)
                 .append("id", id)
                 .append("agentId", agentId)
                 .append("timeoutMillis", timeoutMillis)
@@ -1,5 +1,8 @@
 package org.tsd.tsdtv;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import net.bramp.ffmpeg.FFmpeg;
@@ -7,15 +10,30 @@ import net.bramp.ffmpeg.FFmpegExecutor;
 import net.bramp.ffmpeg.FFprobe;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
 import net.bramp.ffmpeg.job.FFmpegJob;
+import net.bramp.ffmpeg.progress.Progress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.rest.v1.tsdtv.Media;
+import org.tsd.util.BandwidthEstimator;
 import org.tsd.util.FfmpegUtil;
+import org.tsd.util.StreamPlan;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+/**
+ * Plays one stream at a time. The next media can be cued while a stream is playing, and starts as soon as that
+ * stream ends rather than waiting for another play job.
+ */
 @Singleton
 public class TSDTVPlayer {
 
@@ -23,66 +41,320 @@ public class TSDTVPlayer {
 
     private static final long NANNY_SLEEP_PERIOD_SECONDS = 3;
 
-    private FFmpegJob runningStream = null;
+    // a mezzanine encoded for a budget averages about that bitrate plus container overhead
+    private static final double MEZZANINE_BITRATE_TOLERANCE = 1.1;
 
-    private final FFmpeg fFmpeg;
+    // a stream starting this soon after the last one ended counts as a transition between them
+    private static final long TRANSITION_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    // read from a cued file ahead of time, so its first minutes come out of the page cache
+    private static final long PREBUFFER_BYTES = 32 * 1024 * 1024;
+
+    private volatile Stream runningStream = null;
+    // guarded by this
+    private Stream cued = null;
+    private FFmpeg lastFFmpeg = null;
+    // when the last stream ended by itself, null if it was stopped
+    private volatile Long lastEndNanos = null;
+
+    /*
+    Stopping an FFmpeg stops whatever it last ran, and a cued stream starts while the one before it is still shutting
+    down, so consecutive streams take turns between two instances
+     */
+    private final FFmpeg[] fFmpegs;
     private final FFprobe fFprobe;
     private final ExecutorService executorService;
+    // checks that streams got going, without holding up whatever started them
+    private final ScheduledExecutorService nanny;
+    private final BandwidthEstimator bandwidthEstimator;
+
+    // from a stream ending until the next one reports output
+    private final Timer transitionGap;
 
     @Inject
     public TSDTVPlayer(ExecutorService executorService,
                        FFmpeg fFmpeg,
-                       FFprobe fFprobe) {
-        this.fFmpeg = fFmpeg;
+                       FFprobe fFprobe,
+                       BandwidthEstimator bandwidthEstimator,
+                       MetricRegistry metricRegistry) {
+        this(executorService,
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setNameFormat("tsdtv-player-nanny").setDaemon(true).build()),
+                new FFmpeg[] {fFmpeg, secondInstance(fFmpeg)},
+                fFprobe,
+                bandwidthEstimator,
+                metricRegistry);
+    }
+
+    TSDTVPlayer(ExecutorService executorService,
+                ScheduledExecutorService nanny,
+                FFmpeg[] fFmpegs,
+                FFprobe fFprobe,
+                BandwidthEstimator bandwidthEstimator,
+                MetricRegistry metricRegistry) {
+        this.fFmpegs = fFmpegs;
         this.fFprobe = fFprobe;
         this.executorService = executorService;
+        this.nanny = nanny;
+        this.bandwidthEstimator = bandwidthEstimator;
+        this.transitionGap = metricRegistry.timer(MetricRegistry.name(TSDTVPlayer.class, "transitionGap"));
+    }
+
+    private static FFmpeg secondInstance(FFmpeg fFmpeg) {
+        try {
+            return new FFmpeg(fFmpeg.getPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to initialize FFmpeg for the player: " + fFmpeg.getPath(), e);
+        }
     }
 
     public void play(Media media,
                      String targetUrl,
                      Long availableBandwidth,
-                     Consumer<FFmpegJob.State> handleEnd) throws Exception {
-        log.info("Playing media, targetUrl={}, media={}", targetUrl, media);
+                     Consumer<FFmpegJob.State> handleEnd) {
+        play(media, null, targetUrl, availableBandwidth, (state, next) -> handleEnd.accept(state));
+    }
 
-        FFmpegBuilder builder = FfmpegUtil.buildFfmpeg(media, targetUrl, availableBandwidth);
-        FFmpegExecutor executor = new FFmpegExecutor(fFmpeg, fFprobe);
-        runningStream = executor.createJob(builder, progress -> {
-            if (progress.isEnd()) {
-                try {
-                    FFmpegJob.State state = runningStream.getState();
-                    log.warn("Stream ended, state = {}, media = {}", state, media);
-                    stop();
-                    handleEnd.accept(state);
-                } catch (Exception e) {
-                    log.error("Error sending stopped notification to TSDBot", e);
+    /**
+     * Starts playing media, replacing whatever is playing. A stream that fails to start is reported through
+     * handleEnd a few seconds later, like one that ended.
+     *
+     * @param mezzanine a stream-ready encode of the media, which is remuxed instead of encoding the media live if
+     *                  its bitrate fits the stream. May be null
+     * @param handleEnd called when the stream ends with its state, and the cued media that took over from it if any
+     */
+    public void play(Media media,
+                     File mezzanine,
+                     String targetUrl,
+                     Long availableBandwidth,
+                     BiConsumer<FFmpegJob.State, Media> handleEnd) {
+        log.info("Playing media, targetUrl={}, mezzanine={}, media={}", targetUrl, mezzanine, media);
+        Stream stream = prepare(media, mezzanine, targetUrl, availableBandwidth, handleEnd);
+        // a replaced stream never reports ending once it's no longer running, so its job has to be stopped here
+        stop();
+        synchronized (this) {
+            start(stream);
+        }
+        log.info("Media playing, confirming start in {} seconds", NANNY_SLEEP_PERIOD_SECONDS);
+        confirmStartLater(stream);
+    }
+
+    /**
+     * Prepares media to start the moment the playing stream ends, replacing anything already cued. The start of the
+     * file is read in the background so it's in the page cache by then.
+     *
+     * @throws IllegalStateException if nothing is playing
+     */
+    public void cue(Media media,
+                    File mezzanine,
+                    String targetUrl,
+                    Long availableBandwidth,
+                    BiConsumer<FFmpegJob.State, Media> handleEnd) {
+        log.info("Cueing media, targetUrl={}, mezzanine={}, media={}", targetUrl, mezzanine, media);
+        Stream stream = prepare(media, mezzanine, targetUrl, availableBandwidth, handleEnd);
+        synchronized (this) {
+            if (!isPlaying()) {
+                throw new IllegalStateException("Nothing is playing to cue media after, media=" + media);
+            }
+            cued = stream;
+        }
+        executorService.submit(() -> prebuffer(stream.input));
+    }
+
+    private Stream prepare(Media media,
+                           File mezzanine,
+                           String targetUrl,
+                           Long availableBandwidth,
+                           BiConsumer<FFmpegJob.State, Media> handleEnd) {
+        // what earlier streams actually sustained beats a speed test
+        Long streamBudget = bandwidthEstimator.getStreamBudgetBits();
+        StreamPlan plan = streamBudget != null
+                ? FfmpegUtil.planStreamForBudget(media.getMediaInfo(), streamBudget, Collections.emptyList())
+                : FfmpegUtil.planStream(media.getMediaInfo(), availableBandwidth);
+        log.info("Stream budget from estimator: {}, plan: {}", streamBudget, plan);
+
+        if (mezzanine != null && fits(mezzanine, media, plan)) {
+            log.info("Remuxing mezzanine: {}", mezzanine);
+            return new Stream(media, mezzanine, FfmpegUtil.buildRemux(mezzanine.getAbsolutePath(), targetUrl), handleEnd);
+        }
+        return new Stream(media,
+                new File(media.getMediaInfo().getFilePath()),
+                FfmpegUtil.buildFfmpeg(media, plan, rendition -> targetUrl),
+                handleEnd);
+    }
+
+    // called holding this
+    private void start(Stream stream) {
+        FFmpeg fFmpeg = lastFFmpeg == fFmpegs[0] ? fFmpegs[1] : fFmpegs[0];
+        lastFFmpeg = fFmpeg;
+        stream.job = new FFmpegExecutor(fFmpeg, fFprobe).createJob(stream.builder, stream::update);
+        bandwidthEstimator.startStream();
+        runningStream = stream;
+        executorService.submit(stream.job);
+    }
+
+    private void ended(Stream stream) {
+        Stream next;
+        synchronized (this) {
+            if (runningStream != stream) {
+                // stopped, or replaced by another play
+                return;
+            }
+            lastEndNanos = System.nanoTime();
+            runningStream = null;
+            next = cued;
+            cued = null;
+        }
+
+        FFmpegJob.State state = stream.job.getState();
+        log.warn("Stream ended, state = {}, media = {}", state, stream.media);
+        stopJob(stream);
+
+        if (next != null) {
+            synchronized (this) {
+                if (runningStream == null) {
+                    log.info("Starting cued media: {}", next.media);
+                    start(next);
+                } else {
+                    next = null;
                 }
             }
-        });
-        executorService.submit(runningStream);
-        log.info("Media playing, waiting to confirm start...");
-        Thread.sleep(TimeUnit.SECONDS.toMillis(NANNY_SLEEP_PERIOD_SECONDS));
-        if (!FFmpegJob.State.RUNNING.equals(runningStream.getState())) {
-            log.error("Stream failed to start, state = {}, media = {}", runningStream.getState(), media);
-            log.warn("Stopping stream in error, state={}, media = {}", runningStream.getState(), media);
-            stop();
-            throw new Exception("Stream failed to start, media="+media);
+        }
+        if (next != null) {
+            confirmStartLater(next);
+        }
+
+        try {
+            stream.handleEnd.accept(state, next != null ? next.media : null);
+        } catch (Exception e) {
+            log.error("Error sending stopped notification to TSDBot", e);
         }
     }
 
-    public void stop() {
-        if (runningStream != null) {
-            try {
-                log.warn("Stopping stream...");
-                runningStream.stop();
-                log.warn("Stopped stream");
-            } catch (Throwable t) {
-                log.error("Error stopping stream", t);
+    private void confirmStartLater(Stream stream) {
+        nanny.schedule(() -> confirmStart(stream), NANNY_SLEEP_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /*
+    Nothing waits on a stream starting, neither the play job nor the end of the stream a cued one takes over from, so
+    a stream that didn't get going is reported as ended
+     */
+    private void confirmStart(Stream stream) {
+        FFmpegJob.State state = stream.job.getState();
+        synchronized (this) {
+            if (runningStream != stream || FFmpegJob.State.RUNNING.equals(state)) {
+                return;
             }
+            runningStream = null;
+            cued = null;
+        }
+        log.error("Stream failed to start, state = {}, media = {}", state, stream.media);
+        stopJob(stream);
+        try {
+            stream.handleEnd.accept(state, null);
+        } catch (Exception e) {
+            log.error("Error sending stopped notification to TSDBot", e);
+        }
+    }
+
+    private void recordTransition(Stream stream) {
+        Long endNanos = lastEndNanos;
+        if (endNanos == null) {
+            return;
+        }
+        long gapNanos = System.nanoTime() - endNanos;
+        if (gapNanos < TRANSITION_WINDOW_NANOS) {
+            transitionGap.update(gapNanos, TimeUnit.NANOSECONDS);
+            log.info("Transition gap: {} ms, media = {}", TimeUnit.NANOSECONDS.toMillis(gapNanos), stream.media);
+        }
+    }
+
+    private static void prebuffer(File input) {
+        byte[] buffer = new byte[64 * 1024];
+        long read = 0;
+        try (InputStream inputStream = new FileInputStream(input)) {
+            int length;
+            while (read < PREBUFFER_BYTES && (length = inputStream.read(buffer)) > 0) {
+                read += length;
+            }
+            log.info("Pre-buffered {} bytes of {}", read, input);
+        } catch (IOException e) {
+            log.warn("Failed to pre-buffer " + input, e);
+        }
+    }
+
+    private static boolean fits(File mezzanine, Media media, StreamPlan plan) {
+        int durationSeconds = media.getMediaInfo().getDurationSeconds();
+        if (durationSeconds <= 0) {
+            return false;
+        }
+        long mezzanineBitrate = mezzanine.length() * 8 / durationSeconds;
+        StreamPlan.Rendition top = plan.getRenditions().get(0);
+        long budget = top.getVideoBitrate() + top.getAudioBitrate();
+        log.info("Mezzanine bitrate: {}, stream budget: {}", mezzanineBitrate, budget);
+        return mezzanineBitrate <= budget * MEZZANINE_BITRATE_TOLERANCE;
+    }
+
+    /**
+     * Stops the running stream and drops anything cued after it
+     */
+    public void stop() {
+        Stream stream;
+        synchronized (this) {
+            stream = runningStream;
+            runningStream = null;
+            cued = null;
+            lastEndNanos = null;
+        }
+        if (stream != null) {
+            stopJob(stream);
+        }
+    }
+
+    private static void stopJob(Stream stream) {
+        try {
+            log.warn("Stopping stream...");
+            stream.job.stop();
+            log.warn("Stopped stream");
+        } catch (Throwable t) {
+            log.error("Error stopping stream", t);
         }
     }
 
     public boolean isPlaying() {
-        return runningStream != null
-                && !runningStream.getState().isTerminal();
+        Stream stream = runningStream;
+        return stream != null
+                && !stream.job.getState().isTerminal();
+    }
+
+    private class Stream {
+        final Media media;
+        // the file ffmpeg reads
+        final File input;
+        final FFmpegBuilder builder;
+        final BiConsumer<FFmpegJob.State, Media> handleEnd;
+
+        // created when the stream starts, on whichever FFmpeg the last stream didn't use
+        FFmpegJob job;
+        // only touched by the progress parser's thread
+        private boolean sending = false;
+
+        Stream(Media media, File input, FFmpegBuilder builder, BiConsumer<FFmpegJob.State, Media> handleEnd) {
+            this.media = media;
+            this.input = input;
+            this.builder = builder;
+            this.handleEnd = handleEnd;
+        }
+
+        void update(Progress progress) {
+            bandwidthEstimator.update(progress);
+            if (!sending && progress.out_time_ns > 0) {
+                sending = true;
+                recordTransition(this);
+            }
+            if (progress.isEnd()) {
+                ended(this);
+            }
+        }
     }
 }
@@ -0,0 +1,48 @@
+package org.tsd.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: the delay before retry n is drawn uniformly from [0, min(max, base * 2^(n-1))].
+ * Spreading retries over the whole window keeps clients that failed together from retrying together.
+ */
+public final class Backoff {
+
+    private static final int MAX_DOUBLINGS = 30;
+
+    private final long baseMillis;
+    private final long maxMillis;
+    private final int maxAttempts;
+
+    public Backoff(long baseMillis, long maxMillis, int maxAttempts) {
+        if (baseMillis <= 0 || maxMillis < baseMillis || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Invalid backoff: base=" + baseMillis
+                    + ", max=" + maxMillis + ", attempts=" + maxAttempts);
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempt the attempt that just failed, starting at 1
+     */
+    public long delayMillis(int attempt) {
+        int doublings = Math.min(Math.max(attempt - 1, 0), MAX_DOUBLINGS);
+        long ceiling = baseMillis > (maxMillis >> doublings) ? maxMillis : baseMillis << doublings;
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "Backoff{" +
+                "baseMillis=" + baseMillis +
+                ", maxMillis=" + maxMillis +
+                ", maxAttempts=" + maxAttempts +
+                '}';
+    }
+}
@@ -0,0 +1,165 @@
+package org.tsd.util;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import net.bramp.ffmpeg.progress.ByteProgressParser;
+import net.bramp.ffmpeg.progress.Progress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Estimates sustained upload throughput from the progress reports of the stream that's playing. Streams are read at
+ * native frame rate (-re), so ffmpeg keeps up with real time unless the uplink can't take the output. When it falls
+ * behind, or drops or duplicates frames, the link is saturated and the measured throughput is its capacity.
+ * Otherwise the measurement is only a lower bound.
+ *
+ * Live reports are timed by the clock as they arrive. The speed in a report can't stand in for that: ffmpeg prints it
+ * to three significant figures, and that rounding amounts to whole seconds of wall time late in a long stream. A
+ * recorded progress log has no arrival times though, so {@link #replay(InputStream)} has to fall back on out_time /
+ * speed, and is only as accurate as that rounding allows.
+ */
+@Singleton
+public class BandwidthEstimator {
+
+    private static final Logger log = LoggerFactory.getLogger(BandwidthEstimator.class);
+
+    // weight of each new sample
+    private static final double ALPHA = 0.2;
+
+    // a stream running slower than this is falling behind real time
+    private static final double LAGGING_SPEED = 0.97;
+
+    // budget kept below a saturated link, and growth allowed over one that kept up
+    private static final double SATURATED_HEADROOM = 0.85;
+    private static final double UNSATURATED_GROWTH = 1.25;
+
+    private static final Duration FRESH_FOR = Duration.ofMinutes(30);
+
+    private final Clock clock;
+
+    // last report of the current stream
+    private long lastTotalSize = -1;
+    private double lastWallSeconds;
+    private double lastMediaSeconds;
+    private long lastDroppedFrames;
+    private long lastDuplicatedFrames;
+
+    private Double estimateBits = null;
+    // smoothed share of recent samples where the stream was lagging
+    private double saturation = 0;
+    private Instant lastUpdated = Instant.MIN;
+    private long samples = 0;
+
+    @Inject
+    public BandwidthEstimator(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Call before a new stream starts reporting, so its first report isn't compared with the last stream's
+     */
+    public synchronized void startStream() {
+        lastTotalSize = -1;
+    }
+
+    public synchronized void update(Progress progress) {
+        update(progress, clock.millis() / 1e3);
+    }
+
+    /**
+     * Feeds a recorded ffmpeg progress log (the output of -progress) through the estimator as one stream
+     */
+    public void replay(InputStream progressLog) throws IOException {
+        startStream();
+        new ByteProgressParser(this::replayed).processStream(progressLog);
+    }
+
+    private synchronized void replayed(Progress progress) {
+        if (progress.speed <= 0) {
+            return;
+        }
+        // speed is averaged over the whole stream, so this is the wall time since the stream started
+        update(progress, progress.out_time_ns / 1e9 / progress.speed);
+    }
+
+    private void update(Progress progress, double wallSeconds) {
+        if (progress.total_size <= 0 || progress.out_time_ns <= 0) {
+            return;
+        }
+
+        double mediaSeconds = progress.out_time_ns / 1e9;
+
+        if (lastTotalSize >= 0) {
+            long bytes = progress.total_size - lastTotalSize;
+            double wallDelta = wallSeconds - lastWallSeconds;
+            double mediaDelta = mediaSeconds - lastMediaSeconds;
+            if (wallDelta <= 0) {
+                // arrived in the same tick as the last report, so it's counted with the next one
+                return;
+            }
+            if (bytes > 0) {
+                double sampleBits = bytes * 8 / wallDelta;
+                boolean lagging = mediaDelta / wallDelta < LAGGING_SPEED
+                        || progress.drop_frames > lastDroppedFrames
+                        || progress.dup_frames > lastDuplicatedFrames;
+                addSample(sampleBits, lagging);
+            }
+        }
+
+        lastTotalSize = progress.total_size;
+        lastWallSeconds = wallSeconds;
+        lastMediaSeconds = mediaSeconds;
+        lastDroppedFrames = progress.drop_frames;
+        lastDuplicatedFrames = progress.dup_frames;
+    }
+
+    private void addSample(double sampleBits, boolean lagging) {
+        saturation = ALPHA * (lagging ? 1 : 0) + (1 - ALPHA) * saturation;
+        if (estimateBits == null) {
+            estimateBits = sampleBits;
+        } else if (lagging || sampleBits > estimateBits) {
+            // a stream that kept up below the estimate just didn't need more, which says nothing about the link
+            estimateBits = ALPHA * sampleBits + (1 - ALPHA) * estimateBits;
+        }
+        samples++;
+        lastUpdated = clock.instant();
+        log.debug("Bandwidth sample: {} bit/s, lagging={}, estimate={}, saturation={}",
+                (long) sampleBits, lagging, estimateBits.longValue(), saturation);
+    }
+
+    /**
+     * @return the smoothed upload throughput in bits per second, or null if nothing has been measured recently
+     */
+    public synchronized Long getSustainedBitsPerSecond() {
+        return isFresh() ? estimateBits.longValue() : null;
+    }
+
+    public synchronized boolean isSaturated() {
+        return isFresh() && saturation > 0.5;
+    }
+
+    /**
+     * @return the bitrate, in bits per second, the next stream should be planned for: a little under a saturated
+     * link, or a little over what a link that kept up has carried. Null if nothing has been measured recently.
+     */
+    public synchronized Long getStreamBudgetBits() {
+        if (!isFresh()) {
+            return null;
+        }
+        return (long) (estimateBits * (saturation > 0.5 ? SATURATED_HEADROOM : UNSATURATED_GROWTH));
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    private boolean isFresh() {
+        return estimateBits != null && lastUpdated.isAfter(clock.instant().minus(FRESH_FOR));
+    }
+}
@@ -18,8 +18,8 @@ import org.tsd.rest.v1.tsdtv.stream.VideoStream;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Function;
 
 public class FfmpegUtil {
 
@@ -35,6 +35,23 @@ public class FfmpegUtil {
 
     private static final long DEFAULT_AUDIO_BITRATE =  128_000;
     private static final long DEFAULT_VIDEO_BITRATE = 1200_000;
+    private static final long MIN_LADDER_VIDEO_BITRATE = 200_000;
+
+    private static final double DEFAULT_FRAME_RATE = 24;
+    private static final double MAX_FRAME_RATE = 30;
+    private static final int KEYFRAME_INTERVAL_SECONDS = 2;
+    private static final String TRANSCODE_PRESET = "veryfast";
+    // mezzanines are encoded ahead of time, so can afford a slower preset than live streams
+    private static final String MEZZANINE_PRESET = "medium";
+    private static final String MEZZANINE_FORMAT = "matroska";
+
+    // what FLV can carry without re-encoding
+    private static final Set<String> COPYABLE_VIDEO_CODECS = Collections.singleton("h264");
+    private static final Set<String> COPYABLE_AUDIO_CODECS = new HashSet<>(Arrays.asList("aac", "mp3"));
+    private static final String COPYABLE_PIXEL_FORMAT = "yuv420p";
+
+    // heights of the lower renditions when streaming a bitrate ladder
+    public static final List<Integer> ABR_LADDER = Collections.unmodifiableList(Arrays.asList(720, 480, 360));
 
 
     public static MediaInfo getMediaInfo(FFprobe fFprobe, File file) throws IOException {
@@ -108,41 +125,197 @@ public class FfmpegUtil {
                 .findAny().orElse(null);
     }
 
-    public static FFmpegBuilder buildFfmpeg(Media media, String tsdtvUrl, Long availableBandwidthBits) {
-
-        long videoBitrate = DEFAULT_VIDEO_BITRATE;
-        long audioBitrate = DEFAULT_AUDIO_BITRATE;
+    /**
+     * Plans a single rendition that fits the available bandwidth
+     */
+    public static StreamPlan planStream(MediaInfo mediaInfo, Long availableBandwidthBits) {
+        return planStream(mediaInfo, availableBandwidthBits, Collections.emptyList());
+    }
 
+    /**
+     * Plans the top rendition from the available bandwidth, plus a lower rendition for every ladder height below the
+     * source's. The top rendition copies the source's video and/or audio when the codecs suit FLV and the source
+     * bitrate fits the budget, so nothing is encoded that doesn't need to be.
+     *
+     * @param ladderHeights heights of the lower renditions, e.g. {@link #ABR_LADDER}
+     */
+    public static StreamPlan planStream(MediaInfo mediaInfo, Long availableBandwidthBits, List<Integer> ladderHeights) {
         if (availableBandwidthBits != null && availableBandwidthBits > 0) {
             long availableBandwidthForStreaming = (long) (availableBandwidthBits * STREAMING_PERCENTAGE);
-            videoBitrate = Math.min( (long) (availableBandwidthForStreaming*VIDEO_PERCENTAGE), DEFAULT_VIDEO_BITRATE );
-            audioBitrate = Math.min( availableBandwidthForStreaming-videoBitrate, DEFAULT_AUDIO_BITRATE );
+            log.info("availableBandwidth={}", availableBandwidthBits);
+            return planStreamForBudget(mediaInfo, availableBandwidthForStreaming, ladderHeights);
+        }
+        return planStream(mediaInfo, DEFAULT_VIDEO_BITRATE, DEFAULT_AUDIO_BITRATE, ladderHeights);
+    }
+
+    /**
+     * Like {@link #planStream(MediaInfo, Long, List)}, but for a bitrate the stream as a whole may use rather than
+     * the agent's total bandwidth, e.g. from a {@link BandwidthEstimator}
+     */
+    public static StreamPlan planStreamForBudget(MediaInfo mediaInfo, long streamBudgetBits, List<Integer> ladderHeights) {
+        long videoBitrate = Math.min( (long) (streamBudgetBits*VIDEO_PERCENTAGE), DEFAULT_VIDEO_BITRATE );
+        long audioBitrate = Math.min( streamBudgetBits-videoBitrate, DEFAULT_AUDIO_BITRATE );
+        return planStream(mediaInfo, videoBitrate, audioBitrate, ladderHeights);
+    }
+
+    private static StreamPlan planStream(MediaInfo mediaInfo,
+                                         long videoBitrate,
+                                         long audioBitrate,
+                                         List<Integer> ladderHeights) {
+        VideoStream video = mediaInfo.getVideoStreams().isEmpty() ? null : mediaInfo.getVideoStreams().get(0);
+        AudioStream audio = mediaInfo.getAudioStreams().isEmpty() ? null : mediaInfo.getAudioStreams().get(0);
+        boolean burnSubtitles = CollectionUtils.isNotEmpty(mediaInfo.getSubtitleStreams());
+
+        boolean fitsBudget = mediaInfo.getBitRate() > 0 && mediaInfo.getBitRate() <= videoBitrate + audioBitrate;
+        boolean copyVideo = fitsBudget
+                && !burnSubtitles
+                && video != null
+                && COPYABLE_VIDEO_CODECS.contains(StringUtils.lowerCase(video.getCodecName()))
+                && COPYABLE_PIXEL_FORMAT.equalsIgnoreCase(video.getPixFmt());
+        boolean copyAudio = fitsBudget
+                && audio != null
+                && COPYABLE_AUDIO_CODECS.contains(StringUtils.lowerCase(audio.getCodecName()));
+
+        double frameRate = DEFAULT_FRAME_RATE;
+        if (video != null && video.getAvgFrameRate() > 0) {
+            frameRate = Math.min(video.getAvgFrameRate(), MAX_FRAME_RATE);
+        }
+
+        int sourceHeight = video == null ? 0 : video.getHeight();
+        List<StreamPlan.Rendition> renditions = new ArrayList<>();
+        renditions.add(new StreamPlan.Rendition(copyVideo ? "source" : (sourceHeight > 0 ? sourceHeight+"p" : "main"),
+                0, videoBitrate, audioBitrate, copyVideo, copyAudio));
+
+        if (video != null && sourceHeight > 0) {
+            for (int height : ladderHeights) {
+                if (height >= sourceHeight) {
+                    continue;
+                }
+                // bitrate scales with the pixel count
+                double scale = ((double) height * height) / ((double) sourceHeight * sourceHeight);
+                long rungBitrate = Math.max((long) (videoBitrate * scale), MIN_LADDER_VIDEO_BITRATE);
+                renditions.add(new StreamPlan.Rendition(height+"p", height, rungBitrate, audioBitrate, false, false));
+            }
         }
 
-        log.info("availableBandwidth={}, video={}, audio={}", availableBandwidthBits, videoBitrate, audioBitrate);
+        StreamPlan plan = new StreamPlan(burnSubtitles, frameRate, renditions);
+        log.info("video={}, audio={}, sourceBitrate={}, plan={}", videoBitrate, audioBitrate, mediaInfo.getBitRate(), plan);
+        return plan;
+    }
+
+    public static FFmpegBuilder buildFfmpeg(Media media, String tsdtvUrl, Long availableBandwidthBits) {
+        return buildFfmpeg(media, planStream(media.getMediaInfo(), availableBandwidthBits), rendition -> tsdtvUrl);
+    }
 
-        FFmpegOutputBuilder outputBuilder = new FFmpegBuilder()
+    /**
+     * @param targetUrl where each rendition of the plan is sent
+     */
+    public static FFmpegBuilder buildFfmpeg(Media media,
+                                            StreamPlan plan,
+                                            Function<StreamPlan.Rendition, String> targetUrl) {
+        FFmpegBuilder builder = new FFmpegBuilder()
                 .addExtraArgs("-re") // stream at native frame rate
-                .setInput(media.getMediaInfo().getFilePath())
-                .addOutput(tsdtvUrl)
-                .setFormat("flv")
+                .setInput(media.getMediaInfo().getFilePath());
+
+        for (StreamPlan.Rendition rendition : plan.getRenditions()) {
+            FFmpegOutputBuilder outputBuilder = builder
+                    .addOutput(targetUrl.apply(rendition))
+                    .setFormat("flv")
+                    .setStrict(FFmpegBuilder.Strict.EXPERIMENTAL);
+            configureRendition(outputBuilder, media, plan, rendition, TRANSCODE_PRESET);
+        }
 
-                .setAudioCodec("aac")
-                .setAudioSampleRate(44_100)
-                .setAudioBitRate(audioBitrate)
+        return builder;
+    }
 
-                .setVideoCodec("libx264")
-                .setVideoFrameRate(24, 1)
-                .setVideoBitRate(videoBitrate)
-                .setVideoPixelFormat("yuv420p")
+    /**
+     * Plans the mezzanine of a piece of media: the top rendition of a stream at the default bitrates, which is the
+     * most any stream of it would use
+     *
+     * @return the plan, or null if the source needs no mezzanine because its video can be streamed as it is
+     */
+    public static StreamPlan planMezzanine(MediaInfo mediaInfo) {
+        StreamPlan plan = planStream(mediaInfo, null);
+        if (mediaInfo.getVideoStreams().isEmpty() || plan.getRenditions().get(0).isCopyVideo()) {
+            return null;
+        }
+        return plan;
+    }
 
+    /**
+     * Encodes the top rendition of a plan from {@link #planMezzanine(MediaInfo)} to a file, at full speed and with
+     * the same codecs, keyframe interval and burned in subtitles as a live stream, so that playing it back is just a
+     * remux. The video bitrate is set, so the builder can be run as a two pass job.
+     */
+    public static FFmpegBuilder buildMezzanine(Media media, StreamPlan plan, String outputPath) {
+        FFmpegBuilder builder = new FFmpegBuilder()
+                .setInput(media.getMediaInfo().getFilePath());
+
+        FFmpegOutputBuilder outputBuilder = builder
+                .addOutput(outputPath)
+                .setFormat(MEZZANINE_FORMAT)
                 .setStrict(FFmpegBuilder.Strict.EXPERIMENTAL);
+        configureRendition(outputBuilder, media, plan, plan.getRenditions().get(0), MEZZANINE_PRESET);
+
+        return builder;
+    }
+
+    /**
+     * Streams a file that's already stream-ready, e.g. a mezzanine, without encoding anything
+     */
+    public static FFmpegBuilder buildRemux(String inputPath, String targetUrl) {
+        return new FFmpegBuilder()
+                .addExtraArgs("-re") // stream at native frame rate
+                .setInput(inputPath)
+                .addOutput(targetUrl)
+                .setFormat("flv")
+                .setAudioCodec("copy")
+                .setVideoCodec("copy")
+                .done();
+    }
 
-        if (CollectionUtils.isNotEmpty(media.getMediaInfo().getSubtitleStreams())) {
-            outputBuilder.setVideoFilter("subtitles='"+escapeSubtitlePath(media.getMediaInfo().getFilePath())+"'");
+    private static void configureRendition(FFmpegOutputBuilder outputBuilder,
+                                           Media media,
+                                           StreamPlan plan,
+                                           StreamPlan.Rendition rendition,
+                                           String preset) {
+        if (rendition.isCopyAudio()) {
+            outputBuilder.setAudioCodec("copy");
+        } else {
+            outputBuilder
+                    .setAudioCodec("aac")
+                    .setAudioSampleRate(44_100)
+                    .setAudioBitRate(rendition.getAudioBitrate());
         }
 
-        return outputBuilder.done();
+        if (rendition.isCopyVideo()) {
+            outputBuilder.setVideoCodec("copy");
+        } else {
+            // fixed keyframe interval so every rendition can be switched between on the same boundaries
+            String gop = String.valueOf(Math.round(plan.getFrameRate() * KEYFRAME_INTERVAL_SECONDS));
+            outputBuilder
+                    .setVideoCodec("libx264")
+                    .setPreset(preset)
+                    .setVideoFrameRate(plan.getFrameRate())
+                    .setVideoBitRate(rendition.getVideoBitrate())
+                    .setVideoPixelFormat("yuv420p")
+                    .addExtraArgs("-maxrate", String.valueOf(rendition.getVideoBitrate()),
+                            "-bufsize", String.valueOf(2 * rendition.getVideoBitrate()),
+                            "-g", gop,
+                            "-keyint_min", gop,
+                            "-sc_threshold", "0");
+
+            List<String> filters = new ArrayList<>();
+            if (plan.isBurnSubtitles()) {
+                filters.add("subtitles='"+escapeSubtitlePath(media.getMediaInfo().getFilePath())+"'");
+            }
+            if (rendition.getHeight() > 0) {
+                filters.add("scale=-2:"+rendition.getHeight());
+            }
+            if (!filters.isEmpty()) {
+                outputBuilder.setVideoFilter(StringUtils.join(filters, ","));
+            }
+        }
     }
 
     private static String escapeSubtitlePath(String filePath) {
@@ -0,0 +1,67 @@
+package org.tsd.util;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pools with named threads that report their saturation to a {@link MetricRegistry}, under
+ * "executors.[name]": active threads, pool size, queued tasks, completed tasks and saturation (active / max).
+ */
+public final class NamedExecutors {
+
+    private static final long IDLE_SECONDS = 60;
+
+    private NamedExecutors() {
+    }
+
+    /**
+     * A fixed number of threads; work beyond that waits in the queue.
+     */
+    public static ThreadPoolExecutor fixed(String name, int threads, MetricRegistry metricRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory(name));
+        return register(name, executor, metricRegistry);
+    }
+
+    /**
+     * For blocking I/O. Every task gets a new thread until maxThreads are running, after which tasks queue, and
+     * threads that sit idle for a minute exit. Java 8 has no virtual threads, so this is the closest we get to a
+     * thread per task without letting a burst of slow calls create threads without limit.
+     */
+    public static ThreadPoolExecutor elastic(String name, int maxThreads, MetricRegistry metricRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return register(name, executor, metricRegistry);
+    }
+
+    private static ThreadPoolExecutor register(String name, ThreadPoolExecutor executor, MetricRegistry metricRegistry) {
+        if (metricRegistry != null) {
+            metricRegistry.register(MetricRegistry.name("executors", name, "active"),
+                    (Gauge<Integer>) executor::getActiveCount);
+            metricRegistry.register(MetricRegistry.name("executors", name, "poolSize"),
+                    (Gauge<Integer>) executor::getPoolSize);
+            metricRegistry.register(MetricRegistry.name("executors", name, "queued"),
+                    (Gauge<Integer>) () -> executor.getQueue().size());
+            metricRegistry.register(MetricRegistry.name("executors", name, "completed"),
+                    (Gauge<Long>) executor::getCompletedTaskCount);
+            metricRegistry.register(MetricRegistry.name("executors", name, "saturation"),
+                    (Gauge<Double>) () -> (double) executor.getActiveCount() / executor.getMaximumPoolSize());
+        }
+        return executor;
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        return new ThreadFactoryBuilder().setNameFormat(name + "-%d").build();
+    }
+}
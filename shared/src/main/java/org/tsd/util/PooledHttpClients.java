@@ -0,0 +1,211 @@
+package org.tsd.util;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.http.*;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.RouteInfo;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tsd.app.config.HttpClientConfig;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Builds HTTP clients backed by a connection pool with per-host limits, timeouts, keep-alive and idle eviction.
+ *
+ * Each client reports under "http.[name]":
+ * <ul>
+ *     <li>pool.leased / pool.available / pool.pending / pool.max for the whole pool</li>
+ *     <li>[host].latency, a timer from sending a request to receiving its response headers</li>
+ *     <li>[host].errors, requests that failed with an I/O or protocol error</li>
+ *     <li>[host].leased / [host].pending for that host's share of the pool</li>
+ * </ul>
+ *
+ * Async clients report the same pool gauges. Their latency is left to the caller, which sees the whole exchange.
+ */
+public final class PooledHttpClients {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledHttpClients.class);
+
+    private PooledHttpClients() {
+    }
+
+    public static CloseableHttpClient create(String name, HttpClientConfig config, MetricRegistry metricRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getMaxTotalConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+        config.getHostMaxConnections().forEach((host, max) -> {
+            log.info("Limiting connections to {}: {}", host, max);
+            connectionManager.setMaxPerRoute(routeTo(host), max);
+        });
+
+        PoolMetrics poolMetrics = new PoolMetrics(name, connectionManager, metricRegistry);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig(config))
+                .setKeepAliveStrategy(keepAliveStrategy(config))
+                .evictExpiredConnections()
+                .evictIdleConnections(config.getIdleEvictionSeconds(), TimeUnit.SECONDS)
+                .setRequestExecutor(new TimedRequestExecutor(poolMetrics))
+                .build();
+    }
+
+    /**
+     * Non-blocking equivalent of {@link #create}, already started. Requests are multiplexed over the pool by a
+     * single I/O dispatcher thread, so any number can be in flight without holding a thread each. The reactor notices
+     * connections closed by the server while they sit in the pool, so there is no idle eviction thread.
+     */
+    public static CloseableHttpAsyncClient createAsync(String name,
+                                                       HttpClientConfig config,
+                                                       MetricRegistry metricRegistry) throws IOReactorException {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(1)
+                .setConnectTimeout(config.getConnectTimeoutMillis())
+                .setSoTimeout(config.getSocketTimeoutMillis())
+                .build();
+
+        PoolingNHttpClientConnectionManager connectionManager
+                = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+        connectionManager.setMaxTotal(config.getMaxTotalConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+        config.getHostMaxConnections().forEach((host, max) -> {
+            log.info("Limiting async connections to {}: {}", host, max);
+            connectionManager.setMaxPerRoute(routeTo(host), max);
+        });
+
+        new PoolMetrics(name, connectionManager, metricRegistry);
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig(config))
+                .setKeepAliveStrategy(keepAliveStrategy(config))
+                .build();
+        client.start();
+        return client;
+    }
+
+    private static RequestConfig requestConfig(HttpClientConfig config) {
+        return RequestConfig.custom()
+                .setConnectTimeout(config.getConnectTimeoutMillis())
+                .setSocketTimeout(config.getSocketTimeoutMillis())
+                .setConnectionRequestTimeout(config.getConnectionRequestTimeoutMillis())
+                .build();
+    }
+
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(HttpClientConfig config) {
+        long keepAliveMillis = TimeUnit.SECONDS.toMillis(config.getKeepAliveSeconds());
+        return (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
+        };
+    }
+
+    /*
+    Must match the route the client plans for a request, including the default port and the secure flag
+     */
+    static HttpRoute routeTo(String host) {
+        HttpHost httpHost = HttpHost.create(host);
+        boolean secure = "https".equalsIgnoreCase(httpHost.getSchemeName());
+        int port = httpHost.getPort() > 0 ? httpHost.getPort() : (secure ? 443 : 80);
+        return new HttpRoute(new HttpHost(httpHost.getHostName(), port, httpHost.getSchemeName()), null, secure);
+    }
+
+    private static class PoolMetrics {
+        private final String name;
+        private final ConnPoolControl<HttpRoute> connectionManager;
+        private final MetricRegistry metricRegistry;
+
+        private final Map<String, Timer> latencies = new ConcurrentHashMap<>();
+        private final Map<String, Meter> errors = new ConcurrentHashMap<>();
+
+        PoolMetrics(String name, ConnPoolControl<HttpRoute> connectionManager, MetricRegistry metricRegistry) {
+            this.name = name;
+            this.connectionManager = connectionManager;
+            this.metricRegistry = metricRegistry;
+
+            registerPoolGauge("leased", PoolStats::getLeased);
+            registerPoolGauge("available", PoolStats::getAvailable);
+            registerPoolGauge("pending", PoolStats::getPending);
+            registerPoolGauge("max", PoolStats::getMax);
+        }
+
+        Timer latency(HttpContext context) {
+            RouteInfo route = HttpClientContext.adapt(context).getHttpRoute();
+            return latencies.computeIfAbsent(hostOf(route), host -> {
+                if (route instanceof HttpRoute) {
+                    registerHostGauge(host, "leased", (HttpRoute) route, PoolStats::getLeased);
+                    registerHostGauge(host, "pending", (HttpRoute) route, PoolStats::getPending);
+                }
+                return metricRegistry.timer(MetricRegistry.name("http", name, host, "latency"));
+            });
+        }
+
+        Meter errors(HttpContext context) {
+            RouteInfo route = HttpClientContext.adapt(context).getHttpRoute();
+            return errors.computeIfAbsent(hostOf(route),
+                    host -> metricRegistry.meter(MetricRegistry.name("http", name, host, "errors")));
+        }
+
+        private static String hostOf(RouteInfo route) {
+            return route == null ? "unknown" : route.getTargetHost().toHostString();
+        }
+
+        private void registerPoolGauge(String stat, ToIntFunction<PoolStats> value) {
+            metricRegistry.register(MetricRegistry.name("http", name, "pool", stat),
+                    (Gauge<Integer>) () -> value.applyAsInt(connectionManager.getTotalStats()));
+        }
+
+        private void registerHostGauge(String host, String stat, HttpRoute route, ToIntFunction<PoolStats> value) {
+            metricRegistry.register(MetricRegistry.name("http", name, host, stat),
+                    (Gauge<Integer>) () -> value.applyAsInt(connectionManager.getStats(route)));
+        }
+    }
+
+    private static class TimedRequestExecutor extends HttpRequestExecutor {
+        private final PoolMetrics poolMetrics;
+
+        TimedRequestExecutor(PoolMetrics poolMetrics) {
+            this.poolMetrics = poolMetrics;
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request,
+                                    HttpClientConnection connection,
+                                    HttpContext context) throws IOException, HttpException {
+            Timer.Context timer = poolMetrics.latency(context).time();
+            try {
+                return super.execute(request, connection, context);
+            } catch (IOException | HttpException e) {
+                poolMetrics.errors(context).mark();
+                throw e;
+            } finally {
+                timer.stop();
+            }
+        }
+    }
+}
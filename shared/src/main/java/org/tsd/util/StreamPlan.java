@@ -0,0 +1,113 @@
+package org.tsd.util;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How a piece of media will be streamed: whether subtitles get burned in, and one or more renditions, each of which
+ * either copies the source streams as they are or transcodes them. Built by {@link FfmpegUtil#planStream}.
+ */
+public class StreamPlan {
+
+    private final boolean burnSubtitles;
+    private final double frameRate;
+    private final List<Rendition> renditions;
+
+    StreamPlan(boolean burnSubtitles, double frameRate, List<Rendition> renditions) {
+        this.burnSubtitles = burnSubtitles;
+        this.frameRate = frameRate;
+        this.renditions = Collections.unmodifiableList(renditions);
+    }
+
+    public boolean isBurnSubtitles() {
+        return burnSubtitles;
+    }
+
+    /**
+     * @return the frame rate used by transcoded renditions
+     */
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * @return the renditions, highest first
+     */
+    public List<Rendition> getRenditions() {
+        return renditions;
+    }
+
+    /**
+     * @return true if nothing needs to be encoded, i.e. the source can be remuxed as is
+     */
+    public boolean isRemuxOnly() {
+        return renditions.stream().allMatch(rendition -> rendition.isCopyVideo() && rendition.isCopyAudio());
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("burnSubtitles", burnSubtitles)
+                .append("frameRate", frameRate)
+                .append("renditions", renditions)
+                .toString();
+    }
+
+    public static class Rendition {
+
+        private final String name;
+        // 0 keeps the source height
+        private final int height;
+        private final long videoBitrate;
+        private final long audioBitrate;
+        private final boolean copyVideo;
+        private final boolean copyAudio;
+
+        Rendition(String name, int height, long videoBitrate, long audioBitrate, boolean copyVideo, boolean copyAudio) {
+            this.name = name;
+            this.height = height;
+            this.videoBitrate = videoBitrate;
+            this.audioBitrate = audioBitrate;
+            this.copyVideo = copyVideo;
+            this.copyAudio = copyAudio;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getVideoBitrate() {
+            return videoBitrate;
+        }
+
+        public long getAudioBitrate() {
+            return audioBitrate;
+        }
+
+        public boolean isCopyVideo() {
+            return copyVideo;
+        }
+
+        public boolean isCopyAudio() {
+            return copyAudio;
+        }
+
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this)
+                    .append("name", name)
+                    .append("height", height)
+                    .append("videoBitrate", videoBitrate)
+                    .append("audioBitrate", audioBitrate)
+                    .append("copyVideo", copyVideo)
+                    .append("copyAudio", copyAudio)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package net.bramp.ffmpeg;
+
+import com.google.common.collect.ImmutableList;
+import net.bramp.ffmpeg.probe.InMemoryProbeResultCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of probing a directory of media files, as an inventory refresh does: with a new FFprobe per file (which
+ * checks the binary each time), one shared FFprobe, and one with an in-memory result cache. Needs ffmpeg and
+ * ffprobe on the path, or in the FFMPEG and FFPROBE environment variables, to generate and probe the files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FFprobeBenchmark {
+
+    private static final int FILE_COUNT = 32;
+
+    @Param({"perFile", "shared", "cached"})
+    private String mode;
+
+    private File directory;
+    private final List<String> files = new LinkedList<>();
+    private FFprobe ffprobe;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("ffprobe-benchmark").toFile();
+
+        FFmpeg ffmpeg = new FFmpeg();
+        for (int i = 0 ; i < FILE_COUNT ; i++) {
+            File file = new File(directory, "episode" + i + ".mkv");
+            int seconds = 1 + i % 5;
+            ffmpeg.run(ImmutableList.of(
+                    "-y", "-v", "quiet",
+                    "-f", "lavfi", "-i", "testsrc=duration=" + seconds + ":size=320x240:rate=25",
+                    "-f", "lavfi", "-i", "sine=frequency=440:duration=" + seconds,
+                    "-c:v", "mpeg4", "-c:a", "mp2",
+                    "-metadata:s:a:0", "language=jpn",
+                    file.getAbsolutePath()));
+            files.add(file.getAbsolutePath());
+        }
+
+        this.ffprobe = "cached".equals(mode) ?
+                new FFprobe(FFprobe.DEFAULT_PATH, new RunProcessFunction(), new InMemoryProbeResultCache(FILE_COUNT))
+                : new FFprobe();
+    }
+
+    @TearDown
+    public void tearDown() {
+        files.forEach(file -> new File(file).delete());
+        directory.delete();
+    }
+
+    @Benchmark
+    public void probeDirectory(Blackhole blackhole) throws IOException {
+        for (String file : files) {
+            FFprobe probe = "perFile".equals(mode) ? new FFprobe() : ffprobe;
+            blackhole.consume(probe.probe(file));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FFprobeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
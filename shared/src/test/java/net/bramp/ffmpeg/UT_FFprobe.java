@@ -0,0 +1,174 @@
+package net.bramp.ffmpeg;
+
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+import net.bramp.ffmpeg.probe.InMemoryProbeResultCache;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UT_FFprobe {
+
+    static final String VERSION = "ffprobe version 3.3.3 Copyright (c) 2007-2017 the FFmpeg developers\n";
+
+    static final String PROBE_JSON = "{\n" +
+            "    \"streams\": [\n" +
+            "        {\n" +
+            "            \"index\": 0,\n" +
+            "            \"codec_name\": \"h264\",\n" +
+            "            \"codec_type\": \"video\",\n" +
+            "            \"width\": 1280,\n" +
+            "            \"height\": 720,\n" +
+            "            \"r_frame_rate\": \"24000/1001\",\n" +
+            "            \"disposition\": {\n" +
+            "                \"default\": 1,\n" +
+            "                \"dub\": 1\n" +
+            "            },\n" +
+            "            \"tags\": {\n" +
+            "                \"language\": \"jpn\"\n" +
+            "            }\n" +
+            "        },\n" +
+            "        {\n" +
+            "            \"index\": 1,\n" +
+            "            \"codec_name\": \"aac\",\n" +
+            "            \"codec_type\": \"audio\",\n" +
+            "            \"sample_rate\": 48000\n" +
+            "        }\n" +
+            "    ],\n" +
+            "    \"format\": {\n" +
+            "        \"filename\": \"episode.mkv\",\n" +
+            "        \"nb_streams\": 2,\n" +
+            "        \"duration\": \"1420.032000\",\n" +
+            "        \"size\": \"367001600\",\n" +
+            "        \"bit_rate\": \"2067500\"\n" +
+            "    }\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<List<String>> runs = new LinkedList<>();
+    private final ProcessFunction fakeFFprobe = args -> {
+        runs.add(args);
+        return new FakeProcess(args.contains("-version") ? VERSION : PROBE_JSON);
+    };
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = folder.newFile("episode.mkv");
+        Files.write(file.toPath(), new byte[1024]);
+    }
+
+    @Test
+    public void testProbeDecodesResult() throws IOException {
+        FFprobe ffprobe = new FFprobe("ffprobe", fakeFFprobe);
+        FFmpegProbeResult result = ffprobe.probe(file.getAbsolutePath());
+
+        assertFalse(result.hasError());
+        assertEquals(1420.032, result.getFormat().duration, 0.0001);
+        assertEquals(367001600, result.getFormat().size);
+        assertEquals(2, result.getStreams().size());
+
+        FFmpegStream video = result.getStreams().get(0);
+        assertEquals(FFmpegStream.CodecType.VIDEO, video.codec_type);
+        assertEquals(1280, video.width);
+        assertEquals(24000, video.r_frame_rate.getNumerator());
+        assertEquals("jpn", video.tags.get("language"));
+        assertTrue(video.disposition.dub);
+        assertEquals(48000, result.getStreams().get(1).sample_rate);
+    }
+
+    @Test
+    public void testBinaryValidatedOnce() throws IOException {
+        FFprobe ffprobe = new FFprobe("ffprobe", fakeFFprobe);
+        for (int i = 0 ; i < 5 ; i++) {
+            ffprobe.probe(file.getAbsolutePath());
+        }
+        assertEquals(6, runs.size());
+        assertEquals(1, runs.stream().filter(args -> args.contains("-version")).count());
+    }
+
+    @Test
+    public void testCachedUntilFileChanges() throws IOException {
+        InMemoryProbeResultCache cache = new InMemoryProbeResultCache(10);
+        FFprobe ffprobe = new FFprobe("ffprobe", fakeFFprobe, cache);
+
+        FFmpegProbeResult first = ffprobe.probe(file.getAbsolutePath());
+        assertSame(first, ffprobe.probe(file.getAbsolutePath()));
+        assertEquals(2, runs.size()); // -version and one probe
+
+        Files.write(file.toPath(), new byte[2048]);
+        FFmpegProbeResult changed = ffprobe.probe(file.getAbsolutePath());
+        assertNotSame(first, changed);
+        assertEquals(3, runs.size());
+
+        assertTrue(file.setLastModified(file.lastModified() - TimeUnit.HOURS.toMillis(1)));
+        ffprobe.probe(file.getAbsolutePath());
+        assertEquals(4, runs.size());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testUrlsAreNotCached() throws IOException {
+        InMemoryProbeResultCache cache = new InMemoryProbeResultCache(10);
+        FFprobe ffprobe = new FFprobe("ffprobe", fakeFFprobe, cache);
+
+        ffprobe.probe("http://localhost/episode.mkv");
+        ffprobe.probe("http://localhost/episode.mkv");
+        assertEquals(3, runs.size());
+        assertEquals(0, cache.size());
+    }
+
+    static class FakeProcess extends Process {
+        private final InputStream output;
+
+        FakeProcess(String output) {
+            this.output = new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return output;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public boolean waitFor(long timeout, TimeUnit unit) {
+            return true;
+        }
+
+        @Override
+        public int exitValue() {
+            return 0;
+        }
+
+        @Override
+        public void destroy() {}
+    }
+}
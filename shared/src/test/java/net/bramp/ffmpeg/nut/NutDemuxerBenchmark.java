@@ -0,0 +1,95 @@
+package net.bramp.ffmpeg.nut;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of demuxing a minute of 25fps video and 48kHz audio with the InputStream-based NutReader, which copies every
+ * frame, and with NutChannelReader over a mapped FileChannel and over a plain channel of a FileInputStream, which
+ * hand out views of their buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NutDemuxerBenchmark {
+
+    private static final int SECONDS = 60;
+
+    private File file;
+
+    private final NutReaderListener listener = new NutReaderListener() {
+        @Override
+        public void stream(Stream stream) {}
+
+        @Override
+        public void frame(Frame frame) {
+            bytes += frame.size;
+            lastPts = frame.getPts();
+        }
+    };
+    private long bytes;
+    private long lastPts;
+
+    @Setup
+    public void setup() throws IOException {
+        this.file = File.createTempFile("benchmark", ".nut");
+        file.deleteOnExit();
+        Files.write(file.toPath(), NutFileWriter.generate(SECONDS, 42));
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long nutReader() throws IOException {
+        bytes = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            new NutReader(in, listener).read();
+        }
+        return bytes + lastPts;
+    }
+
+    @Benchmark
+    public long channelReaderMapped() throws IOException {
+        bytes = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            new NutChannelReader(channel, listener).read();
+        }
+        return bytes + lastPts;
+    }
+
+    @Benchmark
+    public long channelReaderStream() throws IOException {
+        bytes = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            new NutChannelReader(Channels.newChannel(in), listener).read();
+        }
+        return bytes + lastPts;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NutDemuxerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,166 @@
+package net.bramp.ffmpeg.nut;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Writes a Nut file with a 25fps video stream and a 48kHz audio stream of random data, a syncpoint
+ * before every video keyframe (once a second) and correct checksums.
+ */
+class NutFileWriter {
+
+  static final int FPS = 25;
+  static final int SAMPLE_RATE = 48000;
+  static final int SAMPLES_PER_AUDIO_FRAME = 1024;
+
+  static final int VIDEO_KEYFRAME_SIZE = 24_000;
+  static final int VIDEO_FRAME_SIZE = 4_000;
+  static final int AUDIO_FRAME_SIZE = 400;
+
+  private static final int MSB_PTS_SHIFT = 7;
+
+  private final ByteArrayOutputStream file = new ByteArrayOutputStream();
+  private final Random random;
+  private long lastSyncPoint;
+
+  private NutFileWriter(long seed) {
+    this.random = new Random(seed);
+  }
+
+  static byte[] generate(int seconds, long seed) throws IOException {
+    return new NutFileWriter(seed).write(seconds);
+  }
+
+  private byte[] write(int seconds) throws IOException {
+    file.write(NutReader.HEADER);
+    writeMainHeader();
+    writeStreamHeader(0, StreamHeaderPacket.VIDEO, 0);
+    writeStreamHeader(1, StreamHeaderPacket.AUDIO, 1);
+
+    long audioPts = 0;
+    for (int frame = 0; frame < seconds * FPS; frame++) {
+      if (frame % FPS == 0) {
+        writeSyncPoint(frame);
+      }
+      boolean key = frame % FPS == 0;
+      writeFrame(0, frame, key, key ? VIDEO_KEYFRAME_SIZE : VIDEO_FRAME_SIZE);
+
+      // audio up to the next video frame
+      long nextVideoSample = (long) (frame + 1) * SAMPLE_RATE / FPS;
+      while (audioPts < nextVideoSample) {
+        writeFrame(1, audioPts, true, AUDIO_FRAME_SIZE);
+        audioPts += SAMPLES_PER_AUDIO_FRAME;
+      }
+    }
+    return file.toByteArray();
+  }
+
+  private void writeMainHeader() throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    writeVarLong(body, 3); // version
+    writeVarLong(body, 2); // stream count
+    writeVarLong(body, 65536); // max distance
+    writeVarLong(body, 2); // time bases
+    writeVarLong(body, 1);
+    writeVarLong(body, FPS);
+    writeVarLong(body, 1);
+    writeVarLong(body, SAMPLE_RATE);
+
+    // One frame code entry: every frame codes its flags, stream, pts and size
+    writeVarLong(
+        body,
+        Frame.FLAG_CODED | Frame.FLAG_STREAM_ID | Frame.FLAG_CODED_PTS | Frame.FLAG_SIZE_MSB);
+    writeVarLong(body, 6); // fields
+    writeVarLong(body, 0); // pts delta
+    writeVarLong(body, 1); // size mul
+    writeVarLong(body, 0); // stream
+    writeVarLong(body, 0); // size lsb
+    writeVarLong(body, 0); // reserved
+    writeVarLong(body, 255); // count, which covers all 256 codes but 'N'
+
+    writeVarLong(body, 1); // header count, just the empty elision header
+    body.write(new byte[4]); // reserved, MainHeaderPacket only reads the header count before them
+
+    writePacket(Packet.Startcode.MAIN, body.toByteArray());
+  }
+
+  private void writeStreamHeader(int id, int type, int timeBaseId) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    writeVarLong(body, id);
+    writeVarLong(body, type);
+    String codec = type == StreamHeaderPacket.VIDEO ? "H264" : "mp4a";
+    byte[] fourcc = codec.getBytes(StandardCharsets.ISO_8859_1);
+    writeVarLong(body, fourcc.length);
+    body.write(fourcc);
+    writeVarLong(body, timeBaseId);
+    writeVarLong(body, MSB_PTS_SHIFT);
+    writeVarLong(body, 0); // max pts distance
+    writeVarLong(body, 0); // decode delay
+    writeVarLong(body, 0); // flags
+    writeVarLong(body, 0); // codec specific data
+    if (type == StreamHeaderPacket.VIDEO) {
+      writeVarLong(body, 320);
+      writeVarLong(body, 240);
+      writeVarLong(body, 0);
+      writeVarLong(body, 0);
+      writeVarLong(body, 0);
+    } else {
+      writeVarLong(body, SAMPLE_RATE);
+      writeVarLong(body, 1);
+      writeVarLong(body, 2);
+    }
+    writePacket(Packet.Startcode.STREAM, body.toByteArray());
+  }
+
+  private void writeSyncPoint(long videoPts) throws IOException {
+    long offset = file.size();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    writeVarLong(body, videoPts * 2); // in time base 0 of 2
+    writeVarLong(body, lastSyncPoint == 0 ? 0 : (offset - lastSyncPoint) / 16);
+    writePacket(Packet.Startcode.SYNCPOINT, body.toByteArray());
+    lastSyncPoint = offset;
+  }
+
+  private void writeFrame(int stream, long pts, boolean key, int size) throws IOException {
+    file.write(0); // frame code
+    writeVarLong(file, key ? Frame.FLAG_KEY : 0);
+    writeVarLong(file, stream);
+    writeVarLong(file, pts + (1 << MSB_PTS_SHIFT)); // the full pts
+    writeVarLong(file, size);
+    byte[] data = new byte[size];
+    random.nextBytes(data);
+    file.write(data);
+  }
+
+  private void writePacket(Packet.Startcode startcode, byte[] body) throws IOException {
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    new DataOutputStream(header).writeLong(startcode.value());
+    long forwardPtr = body.length + 4;
+    writeVarLong(header, forwardPtr);
+    byte[] headerBytes = header.toByteArray();
+    file.write(headerBytes);
+    if (forwardPtr > 4096) {
+      writeInt(NutCrc.update(0, headerBytes, 0, headerBytes.length));
+    }
+    file.write(body);
+    writeInt(NutCrc.update(0, body, 0, body.length));
+  }
+
+  private void writeInt(int value) throws IOException {
+    new DataOutputStream(file).writeInt(value);
+  }
+
+  static void writeVarLong(ByteArrayOutputStream out, long value) {
+    int groups = 1;
+    while (groups < 10 && (value >>> (7 * groups)) != 0) {
+      groups++;
+    }
+    for (int i = groups - 1; i > 0; i--) {
+      out.write((int) ((value >>> (7 * i)) & 0x7F) | 0x80);
+    }
+    out.write((int) (value & 0x7F));
+  }
+}
@@ -0,0 +1,137 @@
+package net.bramp.ffmpeg.nut;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UT_NutChannelReader {
+
+    private static final int SECONDS = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] nut;
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        nut = NutFileWriter.generate(SECONDS, 42);
+        file = folder.newFile("test.nut");
+        Files.write(file.toPath(), nut);
+    }
+
+    @Test
+    public void testCrcCheckValue() {
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0x89A1897F, NutCrc.update(0, check, 0, check.length));
+    }
+
+    @Test
+    public void testSameFramesAsNutReader() throws IOException {
+        Frames expected = new Frames();
+        new NutReader(new ByteArrayInputStream(nut), expected).read();
+        assertEquals(SECONDS * NutFileWriter.FPS, expected.count(0));
+
+        Frames mapped = new Frames();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            new NutChannelReader(channel, mapped).read();
+        }
+        assertEquals(expected.frames, mapped.frames);
+        assertEquals(expected.data, mapped.data);
+
+        Frames streamed = new Frames();
+        new NutChannelReader(Channels.newChannel(new ByteArrayInputStream(nut)), streamed).read();
+        assertEquals(expected.frames, streamed.frames);
+        assertEquals(expected.data, streamed.data);
+    }
+
+    @Test
+    public void testIndexSeeksToKeyframes() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Frames frames = new Frames();
+            NutChannelReader reader = new NutChannelReader(channel, frames);
+            reader.read();
+
+            NutIndex index = reader.getIndex();
+            assertEquals(SECONDS, index.getSyncPoints().size());
+            assertEquals(SECONDS, index.getKeyframes(0).size());
+
+            NutIndex.SyncPoint syncPoint = index.syncPointBefore(5.5);
+            assertEquals(5.0, syncPoint.getTime(), 0);
+            NutIndex.Keyframe keyframe = index.keyframeBefore(0, 5.5);
+            assertEquals(5 * NutFileWriter.FPS, keyframe.getPts());
+            assertSame(syncPoint, keyframe.getSyncPoint());
+
+            frames.frames.clear();
+            reader.readFrom(syncPoint);
+            assertEquals("0:" + keyframe.getPts() + ":key", frames.frames.get(0));
+            assertEquals(SECONDS, index.getSyncPoints().size());
+        }
+    }
+
+    @Test
+    public void testPayloadsAreReadOnlyViews() throws IOException {
+        List<ByteBuffer> payloads = new LinkedList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            new NutChannelReader(channel, new Frames() {
+                @Override
+                public void frame(Frame frame) {
+                    payloads.add(frame.getPayload());
+                }
+            }).read();
+        }
+        assertTrue(payloads.get(0).isReadOnly());
+        assertTrue(payloads.get(0).isDirect());
+        assertEquals(NutFileWriter.VIDEO_KEYFRAME_SIZE, payloads.get(0).remaining());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptPacketIsRejected() throws IOException {
+        NutIndex.SyncPoint syncPoint;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            NutChannelReader reader = new NutChannelReader(channel, new Frames());
+            reader.read();
+            syncPoint = reader.getIndex().getSyncPoints().get(3);
+        }
+
+        // the first byte of the syncpoint's body, after its startcode and forward pointer
+        nut[(int) syncPoint.getOffset() + 9] ^= 0x01;
+        new NutChannelReader(Channels.newChannel(new ByteArrayInputStream(nut)), new Frames()).read();
+    }
+
+    private static class Frames implements NutReaderListener {
+        final List<String> frames = new LinkedList<>();
+        final List<String> data = new LinkedList<>();
+
+        @Override
+        public void stream(Stream stream) {}
+
+        @Override
+        public void frame(Frame frame) {
+            String key = frame.isKeyframe() ? ":key" : "";
+            frames.add(frame.getStream().getId() + ":" + frame.getPts() + key);
+            data.add(Arrays.toString(frame.getData()));
+        }
+
+        int count(int streamId) {
+            return (int) frames.stream().filter(frame -> frame.startsWith(streamId + ":")).count();
+        }
+    }
+}
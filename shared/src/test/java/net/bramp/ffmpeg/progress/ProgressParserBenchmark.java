@@ -0,0 +1,168 @@
+package net.bramp.ffmpeg.progress;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing an hour of ffmpeg progress reports, one a second, with the line-based StreamProgressParser and
+ * the allocation-free ByteProgressParser: from memory, and through the TCP and UDP parsers ffmpeg reports to. Run
+ * with the GC profiler (as main does) to compare allocation per hour of reports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProgressParserBenchmark {
+
+    private static final int REPORTS = 3600;
+
+    @Param({"stream", "bytes"})
+    private String parser;
+
+    private byte[] log;
+    private byte[][] reports;
+
+    private StreamProgressParser inMemoryParser;
+    private TcpProgressParser tcpParser;
+    private UdpProgressParser udpParser;
+    private DatagramSocket udpSender;
+
+    // released by the listener at the end of each log
+    private final Semaphore ends = new Semaphore(0);
+    private volatile long frames;
+
+    @Setup
+    public void setup() throws Exception {
+        this.reports = progressReports(REPORTS, 42);
+        this.log = concatenate(reports);
+
+        this.inMemoryParser = newParser();
+        this.tcpParser = new TcpProgressParser(newParser());
+        tcpParser.start();
+        this.udpParser = new UdpProgressParser(newParser());
+        // a whole log is sent at once, so give the receiver room to keep up
+        udpParser.socket.setReceiveBufferSize(4 * 1024 * 1024);
+        udpParser.start();
+        this.udpSender = new DatagramSocket();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        tcpParser.stop();
+        udpParser.stop();
+        udpSender.close();
+    }
+
+    @Benchmark
+    public long inMemory() throws IOException {
+        inMemoryParser.processStream(new ByteArrayInputStream(log));
+        return frames;
+    }
+
+    @Benchmark
+    public long tcp() throws Exception {
+        URI uri = tcpParser.getUri();
+        try (Socket socket = new Socket(uri.getHost(), uri.getPort());
+             OutputStream out = socket.getOutputStream()) {
+            out.write(log);
+        }
+        ends.acquire();
+        return frames;
+    }
+
+    @Benchmark
+    public long udp() throws Exception {
+        URI uri = udpParser.getUri();
+        InetSocketAddress address = new InetSocketAddress(uri.getHost(), uri.getPort());
+        for (byte[] report : reports) {
+            udpSender.send(new DatagramPacket(report, report.length, address));
+        }
+        // a lost last packet shows up as a slow iteration rather than a hang
+        ends.tryAcquire(1, TimeUnit.SECONDS);
+        return frames;
+    }
+
+    private StreamProgressParser newParser() {
+        ProgressListener listener = progress -> {
+            frames += progress.frame;
+            if (progress.isEnd()) {
+                ends.release();
+            }
+        };
+        return "bytes".equals(parser) ? new ByteProgressParser(listener) : new StreamProgressParser(listener);
+    }
+
+    /*
+    Reports as written by ffmpeg -progress, including the padding and N/A values it writes
+     */
+    static byte[] progressLog(int reports, long seed) {
+        return concatenate(progressReports(reports, seed));
+    }
+
+    private static byte[][] progressReports(int reports, long seed) {
+        Random random = new Random(seed);
+        byte[][] all = new byte[reports][];
+        for (int i = 0 ; i < reports ; i++) {
+            all[i] = report(i, reports, random);
+        }
+        return all;
+    }
+
+    private static byte[] report(int i, int reports, Random random) {
+        long outTimeMicros = i * 1_000_000L + random.nextInt(1000);
+        StringBuilder report = new StringBuilder()
+                .append("frame=").append(i * 24).append('\n')
+                .append("fps=").append(i == 0 ? "0.00" : "23.98").append('\n')
+                .append("stream_0_0_q=").append(String.format(Locale.US, "%.1f", 20 + random.nextDouble() * 10)).append('\n')
+                .append("bitrate=").append(i == 0
+                        ? "N/A"
+                        : String.format(Locale.US, "%6.1fkbits/s", 500 + random.nextDouble() * 1500)).append('\n')
+                .append("total_size=").append(i == 0 ? "N/A" : String.valueOf(i * 150_000L + random.nextInt(50_000))).append('\n')
+                .append("out_time_us=").append(outTimeMicros).append('\n')
+                .append("out_time_ms=").append(outTimeMicros).append('\n')
+                .append("out_time=").append(String.format(Locale.US, "%02d:%02d:%02d.%06d",
+                        outTimeMicros / 3_600_000_000L,
+                        outTimeMicros / 60_000_000L % 60,
+                        outTimeMicros / 1_000_000L % 60,
+                        outTimeMicros % 1_000_000L)).append('\n')
+                .append("dup_frames=").append(random.nextInt(3)).append('\n')
+                .append("drop_frames=").append(random.nextInt(3)).append('\n')
+                .append("speed=").append(i == 0
+                        ? "N/A"
+                        : String.format(Locale.US, "%4.3gx", 0.9 + random.nextDouble() * 0.2)).append('\n')
+                .append("progress=").append(i == reports - 1 ? "end" : "continue").append('\n');
+        return report.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concatenate(byte[][] reports) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] report : reports) {
+            out.write(report, 0, report.length);
+        }
+        return out.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProgressParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,121 @@
+package net.bramp.ffmpeg.progress;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class UT_ByteProgressParser {
+
+    @Test
+    public void testSameReportsAsStreamParser() throws IOException {
+        byte[] log = ProgressParserBenchmark.progressLog(100, 42);
+
+        List<Progress> expected = new LinkedList<>();
+        new StreamProgressParser(expected::add).processStream(new ByteArrayInputStream(log));
+
+        List<Progress> actual = new LinkedList<>();
+        new ByteProgressParser(progress -> actual.add(new Progress(progress)))
+                .processStream(new ByteArrayInputStream(log));
+
+        assertEquals(100, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testReportsSplitAcrossChunks() throws IOException {
+        byte[] log = ProgressParserBenchmark.progressLog(50, 7);
+
+        List<Progress> expected = new LinkedList<>();
+        new StreamProgressParser(expected::add).processStream(new ByteArrayInputStream(log));
+
+        List<Progress> actual = new LinkedList<>();
+        ByteProgressParser parser = new ByteProgressParser(progress -> actual.add(new Progress(progress)));
+        Random random = new Random(7);
+        int offset = 0;
+        while (offset < log.length) {
+            int length = Math.min(1 + random.nextInt(40), log.length - offset);
+            parser.processBytes(log, offset, length);
+            offset += length;
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testPaddedAndUnavailableValues() throws IOException {
+        String log = "frame=  12\r\n"
+                + "fps=23.976\r\n"
+                + "stream_0_0_q=-1.0\r\n"
+                + "bitrate=N/A\r\n"
+                + "total_size=N/A\r\n"
+                + "out_time_us=500000\r\n"
+                + "out_time=00:00:00.500000\r\n"
+                + "dup_frames=0\r\n"
+                + "drop_frames=3\r\n"
+                + "speed=N/A\r\n"
+                + "progress=end\r\n";
+
+        List<Progress> reports = new LinkedList<>();
+        new ByteProgressParser(progress -> reports.add(new Progress(progress)))
+                .processStream(new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, reports.size());
+        Progress progress = reports.get(0);
+        assertEquals(12, progress.frame);
+        assertEquals(23.976, progress.fps.doubleValue(), 0.0001);
+        assertEquals(-1, progress.bitrate);
+        assertEquals(-1, progress.total_size);
+        assertEquals(500_000_000, progress.out_time_ns);
+        assertEquals(3, progress.drop_frames);
+        assertEquals(-1, progress.speed, 0);
+        assertTrue(progress.isEnd());
+    }
+
+    @Test
+    public void testProgressIsReused() throws IOException {
+        List<Progress> reports = new LinkedList<>();
+        new ByteProgressParser(reports::add)
+                .processStream(new ByteArrayInputStream(ProgressParserBenchmark.progressLog(3, 1)));
+
+        assertEquals(3, reports.size());
+        assertSame(reports.get(0), reports.get(2));
+    }
+
+    @Test
+    public void testMalformedLineDoesNotCorruptNextReport() throws IOException {
+        List<Progress> reports = new LinkedList<>();
+        ByteProgressParser parser = new ByteProgressParser(progress -> reports.add(new Progress(progress)));
+
+        byte[] malformed = "frame=5\nbitrate=fast\n".getBytes(StandardCharsets.UTF_8);
+        try {
+            parser.processBytes(malformed, 0, malformed.length);
+            fail("Expected the bitrate to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        byte[] next = ("frame=24\n"
+                + "bitrate= 512.0kbits/s\n"
+                + "total_size=64000\n"
+                + "out_time=00:00:01.000000\n"
+                + "speed=1.01x\n"
+                + "progress=continue\n").getBytes(StandardCharsets.UTF_8);
+        parser.processBytes(next, 0, next.length);
+
+        assertEquals(1, reports.size());
+        Progress progress = reports.get(0);
+        assertEquals(24, progress.frame);
+        assertEquals(512_000, progress.bitrate);
+        assertEquals(64_000, progress.total_size);
+        assertEquals(1_000_000_000, progress.out_time_ns);
+        assertEquals(1.01, progress.speed, 0.0001);
+        assertFalse(progress.isEnd());
+    }
+}
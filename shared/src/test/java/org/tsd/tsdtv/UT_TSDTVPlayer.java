@@ -0,0 +1,335 @@
+package org.tsd.tsdtv;
+
+import com.codahale.metrics.MetricRegistry;
+import net.bramp.ffmpeg.FFmpeg;
+import net.bramp.ffmpeg.FFprobe;
+import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.job.FFmpegJob;
+import net.bramp.ffmpeg.progress.Progress;
+import net.bramp.ffmpeg.progress.ProgressListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tsd.rest.v1.tsdtv.Episode;
+import org.tsd.rest.v1.tsdtv.Media;
+import org.tsd.rest.v1.tsdtv.MediaInfo;
+import org.tsd.util.BandwidthEstimator;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.*;
+
+public class UT_TSDTVPlayer {
+
+    private ExecutorService executorService;
+    private ManualNanny nanny;
+    private FakeFFmpeg[] fFmpegs;
+    private TSDTVPlayer player;
+
+    private final List<End> ends = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setup() throws IOException {
+        executorService = Executors.newCachedThreadPool();
+        nanny = new ManualNanny();
+        fFmpegs = new FakeFFmpeg[] {new FakeFFmpeg(), new FakeFFmpeg()};
+        player = new TSDTVPlayer(executorService,
+                nanny,
+                fFmpegs,
+                new FFprobe("ffprobe", args -> {
+                    throw new IOException("Not a real ffprobe");
+                }),
+                new BandwidthEstimator(Clock.systemUTC()),
+                new MetricRegistry());
+    }
+
+    @After
+    public void teardown() {
+        player.stop();
+        executorService.shutdownNow();
+        nanny.shutdownNow();
+    }
+
+    @Test
+    public void testCuedStreamStartsWhenPlayingStreamEnds() throws Exception {
+        Media first = episode(1);
+        Media second = episode(2);
+
+        player.play(first, null, "rtmp://localhost/tsdtv", null, handleEnd(first));
+        Run firstRun = fFmpegs[0].awaitRun();
+        assertTrue(firstRun.plays(first));
+        player.cue(second, null, "rtmp://localhost/tsdtv", null, handleEnd(second));
+
+        firstRun.end();
+        assertEquals(1, ends.size());
+        assertSame(first, ends.get(0).media);
+        assertSame(second, ends.get(0).next);
+
+        Run secondRun = fFmpegs[1].awaitRun();
+        assertTrue(secondRun.plays(second));
+        nanny.runScheduled();
+        assertTrue(player.isPlaying());
+        assertEquals(1, ends.size());
+    }
+
+    @Test
+    public void testLaterCueReplacesEarlier() throws Exception {
+        Media first = episode(1);
+        Media second = episode(2);
+        Media third = episode(3);
+
+        player.play(first, null, "rtmp://localhost/tsdtv", null, handleEnd(first));
+        Run firstRun = fFmpegs[0].awaitRun();
+        player.cue(second, null, "rtmp://localhost/tsdtv", null, handleEnd(second));
+        player.cue(third, null, "rtmp://localhost/tsdtv", null, handleEnd(third));
+
+        firstRun.end();
+        assertSame(third, ends.get(0).next);
+        assertTrue(fFmpegs[1].awaitRun().plays(third));
+    }
+
+    @Test
+    public void testStopDropsCue() throws Exception {
+        Media first = episode(1);
+        Media second = episode(2);
+
+        player.play(first, null, "rtmp://localhost/tsdtv", null, handleEnd(first));
+        Run firstRun = fFmpegs[0].awaitRun();
+        player.cue(second, null, "rtmp://localhost/tsdtv", null, handleEnd(second));
+
+        player.stop();
+        assertTrue(firstRun.killed());
+        // a stopped stream isn't reported as ending, and nothing takes over from it
+        firstRun.end();
+        assertTrue(ends.isEmpty());
+        assertNull(fFmpegs[1].pollRun());
+
+        try {
+            player.cue(second, null, "rtmp://localhost/tsdtv", null, handleEnd(second));
+            fail("Expected nothing to cue after");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStreamsAlternateBetweenInstances() throws Exception {
+        Media first = episode(1);
+        Media second = episode(2);
+        Media third = episode(3);
+
+        player.play(first, null, "rtmp://localhost/tsdtv", null, handleEnd(first));
+        Run firstRun = fFmpegs[0].awaitRun();
+        player.cue(second, null, "rtmp://localhost/tsdtv", null, handleEnd(second));
+        firstRun.end();
+
+        // stopping the stream that ended can't take the one that took over from it down with it
+        Run secondRun = fFmpegs[1].awaitRun();
+        assertEquals(1, fFmpegs[0].getStops());
+        assertEquals(0, fFmpegs[1].getStops());
+        assertFalse(secondRun.killed());
+
+        player.play(third, null, "rtmp://localhost/tsdtv", null, handleEnd(third));
+        assertTrue(secondRun.killed());
+        assertEquals(1, fFmpegs[1].getStops());
+        assertTrue(fFmpegs[0].awaitRun().plays(third));
+    }
+
+    @Test
+    public void testFailedStartReported() throws Exception {
+        Media media = episode(1);
+        fFmpegs[0].breakNextRun();
+
+        // returns without waiting to see whether the stream started
+        player.play(media, null, "rtmp://localhost/tsdtv", null, handleEnd(media));
+        fFmpegs[0].awaitRun();
+        awaitNotPlaying();
+        assertTrue(ends.isEmpty());
+
+        nanny.runScheduled();
+        assertEquals(1, ends.size());
+        assertSame(media, ends.get(0).media);
+        assertEquals(FFmpegJob.State.FAILED, ends.get(0).state);
+        assertNull(ends.get(0).next);
+    }
+
+    @Test
+    public void testFailedCuedStartReported() throws Exception {
+        Media first = episode(1);
+        Media second = episode(2);
+        fFmpegs[1].breakNextRun();
+
+        player.play(first, null, "rtmp://localhost/tsdtv", null, handleEnd(first));
+        Run firstRun = fFmpegs[0].awaitRun();
+        player.cue(second, null, "rtmp://localhost/tsdtv", null, handleEnd(second));
+        firstRun.end();
+        assertSame(second, ends.get(0).next);
+
+        fFmpegs[1].awaitRun();
+        awaitNotPlaying();
+        nanny.runScheduled();
+        assertEquals(2, ends.size());
+        assertSame(second, ends.get(1).media);
+        assertEquals(FFmpegJob.State.FAILED, ends.get(1).state);
+        assertNull(ends.get(1).next);
+    }
+
+    private void awaitNotPlaying() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (player.isPlaying()) {
+            assertTrue("Stream still playing", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private BiConsumer<FFmpegJob.State, Media> handleEnd(Media media) {
+        return (state, next) -> ends.add(new End(media, state, next));
+    }
+
+    private static Media episode(int id) {
+        MediaInfo mediaInfo = new MediaInfo();
+        mediaInfo.setFilePath("/tsdtv/agent/" + id + ".mkv");
+        mediaInfo.setDurationSeconds(600);
+        Episode episode = new Episode("agent", mediaInfo);
+        episode.setId(id);
+        return episode;
+    }
+
+    private static class End {
+        final Media media;
+        final FFmpegJob.State state;
+        final Media next;
+
+        End(Media media, FFmpegJob.State state, Media next) {
+            this.media = media;
+            this.state = state;
+            this.next = next;
+        }
+    }
+
+    /*
+    Holds on to start confirmations until the test runs them
+     */
+    private static class ManualNanny extends ScheduledThreadPoolExecutor {
+        private final List<Runnable> scheduled = new ArrayList<>();
+
+        ManualNanny() {
+            super(1);
+        }
+
+        @Override
+        public synchronized ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            scheduled.add(command);
+            return null;
+        }
+
+        void runScheduled() {
+            List<Runnable> due;
+            synchronized (this) {
+                due = new ArrayList<>(scheduled);
+                scheduled.clear();
+            }
+            due.forEach(Runnable::run);
+        }
+    }
+
+    /*
+    Runs until the test ends the stream or the player stops it, rather than running a process
+     */
+    private static class FakeFFmpeg extends FFmpeg {
+        private final BlockingQueue<Run> runs = new LinkedBlockingQueue<>();
+        private volatile Run running = null;
+        private volatile boolean broken = false;
+        private volatile int stops = 0;
+
+        FakeFFmpeg() throws IOException {
+            super("ffmpeg", args -> {
+                throw new IOException("Not a real ffmpeg");
+            });
+        }
+
+        @Override
+        public synchronized String version() {
+            return "ffmpeg version fake";
+        }
+
+        @Override
+        public void run(FFmpegBuilder builder, ProgressListener listener) throws IOException {
+            Run run = new Run(builder, listener);
+            running = run;
+            runs.add(run);
+            if (broken) {
+                broken = false;
+                run.kill();
+            }
+            if (!run.exit.join()) {
+                throw new IOException("ffmpeg returned non-zero exit status");
+            }
+        }
+
+        @Override
+        public synchronized void stop() {
+            stops++;
+            Run run = running;
+            if (run != null) {
+                run.kill();
+            }
+        }
+
+        void breakNextRun() {
+            broken = true;
+        }
+
+        int getStops() {
+            return stops;
+        }
+
+        Run awaitRun() throws InterruptedException {
+            Run run = runs.poll(10, TimeUnit.SECONDS);
+            assertNotNull("ffmpeg wasn't run", run);
+            return run;
+        }
+
+        Run pollRun() throws InterruptedException {
+            return runs.poll(100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static class Run {
+        final FFmpegBuilder builder;
+        final ProgressListener listener;
+        // whether it exited normally
+        final CompletableFuture<Boolean> exit = new CompletableFuture<>();
+
+        Run(FFmpegBuilder builder, ProgressListener listener) {
+            this.builder = builder;
+            this.listener = listener;
+        }
+
+        boolean plays(Media media) {
+            return builder.build().contains(media.getMediaInfo().getFilePath());
+        }
+
+        void end() {
+            Progress progress = new Progress();
+            progress.out_time_ns = TimeUnit.SECONDS.toNanos(600);
+            progress.status = Progress.Status.END;
+            listener.progress(progress);
+            exit.complete(true);
+        }
+
+        void kill() {
+            exit.complete(false);
+        }
+
+        boolean killed() {
+            return exit.isDone() && !exit.join();
+        }
+    }
+}
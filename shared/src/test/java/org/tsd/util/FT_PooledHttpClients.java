@@ -0,0 +1,150 @@
+package org.tsd.util;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tsd.app.config.HttpClientConfig;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class FT_PooledHttpClients {
+
+    private StubHttpServer server;
+    private CloseableHttpClient httpClient;
+    private MetricRegistry metricRegistry;
+    private HttpClientConfig config;
+    private ExecutorService callers;
+
+    @Before
+    public void setup() throws IOException {
+        server = new StubHttpServer(0);
+        metricRegistry = new MetricRegistry();
+        config = new HttpClientConfig();
+        callers = Executors.newFixedThreadPool(50);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        callers.shutdownNow();
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        server.close();
+    }
+
+    @Test
+    public void testPerHostLimit() throws Exception {
+        config.setMaxConnectionsPerHost(4);
+        httpClient = PooledHttpClients.create("test", config, metricRegistry);
+        server.setDelayMillis(50);
+
+        assertThat(fire(40), is(40));
+        assertTrue(server.getMaxInFlight() <= 4);
+    }
+
+    @Test
+    public void testHostOverride() throws Exception {
+        config.setMaxConnectionsPerHost(10);
+        config.getHostMaxConnections().put(server.getUrl(), 2);
+        httpClient = PooledHttpClients.create("test", config, metricRegistry);
+        server.setDelayMillis(50);
+
+        assertThat(fire(20), is(20));
+        assertTrue(server.getMaxInFlight() <= 2);
+    }
+
+    @Test(expected = SocketTimeoutException.class)
+    public void testReadTimeout() throws Exception {
+        config.setSocketTimeoutMillis(100);
+        httpClient = PooledHttpClients.create("test", config, metricRegistry);
+        server.setDelayMillis(1_000);
+
+        get();
+    }
+
+    @Test
+    public void testPoolAcquireTimeout() throws Exception {
+        config.setMaxConnectionsPerHost(1);
+        config.setConnectionRequestTimeoutMillis(100);
+        httpClient = PooledHttpClients.create("test", config, metricRegistry);
+        server.setDelayMillis(1_000);
+
+        Future<Integer> holder = callers.submit(this::get);
+        TimeUnit.MILLISECONDS.sleep(200);
+        try {
+            get();
+            fail("Expected the pool to time out");
+        } catch (ConnectionPoolTimeoutException e) {
+            // expected
+        }
+        assertThat(holder.get(), is(200));
+    }
+
+    @Test
+    public void testLatencyRecordedPerHost() throws Exception {
+        httpClient = PooledHttpClients.create("test", config, metricRegistry);
+
+        assertThat(fire(10), is(10));
+
+        String host = server.getUrl().substring("http://".length());
+        Timer latency = metricRegistry.getTimers().get(MetricRegistry.name("http", "test", host, "latency"));
+        assertNotNull(latency);
+        assertThat(latency.getCount(), is(10L));
+        assertThat(metricRegistry.getGauges().get("http.test.pool.leased").getValue(), is(0));
+    }
+
+    /*
+    Offline load test: many callers against a slow upstream. Every call should succeed, none should take longer
+    than the pool acquire timeout, and the server should never see more connections than the limit.
+     */
+    @Test
+    public void testLoad() throws Exception {
+        config.setMaxConnectionsPerHost(20);
+        httpClient = PooledHttpClients.create("test", config, metricRegistry);
+        server.setDelayMillis(5);
+
+        assertThat(fire(2_000), is(2_000));
+        assertTrue(server.getMaxInFlight() <= 20);
+
+        String host = server.getUrl().substring("http://".length());
+        Timer latency = metricRegistry.getTimers().get(MetricRegistry.name("http", "test", host, "latency"));
+        assertThat(latency.getCount(), is(2_000L));
+        assertTrue(latency.getSnapshot().getMax()
+                < TimeUnit.MILLISECONDS.toNanos(config.getConnectionRequestTimeoutMillis()));
+    }
+
+    private int fire(int requests) throws Exception {
+        List<Future<Integer>> results = new ArrayList<>(requests);
+        for (int i = 0 ; i < requests ; i++) {
+            results.add(callers.submit(this::get));
+        }
+        int ok = 0;
+        for (Future<Integer> result : results) {
+            if (result.get(30, TimeUnit.SECONDS) == 200) {
+                ok++;
+            }
+        }
+        return ok;
+    }
+
+    private int get() throws IOException {
+        try (CloseableHttpResponse response = httpClient.execute(new HttpGet(server.getUrl() + "/"))) {
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine().getStatusCode();
+        }
+    }
+}
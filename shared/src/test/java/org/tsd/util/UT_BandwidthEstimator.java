@@ -0,0 +1,179 @@
+package org.tsd.util;
+
+import net.bramp.ffmpeg.progress.Progress;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.*;
+
+public class UT_BandwidthEstimator {
+
+    private static final long BYTES_PER_SECOND_OF_MEDIA = 125_000; // 1 Mbit/s
+
+    private TestClock clock;
+    private BandwidthEstimator estimator;
+
+    @Before
+    public void setup() {
+        clock = new TestClock(Instant.parse("2018-03-01T20:00:00Z"));
+        estimator = new BandwidthEstimator(clock);
+    }
+
+    @Test
+    public void testNoSamples() {
+        assertNull(estimator.getSustainedBitsPerSecond());
+        assertNull(estimator.getStreamBudgetBits());
+        assertFalse(estimator.isSaturated());
+    }
+
+    @Test
+    public void testStreamKeepingUp() {
+        stream(60, 0, 1000);
+
+        assertEquals(59, estimator.getSamples());
+        assertEquals(1_000_000, estimator.getSustainedBitsPerSecond(), 10_000);
+        assertFalse(estimator.isSaturated());
+        // the link carried everything it was given, so the next stream may ask for more
+        assertTrue(estimator.getStreamBudgetBits() > 1_000_000);
+    }
+
+    @Test
+    public void testSaturatedLink() {
+        // half real time: the uplink only carries half of what's encoded
+        stream(60, 0, 2000);
+
+        assertEquals(500_000, estimator.getSustainedBitsPerSecond(), 10_000);
+        assertTrue(estimator.isSaturated());
+        assertTrue(estimator.getStreamBudgetBits() < 500_000);
+    }
+
+    @Test
+    public void testDroppedFramesMeanSaturated() {
+        stream(60, 2, 1000);
+        assertTrue(estimator.isSaturated());
+    }
+
+    @Test
+    public void testEstimateFallsWhenLinkDegrades() {
+        stream(60, 0, 1000);
+        stream(60, 0, 2000);
+
+        assertEquals(500_000, estimator.getSustainedBitsPerSecond(), 25_000);
+        assertTrue(estimator.isSaturated());
+    }
+
+    @Test
+    public void testRoundedSpeedIgnored() {
+        /*
+        Two hours at just under real time. The reported speed flips between 0.999x and 1.00x from one report to the
+        next, which taken as the average speed would put seconds of wall time between reports a second apart
+         */
+        stream(7200, 0, 1006, 995);
+
+        assertEquals(1_000_000, estimator.getSustainedBitsPerSecond(), 10_000);
+        assertFalse(estimator.isSaturated());
+    }
+
+    @Test
+    public void testReplayRecordedLog() throws IOException {
+        estimator.replay(progressLog(60, 1.0f));
+
+        assertEquals(59, estimator.getSamples());
+        assertEquals(1_000_000, estimator.getSustainedBitsPerSecond(), 10_000);
+        assertFalse(estimator.isSaturated());
+    }
+
+    @Test
+    public void testReplayRecordedSaturatedLog() throws IOException {
+        estimator.replay(progressLog(60, 0.5f));
+
+        assertEquals(500_000, estimator.getSustainedBitsPerSecond(), 10_000);
+        assertTrue(estimator.isSaturated());
+    }
+
+    @Test
+    public void testEstimateGoesStale() {
+        stream(60, 0, 1000);
+        clock.advance(31 * 60 * 1000);
+        assertNull(estimator.getSustainedBitsPerSecond());
+    }
+
+    /*
+    One report per second of media, arriving after the next of the given wall times in turn. The speed is rounded
+    the way ffmpeg prints it
+     */
+    private void stream(int seconds, int droppedPerReport, long... wallMillisPerReport) {
+        estimator.startStream();
+        long wallMillis = 0;
+        for (int i = 1; i <= seconds; i++) {
+            long step = wallMillisPerReport[(i - 1) % wallMillisPerReport.length];
+            clock.advance(step);
+            wallMillis += step;
+
+            Progress progress = new Progress();
+            progress.frame = i * 24;
+            progress.total_size = i * BYTES_PER_SECOND_OF_MEDIA;
+            progress.out_time_ns = i * 1_000_000_000L;
+            progress.drop_frames = i * droppedPerReport;
+            progress.speed = Float.parseFloat(String.format("%4.3g", i * 1000.0 / wallMillis));
+            progress.status = i == seconds ? Progress.Status.END : Progress.Status.CONTINUE;
+            estimator.update(progress);
+        }
+    }
+
+    /*
+    One report per second of media, as written by ffmpeg -progress
+     */
+    private static ByteArrayInputStream progressLog(int seconds, float speed) {
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; i <= seconds; i++) {
+            log.append("frame=").append(i * 24).append('\n')
+                    .append("fps=24.00\n")
+                    .append("stream_0_0_q=28.0\n")
+                    .append("bitrate=").append(BYTES_PER_SECOND_OF_MEDIA * 8 / 1000.0).append("kbits/s\n")
+                    .append("total_size=").append(i * BYTES_PER_SECOND_OF_MEDIA).append('\n')
+                    .append("out_time_ms=").append(i * 1_000_000L).append('\n')
+                    .append(String.format("out_time=00:%02d:%02d.000000%n", i / 60, i % 60))
+                    .append("dup_frames=0\n")
+                    .append("drop_frames=0\n")
+                    .append("speed=").append(speed).append("x\n")
+                    .append(i == seconds ? "progress=end\n" : "progress=continue\n");
+        }
+        return new ByteArrayInputStream(log.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class TestClock extends Clock {
+        private Instant now;
+
+        TestClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(long millis) {
+            now = now.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
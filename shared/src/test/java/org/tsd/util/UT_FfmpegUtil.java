@@ -0,0 +1,292 @@
+package org.tsd.util;
+
+import net.bramp.ffmpeg.FFprobe;
+import net.bramp.ffmpeg.probe.FFmpegFormat;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+import org.apache.commons.lang3.math.Fraction;
+import org.junit.Test;
+import org.tsd.rest.v1.tsdtv.MediaInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class UT_FfmpegUtil {
+
+    // what planStream uses when there's no bandwidth to go on
+    private static final long DEFAULT_VIDEO_BITRATE = 1_200_000;
+    private static final long DEFAULT_AUDIO_BITRATE = 128_000;
+
+    @Test
+    public void testStreamReadySourceCopied() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000,
+                video("h264", "yuv420p", 720, Fraction.getFraction(24000, 1001)),
+                audio("aac"));
+
+        StreamPlan plan = FfmpegUtil.planStream(mediaInfo, null);
+        assertEquals(1, plan.getRenditions().size());
+        StreamPlan.Rendition top = plan.getRenditions().get(0);
+        assertEquals("source", top.getName());
+        assertTrue(top.isCopyVideo());
+        assertTrue(top.isCopyAudio());
+        assertTrue(plan.isRemuxOnly());
+        assertFalse(plan.isBurnSubtitles());
+        assertEquals(23.976, plan.getFrameRate(), 0.001);
+    }
+
+    @Test
+    public void testUnsupportedVideoCodecTranscoded() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("hevc", "yuv420p", 720), audio("aac"));
+
+        StreamPlan.Rendition top = FfmpegUtil.planStream(mediaInfo, null).getRenditions().get(0);
+        assertEquals("720p", top.getName());
+        assertFalse(top.isCopyVideo());
+        assertTrue(top.isCopyAudio());
+        assertEquals(DEFAULT_VIDEO_BITRATE, top.getVideoBitrate());
+    }
+
+    @Test
+    public void testUnsupportedAudioCodecTranscoded() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("h264", "yuv420p", 720), audio("flac"));
+
+        StreamPlan plan = FfmpegUtil.planStream(mediaInfo, null);
+        StreamPlan.Rendition top = plan.getRenditions().get(0);
+        assertTrue(top.isCopyVideo());
+        assertFalse(top.isCopyAudio());
+        assertEquals(DEFAULT_AUDIO_BITRATE, top.getAudioBitrate());
+        assertFalse(plan.isRemuxOnly());
+    }
+
+    @Test
+    public void testSubtitlesBurnedIn() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("h264", "yuv420p", 720), audio("aac"), subtitle("ass"));
+        assertEquals(1, mediaInfo.getSubtitleStreams().size());
+
+        StreamPlan plan = FfmpegUtil.planStream(mediaInfo, null);
+        assertTrue(plan.isBurnSubtitles());
+        // the video has to be encoded to burn the subtitles into it, but the audio doesn't
+        assertFalse(plan.getRenditions().get(0).isCopyVideo());
+        assertTrue(plan.getRenditions().get(0).isCopyAudio());
+    }
+
+    @Test
+    public void testPixelFormatNotCopied() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("h264", "yuv420p10le", 720), audio("aac"));
+
+        StreamPlan.Rendition top = FfmpegUtil.planStream(mediaInfo, null).getRenditions().get(0);
+        assertFalse(top.isCopyVideo());
+        assertTrue(top.isCopyAudio());
+    }
+
+    @Test
+    public void testSourceOverBudgetTranscoded() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(3_000_000, video("h264", "yuv420p", 720), audio("aac"));
+
+        StreamPlan.Rendition top = FfmpegUtil.planStream(mediaInfo, null).getRenditions().get(0);
+        assertFalse(top.isCopyVideo());
+        assertFalse(top.isCopyAudio());
+    }
+
+    @Test
+    public void testUnknownSourceBitrateTranscoded() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(0, video("h264", "yuv420p", 720), audio("aac"));
+
+        StreamPlan.Rendition top = FfmpegUtil.planStream(mediaInfo, null).getRenditions().get(0);
+        assertFalse(top.isCopyVideo());
+        assertFalse(top.isCopyAudio());
+    }
+
+    @Test
+    public void testAvailableBandwidthBudget() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("h264", "yuv420p", 720), audio("aac"));
+
+        // 8% of 10 Mbit/s is 800 kbit/s, 80% of which goes to video
+        StreamPlan.Rendition top = FfmpegUtil.planStream(mediaInfo, 10_000_000L).getRenditions().get(0);
+        assertEquals(640_000, top.getVideoBitrate());
+        assertEquals(DEFAULT_AUDIO_BITRATE, top.getAudioBitrate());
+        assertFalse(top.isCopyVideo());
+        assertFalse(top.isCopyAudio());
+
+        // 8% of 20 Mbit/s is more than the default bitrates, which are as much as a stream gets
+        top = FfmpegUtil.planStream(mediaInfo, 20_000_000L).getRenditions().get(0);
+        assertEquals(DEFAULT_VIDEO_BITRATE, top.getVideoBitrate());
+        assertEquals(DEFAULT_AUDIO_BITRATE, top.getAudioBitrate());
+        assertTrue(top.isCopyVideo());
+        assertTrue(top.isCopyAudio());
+    }
+
+    @Test
+    public void testStreamBudgetCutoff() throws IOException {
+        // a 1.1 Mbit/s budget is 880 kbit/s of video and 128 kbit/s of audio
+        MediaInfo fits = mediaInfo(1_008_000, video("h264", "yuv420p", 720), audio("aac"));
+        StreamPlan.Rendition top = FfmpegUtil.planStreamForBudget(fits, 1_100_000, Collections.emptyList())
+                .getRenditions().get(0);
+        assertEquals(880_000, top.getVideoBitrate());
+        assertEquals(DEFAULT_AUDIO_BITRATE, top.getAudioBitrate());
+        assertTrue(top.isCopyVideo());
+        assertTrue(top.isCopyAudio());
+
+        MediaInfo over = mediaInfo(1_008_001, video("h264", "yuv420p", 720), audio("aac"));
+        top = FfmpegUtil.planStreamForBudget(over, 1_100_000, Collections.emptyList()).getRenditions().get(0);
+        assertFalse(top.isCopyVideo());
+        assertFalse(top.isCopyAudio());
+    }
+
+    @Test
+    public void testSmallBudgetShortsAudio() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("h264", "yuv420p", 720), audio("aac"));
+
+        StreamPlan.Rendition top = FfmpegUtil.planStreamForBudget(mediaInfo, 500_000, Collections.emptyList())
+                .getRenditions().get(0);
+        assertEquals(400_000, top.getVideoBitrate());
+        assertEquals(100_000, top.getAudioBitrate());
+    }
+
+    @Test
+    public void testLadderBelowSource() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("h264", "yuv420p", 1080), audio("aac"));
+
+        StreamPlan plan = FfmpegUtil.planStream(mediaInfo, null, FfmpegUtil.ABR_LADDER);
+        assertEquals(Arrays.asList("source", "720p", "480p", "360p"), names(plan));
+        assertEquals(Arrays.asList(0, 720, 480, 360), heights(plan));
+
+        // bitrates scale with the pixel count, down to a floor
+        List<StreamPlan.Rendition> renditions = plan.getRenditions();
+        assertEquals(DEFAULT_VIDEO_BITRATE * 720 * 720 / (1080 * 1080), renditions.get(1).getVideoBitrate(), 1);
+        assertEquals(DEFAULT_VIDEO_BITRATE * 480 * 480 / (1080 * 1080), renditions.get(2).getVideoBitrate(), 1);
+        assertEquals(200_000, renditions.get(3).getVideoBitrate());
+        for (StreamPlan.Rendition rung : renditions.subList(1, renditions.size())) {
+            assertFalse(rung.isCopyVideo());
+            assertFalse(rung.isCopyAudio());
+            assertEquals(DEFAULT_AUDIO_BITRATE, rung.getAudioBitrate());
+        }
+        assertFalse(plan.isRemuxOnly());
+    }
+
+    @Test
+    public void testLadderSkipsRungsNotBelowSource() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("hevc", "yuv420p", 480), audio("aac"));
+
+        StreamPlan plan = FfmpegUtil.planStream(mediaInfo, null, FfmpegUtil.ABR_LADDER);
+        assertEquals(Arrays.asList("480p", "360p"), names(plan));
+    }
+
+    @Test
+    public void testAudioOnly() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(128_000, audio("mp3"));
+
+        StreamPlan plan = FfmpegUtil.planStream(mediaInfo, null, FfmpegUtil.ABR_LADDER);
+        assertEquals(Collections.singletonList("main"), names(plan));
+        assertTrue(plan.getRenditions().get(0).isCopyAudio());
+        assertEquals(24, plan.getFrameRate(), 0);
+    }
+
+    @Test
+    public void testFrameRateCapped() throws IOException {
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("hevc", "yuv420p", 720, Fraction.getFraction(60, 1)));
+        assertEquals(30, FfmpegUtil.planStream(mediaInfo, null).getFrameRate(), 0);
+    }
+
+    @Test
+    public void testMezzanine() throws IOException {
+        // stream ready already
+        assertNull(FfmpegUtil.planMezzanine(mediaInfo(1_000_000, video("h264", "yuv420p", 720), audio("aac"))));
+        // nothing to encode ahead of time
+        assertNull(FfmpegUtil.planMezzanine(mediaInfo(128_000, audio("flac"))));
+
+        StreamPlan plan = FfmpegUtil.planMezzanine(
+                mediaInfo(4_000_000, video("hevc", "yuv420p", 1080), audio("aac"), subtitle("ass")));
+        assertNotNull(plan);
+        assertEquals(1, plan.getRenditions().size());
+        StreamPlan.Rendition top = plan.getRenditions().get(0);
+        assertFalse(top.isCopyVideo());
+        assertEquals(DEFAULT_VIDEO_BITRATE, top.getVideoBitrate());
+        assertTrue(plan.isBurnSubtitles());
+    }
+
+    @Test
+    public void testMediaInfoFromProbe() throws IOException {
+        FFmpegStream audio = audio("aac");
+        audio.tags = Collections.singletonMap("LANGUAGE", "jpn");
+        MediaInfo mediaInfo = mediaInfo(1_000_000, video("h264", "yuv420p", 720), audio, subtitle("ass"));
+
+        assertEquals(1_000_000, mediaInfo.getBitRate());
+        assertEquals(1440, mediaInfo.getDurationSeconds());
+        assertEquals(720, mediaInfo.getVideoStreams().get(0).getHeight());
+        assertEquals("yuv420p", mediaInfo.getVideoStreams().get(0).getPixFmt());
+        assertEquals("jpn", mediaInfo.getAudioStreams().get(0).getLanguage());
+        assertEquals("ass", mediaInfo.getSubtitleStreams().get(0).getCodecName());
+    }
+
+    private static List<String> names(StreamPlan plan) {
+        return plan.getRenditions().stream().map(StreamPlan.Rendition::getName).collect(Collectors.toList());
+    }
+
+    private static List<Integer> heights(StreamPlan plan) {
+        return plan.getRenditions().stream().map(StreamPlan.Rendition::getHeight).collect(Collectors.toList());
+    }
+
+    /*
+    The media info of a 24 minute file, read from a probe result the way an agent reads it from ffprobe
+     */
+    private static MediaInfo mediaInfo(long bitRate, FFmpegStream... streams) throws IOException {
+        FFmpegProbeResult probeResult = new FFmpegProbeResult();
+        probeResult.format = new FFmpegFormat();
+        probeResult.format.duration = 1440.5;
+        probeResult.format.bit_rate = bitRate;
+        probeResult.format.size = (long) (bitRate / 8 * probeResult.format.duration);
+        probeResult.streams = Arrays.asList(streams);
+        for (int i = 0; i < streams.length; i++) {
+            streams[i].index = i;
+        }
+
+        FFprobe fFprobe = new FFprobe("ffprobe", args -> {
+            throw new IOException("Not a real ffprobe");
+        }) {
+            @Override
+            public FFmpegProbeResult probe(String mediaPath) {
+                return probeResult;
+            }
+        };
+        return FfmpegUtil.getMediaInfo(fFprobe, new File("/tsdtv/show/episode.mkv"));
+    }
+
+    private static FFmpegStream video(String codec, String pixFmt, int height) {
+        return video(codec, pixFmt, height, Fraction.getFraction(24, 1));
+    }
+
+    private static FFmpegStream video(String codec, String pixFmt, int height, Fraction frameRate) {
+        FFmpegStream stream = new FFmpegStream();
+        stream.codec_type = FFmpegStream.CodecType.VIDEO;
+        stream.codec_name = codec;
+        stream.pix_fmt = pixFmt;
+        stream.height = height;
+        stream.width = height * 16 / 9;
+        stream.is_avc = String.valueOf("h264".equals(codec));
+        stream.r_frame_rate = frameRate;
+        stream.avg_frame_rate = frameRate;
+        return stream;
+    }
+
+    private static FFmpegStream audio(String codec) {
+        FFmpegStream stream = new FFmpegStream();
+        stream.codec_type = FFmpegStream.CodecType.AUDIO;
+        stream.codec_name = codec;
+        stream.channel_layout = "stereo";
+        stream.sample_rate = 48_000;
+        return stream;
+    }
+
+    private static FFmpegStream subtitle(String codec) {
+        FFmpegStream stream = new FFmpegStream();
+        stream.codec_type = FFmpegStream.CodecType.SUBTITLE;
+        stream.codec_name = codec;
+        return stream;
+    }
+}
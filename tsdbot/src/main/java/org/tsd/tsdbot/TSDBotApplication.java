@@ -1,5 +1,6 @@
 package org.tsd.tsdbot;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
@@ -17,6 +18,7 @@ import io.dropwizard.auth.PolymorphicAuthDynamicFeature;
 import io.dropwizard.auth.PolymorphicAuthValueFactoryProvider;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import io.dropwizard.views.ViewBundle;
@@ -38,6 +40,7 @@ import org.tsd.tsdbot.filename.S3FilenameLibrary;
 import org.tsd.tsdbot.history.HistoryCache;
 import org.tsd.tsdbot.history.RemoteConfigurationRepository;
 import org.tsd.tsdbot.history.filter.FilterFactory;
+import org.tsd.tsdbot.listener.CommandRouter;
 import org.tsd.tsdbot.listener.CreateMessageListener;
 import org.tsd.tsdbot.listener.MessageFilter;
 import org.tsd.tsdbot.listener.MessageHandler;
@@ -105,12 +108,16 @@ public class TSDBotApplication extends Application<TSDBotConfiguration> {
         Injector injector = Guice.createInjector(new AbstractModule() {
             @Override
             protected void configure() {
-                install(new UtilityModule());
+                install(new UtilityModule(
+                        configuration.getExecutors(), configuration.getHttp(), environment.metrics()));
                 install(new DiscordModule(api, configuration));
                 install(new HibernateModule(hibernate));
                 install(new TSDBotModule(configuration));
                 install(new TSDTVModule(configuration.getFfmpeg(), configuration.getTsdtv()));
 
+                bind(MetricRegistry.class)
+                        .toInstance(environment.metrics());
+
                 bind(Twitter.class)
                         .toInstance(TwitterFactory.getSingleton());
 
@@ -137,6 +144,7 @@ public class TSDBotApplication extends Application<TSDBotConfiguration> {
         HistoryCache historyCache = injector.getInstance(HistoryCache.class);
 
         CreateMessageListener messageListener = injector.getInstance(CreateMessageListener.class);
+        CommandRouter commandRouter = injector.getInstance(CommandRouter.class);
         messageListener.addFilter(historyCache);
 
         List<MessageHandler<DiscordChannel>> channelMessageHandlers = Arrays.asList(
@@ -164,13 +172,11 @@ public class TSDBotApplication extends Application<TSDBotConfiguration> {
         List<MessageFilter> messageFilters = new LinkedList<>();
 
         for (MessageHandler<DiscordChannel> channelMessageHandler : channelMessageHandlers) {
-            messageListener.addChannelHandler(channelMessageHandler);
-            historyCache.addChannelMessageHandler(channelMessageHandler);
+            commandRouter.addChannelHandler(channelMessageHandler);
         }
 
         for (MessageHandler<DiscordUser> userMessageHandler : userMessageHandlers) {
-            messageListener.addUserHandler(userMessageHandler);
-            historyCache.addUserMessageHandler(userMessageHandler);
+            commandRouter.addUserHandler(userMessageHandler);
         }
 
         for (MessageFilter messageFilter : messageFilters) {
@@ -181,6 +187,17 @@ public class TSDBotApplication extends Application<TSDBotConfiguration> {
         api.registerListener(messageListener);
         historyCache.initialize();
 
+        environment.lifecycle().manage(new Managed() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+                historyCache.writeSnapshot();
+            }
+        });
+
         /*
         Configure authentication
          */
@@ -227,6 +244,7 @@ public class TSDBotApplication extends Application<TSDBotConfiguration> {
         environment.jersey().register(injector.getInstance(LoggingResource.class));
         environment.jersey().register(injector.getInstance(TSDTVReleaseResource.class));
         environment.jersey().register(injector.getInstance(MemeResource.class));
+        environment.jersey().register(injector.getInstance(HistoryResource.class));
     }
 
     private static void configureQuartz(Injector injector) {
@@ -0,0 +1,30 @@
+package org.tsd.tsdbot.app.config;
+
+import javax.validation.constraints.Min;
+
+public class HandlerConfig {
+
+    // threads shared by all channels for running message handlers
+    @Min(1)
+    private int threads = 8;
+
+    // messages waiting per channel/user before new ones are dropped
+    @Min(1)
+    private int queueDepth = 16;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+}
@@ -0,0 +1,53 @@
+package org.tsd.tsdbot.app.config;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+public class HistoryConfig {
+
+    // how many channel/user histories may be fetched from Discord at once during startup
+    @Min(1)
+    private int warmupConcurrency = 4;
+
+    // upper bound on history fetches issued per second during startup
+    @DecimalMin("0.1")
+    private double warmupRequestsPerSecond = 5;
+
+    // where to keep the history snapshot between restarts; blank disables snapshots
+    private String snapshotFile = "history.snapshot";
+
+    @Min(1)
+    private long snapshotIntervalMinutes = 5;
+
+    public int getWarmupConcurrency() {
+        return warmupConcurrency;
+    }
+
+    public void setWarmupConcurrency(int warmupConcurrency) {
+        this.warmupConcurrency = warmupConcurrency;
+    }
+
+    public double getWarmupRequestsPerSecond() {
+        return warmupRequestsPerSecond;
+    }
+
+    public void setWarmupRequestsPerSecond(double warmupRequestsPerSecond) {
+        this.warmupRequestsPerSecond = warmupRequestsPerSecond;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public long getSnapshotIntervalMinutes() {
+        return snapshotIntervalMinutes;
+    }
+
+    public void setSnapshotIntervalMinutes(long snapshotIntervalMinutes) {
+        this.snapshotIntervalMinutes = snapshotIntervalMinutes;
+    }
+}
@@ -3,7 +3,9 @@ package org.tsd.tsdbot.app.config;
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.tsd.app.config.ExecutorConfig;
 import org.tsd.app.config.FfmpegConfig;
+import org.tsd.app.config.HttpClientConfig;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -75,6 +77,54 @@ public class TSDBotConfiguration extends Configuration {
     @NotEmpty
     private String newsApiKey;
 
+    @Valid
+    @NotNull
+    private HistoryConfig history = new HistoryConfig();
+
+    @Valid
+    @NotNull
+    private HandlerConfig handlers = new HandlerConfig();
+
+    @Valid
+    @NotNull
+    private ExecutorConfig executors = new ExecutorConfig();
+
+    @Valid
+    @NotNull
+    private HttpClientConfig http = new HttpClientConfig();
+
+    public HistoryConfig getHistory() {
+        return history;
+    }
+
+    public void setHistory(HistoryConfig history) {
+        this.history = history;
+    }
+
+    public HandlerConfig getHandlers() {
+        return handlers;
+    }
+
+    public void setHandlers(HandlerConfig handlers) {
+        this.handlers = handlers;
+    }
+
+    public HttpClientConfig getHttp() {
+        return http;
+    }
+
+    public void setHttp(HttpClientConfig http) {
+        this.http = http;
+    }
+
+    public ExecutorConfig getExecutors() {
+        return executors;
+    }
+
+    public void setExecutors(ExecutorConfig executors) {
+        this.executors = executors;
+    }
+
     public String getNewsApiKey() {
         return newsApiKey;
     }
@@ -6,6 +6,8 @@ import com.google.inject.name.Names;
 import org.tsd.Constants;
 import org.tsd.tsdbot.app.BotUrl;
 import org.tsd.tsdbot.app.Stage;
+import org.tsd.tsdbot.app.config.HandlerConfig;
+import org.tsd.tsdbot.app.config.HistoryConfig;
 import org.tsd.tsdbot.app.config.TSDBotConfiguration;
 import org.tsd.tsdbot.tsdtv.job.JobFactory;
 
@@ -24,6 +26,12 @@ public class TSDBotModule extends AbstractModule {
         bind(TSDBotConfiguration.class)
                 .toInstance(configuration);
 
+        bind(HistoryConfig.class)
+                .toInstance(configuration.getHistory());
+
+        bind(HandlerConfig.class)
+                .toInstance(configuration.getHandlers());
+
         String stageString = configuration.getStage();
         Stage stage = Stage.valueOf(stageString);
         bind(Stage.class)
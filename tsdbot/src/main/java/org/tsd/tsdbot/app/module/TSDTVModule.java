@@ -8,6 +8,8 @@ import org.tsd.Constants;
 import org.tsd.app.config.FfmpegConfig;
 import org.tsd.app.module.FfmpegModule;
 import org.tsd.tsdbot.app.config.TSDTVConfig;
+import org.tsd.tsdbot.tsdtv.EventLoop;
+import org.tsd.tsdbot.tsdtv.SingleThreadEventLoop;
 
 public class TSDTVModule extends AbstractModule {
 
@@ -39,5 +41,8 @@ public class TSDTVModule extends AbstractModule {
         bind(String.class)
                 .annotatedWith(Names.named(Constants.Annotations.TSDTV_SCHEDULE))
                 .toInstance(tsdtvConfig.getSchedule());
+
+        log.info("Binding TSDTV event loop");
+        bind(EventLoop.class).to(SingleThreadEventLoop.class);
     }
 }
@@ -9,6 +9,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 
 import java.net.URL;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -44,6 +45,20 @@ public class DiscordMessage<T extends MessageRecipient> {
                 MessageType.SELF : MessageType.NORMAL;
     }
 
+    /**
+     * Rebuilds a message from stored fields. There is no underlying API message, so it can't be replied to.
+     */
+    public DiscordMessage(String id, String content, Instant timestamp, DiscordUser author, T recipient, MessageType type) {
+        this.message = null;
+        this.id = id;
+        this.content = content;
+        this.timestamp = timestamp;
+        this.author = author;
+        this.recipient = recipient;
+        this.attachments = Collections.emptyList();
+        this.type = type;
+    }
+
     public List<URL> getAttachments() {
         return attachments;
     }
@@ -81,6 +96,9 @@ public class DiscordMessage<T extends MessageRecipient> {
     }
 
     public DiscordMessage<T> reply(String text) {
+        if (message == null) {
+            throw new IllegalStateException("Cannot reply to a message restored from storage: " + this);
+        }
         try {
             Message reply = message.reply(text).get(10, TimeUnit.SECONDS);
             return new DiscordMessage<>(reply);
@@ -90,7 +108,7 @@ public class DiscordMessage<T extends MessageRecipient> {
     }
 
     public boolean authorHasRole(String role) {
-        return author.hasRole(message.getChannelReceiver().getServer(), role);
+        return isChannelMessage() && author.hasRole(((DiscordChannel) recipient).getServer(), role);
     }
 
     @Override
@@ -11,8 +11,8 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -121,8 +121,9 @@ public class S3FilenameLibrary implements FilenameLibrary {
         byte[] imageData;
         try {
             HttpGet get = new HttpGet(url.toURI());
-            HttpResponse response = httpClient.execute(get);
-            imageData = IOUtils.toByteArray(response.getEntity().getContent());
+            try (CloseableHttpResponse response = (CloseableHttpResponse) httpClient.execute(get)) {
+                imageData = IOUtils.toByteArray(response.getEntity().getContent());
+            }
         } catch (Exception e) {
             log.error("Error fetching new image for random filename database: " + urlString, e);
             throw new FilenameValidationException("Error retrieving image");
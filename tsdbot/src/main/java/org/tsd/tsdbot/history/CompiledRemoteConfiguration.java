@@ -0,0 +1,113 @@
+package org.tsd.tsdbot.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable, ready-to-match form of a {@link RemoteConfiguration}. Built once per load so that checking a message
+ * is a single regex match and a couple of hash lookups rather than a recompile of every configured pattern.
+ *
+ * Ignorable patterns are combined into one alternation. A pattern containing a backreference can't be renumbered
+ * safely inside the alternation, so it is kept as its own Pattern and checked after the combined one. If the
+ * alternation itself doesn't compile, e.g. because two patterns define the same named group, every pattern is
+ * checked on its own instead.
+ */
+final class CompiledRemoteConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledRemoteConfiguration.class);
+
+    private static final Pattern BACKREFERENCE = Pattern.compile("\\\\(\\d|k<)");
+
+    private final Pattern ignorablePattern;
+    private final List<Pattern> standaloneIgnorablePatterns;
+    private final Set<String> ignorableUsers;
+    private final Set<String> blacklistedUsers;
+
+    private CompiledRemoteConfiguration(Pattern ignorablePattern,
+                                        List<Pattern> standaloneIgnorablePatterns,
+                                        Set<String> ignorableUsers,
+                                        Set<String> blacklistedUsers) {
+        this.ignorablePattern = ignorablePattern;
+        this.standaloneIgnorablePatterns = standaloneIgnorablePatterns;
+        this.ignorableUsers = ignorableUsers;
+        this.blacklistedUsers = blacklistedUsers;
+    }
+
+    static CompiledRemoteConfiguration compile(RemoteConfiguration configuration) {
+        IgnorableMessageInfo ignorableMessageInfo = configuration.getIgnorableMessageInfo();
+
+        List<String> combined = new LinkedList<>();
+        List<Pattern> combinable = new LinkedList<>();
+        List<Pattern> standalone = new LinkedList<>();
+        if (ignorableMessageInfo != null && ignorableMessageInfo.getPatterns() != null) {
+            for (String pattern : ignorableMessageInfo.getPatterns()) {
+                try {
+                    Pattern compiled = Pattern.compile(pattern);
+                    if (BACKREFERENCE.matcher(pattern).find()) {
+                        standalone.add(compiled);
+                    } else {
+                        combined.add("(?:" + pattern + ")");
+                        combinable.add(compiled);
+                    }
+                } catch (PatternSyntaxException e) {
+                    log.error("Ignoring invalid ignorable pattern: {}", pattern, e);
+                }
+            }
+        }
+
+        Pattern ignorablePattern = null;
+        if (!combined.isEmpty()) {
+            try {
+                ignorablePattern = Pattern.compile(String.join("|", combined));
+            } catch (PatternSyntaxException e) {
+                log.warn("Ignorable patterns can't be combined, matching them separately: {}", e.getMessage());
+                standalone.addAll(0, combinable);
+            }
+        }
+
+        return new CompiledRemoteConfiguration(
+                ignorablePattern,
+                Collections.unmodifiableList(new ArrayList<>(standalone)),
+                lowercase(ignorableMessageInfo == null ? null : ignorableMessageInfo.getUsers()),
+                lowercase(configuration.getBlacklistedUsers()));
+    }
+
+    boolean isIgnorableText(String text) {
+        if (text == null) {
+            return false;
+        }
+        if (ignorablePattern != null && ignorablePattern.matcher(text).matches()) {
+            return true;
+        }
+        for (Pattern pattern : standaloneIgnorablePatterns) {
+            if (pattern.matcher(text).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isIgnorableUser(String name) {
+        return name != null && ignorableUsers.contains(name.toLowerCase());
+    }
+
+    boolean isBlacklistedUser(String name) {
+        return name != null && blacklistedUsers.contains(name.toLowerCase());
+    }
+
+    private static Set<String> lowercase(Collection<String> names) {
+        if (names == null) {
+            return Collections.emptySet();
+        }
+        Set<String> lowercase = names.stream()
+                .filter(Objects::nonNull)
+                .map(String::toLowerCase)
+                .collect(Collectors.toCollection(HashSet::new));
+        return Collections.unmodifiableSet(lowercase);
+    }
+}
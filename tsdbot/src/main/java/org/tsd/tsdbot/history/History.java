@@ -1,6 +1,5 @@
 package org.tsd.tsdbot.history;
 
-import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,27 +8,156 @@ import org.tsd.tsdbot.discord.DiscordMessage;
 import org.tsd.tsdbot.discord.MessageRecipient;
 import org.tsd.tsdbot.discord.MessageType;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Append-only ring of messages for one channel or user, stored in time order.
+ *
+ * Each slot holds the message itself plus a packed entry of [sequence | sanitized length | attribute bits]. Readers
+ * walk the ring newest-first without copying or locking: an entry is re-checked after its message is read, and a
+ * slot that was overwritten mid-read ends the walk, since everything older than it has been evicted as well.
+ *
+ * Message IDs are indexed to their sequence so marking a message is constant-time. An index entry is dropped when
+ * its slot is overwritten, keeping the index the same size as the ring.
+ */
 class History<T extends MessageRecipient> {
 
     private static final Logger log = LoggerFactory.getLogger(History.class);
 
-    private CircularFifoQueue<DiscordMessage<T>> buffer = new CircularFifoQueue<>(Constants.History.DEFAULT_HISTORY_LENGTH);
+    private final int capacity;
+    private final AtomicReferenceArray<DiscordMessage<T>> messages;
+    private final AtomicLongArray entries;
+    private final Map<String, Long> sequencesById = new ConcurrentHashMap<>();
 
-    void addMessage(DiscordMessage<T> message) {
-        this.buffer.add(message);
+    // total number of messages ever appended; the newest message has sequence (appended - 1)
+    private volatile long appended = 0;
+
+    History() {
+        this(Constants.History.DEFAULT_HISTORY_LENGTH);
+    }
+
+    History(int capacity) {
+        this.capacity = capacity;
+        this.messages = new AtomicReferenceArray<>(capacity);
+        this.entries = new AtomicLongArray(capacity);
+    }
+
+    synchronized void addMessage(DiscordMessage<T> message, int attributes, int length) {
+        long sequence = appended;
+        int slot = slotOf(sequence);
+
+        DiscordMessage<T> evicted = messages.get(slot);
+        if (evicted != null && evicted.getId() != null) {
+            sequencesById.remove(evicted.getId(), sequence - capacity);
+        }
+
+        // invalidate the slot first so a concurrent reader can't pair the old entry with the new message
+        entries.set(slot, 0L);
+        messages.set(slot, message);
+        entries.set(slot, pack(sequence, attributes | MessageAttributes.PRESENT, length));
+
+        if (message.getId() != null) {
+            sequencesById.put(message.getId(), sequence);
+        }
+
+        appended = sequence + 1;
+    }
+
+    boolean contains(String id) {
+        return id != null && sequencesById.containsKey(id);
+    }
+
+    int size() {
+        return (int) Math.min(appended, capacity);
+    }
+
+    void forEachNewestFirst(EntryVisitor<T> visitor) {
+        long newest = appended - 1;
+        long oldest = Math.max(0, newest + 1 - capacity);
+        for (long sequence = newest ; sequence >= oldest ; sequence--) {
+            int slot = slotOf(sequence);
+            long before = entries.get(slot);
+            DiscordMessage<T> message = messages.get(slot);
+            long after = entries.get(slot);
+
+            if (!isEntry(before, sequence) || !isEntry(after, sequence)) {
+                return;
+            }
+
+            if (!visitor.visit(message, attributesOf(after), lengthOf(after))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the message was found in the buffer and marked
+     */
+    boolean markMessage(String id, MessageType type) {
+        if (id == null) {
+            return false;
+        }
+
+        Long sequence = sequencesById.get(id);
+        if (sequence == null) {
+            return false;
+        }
+
+        int slot = slotOf(sequence);
+        DiscordMessage<T> message = messages.get(slot);
+        if (message == null || !StringUtils.equals(message.getId(), id) || !updateType(slot, sequence, type)) {
+            return false;
+        }
+
+        log.debug("Marking message as \"{}\": {}", type, message);
+        message.setType(type);
+        return true;
+    }
+
+    private boolean updateType(int slot, long sequence, MessageType type) {
+        long current;
+        long updated;
+        do {
+            current = entries.get(slot);
+            if (!isEntry(current, sequence)) {
+                return false;
+            }
+            int attributes = (attributesOf(current) & ~MessageAttributes.TYPE_MASK) | MessageAttributes.forType(type);
+            updated = pack(sequence, attributes, lengthOf(current));
+        } while (!entries.compareAndSet(slot, current, updated));
+        return true;
+    }
+
+    private int slotOf(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private static long pack(long sequence, int attributes, int length) {
+        return ((sequence & 0xFFFFFFFFL) << 32)
+                | ((long) (Math.min(Math.max(length, 0), MessageAttributes.MAX_LENGTH)) << 16)
+                | (attributes & 0xFFFF);
+    }
+
+    private static boolean isEntry(long entry, long sequence) {
+        return (attributesOf(entry) & MessageAttributes.PRESENT) != 0
+                && (int) (entry >>> 32) == (int) sequence;
+    }
+
+    private static int attributesOf(long entry) {
+        return (int) (entry & 0xFFFF);
     }
 
-    List<DiscordMessage<T>> getMessages() {
-        return new ArrayList<>(buffer);
+    private static int lengthOf(long entry) {
+        return (int) ((entry >>> 16) & 0xFFFF);
     }
 
-    void markMessage(String id, MessageType type) {
-        buffer.stream()
-                .filter(message -> StringUtils.equals(message.getId(), id))
-                .peek(message -> log.debug("Marking message as \"{}\": {}", type, message))
-                .forEach(message -> message.setType(type));
+    interface EntryVisitor<T extends MessageRecipient> {
+        /**
+         * @return true to keep walking towards older messages
+         */
+        boolean visit(DiscordMessage<T> message, int attributes, int length);
     }
 }
@@ -1,6 +1,11 @@
 package org.tsd.tsdbot.history;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 import de.btobastian.javacord.DiscordAPI;
 import de.btobastian.javacord.entities.Channel;
 import de.btobastian.javacord.entities.User;
@@ -12,23 +17,30 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.Constants;
+import org.tsd.tsdbot.app.config.HistoryConfig;
 import org.tsd.tsdbot.discord.DiscordChannel;
 import org.tsd.tsdbot.discord.DiscordMessage;
 import org.tsd.tsdbot.discord.DiscordUser;
+import org.tsd.tsdbot.discord.MessageRecipient;
 import org.tsd.tsdbot.discord.MessageType;
 import org.tsd.tsdbot.listener.MessageFilter;
 import org.tsd.tsdbot.listener.MessageFilterException;
-import org.tsd.tsdbot.listener.MessageHandler;
+import org.tsd.tsdbot.listener.CommandRouter;
+import org.tsd.tsdbot.util.MessageSanitizer;
 
 import javax.inject.Inject;
 import java.text.DateFormat;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.TimeZone;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 @Singleton
 public class HistoryCache extends MessageFilter {
@@ -44,22 +56,55 @@ public class HistoryCache extends MessageFilter {
     private final Map<DiscordChannel, History<DiscordChannel>> channelMessages = new ConcurrentHashMap<>();
     private final Map<DiscordUser, History<DiscordUser>> userMessages = new ConcurrentHashMap<>();
 
-    private final List<MessageFilter> messageFilters = new LinkedList<>();
+    private final Map<DiscordChannel, RecipientWarmup<DiscordChannel>> channelWarmups = new ConcurrentHashMap<>();
+    private final Map<DiscordUser, RecipientWarmup<DiscordUser>> userWarmups = new ConcurrentHashMap<>();
+    private final PriorityQueue<RecipientWarmup<?>> warmupQueue = new PriorityQueue<>();
+    private final AtomicInteger warmupsRemaining = new AtomicInteger();
+    private volatile Instant warmupStart;
+
+    // only held while warming up
+    private volatile HistorySnapshot snapshot;
+    private Map<String, DiscordUser> snapshotAuthors;
 
-    private final List<MessageHandler<DiscordChannel>> channelMessageHandlers = new LinkedList<>();
-    private final List<MessageHandler<DiscordUser>> userMessageHandlers = new LinkedList<>();
+    private final List<MessageFilter> messageFilters = new LinkedList<>();
 
     private final boolean initializeUsers;
     private final RemoteConfigurationRepository remoteConfigurationRepository;
+    private final MessageSanitizer messageSanitizer;
+    private final CommandRouter commandRouter;
+    private final DiscordUser self;
+    private final HistoryConfig historyConfig;
+    private final Clock clock;
+    private final Path snapshotFile;
+
+    private final Counter markHits;
+    private final Counter markMisses;
 
     @Inject
-    public HistoryCache(DiscordAPI api, RemoteConfigurationRepository remoteConfigurationRepository) {
+    public HistoryCache(DiscordAPI api,
+                        RemoteConfigurationRepository remoteConfigurationRepository,
+                        MessageSanitizer messageSanitizer,
+                        CommandRouter commandRouter,
+                        @Named(Constants.Annotations.SELF) DiscordUser self,
+                        MetricRegistry metricRegistry,
+                        HistoryConfig historyConfig,
+                        Clock clock) {
         super(api);
 
         String initializeUsersEnv = System.getProperty("initializeUsers");
         initializeUsers = StringUtils.isBlank(initializeUsersEnv) || Boolean.parseBoolean(initializeUsersEnv);
 
         this.remoteConfigurationRepository = remoteConfigurationRepository;
+        this.messageSanitizer = messageSanitizer;
+        this.commandRouter = commandRouter;
+        this.self = self;
+        this.historyConfig = historyConfig;
+        this.clock = clock;
+        this.snapshotFile = StringUtils.isBlank(historyConfig.getSnapshotFile()) ?
+                null : Paths.get(historyConfig.getSnapshotFile());
+
+        this.markHits = metricRegistry.counter(MetricRegistry.name(HistoryCache.class, "marks", "hit"));
+        this.markMisses = metricRegistry.counter(MetricRegistry.name(HistoryCache.class, "marks", "miss"));
     }
 
     @Override
@@ -71,39 +116,135 @@ public class HistoryCache extends MessageFilter {
         messageFilters.add(messageFilter);
     }
 
-    public void addChannelMessageHandler(MessageHandler<DiscordChannel> channelMessageHandler) {
-        channelMessageHandlers.add(channelMessageHandler);
+    /**
+     * Queues a history fetch for every channel (and every user, unless disabled) and returns immediately. Fetches
+     * run on a small pool bounded by {@link HistoryConfig}. Channels go first, and a recipient with a request
+     * waiting on it or with live messages arriving is moved ahead of quieter ones.
+     *
+     * If a snapshot from a previous run exists, each recipient is restored from it and only the messages posted
+     * since are fetched, and recipients that were busiest before the snapshot are fetched first.
+     */
+    public void initialize() {
+        warmupStart = clock.instant();
+
+        if (snapshotFile != null) {
+            snapshot = HistorySnapshot.read(snapshotFile);
+        }
+
+        synchronized (warmupQueue) {
+            for (Channel channel : api.getChannels()) {
+                DiscordChannel discordChannel = new DiscordChannel(channel);
+                RecipientWarmup<DiscordChannel> warmup = new RecipientWarmup<>(discordChannel, clock);
+                seedActivity(warmup, snapshot == null ? null : snapshot.getChannel(discordChannel.getId()));
+                channelWarmups.put(discordChannel, warmup);
+                warmupQueue.add(warmup);
+            }
+
+            if (initializeUsers) {
+                for (User user : api.getUsers()) {
+                    DiscordUser discordUser = new DiscordUser(user);
+                    RecipientWarmup<DiscordUser> warmup = new RecipientWarmup<>(discordUser, clock);
+                    seedActivity(warmup, snapshot == null ? null : snapshot.getUser(discordUser.getId()));
+                    userWarmups.put(discordUser, warmup);
+                    warmupQueue.add(warmup);
+                }
+            }
+
+            warmupsRemaining.set(warmupQueue.size());
+        }
+
+        int concurrency = historyConfig.getWarmupConcurrency();
+        log.info("Warming up history: channels={}, users={}, concurrency={}, requestsPerSecond={}",
+                channelWarmups.size(), userWarmups.size(), concurrency, historyConfig.getWarmupRequestsPerSecond());
+
+        RateLimiter rateLimiter = RateLimiter.create(historyConfig.getWarmupRequestsPerSecond());
+        ExecutorService warmupExecutor = Executors.newFixedThreadPool(concurrency,
+                new ThreadFactoryBuilder().setNameFormat("history-warmup-%d").setDaemon(true).build());
+        for (int i = 0 ; i < concurrency ; i++) {
+            warmupExecutor.submit(() -> runWarmups(rateLimiter));
+        }
+        warmupExecutor.shutdown();
+
+        if (snapshotFile != null) {
+            ScheduledExecutorService snapshotExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("history-snapshot").setDaemon(true).build());
+            long interval = historyConfig.getSnapshotIntervalMinutes();
+            snapshotExecutor.scheduleWithFixedDelay(this::writeSnapshot, interval, interval, TimeUnit.MINUTES);
+        }
     }
 
-    public void addUserMessageHandler(MessageHandler<DiscordUser> userMessageHandler) {
-        userMessageHandlers.add(userMessageHandler);
+    /**
+     * Writes every loaded history to the snapshot file. Skipped until startup warmup has finished so that a
+     * partially loaded cache never replaces a complete snapshot.
+     */
+    public synchronized void writeSnapshot() {
+        if (snapshotFile == null || warmupStart == null || warmupsRemaining.get() > 0) {
+            return;
+        }
+
+        try {
+            List<HistorySnapshot.Section> sections = new ArrayList<>();
+            channelMessages.forEach((channel, history) ->
+                    sections.add(toSection(HistorySnapshot.Kind.CHANNEL, channel, history)));
+            userMessages.forEach((user, history) ->
+                    sections.add(toSection(HistorySnapshot.Kind.USER, user, history)));
+            HistorySnapshot.write(snapshotFile, clock.instant(), sections);
+        } catch (Exception e) {
+            log.error("Failed to write history snapshot: " + snapshotFile, e);
+        }
     }
 
-    public void initialize() {
-        for (Channel channel : api.getChannels()) {
-            try {
-                initializeChannelHistory(new DiscordChannel(channel));
-            } catch (Exception e) {
-                log.error("Error initializing channel " + channel.getName(), e);
+    private static <T extends MessageRecipient> HistorySnapshot.Section toSection(HistorySnapshot.Kind kind,
+                                                                                 T recipient,
+                                                                                 History<T> history) {
+        LinkedList<HistorySnapshot.Record> records = new LinkedList<>();
+        history.forEachNewestFirst((message, attributes, length) -> {
+            if (message.getAuthor() != null) {
+                records.addFirst(new HistorySnapshot.Record(
+                        message.getId(),
+                        message.getAuthor().getId(),
+                        message.getTimestamp().toEpochMilli(),
+                        message.getType(),
+                        message.getContent()));
             }
+            return true;
+        });
+        return new HistorySnapshot.Section(kind, recipient.getId(), new ArrayList<>(records));
+    }
+
+    /*
+    Recipients that were busiest in the day before the snapshot are fetched first
+     */
+    private void seedActivity(RecipientWarmup<?> warmup, HistorySnapshot.Section section) {
+        if (section != null) {
+            long since = snapshot.getCreatedAt().minus(1, ChronoUnit.DAYS).toEpochMilli();
+            int recent = (int) section.getRecords().stream()
+                    .filter(record -> record.getTimestamp() >= since)
+                    .count();
+            warmup.addActivity(recent);
         }
+    }
 
-        if (initializeUsers) {
-            for (User user : api.getUsers()) {
-                try {
-                    initializeUserHistory(new DiscordUser(user));
-                } catch (Exception e) {
-                    log.error("Error initializing user " + user.getName(), e);
-                }
-            }
+    public List<WarmupStatus> getWarmupStatus() {
+        List<RecipientWarmup<?>> warmups = new ArrayList<>();
+        warmups.addAll(channelWarmups.values());
+        warmups.addAll(userWarmups.values());
+        warmups.sort(Comparator.comparingLong(RecipientWarmup::getQueueOrder));
+
+        List<WarmupStatus> statuses = new ArrayList<>();
+        for (RecipientWarmup<?> warmup : warmups) {
+            statuses.add(warmup.getStatus());
         }
+        return statuses;
     }
 
     public List<DiscordMessage<DiscordChannel>> getChannelHistory(HistoryRequest<DiscordChannel> request) {
+        awaitWarmup(channelWarmups.get(request.getRecipient()));
         return request.apply(channelMessages.get(request.getRecipient()));
     }
 
     public List<DiscordMessage<DiscordUser>> getUserHistory(HistoryRequest<DiscordUser> request) {
+        awaitWarmup(userWarmups.get(request.getRecipient()));
         return request.apply(userMessages.get(request.getRecipient()));
     }
 
@@ -127,7 +268,179 @@ public class HistoryCache extends MessageFilter {
         return null;
     }
 
-    private void initializeChannelHistory(DiscordChannel channel) throws Exception {
+    @SuppressWarnings("unchecked")
+    private void runWarmups(RateLimiter rateLimiter) {
+        RecipientWarmup<?> warmup;
+        while ((warmup = nextWarmup()) != null) {
+            rateLimiter.acquire();
+            if (warmup.isChannel()) {
+                warmUp((RecipientWarmup<DiscordChannel>) warmup, channelMessages, this::fetchChannelHistory);
+            } else {
+                warmUp((RecipientWarmup<DiscordUser>) warmup, userMessages, this::fetchUserHistory);
+            }
+        }
+    }
+
+    private RecipientWarmup<?> nextWarmup() {
+        synchronized (warmupQueue) {
+            return warmupQueue.poll();
+        }
+    }
+
+    /*
+    Ordering fields of a warmup may only change while it is out of the priority queue
+     */
+    private void prioritize(RecipientWarmup<?> warmup, boolean waiter) {
+        synchronized (warmupQueue) {
+            boolean queued = warmupQueue.remove(warmup);
+            if (waiter) {
+                warmup.addWaiter();
+            } else {
+                warmup.addActivity();
+            }
+            if (queued) {
+                warmupQueue.add(warmup);
+            }
+        }
+    }
+
+    private void awaitWarmup(RecipientWarmup<?> warmup) {
+        if (warmup == null || warmup.isDone()) {
+            return;
+        }
+
+        prioritize(warmup, true);
+        try {
+            if (!warmup.await(Constants.History.HISTORY_FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for history warmup: {}", warmup.getRecipient().getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T extends MessageRecipient> void warmUp(RecipientWarmup<T> warmup,
+                                                     Map<T, History<T>> histories,
+                                                     HistoryFetcher<T> fetcher) {
+        T recipient = warmup.getRecipient();
+        warmup.started();
+        try {
+            History<T> history = fetcher.fetch(recipient);
+            synchronized (warmup) {
+                for (DiscordMessage<T> message : warmup.drainBufferedMessages()) {
+                    if (!history.contains(message.getId())) {
+                        appendMessage(history, message);
+                    }
+                }
+                histories.put(recipient, history);
+                warmup.ready(history.size());
+            }
+            WarmupStatus status = warmup.getStatus();
+            log.info("Warmed up history: recipient={}, messages={}, waitMillis={}, loadMillis={}",
+                    recipient.getName(), status.getMessages(), status.getWaitMillis(), status.getLoadMillis());
+        } catch (Exception e) {
+            log.error("Error initializing history for " + recipient.getName(), e);
+            warmup.failed();
+        }
+
+        if (warmupsRemaining.decrementAndGet() == 0) {
+            log.info("History warmup complete in {}ms", Duration.between(warmupStart, clock.instant()).toMillis());
+            clearSnapshot();
+            writeSnapshot();
+        }
+    }
+
+    private synchronized void clearSnapshot() {
+        snapshot = null;
+        snapshotAuthors = null;
+    }
+
+    private synchronized Map<String, DiscordUser> getSnapshotAuthors() {
+        if (snapshotAuthors == null) {
+            snapshotAuthors = new HashMap<>();
+            for (User user : api.getUsers()) {
+                snapshotAuthors.put(user.getId(), new DiscordUser(user));
+            }
+        }
+        return snapshotAuthors;
+    }
+
+    /**
+     * Rebuilds a history from its snapshot section plus the messages posted after it.
+     *
+     * @return null if the snapshot is too far behind to be topped up with a single fetch
+     */
+    private <T extends MessageRecipient> History<T> restoreHistory(T recipient,
+                                                                  HistorySnapshot.Section section,
+                                                                  DeltaFetcher deltaFetcher,
+                                                                  Function<Message, DiscordMessage<T>> wrapper)
+            throws Exception {
+        String lastMessageId = section.getLastMessageId();
+        if (lastMessageId == null) {
+            return null;
+        }
+
+        MessageHistory delta = deltaFetcher.fetchAfter(lastMessageId, Constants.History.DEFAULT_HISTORY_LENGTH)
+                .get(Constants.History.HISTORY_FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        if (delta.getMessages().size() >= Constants.History.DEFAULT_HISTORY_LENGTH) {
+            log.info("Snapshot is too far behind, fetching full history: recipient={}", recipient.getName());
+            return null;
+        }
+
+        Map<String, DiscordUser> authors = getSnapshotAuthors();
+        History<T> history = new History<>();
+        int restored = 0;
+
+        for (HistorySnapshot.Record record : section.getRecords()) {
+            DiscordUser author = authors.get(record.getAuthorId());
+            if (author == null) {
+                // no longer visible to the bot
+                continue;
+            }
+
+            DiscordMessage<T> message = new DiscordMessage<>(
+                    record.getId(),
+                    record.getContent(),
+                    Instant.ofEpochMilli(record.getTimestamp()),
+                    author,
+                    recipient,
+                    record.getType());
+
+            // the blacklist may have changed since the snapshot was taken
+            if (remoteConfigurationRepository.isMessageFromBlacklistedUser(message)) {
+                message.setType(MessageType.BLACKLISTED);
+            } else if (MessageType.BLACKLISTED.equals(record.getType())) {
+                message.setType(MessageType.NORMAL);
+            }
+
+            appendMessage(history, message);
+            restored++;
+        }
+
+        for (Message apiMessage : delta.getMessagesSorted()) {
+            DiscordMessage<T> message = wrapper.apply(apiMessage);
+            if (!history.contains(message.getId())) {
+                appendMessage(history, message);
+            }
+        }
+
+        log.info("Restored history from snapshot: recipient={}, restored={}, fetched={}",
+                recipient.getName(), restored, delta.getMessages().size());
+        return history;
+    }
+
+    private History<DiscordChannel> fetchChannelHistory(DiscordChannel channel) throws Exception {
+        HistorySnapshot.Section section = snapshot == null ? null : snapshot.getChannel(channel.getId());
+        if (section != null) {
+            History<DiscordChannel> restored = restoreHistory(channel, section,
+                    (afterId, limit) -> channel.getChannel().getMessageHistoryAfter(afterId, limit),
+                    this::wrapChannelMessage);
+            if (restored != null) {
+                return restored;
+            }
+        }
+
         log.debug("Initializing channel history: channel={}", channel);
 
         MessageHistory messageHistory = channel.getChannel()
@@ -145,9 +458,9 @@ public class HistoryCache extends MessageFilter {
                             DATE_FORMAT.format(message.getCreationDate().getTime()), message.getContent());
                 })
                 .map(this::wrapChannelMessage)
-                .forEach(history::addMessage);
+                .forEach(message -> appendMessage(history, message));
 
-        channelMessages.put(channel, history);
+        return history;
     }
 
     private DiscordMessage<DiscordChannel> wrapChannelMessage(Message message) {
@@ -168,7 +481,7 @@ public class HistoryCache extends MessageFilter {
                     }
                 });
 
-        boolean isFunction = channelMessageHandlers.stream()
+        boolean isFunction = commandRouter.routeChannelMessage(discordMessage).stream()
                 .anyMatch(handler -> handler.isValid(discordMessage));
 
         if (isFunction) {
@@ -178,7 +491,17 @@ public class HistoryCache extends MessageFilter {
         return discordMessage;
     }
 
-    private void initializeUserHistory(DiscordUser user) throws Exception {
+    private History<DiscordUser> fetchUserHistory(DiscordUser user) throws Exception {
+        HistorySnapshot.Section section = snapshot == null ? null : snapshot.getUser(user.getId());
+        if (section != null) {
+            History<DiscordUser> restored = restoreHistory(user, section,
+                    (afterId, limit) -> user.getUser().getMessageHistoryAfter(afterId, limit),
+                    this::wrapUserMessage);
+            if (restored != null) {
+                return restored;
+            }
+        }
+
         log.debug("Initializing user history: user={}", user.getName());
 
         MessageHistory messageHistory = user.getUser()
@@ -196,16 +519,16 @@ public class HistoryCache extends MessageFilter {
                             DATE_FORMAT.format(message.getCreationDate().getTime()), message.getContent());
                 })
                 .map(this::wrapUserMessage)
-                .forEach(history::addMessage);
+                .forEach(message -> appendMessage(history, message));
 
-        userMessages.put(user, history);
+        return history;
     }
 
     private DiscordMessage<DiscordUser> wrapUserMessage(Message message) {
         DiscordMessage<DiscordUser> discordMessage = new DiscordMessage<>(message);
 
         if (remoteConfigurationRepository.isMessageFromBlacklistedUser(discordMessage)) {
-            markMessage(discordMessage, MessageType.BLACKLISTED);
+            discordMessage.setType(MessageType.BLACKLISTED);
             return discordMessage;
         }
 
@@ -219,7 +542,7 @@ public class HistoryCache extends MessageFilter {
                     }
                 });
 
-        boolean isFunction = userMessageHandlers.stream()
+        boolean isFunction = commandRouter.routeUserMessage(discordMessage).stream()
                 .anyMatch(handler -> handler.isValid(discordMessage));
 
         if (isFunction) {
@@ -229,11 +552,61 @@ public class HistoryCache extends MessageFilter {
         return discordMessage;
     }
 
+    /*
+    Computes the attribute bits and sanitized length used by HistoryRequest once, at append time
+     */
+    private <T extends MessageRecipient> void appendMessage(History<T> history, DiscordMessage<T> message) {
+        String content = message.getContent();
+
+        int attributes = MessageAttributes.forType(message.getType());
+        if (MessageAttributes.isUrl(content)) {
+            attributes |= MessageAttributes.URL;
+        }
+        if (message.getAuthor().getUser().isBot()) {
+            attributes |= MessageAttributes.BOT;
+        }
+        if (Objects.equals(message.getAuthor(), self)) {
+            attributes |= MessageAttributes.OWN;
+        }
+
+        int length = StringUtils.length(messageSanitizer.sanitize(content));
+        history.addMessage(message, attributes, length);
+    }
+
     public void markMessage(DiscordMessage<?> message, MessageType type) {
-        if (message.isChannelMessage()) {
-            channelMessages.get((DiscordChannel)message.getRecipient()).markMessage(message.getId(), type);
+        History<?> history = message.isChannelMessage() ?
+                channelMessages.get((DiscordChannel) message.getRecipient())
+                : userMessages.get((DiscordUser) message.getRecipient());
+        if (history != null && history.markMessage(message.getId(), type)) {
+            markHits.inc();
+        } else {
+            log.debug("Message to mark as \"{}\" is not in history: {}", type, message);
+            markMisses.inc();
+            message.setType(type);
+        }
+    }
+
+    private <T extends MessageRecipient> void appendLiveMessage(DiscordMessage<T> message,
+                                                                Map<T, History<T>> histories,
+                                                                Map<T, RecipientWarmup<T>> warmups,
+                                                                HistoryFetcher<T> fetcher) throws Exception {
+        T recipient = message.getRecipient();
+        History<T> history = histories.get(recipient);
+
+        if (history == null) {
+            RecipientWarmup<T> warmup = warmups.get(recipient);
+            if (warmup != null && warmup.buffer(message)) {
+                // still warming up, the message will be merged in when the fetched history is published
+                prioritize(warmup, false);
+                return;
+            }
+            history = histories.get(recipient);
+        }
+
+        if (history == null) {
+            histories.put(recipient, fetcher.fetch(recipient));
         } else {
-            userMessages.get((DiscordUser)message.getRecipient()).markMessage(message.getId(), type);
+            appendMessage(history, message);
         }
     }
 
@@ -243,19 +616,11 @@ public class HistoryCache extends MessageFilter {
         try {
             log.debug("Received message: {}", message);
             if (message.isChannelMessage()) {
-                DiscordChannel channel = ((DiscordMessage<DiscordChannel>) message).getRecipient();
-                if (!channelMessages.containsKey(channel)) {
-                    initializeChannelHistory(channel);
-                } else {
-                    channelMessages.get(channel).addMessage(message);
-                }
+                appendLiveMessage((DiscordMessage<DiscordChannel>) message,
+                        channelMessages, channelWarmups, this::fetchChannelHistory);
             } else {
-                DiscordUser user = ((DiscordMessage<DiscordUser>) message).getRecipient();
-                if (!userMessages.containsKey(user)) {
-                    initializeUserHistory(user);
-                } else {
-                    userMessages.get(user).addMessage(message);
-                }
+                appendLiveMessage((DiscordMessage<DiscordUser>) message,
+                        userMessages, userWarmups, this::fetchUserHistory);
             }
         } catch (Exception e) {
             log.error("Error filtering message: "+message, e);
@@ -263,4 +628,11 @@ public class HistoryCache extends MessageFilter {
         }
     }
 
+    private interface HistoryFetcher<T extends MessageRecipient> {
+        History<T> fetch(T recipient) throws Exception;
+    }
+
+    private interface DeltaFetcher {
+        Future<MessageHistory> fetchAfter(String messageId, int limit);
+    }
 }
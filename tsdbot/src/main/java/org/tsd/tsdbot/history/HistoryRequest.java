@@ -1,12 +1,12 @@
 package org.tsd.tsdbot.history;
 
 import org.tsd.tsdbot.discord.*;
+import org.tsd.tsdbot.history.filter.AttributeFilter;
+import org.tsd.tsdbot.history.filter.LengthFilter;
 import org.tsd.tsdbot.history.filter.MessageHistoryFilter;
 
 import java.util.*;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class HistoryRequest<T extends MessageRecipient> {
 
@@ -40,20 +40,51 @@ public class HistoryRequest<T extends MessageRecipient> {
         return recipient;
     }
 
+    /**
+     * Returns matching messages newest-first. Attribute and length filters are folded into a single mask and range
+     * check against the values precomputed by the history; any other predicates are tested afterwards.
+     */
     public List<DiscordMessage<T>> apply(History<T> history) {
-        Stream<DiscordMessage<T>> stream = history.getMessages()
-                .stream()
-                .filter(msg -> !Objects.equals(msg, exclude))
-                .filter(msg -> !msg.getType().equals(MessageType.BLACKLISTED));
+        List<DiscordMessage<T>> results = new ArrayList<>();
+        if (history == null || limit <= 0) {
+            return results;
+        }
+
+        int excludedAttributes = MessageAttributes.BLACKLISTED;
+        int minLength = Integer.MIN_VALUE;
+        int maxLength = Integer.MAX_VALUE;
+        List<Predicate<DiscordMessage>> predicates = new ArrayList<>();
 
         for (Predicate<DiscordMessage> filter : filters) {
-            stream = stream.filter(filter);
+            if (filter instanceof AttributeFilter) {
+                excludedAttributes |= ((AttributeFilter) filter).getExcludedAttributes();
+            } else if (filter instanceof LengthFilter) {
+                LengthFilter lengthFilter = (LengthFilter) filter;
+                minLength = Math.max(minLength, lengthFilter.getMin());
+                maxLength = Math.min(maxLength, lengthFilter.getMax());
+            } else {
+                predicates.add(filter);
+            }
         }
 
-        return stream
-                .limit(limit)
-                .sorted(Comparator.comparing((DiscordMessage msg) -> msg.getTimestamp()).reversed())
-                .collect(Collectors.toList());
+        final int mask = excludedAttributes;
+        final int min = minLength;
+        final int max = maxLength;
+
+        history.forEachNewestFirst((message, attributes, length) -> {
+            if ((attributes & mask) != 0 || length < min || length > max || Objects.equals(message, exclude)) {
+                return true;
+            }
+            for (Predicate<DiscordMessage> predicate : predicates) {
+                if (!predicate.test(message)) {
+                    return true;
+                }
+            }
+            results.add(message);
+            return results.size() < limit;
+        });
+
+        return results;
     }
 
     public static HistoryRequest<DiscordChannel> create(DiscordChannel channel, DiscordMessage<DiscordChannel> exclude) {
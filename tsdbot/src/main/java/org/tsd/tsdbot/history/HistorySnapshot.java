@@ -0,0 +1,289 @@
+package org.tsd.tsdbot.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tsd.Constants;
+import org.tsd.tsdbot.discord.MessageType;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Compact binary copy of the history buffers, written through a memory-mapped file so a restart only has to fetch
+ * the messages posted since the snapshot was taken.
+ *
+ * Layout (all integers big-endian, strings are an int byte length followed by UTF-8, -1 for null):
+ * <pre>
+ * file:    magic int | version int | createdAt long | sectionCount int | section*
+ * section: kind byte | recipientId str | lastMessageId str | recordCount int | recordBytes int | record*
+ * record:  id str | authorId str | timestamp long | type byte (-1 for none) | content str
+ * </pre>
+ * Each section header carries the byte length of its records so a reader can skip sections it doesn't need.
+ */
+class HistorySnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(HistorySnapshot.class);
+
+    private static final int MAGIC = 0x54534448; // "TSDH"
+    private static final int VERSION = 1;
+
+    // written in place of the type of a record that has none
+    private static final byte NO_TYPE = -1;
+
+    enum Kind {
+        CHANNEL,
+        USER
+    }
+
+    private final Instant createdAt;
+    private final Map<String, Section> channels = new HashMap<>();
+    private final Map<String, Section> users = new HashMap<>();
+
+    private HistorySnapshot(Instant createdAt, List<Section> sections) {
+        this.createdAt = createdAt;
+        for (Section section : sections) {
+            (section.getKind() == Kind.CHANNEL ? channels : users).put(section.getRecipientId(), section);
+        }
+    }
+
+    Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    Section getChannel(String channelId) {
+        return channels.get(channelId);
+    }
+
+    Section getUser(String userId) {
+        return users.get(userId);
+    }
+
+    static void write(Path file, Instant createdAt, List<Section> sections) throws IOException {
+        long size = 4 + 4 + 8 + 4;
+        for (Section section : sections) {
+            size += section.headerBytes() + section.recordBytes();
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(createdAt.toEpochMilli());
+            buffer.putInt(sections.size());
+
+            for (Section section : sections) {
+                buffer.put((byte) section.getKind().ordinal());
+                putString(buffer, section.recipientIdBytes);
+                putString(buffer, section.lastMessageIdBytes);
+                buffer.putInt(section.getRecords().size());
+                buffer.putInt(section.recordBytes());
+                for (Record record : section.getRecords()) {
+                    putString(buffer, record.idBytes);
+                    putString(buffer, record.authorIdBytes);
+                    buffer.putLong(record.getTimestamp());
+                    buffer.put(record.getType() == null ? NO_TYPE : (byte) record.getType().ordinal());
+                    putString(buffer, record.contentBytes);
+                }
+            }
+
+            buffer.force();
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Wrote history snapshot: file={}, sections={}, bytes={}", file, sections.size(), size);
+    }
+
+    /**
+     * @return the snapshot, or null if there is none or it can't be read
+     */
+    static HistorySnapshot read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            log.info("No history snapshot at {}", file);
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Ignoring history snapshot with unknown format: {}", file);
+                return null;
+            }
+
+            Instant createdAt = Instant.ofEpochMilli(buffer.getLong());
+            int sectionCount = buffer.getInt();
+            List<Section> sections = new ArrayList<>(sectionCount);
+
+            for (int i = 0 ; i < sectionCount ; i++) {
+                Kind kind = Kind.values()[buffer.get()];
+                String recipientId = getString(buffer);
+                getString(buffer); // lastMessageId, derived from the records
+                int recordCount = buffer.getInt();
+                int recordBytes = buffer.getInt();
+
+                ByteBuffer records = buffer.slice();
+                records.limit(recordBytes);
+                buffer.position(buffer.position() + recordBytes);
+
+                List<Record> parsed = new ArrayList<>(recordCount);
+                for (int r = 0 ; r < recordCount ; r++) {
+                    parsed.add(new Record(
+                            getString(records),
+                            getString(records),
+                            records.getLong(),
+                            getType(records),
+                            getString(records)));
+                }
+                sections.add(new Section(kind, recipientId, parsed));
+            }
+
+            log.info("Read history snapshot: file={}, createdAt={}, sections={}", file, createdAt, sectionCount);
+            return new HistorySnapshot(createdAt, sections);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            log.error("Failed to read history snapshot: " + file, e);
+            return null;
+        }
+    }
+
+    private static MessageType getType(ByteBuffer buffer) {
+        byte type = buffer.get();
+        return type == NO_TYPE ? null : MessageType.values()[type];
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, Constants.UTF_8);
+    }
+
+    private static byte[] encode(String s) {
+        return s == null ? null : s.getBytes(Constants.UTF_8);
+    }
+
+    private static int stringBytes(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    static class Section {
+        private final Kind kind;
+        private final String recipientId;
+        private final List<Record> records;
+
+        private final byte[] recipientIdBytes;
+        private final byte[] lastMessageIdBytes;
+
+        /**
+         * @param records oldest first
+         */
+        Section(Kind kind, String recipientId, List<Record> records) {
+            this.kind = kind;
+            this.recipientId = recipientId;
+            this.records = records;
+            this.recipientIdBytes = encode(recipientId);
+            this.lastMessageIdBytes = encode(getLastMessageId());
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        String getRecipientId() {
+            return recipientId;
+        }
+
+        List<Record> getRecords() {
+            return records;
+        }
+
+        String getLastMessageId() {
+            return records.isEmpty() ? null : records.get(records.size() - 1).getId();
+        }
+
+        private int headerBytes() {
+            return 1 + stringBytes(recipientIdBytes) + stringBytes(lastMessageIdBytes) + 4 + 4;
+        }
+
+        private int recordBytes() {
+            int size = 0;
+            for (Record record : records) {
+                size += record.bytes();
+            }
+            return size;
+        }
+    }
+
+    static class Record {
+        private final String id;
+        private final String authorId;
+        private final long timestamp;
+        private final MessageType type;
+        private final String content;
+
+        private final byte[] idBytes;
+        private final byte[] authorIdBytes;
+        private final byte[] contentBytes;
+
+        Record(String id, String authorId, long timestamp, MessageType type, String content) {
+            this.id = id;
+            this.authorId = authorId;
+            this.timestamp = timestamp;
+            this.type = type;
+            this.content = content;
+            this.idBytes = encode(id);
+            this.authorIdBytes = encode(authorId);
+            this.contentBytes = encode(content);
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getAuthorId() {
+            return authorId;
+        }
+
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        MessageType getType() {
+            return type;
+        }
+
+        String getContent() {
+            return content;
+        }
+
+        private int bytes() {
+            return stringBytes(idBytes) + stringBytes(authorIdBytes) + 8 + 1 + stringBytes(contentBytes);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.tsd.tsdbot.history;
+
+import org.tsd.Constants;
+import org.tsd.tsdbot.discord.MessageType;
+
+import java.util.regex.Pattern;
+
+/**
+ * Bit flags describing a message in the history buffer. They are computed once when a message is appended so
+ * that history queries can reject messages with a mask check instead of re-running every filter predicate.
+ */
+public final class MessageAttributes {
+
+    public static final int URL = 1;
+    public static final int BOT = 1 << 1;
+    public static final int FUNCTION = 1 << 2;
+    public static final int OWN = 1 << 3;
+    public static final int BLACKLISTED = 1 << 4;
+
+    // set on every stored entry so a zeroed slot can never be mistaken for a message
+    static final int PRESENT = 1 << 15;
+
+    static final int TYPE_MASK = FUNCTION | BLACKLISTED;
+    static final int MAX_LENGTH = 0xFFFF;
+
+    static final Pattern URL_PATTERN = Pattern.compile(Constants.URL_REGEX);
+
+    private MessageAttributes() {
+    }
+
+    public static int forType(MessageType type) {
+        if (type == null) {
+            return 0;
+        }
+        switch (type) {
+            case FUNCTION:
+                return FUNCTION;
+            case BLACKLISTED:
+                return BLACKLISTED;
+            default:
+                return 0;
+        }
+    }
+
+    public static boolean isUrl(String content) {
+        return content != null && URL_PATTERN.matcher(content).matches();
+    }
+}
@@ -0,0 +1,142 @@
+package org.tsd.tsdbot.history;
+
+import org.tsd.tsdbot.discord.DiscordChannel;
+import org.tsd.tsdbot.discord.DiscordMessage;
+import org.tsd.tsdbot.discord.MessageRecipient;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Startup history fetch for a single channel or user. Live messages that arrive before the fetch completes are
+ * buffered here and merged into the fetched history when it is published.
+ *
+ * Ordering: recipients with the most requests waiting on them, then channels before users, then the recipients
+ * receiving the most live messages, then the order they were queued in. The ordering fields only change while the
+ * warmup is out of the queue; see {@link HistoryCache}.
+ */
+class RecipientWarmup<T extends MessageRecipient> implements Comparable<RecipientWarmup<?>> {
+
+    private static final AtomicLong QUEUE_ORDER = new AtomicLong();
+
+    private final T recipient;
+    private final Clock clock;
+    private final long queueOrder = QUEUE_ORDER.incrementAndGet();
+    private final Instant queuedAt;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<DiscordMessage<T>> bufferedMessages = new LinkedList<>();
+
+    private int waiters = 0;
+    private int activity = 0;
+
+    private volatile WarmupStatus.State state = WarmupStatus.State.PENDING;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile int messageCount;
+
+    RecipientWarmup(T recipient, Clock clock) {
+        this.recipient = recipient;
+        this.clock = clock;
+        this.queuedAt = clock.instant();
+    }
+
+    T getRecipient() {
+        return recipient;
+    }
+
+    boolean isChannel() {
+        return recipient instanceof DiscordChannel;
+    }
+
+    boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    void addWaiter() {
+        waiters++;
+    }
+
+    void addActivity() {
+        activity++;
+    }
+
+    void addActivity(int messages) {
+        activity += messages;
+    }
+
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * @return false if the history has already been published and the message should be appended to it directly
+     */
+    synchronized boolean buffer(DiscordMessage<T> message) {
+        if (isDone()) {
+            return false;
+        }
+        bufferedMessages.add(message);
+        return true;
+    }
+
+    synchronized List<DiscordMessage<T>> drainBufferedMessages() {
+        List<DiscordMessage<T>> drained = new LinkedList<>(bufferedMessages);
+        bufferedMessages.clear();
+        return drained;
+    }
+
+    void started() {
+        startedAt = clock.instant();
+        state = WarmupStatus.State.LOADING;
+    }
+
+    void ready(int messageCount) {
+        this.messageCount = messageCount;
+        finish(WarmupStatus.State.READY);
+    }
+
+    void failed() {
+        finish(WarmupStatus.State.FAILED);
+    }
+
+    private void finish(WarmupStatus.State state) {
+        this.finishedAt = clock.instant();
+        this.state = state;
+        done.countDown();
+    }
+
+    WarmupStatus getStatus() {
+        return new WarmupStatus(
+                isChannel() ? "channel" : "user",
+                recipient.getId(),
+                recipient.getName(),
+                state,
+                queuedAt,
+                startedAt,
+                finishedAt,
+                messageCount);
+    }
+
+    long getQueueOrder() {
+        return queueOrder;
+    }
+
+    @Override
+    public int compareTo(RecipientWarmup<?> other) {
+        if (waiters != other.waiters) {
+            return Integer.compare(other.waiters, waiters);
+        }
+        if (isChannel() != other.isChannel()) {
+            return isChannel() ? -1 : 1;
+        }
+        if (activity != other.activity) {
+            return Integer.compare(other.activity, activity);
+        }
+        return Long.compare(queueOrder, other.queueOrder);
+    }
+}
@@ -8,7 +8,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.Constants;
@@ -26,6 +25,9 @@ public class RemoteConfigurationRepository implements Serializable {
 
     private RemoteConfiguration remoteConfiguration;
 
+    // swapped as a whole whenever the configuration changes, so readers never see a half-built matcher
+    private volatile CompiledRemoteConfiguration compiledConfiguration;
+
     private final AmazonS3 s3Client;
     private final String tsdbotConfigBucket;
     private final ObjectMapper objectMapper;
@@ -51,11 +53,18 @@ public class RemoteConfigurationRepository implements Serializable {
         synchronized (this) {
             S3Object object = s3Client.getObject(tsdbotConfigBucket, REMOTE_CONFIG_FILE);
             this.remoteConfiguration = objectMapper.readValue(object.getObjectContent(), RemoteConfiguration.class);
+            this.compiledConfiguration = CompiledRemoteConfiguration.compile(remoteConfiguration);
             log.info("Retrieved remote config: {}", remoteConfiguration);
         }
     }
 
+    /**
+     * Uploads the current configuration. Callers edit it in place through {@link #getRemoteConfiguration()}, so
+     * the matchers are rebuilt here as well.
+     */
     public void upload() throws JsonProcessingException {
+        this.compiledConfiguration = CompiledRemoteConfiguration.compile(remoteConfiguration);
+
         String configString = objectMapper.writeValueAsString(remoteConfiguration);
         log.warn("Uploading remote config info, tsdbotConfigBucket={}, file={}, data=\n{}",
                 tsdbotConfigBucket, REMOTE_CONFIG_FILE, remoteConfiguration);
@@ -72,19 +81,14 @@ public class RemoteConfigurationRepository implements Serializable {
     }
 
     public boolean isMessageInIgnorablePattern(DiscordMessage message) {
-        String text = message.getContent();
-        return remoteConfiguration.getIgnorableMessageInfo().getPatterns().stream().anyMatch(text::matches);
+        return compiledConfiguration.isIgnorableText(message.getContent());
     }
 
     public boolean isMessageFromIgnorableUser(DiscordMessage message) {
-        String author = message.getAuthor().getName();
-        return remoteConfiguration.getIgnorableMessageInfo().getUsers()
-                .stream()
-                .anyMatch(ignorableUser -> StringUtils.equalsIgnoreCase(ignorableUser, author));
+        return compiledConfiguration.isIgnorableUser(message.getAuthor().getName());
     }
 
     public boolean isMessageFromBlacklistedUser(DiscordMessage message) {
-        String author = message.getAuthor().getName();
-        return remoteConfiguration.getBlacklistedUsers().stream().anyMatch(user -> StringUtils.equalsIgnoreCase(user, author));
+        return compiledConfiguration.isBlacklistedUser(message.getAuthor().getName());
     }
 }
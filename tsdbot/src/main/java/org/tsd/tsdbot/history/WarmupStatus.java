@@ -0,0 +1,85 @@
+package org.tsd.tsdbot.history;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public class WarmupStatus {
+
+    public enum State {
+        PENDING,
+        LOADING,
+        READY,
+        FAILED
+    }
+
+    private final String type;
+    private final String id;
+    private final String name;
+    private final State state;
+    private final Instant queuedAt;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final int messages;
+
+    WarmupStatus(String type,
+                 String id,
+                 String name,
+                 State state,
+                 Instant queuedAt,
+                 Instant startedAt,
+                 Instant finishedAt,
+                 int messages) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.state = state;
+        this.queuedAt = queuedAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.messages = messages;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getQueuedAt() {
+        return queuedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public int getMessages() {
+        return messages;
+    }
+
+    @JsonProperty("waitMillis")
+    public Long getWaitMillis() {
+        return startedAt == null ? null : Duration.between(queuedAt, startedAt).toMillis();
+    }
+
+    @JsonProperty("loadMillis")
+    public Long getLoadMillis() {
+        return (startedAt == null || finishedAt == null) ? null : Duration.between(startedAt, finishedAt).toMillis();
+    }
+}
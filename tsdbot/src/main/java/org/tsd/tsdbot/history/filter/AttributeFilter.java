@@ -0,0 +1,12 @@
+package org.tsd.tsdbot.history.filter;
+
+/**
+ * A history filter whose decision depends only on attributes precomputed when the message was stored, so that
+ * {@link org.tsd.tsdbot.history.HistoryRequest} can apply it as a bitmask check.
+ */
+public interface AttributeFilter extends MessageHistoryFilter {
+    /**
+     * @return the {@link org.tsd.tsdbot.history.MessageAttributes} bits that cause a message to be rejected
+     */
+    int getExcludedAttributes();
+}
@@ -27,4 +27,12 @@ public class LengthFilter implements MessageHistoryFilter {
         int length = StringUtils.length(sanitized);
         return length >= min && length <= max;
     }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
 }
@@ -1,11 +1,17 @@
 package org.tsd.tsdbot.history.filter;
 
 import org.tsd.tsdbot.discord.DiscordMessage;
+import org.tsd.tsdbot.history.MessageAttributes;
 
-public class NoBotsFilter implements MessageHistoryFilter {
+public class NoBotsFilter implements AttributeFilter {
 
     @Override
     public boolean test(DiscordMessage discordMessage) {
         return !discordMessage.getAuthor().getUser().isBot();
     }
+
+    @Override
+    public int getExcludedAttributes() {
+        return MessageAttributes.BOT;
+    }
 }
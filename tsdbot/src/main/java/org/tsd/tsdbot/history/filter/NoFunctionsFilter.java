@@ -2,10 +2,16 @@ package org.tsd.tsdbot.history.filter;
 
 import org.tsd.tsdbot.discord.DiscordMessage;
 import org.tsd.tsdbot.discord.MessageType;
+import org.tsd.tsdbot.history.MessageAttributes;
 
-public class NoFunctionsFilter implements MessageHistoryFilter {
+public class NoFunctionsFilter implements AttributeFilter {
     @Override
     public boolean test(DiscordMessage discordMessage) {
         return !discordMessage.getType().equals(MessageType.FUNCTION);
     }
+
+    @Override
+    public int getExcludedAttributes() {
+        return MessageAttributes.FUNCTION;
+    }
 }
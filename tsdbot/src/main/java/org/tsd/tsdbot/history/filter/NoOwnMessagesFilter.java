@@ -4,11 +4,12 @@ import com.google.inject.name.Named;
 import org.tsd.Constants;
 import org.tsd.tsdbot.discord.DiscordMessage;
 import org.tsd.tsdbot.discord.DiscordUser;
+import org.tsd.tsdbot.history.MessageAttributes;
 
 import javax.inject.Inject;
 import java.util.Objects;
 
-public class NoOwnMessagesFilter implements MessageHistoryFilter {
+public class NoOwnMessagesFilter implements AttributeFilter {
 
     private final DiscordUser bot;
 
@@ -21,4 +22,9 @@ public class NoOwnMessagesFilter implements MessageHistoryFilter {
     public boolean test(DiscordMessage discordMessage) {
         return !Objects.equals(discordMessage.getAuthor(), bot);
     }
+
+    @Override
+    public int getExcludedAttributes() {
+        return MessageAttributes.OWN;
+    }
 }
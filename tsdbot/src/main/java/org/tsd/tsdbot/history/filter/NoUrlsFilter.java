@@ -1,11 +1,16 @@
 package org.tsd.tsdbot.history.filter;
 
-import org.tsd.Constants;
 import org.tsd.tsdbot.discord.DiscordMessage;
+import org.tsd.tsdbot.history.MessageAttributes;
 
-public class NoUrlsFilter implements MessageHistoryFilter {
+public class NoUrlsFilter implements AttributeFilter {
     @Override
     public boolean test(DiscordMessage discordMessage) {
-        return !discordMessage.getContent().matches(Constants.URL_REGEX);
+        return !MessageAttributes.isUrl(discordMessage.getContent());
+    }
+
+    @Override
+    public int getExcludedAttributes() {
+        return MessageAttributes.URL;
     }
 }
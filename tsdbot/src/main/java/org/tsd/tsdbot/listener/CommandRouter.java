@@ -0,0 +1,37 @@
+package org.tsd.tsdbot.listener;
+
+import com.google.inject.Singleton;
+import org.tsd.tsdbot.discord.DiscordChannel;
+import org.tsd.tsdbot.discord.DiscordMessage;
+import org.tsd.tsdbot.discord.DiscordUser;
+
+import java.util.List;
+
+/**
+ * Routes a message to the handlers whose declared command prefixes it starts with, so only those handlers have
+ * {@link MessageHandler#isValid} called on them. Shared by the live message listener and by history
+ * classification so both see the same handlers.
+ */
+@Singleton
+public class CommandRouter {
+
+    // rebuilt on every registration, which only happens at startup
+    private volatile CommandTrie<DiscordChannel> channelHandlers = new CommandTrie<>();
+    private volatile CommandTrie<DiscordUser> userHandlers = new CommandTrie<>();
+
+    public synchronized void addChannelHandler(MessageHandler<DiscordChannel> handler) {
+        channelHandlers = channelHandlers.with(handler);
+    }
+
+    public synchronized void addUserHandler(MessageHandler<DiscordUser> handler) {
+        userHandlers = userHandlers.with(handler);
+    }
+
+    public List<MessageHandler<DiscordChannel>> routeChannelMessage(DiscordMessage<DiscordChannel> message) {
+        return channelHandlers.route(message.getContent());
+    }
+
+    public List<MessageHandler<DiscordUser>> routeUserMessage(DiscordMessage<DiscordUser> message) {
+        return userHandlers.route(message.getContent());
+    }
+}
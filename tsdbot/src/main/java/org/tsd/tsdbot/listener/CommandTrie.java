@@ -0,0 +1,107 @@
+package org.tsd.tsdbot.listener;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tsd.tsdbot.discord.MessageRecipient;
+
+import java.util.*;
+
+/**
+ * Immutable prefix trie over the command prefixes declared by a set of handlers. Prefixes are matched
+ * case-insensitively against the message with leading whitespace skipped, so a lookup costs at most one step per
+ * character of the longest matching prefix. Handlers that declare no prefixes are returned for every message.
+ */
+class CommandTrie<T extends MessageRecipient> {
+
+    private final List<MessageHandler<T>> handlers;
+    private final Node<T> root = new Node<>();
+    private final List<MessageHandler<T>> unrouted;
+
+    CommandTrie() {
+        this(Collections.emptyList());
+    }
+
+    private CommandTrie(List<MessageHandler<T>> handlers) {
+        this.handlers = handlers;
+        List<MessageHandler<T>> unrouted = new ArrayList<>();
+        for (MessageHandler<T> handler : handlers) {
+            List<String> prefixes = handler.getCommandPrefixes();
+            if (prefixes == null || prefixes.isEmpty() || prefixes.stream().anyMatch(StringUtils::isBlank)) {
+                unrouted.add(handler);
+            } else {
+                prefixes.forEach(prefix -> insert(prefix, handler));
+            }
+        }
+        this.unrouted = Collections.unmodifiableList(unrouted);
+    }
+
+    CommandTrie<T> with(MessageHandler<T> handler) {
+        List<MessageHandler<T>> updated = new ArrayList<>(handlers);
+        updated.add(handler);
+        return new CommandTrie<>(Collections.unmodifiableList(updated));
+    }
+
+    /**
+     * @return the handlers that may be valid for this content, in the order they were added
+     */
+    List<MessageHandler<T>> route(String content) {
+        if (content == null) {
+            return unrouted;
+        }
+
+        List<MessageHandler<T>> matched = null;
+        Node<T> node = root;
+        for (int i = firstNonWhitespace(content) ; i < content.length() ; i++) {
+            node = node.children.get(Character.toLowerCase(content.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            if (!node.handlers.isEmpty()) {
+                if (matched == null) {
+                    matched = new ArrayList<>(node.handlers);
+                } else {
+                    matched.addAll(node.handlers);
+                }
+            }
+        }
+
+        if (matched == null) {
+            return unrouted;
+        }
+
+        if (unrouted.isEmpty() && matched.size() == 1) {
+            return matched;
+        }
+
+        // merge back into registration order, dropping handlers matched through more than one prefix
+        Set<MessageHandler<T>> candidates = new HashSet<>(unrouted);
+        candidates.addAll(matched);
+        List<MessageHandler<T>> ordered = new ArrayList<>(candidates.size());
+        for (MessageHandler<T> handler : handlers) {
+            if (candidates.contains(handler)) {
+                ordered.add(handler);
+            }
+        }
+        return ordered;
+    }
+
+    private void insert(String prefix, MessageHandler<T> handler) {
+        Node<T> node = root;
+        for (int i = firstNonWhitespace(prefix) ; i < prefix.length() ; i++) {
+            node = node.children.computeIfAbsent(Character.toLowerCase(prefix.charAt(i)), c -> new Node<>());
+        }
+        node.handlers.add(handler);
+    }
+
+    private static int firstNonWhitespace(String s) {
+        int i = 0;
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node<T extends MessageRecipient> {
+        private final Map<Character, Node<T>> children = new HashMap<>();
+        private final List<MessageHandler<T>> handlers = new ArrayList<>(1);
+    }
+}
@@ -10,11 +10,13 @@ import org.tsd.tsdbot.app.Stage;
 import org.tsd.tsdbot.discord.DiscordChannel;
 import org.tsd.tsdbot.discord.DiscordMessage;
 import org.tsd.tsdbot.discord.DiscordUser;
+import org.tsd.tsdbot.discord.MessageRecipient;
 import org.tsd.tsdbot.discord.MessageType;
 import org.tsd.tsdbot.history.HistoryCache;
 import org.tsd.tsdbot.history.RemoteConfigurationRepository;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,37 +28,29 @@ public class CreateMessageListener implements MessageCreateListener {
     private final Stage stage;
     private final HistoryCache historyCache;
     private final RemoteConfigurationRepository remoteConfigurationRepository;
+    private final CommandRouter commandRouter;
+    private final HandlerExecutor handlerExecutor;
 
     private final List<MessageFilter> messageFilters
             = Collections.synchronizedList(new LinkedList<>());
 
-    private final List<MessageHandler<DiscordChannel>> channelMessageHandlers
-            = Collections.synchronizedList(new LinkedList<>());
-
-    private final List<MessageHandler<DiscordUser>> userMessageHandlers
-            = Collections.synchronizedList(new LinkedList<>());
-
     @Inject
     public CreateMessageListener(HistoryCache historyCache,
                                  Stage stage,
-                                 RemoteConfigurationRepository remoteConfigurationRepository) {
+                                 RemoteConfigurationRepository remoteConfigurationRepository,
+                                 CommandRouter commandRouter,
+                                 HandlerExecutor handlerExecutor) {
         this.historyCache = historyCache;
         this.stage = stage;
         this.remoteConfigurationRepository = remoteConfigurationRepository;
+        this.commandRouter = commandRouter;
+        this.handlerExecutor = handlerExecutor;
     }
 
     public void addFilter(MessageFilter filter) {
         this.messageFilters.add(filter);
     }
 
-    public void addChannelHandler(MessageHandler<DiscordChannel> handler) {
-        this.channelMessageHandlers.add(handler);
-    }
-
-    public void addUserHandler(MessageHandler<DiscordUser> handler) {
-        this.userMessageHandlers.add(handler);
-    }
-
     @SuppressWarnings("unchecked")
     @Override
     public void onMessageCreate(DiscordAPI discordAPI, Message apiMessage) {
@@ -79,32 +73,38 @@ public class CreateMessageListener implements MessageCreateListener {
             }
         }
 
-        boolean handled = false;
-
         if (isChannelMessage) {
             DiscordMessage<DiscordChannel> channelMessage = (DiscordMessage<DiscordChannel>) discordMessage;
             if (isValidForStage(channelMessage)) {
-                for (MessageHandler<DiscordChannel> handler : channelMessageHandlers) {
-                    try {
-                        handled |= handler.handle(channelMessage);
-                    } catch (Exception e) {
-                        log.error("Error handling channel message: " + discordMessage, e);
-                    }
-                }
+                dispatch(channelMessage, commandRouter.routeChannelMessage(channelMessage));
             }
         } else {
             DiscordMessage<DiscordUser> userMessage = (DiscordMessage<DiscordUser>) discordMessage;
-            for (MessageHandler<DiscordUser> handler : userMessageHandlers) {
-                try {
-                    handled |= handler.handle(userMessage);
-                } catch (Exception e) {
-                    log.error("Error handling user message: " + discordMessage, e);
+            dispatch(userMessage, commandRouter.routeUserMessage(userMessage));
+        }
+    }
+
+    /*
+    Picks the valid handlers here on the listener thread, then leaves the actual handling to the recipient's queue.
+    The message is marked as a function once a handler has handled it, so a message that was dropped or that every
+    handler failed on isn't
+     */
+    private <T extends MessageRecipient> void dispatch(DiscordMessage<T> message,
+                                                       List<MessageHandler<T>> candidates) {
+        List<MessageHandler<T>> validHandlers = new ArrayList<>(candidates.size());
+        for (MessageHandler<T> handler : candidates) {
+            try {
+                if (handler.isValid(message)) {
+                    validHandlers.add(handler);
                 }
+            } catch (Exception e) {
+                log.error("Error validating message, handler=" + handler.getClass().getSimpleName() + ": " + message, e);
             }
         }
 
-        if (handled) {
-            historyCache.markMessage(discordMessage, MessageType.FUNCTION);
+        if (!validHandlers.isEmpty()) {
+            handlerExecutor.submit(message, validHandlers,
+                    () -> historyCache.markMessage(message, MessageType.FUNCTION));
         }
     }
 
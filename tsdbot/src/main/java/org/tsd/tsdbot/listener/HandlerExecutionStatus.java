@@ -0,0 +1,35 @@
+package org.tsd.tsdbot.listener;
+
+import java.util.List;
+import java.util.Map;
+
+public class HandlerExecutionStatus {
+
+    private final int queued;
+    private final long shed;
+    private final Map<String, Integer> queueDepths;
+    private final List<HandlerStats> handlers;
+
+    HandlerExecutionStatus(int queued, long shed, Map<String, Integer> queueDepths, List<HandlerStats> handlers) {
+        this.queued = queued;
+        this.shed = shed;
+        this.queueDepths = queueDepths;
+        this.handlers = handlers;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getShed() {
+        return shed;
+    }
+
+    public Map<String, Integer> getQueueDepths() {
+        return queueDepths;
+    }
+
+    public List<HandlerStats> getHandlers() {
+        return handlers;
+    }
+}
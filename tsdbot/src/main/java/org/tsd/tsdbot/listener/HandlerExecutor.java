@@ -0,0 +1,199 @@
+package org.tsd.tsdbot.listener;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tsd.tsdbot.app.config.HandlerConfig;
+import org.tsd.tsdbot.discord.DiscordChannel;
+import org.tsd.tsdbot.discord.DiscordMessage;
+import org.tsd.tsdbot.discord.MessageRecipient;
+import org.tsd.util.NamedExecutors;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs message handlers off the Discord listener thread. Each channel or user gets its own serial queue, so its
+ * messages are still handled in the order they arrived while a slow handler in one channel no longer holds up
+ * the rest. A queue that is already {@link HandlerConfig#getQueueDepth()} deep drops new messages instead of
+ * building a backlog.
+ */
+@Singleton
+public class HandlerExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(HandlerExecutor.class);
+
+    private final ExecutorService executorService;
+    private final int queueDepth;
+
+    private final Map<String, SerialQueue> queues = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Timer> handlerTimers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Counter> handlerFailures = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final MetricRegistry metricRegistry;
+    private final Meter shed;
+    private final Histogram depthOnSubmit;
+
+    @Inject
+    public HandlerExecutor(MetricRegistry metricRegistry, HandlerConfig handlerConfig) {
+        this.metricRegistry = metricRegistry;
+        this.queueDepth = handlerConfig.getQueueDepth();
+        this.executorService = NamedExecutors.fixed("message-handler", handlerConfig.getThreads(), metricRegistry);
+
+        this.shed = metricRegistry.meter(MetricRegistry.name(HandlerExecutor.class, "shed"));
+        this.depthOnSubmit = metricRegistry.histogram(MetricRegistry.name(HandlerExecutor.class, "queueDepth"));
+        metricRegistry.register(MetricRegistry.name(HandlerExecutor.class, "queued"), (Gauge<Integer>) queued::get);
+    }
+
+    /**
+     * Queues the handlers to run against the message on its recipient's queue.
+     *
+     * @param onHandled run on the handler thread once the handlers have run, if any of them handled the message
+     *                  without throwing
+     * @return false if the recipient's queue was full and the message was dropped
+     */
+    public <T extends MessageRecipient> boolean submit(DiscordMessage<T> message,
+                                                       List<MessageHandler<T>> handlers,
+                                                       Runnable onHandled) {
+        T recipient = message.getRecipient();
+        SerialQueue queue = queues.computeIfAbsent(recipient.getId(), id -> new SerialQueue(label(recipient)));
+
+        if (!queue.offer(() -> runHandlers(message, handlers, onHandled))) {
+            shed.mark();
+            log.warn("Handler queue full, dropping message: recipient={}, message={}", recipient.getName(), message);
+            return false;
+        }
+        return true;
+    }
+
+    public HandlerExecutionStatus getStatus() {
+        Map<String, Integer> depths = new TreeMap<>();
+        queues.values().forEach(queue -> depths.put(queue.name, queue.depth()));
+
+        List<HandlerStats> handlers = new ArrayList<>();
+        handlerTimers.forEach((type, timer) -> {
+            Snapshot snapshot = timer.getSnapshot();
+            handlers.add(new HandlerStats(
+                    type.getSimpleName(),
+                    timer.getCount(),
+                    failuresFor(type).getCount(),
+                    toMillis(snapshot.getMean()),
+                    toMillis(snapshot.get95thPercentile()),
+                    toMillis(snapshot.get99thPercentile())));
+        });
+        handlers.sort(Comparator.comparing(HandlerStats::getHandler));
+
+        return new HandlerExecutionStatus(queued.get(), shed.getCount(), depths, handlers);
+    }
+
+    private <T extends MessageRecipient> void runHandlers(DiscordMessage<T> message,
+                                                          List<MessageHandler<T>> handlers,
+                                                          Runnable onHandled) {
+        boolean handled = false;
+        for (MessageHandler<T> handler : handlers) {
+            Timer.Context context = timerFor(handler.getClass()).time();
+            try {
+                handler.doHandle(message, message.getRecipient());
+                handled = true;
+            } catch (Exception e) {
+                failuresFor(handler.getClass()).inc();
+                log.error("Error handling message, handler=" + handler.getClass().getSimpleName() + ": " + message, e);
+            } finally {
+                context.stop();
+            }
+        }
+
+        if (handled) {
+            try {
+                onHandled.run();
+            } catch (Exception e) {
+                log.error("Error after handling message: " + message, e);
+            }
+        }
+    }
+
+    // names aren't unique, and a channel and a user can share one
+    private static String label(MessageRecipient recipient) {
+        String prefix = recipient instanceof DiscordChannel ? "#" : "@";
+        return prefix + recipient.getName() + " (" + recipient.getId() + ")";
+    }
+
+    private Timer timerFor(Class<?> handlerType) {
+        return handlerTimers.computeIfAbsent(handlerType,
+                type -> metricRegistry.timer(MetricRegistry.name(type, "latency")));
+    }
+
+    private Counter failuresFor(Class<?> handlerType) {
+        return handlerFailures.computeIfAbsent(handlerType,
+                type -> metricRegistry.counter(MetricRegistry.name(type, "failures")));
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /*
+    Runs one task at a time on the shared pool, rescheduling itself between tasks so a busy channel can't keep a
+    pool thread to itself
+     */
+    private class SerialQueue implements Runnable {
+        private final String name;
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled = false;
+
+        SerialQueue(String name) {
+            this.name = name;
+        }
+
+        synchronized boolean offer(Runnable task) {
+            if (tasks.size() >= queueDepth) {
+                return false;
+            }
+            tasks.add(task);
+            queued.incrementAndGet();
+            depthOnSubmit.update(tasks.size());
+            if (!scheduled) {
+                scheduled = true;
+                executorService.execute(this);
+            }
+            return true;
+        }
+
+        synchronized int depth() {
+            return tasks.size();
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+            }
+            queued.decrementAndGet();
+
+            try {
+                task.run();
+            } finally {
+                synchronized (this) {
+                    if (tasks.isEmpty()) {
+                        scheduled = false;
+                    } else {
+                        executorService.execute(this);
+                    }
+                }
+            }
+        }
+    }
+}
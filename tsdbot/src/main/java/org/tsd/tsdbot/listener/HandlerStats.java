@@ -0,0 +1,49 @@
+package org.tsd.tsdbot.listener;
+
+public class HandlerStats {
+
+    private final String handler;
+    private final long invocations;
+    private final long failures;
+    private final double meanMillis;
+    private final double p95Millis;
+    private final double p99Millis;
+
+    HandlerStats(String handler,
+                 long invocations,
+                 long failures,
+                 double meanMillis,
+                 double p95Millis,
+                 double p99Millis) {
+        this.handler = handler;
+        this.invocations = invocations;
+        this.failures = failures;
+        this.meanMillis = meanMillis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+    }
+
+    public String getHandler() {
+        return handler;
+    }
+
+    public long getInvocations() {
+        return invocations;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP95Millis() {
+        return p95Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+}
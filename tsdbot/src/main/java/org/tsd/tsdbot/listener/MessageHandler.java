@@ -4,6 +4,9 @@ import de.btobastian.javacord.DiscordAPI;
 import org.tsd.tsdbot.discord.DiscordMessage;
 import org.tsd.tsdbot.discord.MessageRecipient;
 
+import java.util.Collections;
+import java.util.List;
+
 public abstract class MessageHandler<T extends MessageRecipient> {
 
     protected final DiscordAPI api;
@@ -20,6 +23,15 @@ public abstract class MessageHandler<T extends MessageRecipient> {
         return false;
     }
 
+    /**
+     * Command prefixes this handler responds to, used by {@link CommandRouter} to skip {@link #isValid} for
+     * messages that can't match. Compared case-insensitively, ignoring leading whitespace. Handlers that aren't
+     * triggered by a fixed prefix return an empty list and are checked against every message.
+     */
+    public List<String> getCommandPrefixes() {
+        return Collections.emptyList();
+    }
+
     public abstract boolean isValid(DiscordMessage<T> message);
     public abstract void doHandle(DiscordMessage<T> message, T recipient) throws Exception;
 }
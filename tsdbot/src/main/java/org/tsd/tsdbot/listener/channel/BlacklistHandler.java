@@ -14,6 +14,8 @@ import org.tsd.tsdbot.history.RemoteConfigurationRepository;
 import org.tsd.tsdbot.listener.MessageHandler;
 
 import javax.inject.Inject;
+import java.util.Collections;
+import java.util.List;
 
 import static org.apache.commons.lang3.StringUtils.startsWith;
 import static org.apache.commons.lang3.StringUtils.substringAfter;
@@ -36,6 +38,11 @@ public class BlacklistHandler extends MessageHandler<DiscordChannel> {
         this.remoteConfigurationRepository = remoteConfigurationRepository;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(PREFIX);
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return message.getAuthor().equals(owner) && startsWith(message.getContent(), PREFIX);
@@ -12,6 +12,8 @@ import org.tsd.tsdbot.listener.MessageHandler;
 import org.tsd.tsdbot.util.MiscUtils;
 
 import javax.inject.Inject;
+import java.util.Collections;
+import java.util.List;
 
 import static org.apache.commons.lang3.StringUtils.*;
 import static org.tsd.Constants.Choose.CHOICE_DELIMITERS;
@@ -26,6 +28,11 @@ public class ChooseHandler extends MessageHandler<DiscordChannel> {
         super(api);
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(PREFIX);
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return startsWith(message.getContent(), PREFIX);
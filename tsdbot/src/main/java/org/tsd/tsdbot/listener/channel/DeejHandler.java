@@ -14,6 +14,9 @@ import org.tsd.tsdbot.history.filter.StandardMessageFilters;
 import org.tsd.tsdbot.listener.MessageHandler;
 import org.tsd.tsdbot.util.MiscUtils;
 
+import java.util.Collections;
+import java.util.List;
+
 public class DeejHandler extends MessageHandler<DiscordChannel> {
 
     private static final Logger log = LoggerFactory.getLogger(DeejHandler.class);
@@ -30,6 +33,11 @@ public class DeejHandler extends MessageHandler<DiscordChannel> {
         this.standardMessageFilters = standardMessageFilters;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(Constants.Deej.PREFIX);
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return StringUtils.equals(message.getContent().trim(), Constants.Deej.PREFIX);
@@ -14,6 +14,9 @@ import org.tsd.tsdbot.listener.MessageHandler;
 
 import javax.inject.Inject;
 
+import java.util.Collections;
+import java.util.List;
+
 public class DorjHandler extends MessageHandler<DiscordChannel> {
 
     private static final Logger log = LoggerFactory.getLogger(DorjHandler.class);
@@ -28,6 +31,11 @@ public class DorjHandler extends MessageHandler<DiscordChannel> {
         this.channelThreadFactory = channelThreadFactory;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(Constants.Dorj.COMMAND);
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return StringUtils.startsWith(message.getContent().trim(), Constants.Dorj.COMMAND);
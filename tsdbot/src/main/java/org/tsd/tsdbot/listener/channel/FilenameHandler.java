@@ -41,9 +41,14 @@ public class FilenameHandler extends MessageHandler<DiscordChannel> {
         this.botUrl = botUrl;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Arrays.asList(".filename", ".fname");
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
-        return message.getContent().matches(Constants.Filenames.COMMAND_STRING);
+        return Constants.Filenames.COMMAND_PATTERN.matcher(message.getContent()).matches();
     }
 
 
@@ -15,6 +15,8 @@ import javax.inject.Inject;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.text.DecimalFormat;
+import java.util.Collections;
+import java.util.List;
 
 import static org.apache.commons.lang3.StringUtils.startsWith;
 
@@ -36,6 +38,11 @@ public class HustleHandler extends MessageHandler<DiscordChannel> {
                 .build().toString();
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(Constants.Hustle.COMMAND);
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return startsWith(message.getContent(), Constants.Hustle.COMMAND);
@@ -27,6 +27,7 @@ import org.tsd.tsdbot.util.MiscUtils;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -68,6 +69,11 @@ public class MemeHandler extends MessageHandler<DiscordChannel> {
         this.memeRepository = memeRepository;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(".maymay");
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return StringUtils.startsWithIgnoreCase(message.getContent(), ".maymay");
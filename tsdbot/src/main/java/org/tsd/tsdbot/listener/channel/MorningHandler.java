@@ -55,6 +55,11 @@ public class MorningHandler extends MessageHandler<DiscordChannel> {
         this.newsClient = newsClient;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(PREFIX);
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return startsWith(message.getContent(), PREFIX);
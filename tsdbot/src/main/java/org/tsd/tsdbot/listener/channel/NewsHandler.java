@@ -15,6 +15,8 @@ import javax.inject.Inject;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 import static org.apache.commons.lang3.StringUtils.startsWith;
@@ -32,6 +34,11 @@ public class NewsHandler extends MessageHandler<DiscordChannel> {
         this.newsClient = newsClient;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(Constants.News.PREFIX);
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return startsWith(message.getContent(), Constants.News.PREFIX);
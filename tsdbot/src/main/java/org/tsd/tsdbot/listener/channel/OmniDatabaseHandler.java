@@ -40,6 +40,11 @@ public class OmniDatabaseHandler extends MessageHandler<DiscordChannel> {
         this.odbItemDao = odbItemDao;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(Constants.OmniDatabase.COMMAND_PREFIX);
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return startsWith(message.getContent(), Constants.OmniDatabase.COMMAND_PREFIX);
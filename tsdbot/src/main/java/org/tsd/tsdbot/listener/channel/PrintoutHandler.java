@@ -18,12 +18,16 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class PrintoutHandler extends MessageHandler<DiscordChannel> {
 
     private static final Logger log = LoggerFactory.getLogger(PrintoutHandler.class);
 
+    // without the DOTALL of Constants.Printout.QUERY_PATTERN, so only single-line messages are queries
+    private static final Pattern QUERY_LINE_PATTERN = Pattern.compile(Constants.Printout.QUERY_REGEX);
+
     private final URL botUrl;
     private final PrintoutLibrary printoutLibrary;
 
@@ -39,7 +43,7 @@ public class PrintoutHandler extends MessageHandler<DiscordChannel> {
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return StringUtils.isNotBlank(message.getContent())
-                && (message.getContent().matches(Constants.Printout.QUERY_REGEX)
+                && (QUERY_LINE_PATTERN.matcher(message.getContent()).matches()
                     || printoutLibrary.isUserPendingComputing(message.getAuthor()));
     }
 
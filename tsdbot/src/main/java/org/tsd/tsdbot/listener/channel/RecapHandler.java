@@ -64,6 +64,11 @@ public class RecapHandler extends MessageHandler<DiscordChannel> {
         this.standardMessageFilters = standardMessageFilters;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(".recap");
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return StringUtils.startsWith(message.getContent(), ".recap");
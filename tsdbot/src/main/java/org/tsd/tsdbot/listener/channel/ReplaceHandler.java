@@ -12,6 +12,7 @@ import org.tsd.tsdbot.history.filter.FilterFactory;
 import org.tsd.tsdbot.listener.MessageHandler;
 
 import javax.inject.Inject;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -66,6 +67,11 @@ public class ReplaceHandler extends MessageHandler<DiscordChannel> {
         return modified.equals(message) ? null : modified;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList("r/");
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return REPLACE_PATTERN.matcher(message.getContent()).matches();
@@ -51,6 +51,11 @@ public class TSDTVHandler extends MessageHandler<DiscordChannel> {
         this.scheduler = tsdtvScheduler;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(Constants.TSDTV.COMMAND_PREFIX);
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordChannel> message) {
         return StringUtils.startsWith(message.getContent().trim(), Constants.TSDTV.COMMAND_PREFIX);
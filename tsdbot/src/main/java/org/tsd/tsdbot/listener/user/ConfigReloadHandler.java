@@ -10,6 +10,9 @@ import org.tsd.tsdbot.discord.DiscordUser;
 import org.tsd.tsdbot.history.RemoteConfigurationRepository;
 import org.tsd.tsdbot.listener.MessageHandler;
 
+import java.util.Collections;
+import java.util.List;
+
 public class ConfigReloadHandler extends MessageHandler<DiscordUser> {
 
     private final DiscordUser owner;
@@ -24,6 +27,11 @@ public class ConfigReloadHandler extends MessageHandler<DiscordUser> {
         this.remoteConfigurationRepository = remoteConfigurationRepository;
     }
 
+    @Override
+    public List<String> getCommandPrefixes() {
+        return Collections.singletonList(".config");
+    }
+
     @Override
     public boolean isValid(DiscordMessage<DiscordUser> message) {
         return message.getAuthor().equals(owner)
@@ -26,6 +26,7 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import static org.tsd.Constants.Printout.GIS_API_TARGET;
 
@@ -37,6 +38,7 @@ public class PrintoutLibrary {
     private final String gisCx;
     private final String apiKey;
     private final HttpClient httpClient;
+    private final ExecutorService cpuExecutor;
 
     private final EvictingQueue<String> printoutIds = EvictingQueue.create(50);
     private final Map<String, byte[]> printouts = new HashMap<>();
@@ -45,9 +47,11 @@ public class PrintoutLibrary {
 
     @Inject
     public PrintoutLibrary(HttpClient httpClient,
+                           @Named(Constants.Annotations.CPU_EXECUTOR) ExecutorService cpuExecutor,
                            @Named(Constants.Annotations.GOOGLE_GIS_CX) String gisCx,
                            @Named(Constants.Annotations.GOOGLE_API_KEY) String apiKey) {
         this.httpClient = httpClient;
+        this.cpuExecutor = cpuExecutor;
         this.gisCx = gisCx;
         this.apiKey = apiKey;
     }
@@ -56,18 +60,12 @@ public class PrintoutLibrary {
         BufferedImage image = searchAndDownload(query);
         if (image != null) {
             try {
-                BufferedImage overlayedImage = transformImage(image);
-                if (overlayedImage != null) {
-                    try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                        String id = String.format("%s.%s",
-                                RandomStringUtils.randomAlphabetic(15), Constants.Printout.OUTPUT_FILE_TYPE);
-                        ImageIO.write(overlayedImage, Constants.Printout.OUTPUT_FILE_TYPE, baos);
-                        addPrintoutToLibrary(id, baos.toByteArray());
-                        return id;
-                    }
-                } else {
-                    throw new Exception("Could not generate image for an unknown reason");
-                }
+                // the search is I/O-bound, the overlay and encode are not
+                byte[] data = cpuExecutor.submit(() -> render(image)).get();
+                String id = String.format("%s.%s",
+                        RandomStringUtils.randomAlphabetic(15), Constants.Printout.OUTPUT_FILE_TYPE);
+                addPrintoutToLibrary(id, data);
+                return id;
             } catch (Exception e) {
                 log.error("Error manipulating image(s)", e);
             }
@@ -75,6 +73,17 @@ public class PrintoutLibrary {
         return null;
     }
 
+    private byte[] render(BufferedImage image) throws Exception {
+        BufferedImage overlayedImage = transformImage(image);
+        if (overlayedImage == null) {
+            throw new Exception("Could not generate image for an unknown reason");
+        }
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            ImageIO.write(overlayedImage, Constants.Printout.OUTPUT_FILE_TYPE, baos);
+            return baos.toByteArray();
+        }
+    }
+
     private void addPrintoutToLibrary(String printoutId, byte[] data) {
         printoutIds.add(printoutId);
         printouts.put(printoutId, data);
@@ -1,9 +1,12 @@
 package org.tsd.tsdbot.resources;
 
+import com.google.inject.Inject;
 import io.dropwizard.auth.Auth;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.tsdbot.auth.User;
+import org.tsd.tsdbot.listener.HandlerExecutionStatus;
+import org.tsd.tsdbot.listener.HandlerExecutor;
 import org.tsd.tsdbot.view.DashboardView;
 
 import javax.ws.rs.GET;
@@ -16,10 +19,24 @@ public class DashboardResource {
 
     private static final Logger log = LoggerFactory.getLogger(DashboardResource.class);
 
+    private final HandlerExecutor handlerExecutor;
+
+    @Inject
+    public DashboardResource(HandlerExecutor handlerExecutor) {
+        this.handlerExecutor = handlerExecutor;
+    }
+
     @GET
     @Produces(MediaType.TEXT_HTML)
     public DashboardView getLoginPage(@Auth User user) {
         log.debug("User accessed dashboard: {}", user.getUsername());
         return new DashboardView(user);
     }
+
+    @GET
+    @Path("/handlers")
+    @Produces(MediaType.APPLICATION_JSON)
+    public HandlerExecutionStatus getHandlerStatus(@Auth User user) {
+        return handlerExecutor.getStatus();
+    }
 }
@@ -0,0 +1,33 @@
+package org.tsd.tsdbot.resources;
+
+import com.google.inject.Inject;
+import io.dropwizard.auth.Auth;
+import org.tsd.tsdbot.auth.User;
+import org.tsd.tsdbot.history.HistoryCache;
+import org.tsd.tsdbot.history.WarmupStatus;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.util.List;
+
+@Path("/history")
+public class HistoryResource {
+
+    private final HistoryCache historyCache;
+
+    @Inject
+    public HistoryResource(HistoryCache historyCache) {
+        this.historyCache = historyCache;
+    }
+
+    @GET
+    @Path("/warmup")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"staff"})
+    public List<WarmupStatus> getWarmupStatus(@Auth User user) {
+        return historyCache.getWarmupStatus();
+    }
+}
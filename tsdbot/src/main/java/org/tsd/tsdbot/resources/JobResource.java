@@ -6,29 +6,56 @@ import org.tsd.tsdbot.tsdtv.job.JobQueue;
 
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Path("/job")
 public class JobResource {
 
+    private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
     private final JobQueue jobQueue;
+    private final ExecutorService executorService;
 
     @Inject
-    public JobResource(JobQueue jobQueue) {
+    public JobResource(JobQueue jobQueue, ExecutorService executorService) {
         this.jobQueue = jobQueue;
+        this.executorService = executorService;
     }
 
+    /*
+    With waitMillis the request is held open until a job arrives or the wait runs out, without holding a thread
+     */
     @GET
     @Path("/{agentId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response pollForJob(@PathParam("agentId") String agentId) {
-        Job job = jobQueue.pollForJob(agentId);
-        if (job != null) {
-            return Response.ok(job).build();
-        } else {
-            return Response.noContent().build();
+    public void pollForJob(@PathParam("agentId") String agentId,
+                           @QueryParam("waitMillis") @DefaultValue("0") long waitMillis,
+                           @Suspended AsyncResponse asyncResponse) {
+        long wait = Math.min(waitMillis, MAX_WAIT_MILLIS);
+        if (wait <= 0) {
+            asyncResponse.resume(toResponse(jobQueue.pollForJob(agentId)));
+            return;
         }
+
+        CompletableFuture<Job> nextJob = jobQueue.awaitJob(agentId);
+        asyncResponse.setTimeoutHandler(response -> {
+            // if the job arrived just as the wait ran out, send it rather than an empty response
+            nextJob.cancel(false);
+            response.resume(toResponse(nextJob.isCancelled() ? null : nextJob.getNow(null)));
+        });
+        asyncResponse.setTimeout(wait, TimeUnit.MILLISECONDS);
+        // the job is handed over on the submitter's thread, often the TSDTV event loop, so write the response elsewhere
+        nextJob.whenCompleteAsync((job, e) -> {
+            if (!nextJob.isCancelled()) {
+                asyncResponse.resume(toResponse(job));
+            }
+        }, executorService);
     }
 
     @PUT
@@ -38,4 +65,12 @@ public class JobResource {
         jobQueue.updateJobResult(result);
         return Response.ok().build();
     }
+
+    private static Response toResponse(Job job) {
+        if (job != null) {
+            return Response.ok(job).build();
+        } else {
+            return Response.noContent().build();
+        }
+    }
 }
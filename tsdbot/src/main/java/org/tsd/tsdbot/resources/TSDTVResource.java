@@ -130,7 +130,9 @@ public class TSDTVResource {
                             @Auth TSDTVAgent agent,
                             StoppedPlayingNotification notification) {
         log.info("Received stopped notification, agent={}: {}", agent.getAgentId(), notification);
-        tsdtv.reportStopped(notification.getMediaId());
+        tsdtv.reportStopped(notification.getMediaId(),
+                notification.getNextMediaId(),
+                notification.getNextTimeStarted());
         return Response.accepted("Accepted").build();
     }
 }
@@ -8,7 +8,12 @@ import org.slf4j.LoggerFactory;
 import org.tsd.Constants;
 import org.tsd.rest.v1.tsdtv.Heartbeat;
 import org.tsd.rest.v1.tsdtv.HeartbeatResponse;
+import org.tsd.rest.v1.tsdtv.Inventory;
+import org.tsd.rest.v1.tsdtv.InventoryDelta;
+import org.tsd.rest.v1.tsdtv.Movie;
+import org.tsd.rest.v1.tsdtv.Series;
 import org.tsd.tsdbot.tsdtv.job.JobQueue;
+import org.tsd.tsdbot.tsdtv.library.MediaCatalog;
 
 import java.time.Clock;
 import java.time.Instant;
@@ -17,6 +22,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Singleton
@@ -25,6 +31,8 @@ public class AgentRegistry {
     private static final Logger log = LoggerFactory.getLogger(AgentRegistry.class);
 
     private final Map<String, OnlineAgent> onlineAgents = new ConcurrentHashMap<>();
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private volatile MediaCatalog catalog = MediaCatalog.EMPTY;
     private final TSDTVAgentDao tsdtvAgentDao;
     private final JobQueue jobQueue;
     private final Clock clock;
@@ -71,7 +79,7 @@ public class AgentRegistry {
             onlineAgent = onlineAgents.get(agent.getAgentId());
         }
 
-        updateOnlineAgent(onlineAgent, agent, heartbeat);
+        boolean inventoryRejected = !updateOnlineAgent(onlineAgent, agent, heartbeat);
         log.debug("Updated online agent info: {}", onlineAgent);
 
         Instant inventoryExpiration
@@ -79,27 +87,85 @@ public class AgentRegistry {
         LocalDateTime now = LocalDateTime.now(clock);
         log.debug("Inventory for {} last reported on: {}", onlineAgent.getInventoryLastUpdated());
         log.debug("Inventory for {} expires on: {} (now = {})", inventoryExpiration, now);
-        boolean agentShouldReportInventory = onlineAgent
-                .getInventoryLastUpdated()
-                .isBefore(inventoryExpiration);
+        boolean agentShouldReportInventory = inventoryRejected
+                || onlineAgent.getInventory() == null
+                || onlineAgent.getInventoryLastUpdated().isBefore(inventoryExpiration);
 
         HeartbeatResponse response = new HeartbeatResponse();
         response.setSleepSeconds(20);
         response.setSendInventory(agentShouldReportInventory);
+        response.setInventoryVersion(onlineAgent.getInventoryVersion());
         log.debug("Returning heartbeat response for {}: {}", agent.getAgentId(), response);
 
         return response;
     }
 
-    private void updateOnlineAgent(OnlineAgent onlineAgent, TSDTVAgent agent, Heartbeat heartbeat) {
+    /**
+     * @return false if the heartbeat carried an inventory delta that couldn't be applied
+     */
+    private boolean updateOnlineAgent(OnlineAgent onlineAgent, TSDTVAgent agent, Heartbeat heartbeat) {
         onlineAgent.setAgent(agent);
         onlineAgent.setLastHeartbeat(Instant.now(clock));
         onlineAgent.setBitrate(heartbeat.getUploadBitrate());
+        onlineAgent.setSustainedBitrate(heartbeat.getSustainedUploadBitrate());
+        onlineAgent.setMezzanineStatus(heartbeat.getMezzanineStatus());
         if (heartbeat.getInventory() != null) {
             log.debug("Updating inventory for agent {}: {}", agent.getAgentId(), heartbeat.getInventory());
             onlineAgent.setInventory(heartbeat.getInventory());
+            onlineAgent.setInventoryVersion(heartbeat.getInventoryVersion());
             onlineAgent.setInventoryLastUpdated(Instant.now(clock));
+            rebuildCatalog();
+        } else if (heartbeat.getInventoryDelta() != null) {
+            InventoryDelta delta = heartbeat.getInventoryDelta();
+            if (onlineAgent.getInventory() == null
+                    || !Objects.equals(onlineAgent.getInventoryVersion(), delta.getBaseVersion())) {
+                log.warn("Rejecting inventory delta for agent {}: {}, held version = {}",
+                        agent.getAgentId(), delta, onlineAgent.getInventoryVersion());
+                return false;
+            }
+            log.debug("Applying inventory delta for agent {}: {}", agent.getAgentId(), delta);
+            if (!delta.isEmpty()) {
+                onlineAgent.setInventory(applyDelta(onlineAgent.getInventory(), delta));
+            }
+            onlineAgent.setInventoryVersion(delta.getVersion());
+            onlineAgent.setInventoryLastUpdated(Instant.now(clock));
+            if (!delta.isEmpty()) {
+                rebuildCatalog();
+            }
         }
+        return true;
+    }
+
+    /*
+    Builds a new inventory rather than editing the held one, which the current catalog may still be reading
+     */
+    private static Inventory applyDelta(Inventory inventory, InventoryDelta delta) {
+        Map<Integer, Movie> movies = new LinkedHashMap<>();
+        inventory.getMovies().forEach(movie -> movies.put(movie.getId(), movie));
+        delta.getRemovedMovies().forEach(movies::remove);
+        delta.getUpsertedMovies().forEach(movie -> movies.put(movie.getId(), movie));
+
+        Map<String, Series> series = new LinkedHashMap<>();
+        inventory.getSeries().forEach(s -> series.put(s.getName(), s));
+        delta.getRemovedSeries().forEach(series::remove);
+        delta.getUpsertedSeries().forEach(s -> series.put(s.getName(), s));
+
+        Inventory updated = new Inventory();
+        updated.setMovies(new LinkedList<>(movies.values()));
+        updated.setSeries(new LinkedList<>(series.values()));
+        return updated;
+    }
+
+    /**
+     * @return an index of the media offered by the online agents, replaced whenever an inventory changes
+     */
+    public MediaCatalog getCatalog() {
+        return catalog;
+    }
+
+    private synchronized void rebuildCatalog() {
+        this.catalog = MediaCatalog.build(catalogVersion.incrementAndGet(), onlineAgents.values());
+        log.info("Rebuilt media catalog, version={}, media={}", catalog.getVersion(), catalog.size());
     }
 
     public void registerAgent(String agentId) {
@@ -132,8 +198,8 @@ public class AgentRegistry {
         }
         agent.setStatus(status);
         tsdtvAgentDao.saveAgent(agent);
-        if (status.equals(AgentStatus.blacklisted)) {
-            onlineAgents.remove(agentId);
+        if (status.equals(AgentStatus.blacklisted) && onlineAgents.remove(agentId) != null) {
+            rebuildCatalog();
         }
     }
 
@@ -163,6 +229,9 @@ public class AgentRegistry {
                     onlineAgents.remove(agentId);
                     jobQueue.handleOfflineAgent(agentId);
                 }
+                if (!expiredAgents.isEmpty()) {
+                    rebuildCatalog();
+                }
                 try {
                     Thread.sleep(TimeUnit.SECONDS.toMillis(10));
                 } catch (InterruptedException e) {
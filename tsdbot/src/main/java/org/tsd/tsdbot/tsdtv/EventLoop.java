@@ -0,0 +1,14 @@
+package org.tsd.tsdbot.tsdtv;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs events one at a time in the order they're posted, so the state they touch needs no locking. Timers post their
+ * event once their delay has passed, on the clock the loop keeps.
+ */
+public interface EventLoop {
+
+    void post(Runnable event);
+
+    void schedule(Runnable event, long delay, TimeUnit unit);
+}
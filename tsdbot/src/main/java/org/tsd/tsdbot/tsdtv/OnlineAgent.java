@@ -4,6 +4,7 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.tsd.rest.v1.tsdtv.Inventory;
+import org.tsd.rest.v1.tsdtv.MezzanineStatus;
 
 import java.time.Instant;
 
@@ -13,7 +14,10 @@ public class OnlineAgent {
     private Instant lastHeartbeat;
     private Instant inventoryLastUpdated = Instant.MIN;
     private Double bitrate;
+    private Double sustainedBitrate;
+    private MezzanineStatus mezzanineStatus;
     private Inventory inventory;
+    private Long inventoryVersion;
 
     public Instant getLastHeartbeat() {
         return lastHeartbeat;
@@ -47,6 +51,22 @@ public class OnlineAgent {
         this.bitrate = bitrate;
     }
 
+    public Double getSustainedBitrate() {
+        return sustainedBitrate;
+    }
+
+    public void setSustainedBitrate(Double sustainedBitrate) {
+        this.sustainedBitrate = sustainedBitrate;
+    }
+
+    public MezzanineStatus getMezzanineStatus() {
+        return mezzanineStatus;
+    }
+
+    public void setMezzanineStatus(MezzanineStatus mezzanineStatus) {
+        this.mezzanineStatus = mezzanineStatus;
+    }
+
     public Inventory getInventory() {
         return inventory;
     }
@@ -55,6 +75,14 @@ public class OnlineAgent {
         this.inventory = inventory;
     }
 
+    public Long getInventoryVersion() {
+        return inventoryVersion;
+    }
+
+    public void setInventoryVersion(Long inventoryVersion) {
+        this.inventoryVersion = inventoryVersion;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -82,8 +110,11 @@ public class OnlineAgent {
                 .append("lastHeartbeat", lastHeartbeat)
                 .append("inventoryLastUpdated", inventoryLastUpdated)
                 .append("bitrate", bitrate)
-                .append("shows.size", inventory.getSeries().size())
-                .append("movies.size", inventory.getMovies().size())
+                .append("sustainedBitrate", sustainedBitrate)
+                .append("mezzanineStatus", mezzanineStatus)
+                .append("inventoryVersion", inventoryVersion)
+                .append("shows.size", inventory != null ? inventory.getSeries().size() : null)
+                .append("movies.size", inventory != null ? inventory.getMovies().size() : null)
                 .toString();
     }
 }
@@ -0,0 +1,55 @@
+package org.tsd.tsdbot.tsdtv;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link EventLoop} on a single thread. An event that throws is logged and the loop carries on.
+ */
+@Singleton
+public class SingleThreadEventLoop implements EventLoop {
+
+    private static final Logger log = LoggerFactory.getLogger(SingleThreadEventLoop.class);
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("tsdtv-events").setDaemon(true).build());
+
+    // from an event being posted, or its timer firing, until it runs
+    private final Timer latency;
+
+    @Inject
+    public SingleThreadEventLoop(MetricRegistry metricRegistry) {
+        this.latency = metricRegistry.timer(MetricRegistry.name(SingleThreadEventLoop.class, "latency"));
+    }
+
+    @Override
+    public void post(Runnable event) {
+        executor.execute(timed(event));
+    }
+
+    @Override
+    public void schedule(Runnable event, long delay, TimeUnit unit) {
+        executor.schedule(() -> post(event), delay, unit);
+    }
+
+    private Runnable timed(Runnable event) {
+        long postedNanos = System.nanoTime();
+        return () -> {
+            latency.update(System.nanoTime() - postedNanos, TimeUnit.NANOSECONDS);
+            try {
+                event.run();
+            } catch (Exception e) {
+                log.error("Error handling TSDTV event", e);
+            }
+        };
+    }
+}
@@ -34,17 +34,23 @@ import org.tsd.tsdbot.tsdtv.library.TSDTVLibrary;
 import org.tsd.tsdbot.tsdtv.library.TSDTVListing;
 import org.tsd.tsdbot.util.TSDTVUtils;
 import org.tsd.tsdtv.TSDTVPlayer;
-import org.tsd.util.RetryInstructionFailedException;
-import org.tsd.util.RetryUtil;
 
 import java.net.URL;
 import java.time.Clock;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
+/**
+ * TSDTV's playback is a state machine driven by an {@link EventLoop}. Requests from the web and chat, agents' stopped
+ * notifications, job results and timers are all posted to the loop as events, and only events touch the playback
+ * state, so nothing needs a lock. After every event the loop publishes a snapshot of the lineup for readers.
+ *
+ * Queued items' times are predicted once, when they're enqueued, relative to the item ahead of them. When an item
+ * actually starts, the difference from its prediction becomes the offset for everything behind it, rather than
+ * rewriting every queued item.
+ */
 @Singleton
 public class TSDTV {
 
@@ -56,26 +62,47 @@ public class TSDTV {
     private static final long PLAY_MEDIA_WAIT_PERIOD_MILLIS
             = TimeUnit.SECONDS.toMillis(20);
 
+    private static final int STOP_ATTEMPTS = 5;
+
+    private static final long VIEWER_TIMEOUT_SECONDS = 30;
+
+    // how long past its end nowPlaying can go without being reported stopped before it's given up on
+    private static final long STALLED_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    // everything down to the snapshot is only touched by events
     private QueuedItem nowPlaying;
-    private final List<QueuedItem> queue = new LinkedList<>();
+    // sent to an agent, waiting for it to report that playback started
+    private QueuedItem pendingPlay;
+    // the head of the queue, sent to nowPlaying's agent ahead of time to start as soon as nowPlaying ends
+    private QueuedItem cued;
+    private final LinkedList<QueuedItem> queue = new LinkedList<>();
+    // added to the predicted times of nowPlaying and the queue
+    private long offsetMillis = 0;
+    private final Map<String, TSDTVViewer> currentViewers = new HashMap<>();
+    // done once the server's player has finished stopping the last commercial
+    private CompletableFuture<Void> commercialStopped = CompletableFuture.completedFuture(null);
+
+    private volatile Snapshot snapshot = new Snapshot(null, Collections.emptyList(), 0);
 
     private final TSDTVLibrary library;
     private final JobQueue jobQueue;
     private final TSDTVEpisodicItemDao episodicItemDao;
     private final TSDTVPlayer player;
     private final Scheduler scheduler;
+    private final EventLoop eventLoop;
+    private final ExecutorService executorService;
     private final Clock clock;
     private final String tsdtvStreamUrl;
     private final DiscordChannel channel;
     private final URL botUrl;
 
-    private final Map<String, TSDTVViewer> currentViewers = new HashMap<>();
-
     @Inject
     public TSDTV(TSDTVLibrary library,
                  TSDTVEpisodicItemDao episodicItemDao,
                  JobQueue jobQueue,
                  TSDTVPlayer player,
+                 EventLoop eventLoop,
+                 ExecutorService executorService,
                  Clock clock,
                  Scheduler scheduler,
                  @BotUrl URL botUrl,
@@ -86,6 +113,8 @@ public class TSDTV {
         this.jobQueue = jobQueue;
         this.episodicItemDao = episodicItemDao;
         this.player = player;
+        this.eventLoop = eventLoop;
+        this.executorService = executorService;
         this.scheduler = scheduler;
         this.clock = clock;
         this.tsdtvStreamUrl = tsdtvStreamUrl;
@@ -102,28 +131,15 @@ public class TSDTV {
         this.channel = channel.get();
         log.info("Initialized TSDTV, channel={}", this.channel);
 
-        log.warn("Starting QueueManagerThread...");
-        new Thread(new QueueManagerThread()).start();
-
-        log.warn("Starting ViewerReaperThread...");
-        new Thread(new ViewerReaperThread()).start();
+        schedule(this::reapViewers, VIEWER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     }
 
     public Lineup getLineup() throws SchedulerException {
+        Snapshot current = snapshot;
         Lineup lineup = new Lineup();
-
-        if (nowPlaying != null) {
-            lineup.setNowPlaying(nowPlaying);
-        }
-
-        if (queue != null) {
-            lineup.setQueue(
-                    queue.stream()
-                    .filter(queuedItem -> queuedItem.getType() != QueuedItemType.commercial)
-                    .collect(Collectors.toList()));
-        }
-
-        lineup.setViewers(getViewerCount());
+        lineup.setNowPlaying(current.nowPlaying);
+        lineup.setQueue(new LinkedList<>(current.queue));
+        lineup.setViewers(current.viewers);
         lineup.getRemainingBlocks().addAll(getScheduledBlocks());
 
         log.debug("Built lineup: {}", lineup);
@@ -165,35 +181,77 @@ public class TSDTV {
         return blocks;
     }
 
-    public synchronized boolean playOrEnqueue(String agentId, int mediaId) throws TSDTVException {
+    /**
+     * @return true if the media started playing right away, false if it was queued
+     */
+    public boolean playOrEnqueue(String agentId, int mediaId) throws TSDTVException {
         log.info("Adding media to queue, agentId={}, mediaId={}", agentId, mediaId);
         Media media = library.findMediaById(agentId, mediaId);
         log.info("Found media: {}", media);
-        return playOrEnqueue(new QueuedItem(media));
+        return call(() -> playOrEnqueue(new QueuedItem(media)));
+    }
+
+    public void stopAll() {
+        post(() -> {
+            log.warn("Stopping all media");
+            queue.clear();
+            log.warn("Queue cleared, stopping media...");
+            stopNowPlayingEvent();
+            log.warn("Nuke complete");
+        });
     }
 
-    private synchronized boolean playOrEnqueue(QueuedItem addingItem) throws TSDTVException {
-        if (nowPlaying == null && CollectionUtils.isEmpty(queue)) {
+    public void stopNowPlaying() {
+        post(this::stopNowPlayingEvent);
+    }
+
+    /*
+    The agent is telling us that the media it was playing has stopped because:
+    a. the agent was asked to stop via stopNowPlaying()
+    b. the stream stopped normally
+    c. the stream stopped in error
+
+    If the agent had the next item cued and started it, that item is now playing
+     */
+    public void reportStopped(int mediaId, Integer nextMediaId, Long nextTimeStarted) {
+        post(() -> handleStopped(mediaId, nextMediaId, nextTimeStarted));
+    }
+
+    public void reportViewer(String ipAddress) {
+        post(() -> {
+            if (!currentViewers.containsKey(ipAddress)) {
+                currentViewers.put(ipAddress, new TSDTVViewer(ipAddress, clock.instant()));
+            } else {
+                currentViewers.get(ipAddress).setLastRecorded(clock.instant());
+            }
+        });
+    }
+
+    public int getViewerCount() {
+        return snapshot.viewers;
+    }
+
+    private boolean playOrEnqueue(QueuedItem addingItem) throws TSDTVException {
+        QueuedItem playing = getPlayingOrPending();
+        if (playing == null && CollectionUtils.isEmpty(queue)) {
             // play immediately
+            addingItem.setStartTime(clock.millis() - offsetMillis);
+            addingItem.updateEndTime();
             nowPlaying(addingItem);
             return true;
         } else {
             // try to enqueue
-            if ( (nowPlaying != null && Objects.equals(addingItem.getMedia(), nowPlaying.getMedia())) ||
+            if ( (playing != null && Objects.equals(addingItem.getMedia(), playing.getMedia())) ||
                     doesQueueContainMedia(addingItem.getMedia()) ) {
-                log.error("Duplicate media: nowPlaying={}, queue={}", nowPlaying, queue);
+                log.error("Duplicate media: nowPlaying={}, queue={}", playing, queue);
                 throw new DuplicateMediaQueuedException(addingItem.getMedia().getAgentId(), addingItem.getMedia().getId());
             }
 
-            if (CollectionUtils.isNotEmpty(queue)) {
-                QueuedItem lastItem = queue.get(queue.size() - 1);
-                addingItem.setStartTime(lastItem.getEndTime() + Constants.TSDTV.SCHEDULING_FUDGE_FACTOR_MILLIS);
-            } else {
-                addingItem.setStartTime(nowPlaying.getEndTime() + Constants.TSDTV.SCHEDULING_FUDGE_FACTOR_MILLIS);
-            }
-
+            QueuedItem lastItem = queue.isEmpty() ? playing : queue.getLast();
+            addingItem.setStartTime(lastItem.getEndTime() + Constants.TSDTV.SCHEDULING_FUDGE_FACTOR_MILLIS);
             addingItem.updateEndTime();
             queue.add(addingItem);
+            cueNext();
             return false;
         }
     }
@@ -202,84 +260,132 @@ public class TSDTV {
         return queue.stream().map(QueuedItem::getMedia).anyMatch(m -> m.equals(media));
     }
 
-    public synchronized void stopAll() {
-        log.warn("Stopping all media");
-        queue.clear();
-        log.warn("Queue cleared, stopping media...");
-        stopNowPlaying();
-        log.warn("Nuke complete");
+    private QueuedItem getPlayingOrPending() {
+        return nowPlaying != null ? nowPlaying : pendingPlay;
     }
 
     /*
-    Tell the agent to stop playing
+    Tell the agent to stop playing. A pending play is stopped too: the agent receives its jobs in the order they were
+    created, so the stop arrives after the play it cancels
      */
-    public synchronized void stopNowPlaying() {
-        if (nowPlaying != null) {
-            log.info("Stopping nowPlaying: {}", nowPlaying);
-            if (nowPlaying.getType().equals(QueuedItemType.commercial)) {
-                player.stop();
+    private void stopNowPlayingEvent() {
+        QueuedItem playing = getPlayingOrPending();
+        if (playing != null) {
+            log.info("Stopping nowPlaying: {}", playing);
+            this.nowPlaying = null;
+            this.pendingPlay = null;
+            this.cued = null;
+            if (playing.getType().equals(QueuedItemType.commercial)) {
+                stopCommercial(playing);
             } else {
-                TSDTVStopJob stopJob = new TSDTVStopJob();
-                stopJob.setAgentId(nowPlaying.getMedia().getAgentId());
-                stopJob.setTimeoutMillis(STOP_NOW_PLAYING_WAIT_PERIOD_MILLIS);
-                try {
-                    RetryUtil.executeWithRetry("TSDTVStop", 5, () -> {
-                        jobQueue.submitTsdtvStopJob(stopJob);
-                    });
-                } catch (RetryInstructionFailedException e) {
-                    log.error("Failed to stop media " + nowPlaying);
-                }
+                // the agent drops anything cued when it stops
+                stopAgent(playing.getMedia().getAgentId(), playing.getMedia());
             }
-            this.nowPlaying = null;
         }
     }
 
     /*
-    The agent is telling us that the media it was playing has stopped because:
-    a. the agent was asked to stop via stopNowPlaying()
-    b. the stream stopped normally
-    c. the stream stopped in error
+    Stopping the player waits on ffmpeg, so it's done on the executor and the outcome is posted back. The next
+    commercial doesn't start until it's done, or the stop could land on that one instead
      */
-    public synchronized void reportStopped(int mediaId) {
-        log.info("Handling stopped notification, mediaId={}, nowPlaying={}", mediaId, nowPlaying);
-        if (nowPlaying != null && nowPlaying.getMedia().getId() == mediaId) {
-            this.nowPlaying = null;
-        }
+    private void stopCommercial(QueuedItem commercial) {
+        commercialStopped = CompletableFuture.runAsync(player::stop, executorService)
+                .handle((v, e) -> {
+                    post(() -> {
+                        if (e == null) {
+                            log.info("Stopped commercial: {}", commercial);
+                        } else {
+                            log.error("Failed to stop commercial " + commercial, e);
+                        }
+                    });
+                    return null;
+                });
     }
 
-    public synchronized void reportViewer(String ipAddress) {
-        if (!currentViewers.containsKey(ipAddress)) {
-            currentViewers.put(ipAddress, new TSDTVViewer(ipAddress, clock.instant()));
-        } else {
-            currentViewers.get(ipAddress).setLastRecorded(clock.instant());
+    /*
+    Called after the playback state has been updated for the stop. A failed stop is only retried while that state
+    still holds: once anything else has been sent to an agent, a late stop could kill it, so the retries are dropped
+    and a stream left running is caught by the stall timer
+     */
+    private void stopAgent(String agentId, Object playing) {
+        TSDTVStopJob stopJob = new TSDTVStopJob();
+        stopJob.setAgentId(agentId);
+        stopJob.setTimeoutMillis(STOP_NOW_PLAYING_WAIT_PERIOD_MILLIS);
+        submitStopJob(stopJob, playing, getPlayingOrPending(), 1);
+    }
+
+    private void submitStopJob(TSDTVStopJob stopJob, Object playing, QueuedItem playingAfterStop, int attempt) {
+        jobQueue.submitTsdtvStopJob(stopJob).whenComplete((result, e) -> {
+            if (e == null) {
+                log.info("Agent stopped media: {}", playing);
+            } else if (attempt < STOP_ATTEMPTS) {
+                post(() -> {
+                    if (getPlayingOrPending() != playingAfterStop) {
+                        log.warn("Failed to stop media {}, not retrying since playback has moved on: {}",
+                                playing, e.getMessage());
+                        return;
+                    }
+                    log.warn("Failed to stop media {} (attempt {} of {}), retrying: {}",
+                            playing, attempt, STOP_ATTEMPTS, e.getMessage());
+                    submitStopJob(stopJob, playing, playingAfterStop, attempt + 1);
+                });
+            } else {
+                log.error("Failed to stop media " + playing, e);
+            }
+        });
+    }
+
+    private void handleStopped(int mediaId, Integer nextMediaId, Long nextTimeStarted) {
+        log.info("Handling stopped notification, mediaId={}, nextMediaId={}, nowPlaying={}",
+                mediaId, nextMediaId, nowPlaying);
+        if (nowPlaying == null
+                || nowPlaying.getType() == QueuedItemType.commercial
+                || nowPlaying.getMedia().getId() != mediaId) {
+            return;
         }
+        String agentId = nowPlaying.getMedia().getAgentId();
+        this.nowPlaying = null;
+        this.cued = null;
+
+        if (nextMediaId != null) {
+            // the cue may have timed out here and still reached the agent, so go by the queue rather than cued
+            QueuedItem next = queue.peek();
+            if (next != null
+                    && next.getType() != QueuedItemType.commercial
+                    && StringUtils.equals(next.getMedia().getAgentId(), agentId)
+                    && next.getMedia().getId() == nextMediaId) {
+                queue.remove();
+                log.info("Agent started cued media: {}", next.getMedia());
+                startedPlaying(next, nextTimeStarted != null ? nextTimeStarted : clock.millis());
+            } else {
+                log.warn("Agent {} started media {} that is no longer next, stopping it", agentId, nextMediaId);
+                stopAgent(agentId, "mediaId=" + nextMediaId);
+            }
+        }
+
+        playNextIfIdle();
     }
 
-    public synchronized int getViewerCount() {
-        return currentViewers.size();
+    private void playNextIfIdle() {
+        if (getPlayingOrPending() == null && CollectionUtils.isNotEmpty(queue)) {
+            QueuedItem queuedItem = queue.remove();
+            log.info("Moving queued item to nowPlaying: {}", queuedItem.getMedia());
+            try {
+                nowPlaying(queuedItem);
+            } catch (Exception e) {
+                log.error("Error playing media: " + queuedItem.getMedia(), e);
+            }
+        }
     }
 
-    private void nowPlaying(QueuedItem queuedItem) throws TSDTVException {
+    private void nowPlaying(QueuedItem queuedItem) {
         log.info("Setting nowPlaying: {}", queuedItem);
+        this.pendingPlay = queuedItem;
 
         switch (queuedItem.getType()) {
             case commercial: {
-                Commercial commercial = (Commercial) queuedItem.getMedia();
-                try {
-                    log.info("Playing commercial: {}", commercial);
-                    player.play(queuedItem.getMedia(), tsdtvStreamUrl, null, (state) -> {
-                        if (state.equals(FFmpegJob.State.FINISHED)) {
-                            log.info("Commercial stream ended normally");
-                        } else {
-                            log.error("Commercial stream ended in error: {}", state);
-                        }
-                    });
-                } catch (Exception e) {
-                    log.error("Error playing commercial: " + queuedItem.getMedia(), e);
-                } finally {
-                    commercial.getFile().delete();
-                    log.info("Deleted commercial file: {}", commercial.getFile());
-                }
+                // the server plays commercials itself, off the loop since starting ffmpeg waits on the process
+                commercialStopped.thenRunAsync(() -> playCommercial(queuedItem), executorService);
                 break;
             }
 
@@ -294,57 +400,177 @@ public class TSDTV {
                 playJob.setTimeoutMillis(PLAY_MEDIA_WAIT_PERIOD_MILLIS);
                 playJob.setMediaId(media.getId());
                 playJob.setTargetUrl(tsdtvStreamUrl);
-                try {
-                    log.info("Sending play request to agent: {}", media.getAgentId());
-                    TSDTVPlayJobResult result = jobQueue.submitTsdtvPlayJob(playJob);
+                log.info("Sending play request to agent: {}", media.getAgentId());
+                jobQueue.submitTsdtvPlayJob(playJob)
+                        .whenComplete((result, e) -> post(() -> handlePlayResult(queuedItem, playJob, result, e)));
+                break;
+            }
+        }
+    }
 
-                    if (!result.isSuccess()) {
-                        throw new TSDTVException("Error playing media: "+playJob);
-                    }
+    // not an event, runs on the executor
+    private void playCommercial(QueuedItem queuedItem) {
+        Commercial commercial = (Commercial) queuedItem.getMedia();
+        try {
+            log.info("Playing commercial: {}", commercial);
+            // ffmpeg may not have opened the file yet when play returns, so it's deleted once the stream is over
+            player.play(commercial, tsdtvStreamUrl, null, (state) -> {
+                if (state.equals(FFmpegJob.State.FINISHED)) {
+                    log.info("Commercial stream ended normally");
+                } else {
+                    log.error("Commercial stream ended in error: {}", state);
+                }
+                deleteCommercialFile(commercial);
+                post(() -> handleCommercialStopped(queuedItem));
+            });
+            long startedTimeUTC = clock.millis();
+            post(() -> {
+                if (pendingPlay == queuedItem) {
+                    this.pendingPlay = null;
+                    startedPlaying(queuedItem, startedTimeUTC);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Error playing commercial: " + queuedItem.getMedia(), e);
+            deleteCommercialFile(commercial);
+            post(() -> {
+                if (pendingPlay == queuedItem) {
+                    this.pendingPlay = null;
+                    playNextIfIdle();
+                }
+            });
+        }
+    }
 
-                    long startedTimeUTC = result.getTimeStarted();
-                    queuedItem.setStartTime(startedTimeUTC);
-                    queuedItem.updateEndTime();
-                    log.info("Set nowPlaying start/end times, {} -> {}", queuedItem.getStartTime(), queuedItem.getEndTime());
-                    this.nowPlaying = queuedItem;
-
-                    String nowPlayingMessage = "[TSDTV] NOW PLAYING: " +
-                            getMediaString(this.nowPlaying.getMedia()) +
-                            " -- " + getBrowserLink();
-
-                    channel.sendMessage(nowPlayingMessage);
-
-                    long lastItemEndTime = queuedItem.getEndTime();
-                    for (QueuedItem inQueue : queue) {
-                        inQueue.setStartTime(lastItemEndTime + Constants.TSDTV.SCHEDULING_FUDGE_FACTOR_MILLIS);
-                        inQueue.updateEndTime();
-                        log.info("Set queued media start/end times, mediaId={}, {} -> {}",
-                                inQueue.getMedia().getId(), queuedItem.getStartTime(), queuedItem.getEndTime());
-                        lastItemEndTime = inQueue.getEndTime();
-                    }
+    private static void deleteCommercialFile(Commercial commercial) {
+        commercial.getFile().delete();
+        log.info("Deleted commercial file: {}", commercial.getFile());
+    }
 
-                    // update episode info if available
-                    if (queuedItem.getEpisodicInfo() != null) {
-                        EpisodicInfo episodicInfo = queuedItem.getEpisodicInfo();
-                        log.info("Detected scheduled episode with episodic info: {}", episodicInfo);
-                        episodicItemDao.setCurrentEpisode(
-                                episodicInfo.getEpisodicSeriesName(),
-                                episodicInfo.getEpisodicSeasonName(),
-                                episodicInfo.getEffectiveEpisodeNumber()+1);
-                    }
+    private void handleCommercialStopped(QueuedItem queuedItem) {
+        if (nowPlaying == queuedItem) {
+            this.nowPlaying = null;
+            playNextIfIdle();
+        }
+    }
 
-                } catch (JobTimeoutException e) {
-                    log.error("Timed out waiting for response to play job");
-                }
-                break;
-            }
+    private void handlePlayResult(QueuedItem queuedItem,
+                                  TSDTVPlayJob playJob,
+                                  TSDTVPlayJobResult result,
+                                  Throwable error) {
+        if (pendingPlay != queuedItem) {
+            log.info("Ignoring result for play job that was stopped or replaced: {}", playJob);
+            return;
+        }
+        this.pendingPlay = null;
+
+        if (error instanceof JobTimeoutException) {
+            log.error("Timed out waiting for response to play job");
+        } else if (error != null) {
+            log.error("Error sending play job: " + playJob, error);
+        } else if (!result.isSuccess()) {
+            log.error("Error playing media: {}", playJob);
+        } else {
+            startedPlaying(queuedItem, result.getTimeStarted());
+            return;
         }
+        playNextIfIdle();
+    }
+
+    private void startedPlaying(QueuedItem queuedItem, long startedTimeUTC) {
+        // everything behind it moves by however far off its prediction was
+        this.offsetMillis = startedTimeUTC - queuedItem.getStartTime();
+        log.info("Set nowPlaying start/end times, {} -> {}, queue offset {} ms",
+                startedTimeUTC, queuedItem.getEndTime() + offsetMillis, offsetMillis);
+        this.nowPlaying = queuedItem;
+
+        long durationMillis = queuedItem.getEndTime() - queuedItem.getStartTime();
+        schedule(() -> handleStalled(queuedItem), durationMillis + STALLED_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+
+        if (queuedItem.getType() != QueuedItemType.commercial) {
+            String nowPlayingMessage = "[TSDTV] NOW PLAYING: " +
+                    getMediaString(queuedItem.getMedia()) +
+                    " -- " + getBrowserLink();
+            executorService.submit(() -> channel.sendMessage(nowPlayingMessage));
+        }
+
+        // update episode info if available
+        if (queuedItem.getEpisodicInfo() != null) {
+            EpisodicInfo episodicInfo = queuedItem.getEpisodicInfo();
+            log.info("Detected scheduled episode with episodic info: {}", episodicInfo);
+            executorService.submit(() -> episodicItemDao.setCurrentEpisode(
+                    episodicInfo.getEpisodicSeriesName(),
+                    episodicInfo.getEpisodicSeasonName(),
+                    episodicInfo.getEffectiveEpisodeNumber()+1));
+        }
+
+        cueNext();
+    }
+
+    /*
+    Nothing has been heard about nowPlaying since it should have ended, e.g. the agent's stopped notification was
+    lost. Stop it and move on rather than holding up the queue forever.
+     */
+    private void handleStalled(QueuedItem queuedItem) {
+        if (nowPlaying == queuedItem) {
+            log.warn("nowPlaying was never reported stopped, moving on: {}", queuedItem);
+            stopNowPlayingEvent();
+            playNextIfIdle();
+        }
+    }
+
+    /*
+    Send the head of the queue to nowPlaying's agent, which starts it the moment nowPlaying ends. Only an item on the
+    same agent can follow without a gap; anything else waits for nowPlaying to stop.
+     */
+    private void cueNext() {
+        if (cued != null || nowPlaying == null || queue.isEmpty()
+                || nowPlaying.getType() == QueuedItemType.commercial) {
+            return;
+        }
+        QueuedItem next = queue.getFirst();
+        if (next.getType() == QueuedItemType.commercial
+                || !StringUtils.equals(next.getMedia().getAgentId(), nowPlaying.getMedia().getAgentId())) {
+            return;
+        }
+
+        TSDTVPlayJob cueJob = new TSDTVPlayJob();
+        cueJob.setAgentId(next.getMedia().getAgentId());
+        cueJob.setTimeoutMillis(PLAY_MEDIA_WAIT_PERIOD_MILLIS);
+        cueJob.setMediaId(next.getMedia().getId());
+        cueJob.setTargetUrl(tsdtvStreamUrl);
+        cueJob.setCue(true);
+        log.info("Cueing next media on agent: {}", next.getMedia());
+        this.cued = next;
+        jobQueue.submitTsdtvPlayJob(cueJob)
+                .whenComplete((result, e) -> post(() -> handleCueResult(next, cueJob, result, e)));
+    }
+
+    private void handleCueResult(QueuedItem queuedItem,
+                                 TSDTVPlayJob cueJob,
+                                 TSDTVPlayJobResult result,
+                                 Throwable error) {
+        if (cued != queuedItem) {
+            return;
+        }
+        if (error != null || !result.isSuccess()) {
+            // it's played the usual way once nowPlaying stops
+            log.warn("Agent failed to cue media: {}", cueJob, error);
+            this.cued = null;
+        } else {
+            log.info("Agent cued media: {}", cueJob);
+        }
+    }
+
+    private void reapViewers() {
+        Instant cutoff = clock.instant().minusSeconds(VIEWER_TIMEOUT_SECONDS);
+        currentViewers.entrySet()
+                .removeIf(entry -> entry.getValue().getLastRecorded().isBefore(cutoff));
+        schedule(this::reapViewers, VIEWER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     }
 
     public void startScheduledBlock(ScheduledBlock block) {
         log.warn("Starting scheduled block: {}", block);
-        this.queue.clear();
-        stopNowPlaying();
 
         TSDTVListing listing = library.getListings();
         List<QueuedItem> toPlay = new LinkedList<>();
@@ -439,7 +665,13 @@ public class TSDTV {
                     "Lined up: " + buildShowsPlayingInBlock(toPlay) +
                     " -- " + getBrowserLink();
             channel.sendMessage(notification);
+        } else {
+            log.error("Could not play any shows for block: {}", block);
+        }
 
+        post(() -> {
+            queue.clear();
+            stopNowPlayingEvent();
             for (QueuedItem queuedItem : toPlay) {
                 try {
                     log.info("Adding scheduled item to queue: {}", queuedItem);
@@ -448,11 +680,9 @@ public class TSDTV {
                     log.error("Error adding scheduled item to queue: " + queuedItem, e);
                 }
             }
-        } else {
-            log.error("Could not play any shows for block: {}", block);
-        }
+        });
     }
-    
+
     private static String buildShowsPlayingInBlock(List<QueuedItem> blockItems) {
         return blockItems
                 .stream()
@@ -552,53 +782,80 @@ public class TSDTV {
         }
     }
 
-    class QueueManagerThread implements Runnable {
-        private boolean shutdown = false;
-
-        @Override
-        public void run() {
-            while (!shutdown) {
-                if (nowPlaying == null && CollectionUtils.isNotEmpty(queue)) {
-                    synchronized (queue) {
-                        QueuedItem queuedItem = queue.remove(0);
-                        log.info("Moving queued item to nowPlaying: {}", queuedItem.getMedia());
-                        try {
-                            nowPlaying(queuedItem);
-                        } catch (Exception e) {
-                            log.error("Error playing media: " + queuedItem.getMedia(), e);
-                        }
-                    }
-                }
-                try {
-                    Thread.sleep(TimeUnit.SECONDS.toMillis(2));
-                } catch (Exception e) {
-                    log.error("Interrupted");
-                    shutdown = true;
-                }
+    private void post(Runnable event) {
+        eventLoop.post(published(event));
+    }
+
+    private void schedule(Runnable event, long delay, TimeUnit unit) {
+        // the loop posts the event itself once it's due
+        eventLoop.schedule(published(event), delay, unit);
+    }
+
+    private Runnable published(Runnable event) {
+        return () -> {
+            try {
+                event.run();
+            } finally {
+                publish();
+            }
+        };
+    }
+
+    /*
+    Run an event and wait for its result, for callers that need one
+     */
+    private <T> T call(Callable<T> event) throws TSDTVException {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        post(() -> {
+            try {
+                result.complete(event.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TSDTVException) {
+                throw (TSDTVException) e.getCause();
             }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
         }
     }
 
-    class ViewerReaperThread implements Runnable {
-        private boolean shutdown = false;
+    private void publish() {
+        List<QueuedItem> publishedQueue = queue.stream()
+                .filter(queuedItem -> queuedItem.getType() != QueuedItemType.commercial)
+                .map(this::withOffset)
+                .collect(Collectors.toList());
+        this.snapshot = new Snapshot(
+                nowPlaying != null ? withOffset(nowPlaying) : null,
+                Collections.unmodifiableList(publishedQueue),
+                currentViewers.size());
+    }
+
+    private QueuedItem withOffset(QueuedItem queuedItem) {
+        QueuedItem copy = new QueuedItem(queuedItem.getMedia(), queuedItem.getEpisodicInfo());
+        copy.setStartTime(queuedItem.getStartTime() + offsetMillis);
+        copy.setEndTime(queuedItem.getEndTime() + offsetMillis);
+        return copy;
+    }
 
-        @Override
-        public void run() {
-            while (!shutdown) {
-                synchronized (currentViewers) {
-                    Instant cutoff = clock.instant().minus(30, ChronoUnit.SECONDS);
-                    currentViewers.entrySet()
-                            .removeIf(entry -> {
-                                return entry.getValue().getLastRecorded().isBefore(cutoff);
-                            });
-                }
-                try {
-                    Thread.sleep(TimeUnit.SECONDS.toMillis(30));
-                } catch (Exception e) {
-                    log.error("Interrupted");
-                    shutdown = true;
-                }
-            }
+    /*
+    What readers see of the playback state, as of the last event
+     */
+    private static class Snapshot {
+        final QueuedItem nowPlaying;
+        final List<QueuedItem> queue;
+        final int viewers;
+
+        Snapshot(QueuedItem nowPlaying, List<QueuedItem> queue, int viewers) {
+            this.nowPlaying = nowPlaying;
+            this.queue = queue;
+            this.viewers = viewers;
         }
     }
 }
@@ -1,20 +1,27 @@
 package org.tsd.tsdbot.tsdtv.job;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.rest.v1.tsdtv.job.*;
 
-import java.time.ZoneOffset;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
+/**
+ * Jobs waiting to be picked up are kept in a queue per agent, oldest first, alongside any long-polls that agent has
+ * waiting. Submitting a job hands it straight to a waiting poll if there is one, so it reaches the agent without
+ * waiting for the next poll, and an idle agent is just a parked future rather than a stream of requests.
+ *
+ * Results are delivered through the job's future. A single scheduler expires jobs that aren't answered in time, so
+ * nothing blocks while a job is outstanding.
+ */
 @Singleton
 public class JobQueue {
 
@@ -22,28 +29,49 @@ public class JobQueue {
 
     private final JobFactory jobFactory;
     private final Map<String, SubmittedJob> submittedJobs = new ConcurrentHashMap<>();
+    private final Map<String, AgentJobs> agentJobs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("job-timeout").setDaemon(true).build());
+
+    // from submission until an agent receives the job
+    private final Timer dispatchLatency;
+    // from submission until the agent reports the result
+    private final Timer resultLatency;
 
     @Inject
-    public JobQueue(JobFactory jobFactory) {
+    public JobQueue(JobFactory jobFactory, MetricRegistry metricRegistry) {
         this.jobFactory = jobFactory;
+        this.dispatchLatency = metricRegistry.timer(MetricRegistry.name(JobQueue.class, "dispatchLatency"));
+        this.resultLatency = metricRegistry.timer(MetricRegistry.name(JobQueue.class, "resultLatency"));
     }
 
-    public TSDTVPlayJobResult submitTsdtvPlayJob(TSDTVPlayJob job)
-            throws JobTimeoutException {
+    public CompletableFuture<TSDTVPlayJobResult> submitTsdtvPlayJob(TSDTVPlayJob job) {
         SubmittedJob<TSDTVPlayJob, TSDTVPlayJobResult> submittedJob = jobFactory.createSubmittedTsdtvPlayJob(job);
-        return submitAndWait(submittedJob);
+        return submit(submittedJob);
     }
 
-    public TSDTVStopJobResult submitTsdtvStopJob(TSDTVStopJob job)
-            throws JobTimeoutException {
+    public CompletableFuture<TSDTVStopJobResult> submitTsdtvStopJob(TSDTVStopJob job) {
         SubmittedJob<TSDTVStopJob, TSDTVStopJobResult> submittedJob = jobFactory.createSubmittedTsdtvStopJob(job);
-        return submitAndWait(submittedJob);
+        return submit(submittedJob);
     }
 
-    private <JOB extends Job, RESULT extends JobResult> RESULT submitAndWait(SubmittedJob<JOB, RESULT> submittedJob)
-            throws JobTimeoutException {
-        submittedJobs.put(submittedJob.getJob().getId(), submittedJob);
-        return submittedJob.waitForResult();
+    private <JOB extends Job, RESULT extends JobResult> CompletableFuture<RESULT> submit(
+            SubmittedJob<JOB, RESULT> submittedJob) {
+        String jobId = submittedJob.getJob().getId();
+        submittedJobs.put(jobId, submittedJob);
+
+        ScheduledFuture<?> timeout = timeoutScheduler.schedule(submittedJob::expire,
+                submittedJob.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+
+        CompletableFuture<RESULT> result = submittedJob.getResult();
+        result.whenComplete((r, e) -> {
+            timeout.cancel(false);
+            submittedJobs.remove(jobId, submittedJob);
+            withdraw(submittedJob);
+        });
+
+        dispatch(submittedJob);
+        return result;
     }
 
     @SuppressWarnings("unchecked")
@@ -51,36 +79,132 @@ public class JobQueue {
         log.info("Updating job result: {}", result);
         SubmittedJob submittedJob = submittedJobs.remove(result.getJobId());
         if (submittedJob == null) {
-            log.error("Job ID {} does not exist in submitted jobs map", result.getJobId());
+            log.error("Job ID {} does not exist in submitted jobs map, it may have timed out", result.getJobId());
         } else {
+            resultLatency.update(System.nanoTime() - submittedJob.getCreatedNanos(), TimeUnit.NANOSECONDS);
             submittedJob.updateResult(result);
         }
     }
 
+    /**
+     * @return the agent's oldest waiting job, or null if there is none
+     */
     public Job pollForJob(String agentId) {
-        synchronized (submittedJobs) {
-            log.debug("Polling jobs for agent: {}", agentId);
-            List<Map.Entry<String, SubmittedJob>> jobsForAgent = submittedJobs.entrySet()
-                    .stream()
-                    .filter(entry -> StringUtils.equals(entry.getValue().getAgentId(), agentId))
-                    .filter(entry -> entry.getValue().getTaken() == null)
-                    .sorted(Comparator.comparing(entry -> entry.getValue().getCreated().toEpochSecond(ZoneOffset.UTC)))
-                    .collect(Collectors.toList());
-            log.debug("Found jobs for agent {}: {}", agentId, jobsForAgent);
-            if (CollectionUtils.isNotEmpty(jobsForAgent)) {
-                SubmittedJob submittedJob = submittedJobs.get(jobsForAgent.get(0).getKey());
-                submittedJob.take();
-                return submittedJob.getJob();
-            }
+        log.debug("Polling jobs for agent: {}", agentId);
+        AgentJobs jobs = agentJobs(agentId);
+        SubmittedJob next;
+        synchronized (jobs) {
+            next = jobs.pending.poll();
+        }
+        if (next == null) {
             return null;
         }
+        markTaken(next);
+        return next.getJob();
     }
 
+    /**
+     * Long-poll for the agent's next job. The future completes as soon as a job is available; cancel it to give up
+     * waiting. A job is only handed to a future that is still waiting, so a cancelled poll can't lose one.
+     */
+    public CompletableFuture<Job> awaitJob(String agentId) {
+        AgentJobs jobs = agentJobs(agentId);
+        CompletableFuture<Job> waiter = new CompletableFuture<>();
+        SubmittedJob next;
+        synchronized (jobs) {
+            next = jobs.pending.poll();
+            if (next == null) {
+                log.debug("Agent {} waiting for a job", agentId);
+                jobs.waiters.add(waiter);
+                waiter.whenComplete((job, e) -> {
+                    if (waiter.isCancelled()) {
+                        synchronized (jobs) {
+                            jobs.waiters.remove(waiter);
+                        }
+                    }
+                });
+                return waiter;
+            }
+        }
+        deliver(next, waiter);
+        return waiter;
+    }
+
+    /*
+    Fail the agent's outstanding jobs now rather than letting each one run out its timeout, and answer its parked
+    polls with no job rather than leaving them to hold a thread each until they time out
+     */
     public void handleOfflineAgent(String agentId) {
-        synchronized (submittedJobs) {
-            log.warn("Removing jobs for offline agent: {}", agentId);
-            submittedJobs.entrySet()
-                    .removeIf(entry -> StringUtils.equals(entry.getValue().getAgentId(), agentId));
+        log.warn("Removing jobs for offline agent: {}", agentId);
+        AgentJobs jobs = agentJobs.remove(agentId);
+        if (jobs != null) {
+            List<CompletableFuture<Job>> waiters;
+            synchronized (jobs) {
+                waiters = new ArrayList<>(jobs.waiters);
+                jobs.waiters.clear();
+            }
+            waiters.forEach(waiter -> waiter.complete(null));
         }
+        submittedJobs.values()
+                .stream()
+                .filter(submittedJob -> StringUtils.equals(submittedJob.getAgentId(), agentId))
+                .collect(Collectors.toList())
+                .forEach(SubmittedJob::expire);
+    }
+
+    private void dispatch(SubmittedJob submittedJob) {
+        AgentJobs jobs = agentJobs(submittedJob.getAgentId());
+        while (true) {
+            CompletableFuture<Job> waiter;
+            synchronized (jobs) {
+                if (submittedJob.getResult().isDone()) {
+                    // expired before it could be queued
+                    return;
+                }
+                waiter = jobs.waiters.poll();
+                if (waiter == null) {
+                    log.debug("No agent waiting, queueing job: {}", submittedJob);
+                    jobs.pending.add(submittedJob);
+                    return;
+                }
+            }
+            // completed outside the lock, since completing the poll writes the response
+            if (deliver(submittedJob, waiter)) {
+                return;
+            }
+        }
+    }
+
+    private boolean deliver(SubmittedJob submittedJob, CompletableFuture<Job> waiter) {
+        if (!waiter.complete(submittedJob.getJob())) {
+            return false;
+        }
+        markTaken(submittedJob);
+        return true;
+    }
+
+    private void markTaken(SubmittedJob submittedJob) {
+        submittedJob.take();
+        dispatchLatency.update(System.nanoTime() - submittedJob.getCreatedNanos(), TimeUnit.NANOSECONDS);
+        log.debug("Dispatched job to agent {}: {}", submittedJob.getAgentId(), submittedJob);
+    }
+
+    private void withdraw(SubmittedJob submittedJob) {
+        AgentJobs jobs = agentJobs.get(submittedJob.getAgentId());
+        if (jobs != null) {
+            synchronized (jobs) {
+                jobs.pending.remove(submittedJob);
+            }
+        }
+    }
+
+    private AgentJobs agentJobs(String agentId) {
+        return agentJobs.computeIfAbsent(agentId, id -> new AgentJobs());
+    }
+
+    private static class AgentJobs {
+        private final Queue<SubmittedJob> pending
+                = new PriorityQueue<>(Comparator.comparingLong(SubmittedJob::getCreatedNanos));
+        private final Deque<CompletableFuture<Job>> waiters = new ArrayDeque<>();
     }
 }
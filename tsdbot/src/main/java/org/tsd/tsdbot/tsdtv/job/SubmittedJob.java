@@ -10,10 +10,7 @@ import org.tsd.rest.v1.tsdtv.job.JobResult;
 
 import java.time.Clock;
 import java.time.LocalDateTime;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
 
 public class SubmittedJob<JOB extends Job, RESULT extends JobResult> {
 
@@ -21,14 +18,13 @@ public class SubmittedJob<JOB extends Job, RESULT extends JobResult> {
 
     private final String agentId;
     private final LocalDateTime created;
+    private final long createdNanos = System.nanoTime();
     private final JOB job;
     private final long timeoutMillis;
 
-    private final Lock lock = new ReentrantLock();
-    private final Condition pendingResult = lock.newCondition();
+    private final CompletableFuture<RESULT> result = new CompletableFuture<>();
 
-    private LocalDateTime taken = null;
-    private RESULT result = null;
+    private volatile LocalDateTime taken = null;
 
     @Inject
     public SubmittedJob(Clock clock,
@@ -39,38 +35,27 @@ public class SubmittedJob<JOB extends Job, RESULT extends JobResult> {
         this.created = LocalDateTime.now(clock);
     }
 
-    public RESULT waitForResult() throws JobTimeoutException {
-        lock.lock();
-        try {
-            long expirationTime = System.currentTimeMillis() + timeoutMillis;
-            while (result == null && System.currentTimeMillis() < expirationTime) {
-                try {
-                    pendingResult.await(timeoutMillis, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e) {
-                    log.info("Interrupted, jobId={}", job.getId());
-                }
-            }
-
-            if (result == null) {
-                throw new JobTimeoutException();
-            }
-
-            return result;
-        } finally {
-            lock.unlock();
-        }
+    /**
+     * Completes with the agent's result, or exceptionally with a {@link JobTimeoutException}
+     */
+    public CompletableFuture<RESULT> getResult() {
+        return result;
     }
 
     public void updateResult(RESULT result) {
-        lock.lock();
-        try {
-            this.result = result;
-            pendingResult.signal();
-        } finally {
-            lock.unlock();
+        this.result.complete(result);
+    }
+
+    public void expire() {
+        if (result.completeExceptionally(new JobTimeoutException())) {
+            log.warn("Job timed out: {}", this);
         }
     }
 
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
     public JOB getJob() {
         return job;
     }
@@ -91,6 +76,10 @@ public class SubmittedJob<JOB extends Job, RESULT extends JobResult> {
         return created;
     }
 
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
@@ -99,7 +88,7 @@ public class SubmittedJob<JOB extends Job, RESULT extends JobResult> {
                 .append("job", job.getClass())
                 .append("timeoutMillis", timeoutMillis)
                 .append("taken", taken)
-                .append("result", result)
+                .append("result", result.isCompletedExceptionally() ? "failed" : result.getNow(null))
                 .toString();
     }
 }
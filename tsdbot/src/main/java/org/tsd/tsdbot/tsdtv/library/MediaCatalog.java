@@ -0,0 +1,111 @@
+package org.tsd.tsdbot.tsdtv.library;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tsd.rest.v1.tsdtv.*;
+import org.tsd.tsdbot.tsdtv.OnlineAgent;
+
+import java.util.*;
+
+/**
+ * Immutable index of the media offered by the online agents. A new catalog is built whenever an agent's inventory
+ * changes or an agent comes or goes, and replaces the previous one wholesale, so readers never need a lock.
+ */
+public final class MediaCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaCatalog.class);
+
+    public static final MediaCatalog EMPTY = build(0, Collections.emptyList());
+
+    private final long version;
+    private final TSDTVListing listing;
+
+    // agentId -> mediaId -> media
+    private final Map<String, Map<Integer, Media>> mediaByAgent;
+    // mediaId -> media, for lookups that don't name an agent
+    private final Map<Integer, Media> mediaById;
+
+    private MediaCatalog(long version,
+                         TSDTVListing listing,
+                         Map<String, Map<Integer, Media>> mediaByAgent,
+                         Map<Integer, Media> mediaById) {
+        this.version = version;
+        this.listing = listing;
+        this.mediaByAgent = mediaByAgent;
+        this.mediaById = mediaById;
+    }
+
+    public static MediaCatalog build(long version, Collection<OnlineAgent> onlineAgents) {
+        List<AgentMedia<Movie>> allMovies = new ArrayList<>();
+        List<AgentMedia<Series>> allSeries = new ArrayList<>();
+        Map<String, Map<Integer, Media>> mediaByAgent = new HashMap<>();
+        Map<Integer, Media> mediaById = new HashMap<>();
+
+        for (OnlineAgent onlineAgent : onlineAgents) {
+            Inventory inventory = onlineAgent.getInventory();
+            if (inventory == null) {
+                continue;
+            }
+
+            Map<Integer, Media> agentMedia = new HashMap<>();
+            for (Movie movie : inventory.getMovies()) {
+                allMovies.add(new AgentMedia<>(movie, onlineAgent));
+                agentMedia.put(movie.getId(), movie);
+            }
+            for (Series series : inventory.getSeries()) {
+                allSeries.add(new AgentMedia<>(series, onlineAgent));
+                for (Episode episode : series.getEpisodes()) {
+                    agentMedia.put(episode.getId(), episode);
+                }
+                for (Season season : series.getSeasons()) {
+                    for (Episode episode : season.getEpisodes()) {
+                        agentMedia.put(episode.getId(), episode);
+                    }
+                }
+            }
+
+            agentMedia.forEach(mediaById::putIfAbsent);
+            mediaByAgent.put(onlineAgent.getAgent().getAgentId(), Collections.unmodifiableMap(agentMedia));
+        }
+
+        allMovies.sort(Comparator.comparing(movie -> movie.getMedia().getName()));
+        allSeries.sort(Comparator.comparing(series -> series.getMedia().getName()));
+
+        TSDTVListing listing = new TSDTVListing();
+        listing.setAllMovies(Collections.unmodifiableList(allMovies));
+        listing.setAllSeries(Collections.unmodifiableList(allSeries));
+
+        log.debug("Built media catalog: version={}, agents={}, media={}", version, mediaByAgent.size(), mediaById.size());
+        return new MediaCatalog(version,
+                listing,
+                Collections.unmodifiableMap(mediaByAgent),
+                Collections.unmodifiableMap(mediaById));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return movies and series sorted by name. The lists can't be modified.
+     */
+    public TSDTVListing getListing() {
+        return listing;
+    }
+
+    /**
+     * @param agentId the agent to look in, or null for any agent
+     * @return the media, or null if no online agent has it
+     */
+    public Media find(String agentId, int mediaId) {
+        if (agentId == null) {
+            return mediaById.get(mediaId);
+        }
+        Map<Integer, Media> agentMedia = mediaByAgent.get(agentId);
+        return agentMedia == null ? null : agentMedia.get(mediaId);
+    }
+
+    public int size() {
+        return mediaById.size();
+    }
+}
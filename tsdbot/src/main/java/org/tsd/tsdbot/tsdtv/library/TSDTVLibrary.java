@@ -22,7 +22,6 @@ import org.tsd.Constants;
 import org.tsd.rest.v1.tsdtv.*;
 import org.tsd.tsdbot.tsdtv.AgentRegistry;
 import org.tsd.tsdbot.tsdtv.MediaNotFoundException;
-import org.tsd.tsdbot.tsdtv.OnlineAgent;
 import org.tsd.util.FfmpegUtil;
 
 import java.io.File;
@@ -31,7 +30,6 @@ import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Singleton
 public class TSDTVLibrary {
@@ -50,16 +48,17 @@ public class TSDTVLibrary {
     private final List<String> allCommercials;
     private final Map<String, Commercial> loadedCommercials = new ConcurrentHashMap<>();
 
-    private final ExecutorService executorService
-            = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final ExecutorService executorService;
 
     @Inject
-    public TSDTVLibrary(AgentRegistry agentRegistry,
+    public TSDTVLibrary(ExecutorService executorService,
+                        AgentRegistry agentRegistry,
                         AmazonS3 s3Client,
                         FFprobe fFprobe,
                         @Named(Constants.Annotations.S3_TSDTV_IMAGES_BUCKET) String tsdtvImagesBucket,
                         @Named(Constants.Annotations.S3_TSDTV_COMMERCIALS_BUCKET) String tsdtvCommercialsBucket,
                         @Named(Constants.Annotations.TSDTV_STREAM_URL) String streamUrl) {
+        this.executorService = executorService;
         this.agentRegistry = agentRegistry;
         this.streamUrl = streamUrl;
         this.s3Client = s3Client;
@@ -133,27 +132,7 @@ public class TSDTVLibrary {
     }
 
     public TSDTVListing getListings() {
-        TSDTVListing listing = new TSDTVListing();
-
-        for (OnlineAgent onlineAgent : agentRegistry.getOnlineAgents()) {
-            log.debug("Retrieving listings for agent: {}", onlineAgent);
-            List<AgentMedia<Movie>> moviesForAgent = onlineAgent.getInventory().getMovies()
-                    .stream()
-                    .map(movie -> new AgentMedia<>(movie, onlineAgent))
-                    .collect(Collectors.toList());
-            listing.getAllMovies().addAll(moviesForAgent);
-            listing.getAllMovies().sort(Comparator.comparing(movie -> movie.getMedia().getName()));
-
-            List<AgentMedia<Series>> seriesForAgent = onlineAgent.getInventory().getSeries()
-                    .stream()
-                    .map(series -> new AgentMedia<>(series, onlineAgent))
-                    .collect(Collectors.toList());
-            listing.getAllSeries().addAll(seriesForAgent);
-            listing.getAllSeries().sort(Comparator.comparing(series -> series.getMedia().getName()));
-        }
-
-        log.debug("Retrieved all listings: {}", listing);
-        return listing;
+        return agentRegistry.getCatalog().getListing();
     }
 
     public byte[] getQueueImage(int mediaId) throws IOException {
@@ -171,30 +150,14 @@ public class TSDTVLibrary {
 
     public Media findMediaById(String agentId, int mediaId) throws MediaNotFoundException {
         log.info("Seaching for media, agentId={}, mediaId={}", agentId, mediaId);
-        List<Media> allMedia = new LinkedList<>();
-        TSDTVListing listing = getListings();
-        allMedia.addAll(listing.getAllMovies().stream().map(AgentMedia::getMedia)
-                .collect(Collectors.toList()));
-        allMedia.addAll(listing.getAllSeries().stream().flatMap(series -> series.getMedia().getEpisodes().stream())
-                .collect(Collectors.toList()));
-        allMedia.addAll(listing.getAllSeries().stream().flatMap(series -> series.getMedia().getSeasons().stream().flatMap(season -> season.getEpisodes().stream()))
-                .collect(Collectors.toList()));
-
-        Stream<Media> mediaSearch = allMedia.stream()
-                .filter(m -> m.getId() == mediaId);
-
-        if (StringUtils.isNotBlank(agentId)) {
-            mediaSearch = mediaSearch.filter(m -> m.getAgentId().equals(agentId));
-        }
-
-        Optional<Media> media = mediaSearch.findAny();
+        Media media = agentRegistry.getCatalog().find(StringUtils.trimToNull(agentId), mediaId);
 
-        if (!media.isPresent()) {
+        if (media == null) {
             throw new MediaNotFoundException(agentId, mediaId);
         }
 
-        log.info("Found media, agentId={}, mediaId={} -> {}", agentId, mediaId, media.get());
-        return media.get();
+        log.info("Found media, agentId={}, mediaId={} -> {}", agentId, mediaId, media);
+        return media;
     }
 
     public String getStreamUrl() {
@@ -19,6 +19,11 @@ public class MessageSanitizer {
 
     private static final Logger log = LoggerFactory.getLogger(MessageSanitizer.class);
 
+    private static final Pattern URL_PATTERN = Pattern.compile(Constants.URL_REGEX);
+    private static final Pattern USER_BEEP_PATTERN = Pattern.compile(Constants.USER_BEEP_REGEX);
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+    private static final Pattern STANDARD_EMOJI_PATTERN = Pattern.compile(Constants.Emoji.STANDARD_EMOJI_REGEX);
+
     private final Server server;
 
     @Inject
@@ -38,28 +43,27 @@ public class MessageSanitizer {
     }
 
     private static String stripUrls(String input) {
-        return StringUtils.replaceAll(input, Constants.URL_REGEX, "");
+        return replaceAll(input, URL_PATTERN, "");
     }
 
     private static String consolidateWhitespace(String input) {
-        return StringUtils.replaceAll(input, "\\s+", " ");
+        return replaceAll(input, WHITESPACE_PATTERN, " ");
     }
 
     private static String stripBackticks(String input) {
-        return StringUtils.replaceAll(input, "`", "");
+        return StringUtils.remove(input, '`');
     }
 
     @SuppressWarnings("unchecked")
     private static String stripEmojis(String input) {
         return sanitizeChain(input,
-                s -> StringUtils.replaceAll(s, Constants.Emoji.CUSTOM_EMOJI_MENTION_REGEX, ""),
-                s -> StringUtils.replaceAll(s, Constants.Emoji.STANDARD_EMOJI_REGEX, ""),
+                s -> replaceAll(s, Constants.Emoji.CUSTOM_EMOJI_MENTION_PATTERN, ""),
+                s -> replaceAll(s, STANDARD_EMOJI_PATTERN, ""),
                 EmojiParser::removeAllEmojis);
     }
 
     private String replaceUserBeepsWithUsernames(String input) {
-        Pattern pattern = Pattern.compile(Constants.USER_BEEP_REGEX);
-        Matcher matcher = pattern.matcher(input);
+        Matcher matcher = USER_BEEP_PATTERN.matcher(input);
 
         Map<String, String> userIds = new HashMap<>();
 
@@ -76,6 +80,10 @@ public class MessageSanitizer {
         return input;
     }
 
+    private static String replaceAll(String input, Pattern pattern, String replacement) {
+        return input == null ? null : pattern.matcher(input).replaceAll(replacement);
+    }
+
     private static String sanitizeChain(String input, Function<String, String>... transforms) {
         for (Function<String, String> transform : transforms) {
             input = transform.apply(input);
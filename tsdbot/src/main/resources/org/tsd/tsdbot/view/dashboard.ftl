@@ -2,7 +2,89 @@
 <#import "layout.ftl" as layout>
 <@layout.layout title="TSDHQ Dashboard">
 
+<script type="text/javascript">
+    // channel and user names come from chat, so they have to be escaped before going into the page
+    function escape_html(text) {
+        return $('<div>').text(text).html();
+    }
+
+    (function refresh_handler_status() {
+        $.get('/dashboard/handlers',{},function(responseJson) {
+
+            var htmlString = '';
+
+            htmlString +=
+                    '<thead>' +
+                    '<tr class="table-info">' +
+                        '<th>Handler</th>' +
+                        '<th>Runs</th>' +
+                        '<th>Failures</th>' +
+                        '<th>Mean (ms)</th>' +
+                        '<th>p95 (ms)</th>' +
+                        '<th>p99 (ms)</th>' +
+                    '</tr>' +
+                    '</thead>';
+
+            htmlString +=
+                    '<tbody>';
+
+            $.each(responseJson.handlers, function(i, handler) {
+                htmlString +=
+                        ('<tr class="table-dark">'
+                                + '<th scope="row">'+escape_html(handler.handler)+'</th>'
+                                + '<td>'+handler.invocations+'</td>'
+                                + '<td>'+handler.failures+'</td>'
+                                + '<td>'+handler.meanMillis.toFixed(1)+'</td>'
+                                + '<td>'+handler.p95Millis.toFixed(1)+'</td>'
+                                + '<td>'+handler.p99Millis.toFixed(1)+'</td>'
+                        +'</tr>');
+            });
+
+            htmlString +=
+                    '</tbody>';
+
+            $("#handlersTable").html(htmlString).text();
+
+            var queueString =
+                    '<thead>' +
+                    '<tr class="table-info">' +
+                        '<th>Channel / User</th>' +
+                        '<th>Queued</th>' +
+                    '</tr>' +
+                    '</thead>' +
+                    '<tbody>';
+
+            $.each(responseJson.queueDepths, function(name, depth) {
+                queueString +=
+                        ('<tr class="table-dark">'
+                                + '<th scope="row">'+escape_html(name)+'</th>'
+                                + '<td>'+depth+'</td>'
+                        +'</tr>');
+            });
+
+            queueString +=
+                    '</tbody>';
+
+            $("#queuesTable").html(queueString).text();
+            $("#handlerTotals").text('Queued: '+responseJson.queued+', dropped: '+responseJson.shed);
+
+        }).then(function() {
+            setTimeout(refresh_handler_status, 1000 * 5);
+        });
+    })();
+</script>
+
     <div class="col-md-9" style="float: none; margin: 0 auto;">
         Welcome back, Slugger
+
+        <h4>Message Handlers</h4>
+        <p id="handlerTotals"></p>
+        <table id="handlersTable" class="table table-hover">
+
+        </table>
+
+        <table id="queuesTable" class="table table-hover">
+
+        </table>
     </div>
-</@layout.layout>
\ No newline at end of file
+</@layout.layout>
@@ -0,0 +1,217 @@
+package org.tsd.tsdbot.history;
+
+import de.btobastian.javacord.entities.Channel;
+import de.btobastian.javacord.entities.Server;
+import de.btobastian.javacord.entities.User;
+import de.btobastian.javacord.entities.message.Message;
+import org.apache.commons.collections4.queue.CircularFifoQueue;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.tsd.Constants;
+import org.tsd.tsdbot.discord.DiscordChannel;
+import org.tsd.tsdbot.discord.DiscordMessage;
+import org.tsd.tsdbot.discord.DiscordUser;
+import org.tsd.tsdbot.discord.MessageType;
+import org.tsd.tsdbot.history.filter.*;
+import org.tsd.tsdbot.util.MessageSanitizer;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares the previous HistoryRequest.apply (copy the CircularFifoQueue, run every predicate, sort by timestamp)
+ * against the indexed History ring. The ignorable filter is left out of both paths because it is evaluated as a
+ * plain predicate either way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HistoryRequestBenchmark {
+
+    private static final int RECAP_LIMIT = 5_000;
+
+    @Param({"500", "5000", "50000"})
+    private int messageCount;
+
+    private CircularFifoQueue<DiscordMessage<DiscordChannel>> legacyBuffer;
+    private History<DiscordChannel> history;
+
+    private DiscordChannel channel;
+    private DiscordMessage<DiscordChannel> exclude;
+    private List<MessageHistoryFilter> standardFilters;
+    private List<Predicate<DiscordMessage>> legacyStandardFilters;
+    private LengthFilter lengthFilter;
+    private MessageSanitizer messageSanitizer;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+
+        Server server = stub(Server.class, Collections.emptyMap());
+        Channel apiChannel = stub(Channel.class, map("getId", "channel", "getName", "general", "getServer", server));
+        this.channel = new DiscordChannel(apiChannel);
+        this.messageSanitizer = new MessageSanitizer(server);
+
+        User self = user("tsdbot", true);
+        User bot = user("otherbot", true);
+        List<User> people = new ArrayList<>();
+        for (int i = 0 ; i < 20 ; i++) {
+            people.add(user("user" + i, false));
+        }
+
+        DiscordUser selfUser = new DiscordUser(self);
+
+        this.legacyBuffer = new CircularFifoQueue<>(messageCount);
+        this.history = new History<>(messageCount);
+
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        for (int i = 0 ; i < messageCount ; i++) {
+            int roll = random.nextInt(100);
+            User author = roll < 3 ? self : roll < 8 ? bot : people.get(random.nextInt(people.size()));
+            String content = roll >= 8 && roll < 18 ?
+                    "https://example.com/" + i
+                    : StringUtils.repeat("word ", 1 + random.nextInt(40)).trim();
+
+            Calendar created = Calendar.getInstance();
+            created.setTimeInMillis(start + i * 1000L);
+
+            Message message = stub(Message.class, map(
+                    "getId", Integer.toString(i),
+                    "getContent", content,
+                    "getAuthor", author,
+                    "getCreationDate", created,
+                    "getAttachments", Collections.emptyList(),
+                    "getChannelReceiver", apiChannel));
+
+            DiscordMessage<DiscordChannel> discordMessage = new DiscordMessage<>(message);
+            if (roll >= 18 && roll < 28) {
+                discordMessage.setType(MessageType.FUNCTION);
+            }
+
+            legacyBuffer.add(discordMessage);
+
+            int attributes = MessageAttributes.forType(discordMessage.getType());
+            if (MessageAttributes.isUrl(content)) {
+                attributes |= MessageAttributes.URL;
+            }
+            if (author.isBot()) {
+                attributes |= MessageAttributes.BOT;
+            }
+            if (author == self) {
+                attributes |= MessageAttributes.OWN;
+            }
+            history.addMessage(discordMessage, attributes, StringUtils.length(messageSanitizer.sanitize(content)));
+
+            exclude = discordMessage;
+        }
+
+        this.standardFilters = Arrays.asList(
+                new NoFunctionsFilter(),
+                new NoOwnMessagesFilter(selfUser),
+                new NoUrlsFilter(),
+                new NoBotsFilter());
+
+        this.legacyStandardFilters = Arrays.asList(
+                msg -> !msg.getType().equals(MessageType.FUNCTION),
+                msg -> !Objects.equals(msg.getAuthor(), selfUser),
+                msg -> !msg.getContent().matches(Constants.URL_REGEX),
+                msg -> !msg.getAuthor().getUser().isBot());
+
+        this.lengthFilter = new LengthFilter(2, 80, messageSanitizer);
+    }
+
+    @Benchmark
+    public List<DiscordMessage<DiscordChannel>> legacyStandardFilters() {
+        return legacyApply(legacyStandardFilters, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<DiscordMessage<DiscordChannel>> indexedStandardFilters() {
+        return HistoryRequest.create(channel, exclude)
+                .withFilters(standardFilters)
+                .apply(history);
+    }
+
+    @Benchmark
+    public List<DiscordMessage<DiscordChannel>> legacyRecap() {
+        List<Predicate<DiscordMessage>> filters = new ArrayList<>(legacyStandardFilters);
+        filters.add(msg -> {
+            int length = StringUtils.length(messageSanitizer.sanitize(msg.getContent()));
+            return length >= 2 && length <= 80;
+        });
+        return legacyApply(filters, RECAP_LIMIT);
+    }
+
+    @Benchmark
+    public List<DiscordMessage<DiscordChannel>> indexedRecap() {
+        return HistoryRequest.create(channel, exclude)
+                .withFilter(lengthFilter)
+                .withFilters(standardFilters)
+                .withLimit(RECAP_LIMIT)
+                .apply(history);
+    }
+
+    private List<DiscordMessage<DiscordChannel>> legacyApply(List<Predicate<DiscordMessage>> filters, int limit) {
+        Stream<DiscordMessage<DiscordChannel>> stream = new ArrayList<>(legacyBuffer)
+                .stream()
+                .filter(msg -> !Objects.equals(msg, exclude))
+                .filter(msg -> !msg.getType().equals(MessageType.BLACKLISTED));
+
+        for (Predicate<DiscordMessage> filter : filters) {
+            stream = stream.filter(filter);
+        }
+
+        return stream
+                .limit(limit)
+                .sorted(Comparator.comparing((DiscordMessage msg) -> msg.getTimestamp()).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private static User user(String name, boolean bot) {
+        return stub(User.class, map("getId", name, "getName", name, "isBot", bot));
+    }
+
+    private static Map<String, Object> map(Object... keysAndValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0 ; i < keysAndValues.length ; i += 2) {
+            map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    /*
+    Lightweight interface stubs; mocks would add per-call bookkeeping to every benchmark invocation
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Object> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + answers;
+                default:
+                    return answers.get(method.getName());
+            }
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HistoryRequestBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,102 @@
+package org.tsd.tsdbot.history;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message cost of the ignorable and blacklist checks: the previous String.matches/equalsIgnoreCase scans of
+ * the remote configuration against the compiled matchers built once per load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RemoteConfigurationBenchmark {
+
+    private static final int MESSAGE_COUNT = 1024;
+
+    @Param({"5", "25"})
+    private int patternCount;
+
+    private RemoteConfiguration configuration;
+    private CompiledRemoteConfiguration compiled;
+
+    private String[] texts;
+    private String[] authors;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+
+        List<String> patterns = new LinkedList<>();
+        for (int i = 0 ; i < patternCount ; i++) {
+            patterns.add("^\\.cmd" + i + "\\b.*");
+        }
+        List<String> users = new LinkedList<>();
+        List<String> blacklisted = new LinkedList<>();
+        for (int i = 0 ; i < 10 ; i++) {
+            users.add("IgnoredBot" + i);
+            blacklisted.add("troll" + i);
+        }
+
+        IgnorableMessageInfo ignorableMessageInfo = new IgnorableMessageInfo();
+        ignorableMessageInfo.setPatterns(patterns);
+        ignorableMessageInfo.setUsers(users);
+
+        this.configuration = new RemoteConfiguration();
+        configuration.setIgnorableMessageInfo(ignorableMessageInfo);
+        configuration.setBlacklistedUsers(blacklisted);
+
+        this.compiled = CompiledRemoteConfiguration.compile(configuration);
+
+        List<String> names = Arrays.asList("Schooly_D", "Kant", "Corporate", "TROLL3", "ignoredbot7");
+        this.texts = new String[MESSAGE_COUNT];
+        this.authors = new String[MESSAGE_COUNT];
+        for (int i = 0 ; i < MESSAGE_COUNT ; i++) {
+            texts[i] = random.nextInt(10) == 0 ?
+                    ".cmd" + random.nextInt(patternCount) + " do the thing"
+                    : StringUtils.repeat("word ", 1 + random.nextInt(30)).trim();
+            authors[i] = names.get(random.nextInt(names.size()));
+        }
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        int i = next++ & (MESSAGE_COUNT - 1);
+        String text = texts[i];
+        String author = authors[i];
+        blackhole.consume(configuration.getIgnorableMessageInfo().getPatterns().stream().anyMatch(text::matches));
+        blackhole.consume(configuration.getIgnorableMessageInfo().getUsers().stream()
+                .anyMatch(user -> StringUtils.equalsIgnoreCase(user, author)));
+        blackhole.consume(configuration.getBlacklistedUsers().stream()
+                .anyMatch(user -> StringUtils.equalsIgnoreCase(user, author)));
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) {
+        int i = next++ & (MESSAGE_COUNT - 1);
+        blackhole.consume(compiled.isIgnorableText(texts[i]));
+        blackhole.consume(compiled.isIgnorableUser(authors[i]));
+        blackhole.consume(compiled.isBlacklistedUser(authors[i]));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RemoteConfigurationBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,265 @@
+package org.tsd.tsdbot.resources;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.tsd.rest.v1.tsdtv.job.*;
+import org.tsd.tsdbot.tsdtv.job.JobFactory;
+import org.tsd.tsdbot.tsdtv.job.JobQueue;
+import org.tsd.tsdbot.tsdtv.job.SubmittedJob;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UT_JobResource {
+
+    private static final String AGENT_ID = "agentId";
+
+    private JobQueue jobQueue;
+    private ManualExecutor executor;
+    private JobResource jobResource;
+
+    @Before
+    public void setup() {
+        jobQueue = new JobQueue(new JobFactory() {
+            @Override
+            public SubmittedJob<TSDTVPlayJob, TSDTVPlayJobResult> createSubmittedTsdtvPlayJob(TSDTVPlayJob job) {
+                return new SubmittedJob<>(Clock.systemUTC(), job);
+            }
+
+            @Override
+            public SubmittedJob<TSDTVStopJob, TSDTVStopJobResult> createSubmittedTsdtvStopJob(TSDTVStopJob job) {
+                return new SubmittedJob<>(Clock.systemUTC(), job);
+            }
+        }, new MetricRegistry());
+        executor = new ManualExecutor();
+        jobResource = new JobResource(jobQueue, executor);
+    }
+
+    @Test
+    public void testPollWithoutWait() {
+        FakeAsyncResponse response = poll(0);
+        assertEquals(Collections.singletonList(204), response.getStatuses());
+        assertNull(response.getTimeoutHandler());
+    }
+
+    @Test
+    public void testWaitingPollReceivesJob() {
+        FakeAsyncResponse response = poll(5_000);
+        assertEquals(5_000, response.getTimeoutMillis());
+        assertTrue(response.getStatuses().isEmpty());
+
+        TSDTVStopJob job = stopJob();
+        jobQueue.submitTsdtvStopJob(job);
+        // the submitter only hands the job over, the response is written on the executor
+        assertTrue(response.getStatuses().isEmpty());
+
+        executor.runQueued();
+        assertEquals(Collections.singletonList(200), response.getStatuses());
+        assertSame(job, response.getEntities().get(0));
+    }
+
+    @Test
+    public void testWaitIsCapped() {
+        FakeAsyncResponse response = poll(TimeUnit.MINUTES.toMillis(10));
+        assertEquals(TimeUnit.SECONDS.toMillis(30), response.getTimeoutMillis());
+    }
+
+    @Test
+    public void testTimeoutCancelsWaiter() {
+        FakeAsyncResponse response = poll(5_000);
+        response.timeOut();
+        executor.runQueued();
+        assertEquals(Collections.singletonList(204), response.getStatuses());
+
+        // the timed out poll can't take the job, so it waits for the next one
+        TSDTVStopJob job = stopJob();
+        jobQueue.submitTsdtvStopJob(job);
+        executor.runQueued();
+        assertEquals(Collections.singletonList(204), response.getStatuses());
+        assertSame(job, jobQueue.pollForJob(AGENT_ID));
+    }
+
+    @Test
+    public void testJobArrivingAtTimeoutIsSent() {
+        FakeAsyncResponse response = poll(5_000);
+        TSDTVStopJob job = stopJob();
+        jobQueue.submitTsdtvStopJob(job);
+
+        // times out after the job was handed over but before the executor wrote the response
+        response.timeOut();
+        executor.runQueued();
+        assertEquals(Collections.singletonList(200), response.getStatuses());
+        assertSame(job, response.getEntities().get(0));
+        assertNull(jobQueue.pollForJob(AGENT_ID));
+    }
+
+    private FakeAsyncResponse poll(long waitMillis) {
+        FakeAsyncResponse response = new FakeAsyncResponse();
+        jobResource.pollForJob(AGENT_ID, waitMillis, response);
+        return response;
+    }
+
+    private static TSDTVStopJob stopJob() {
+        TSDTVStopJob job = new TSDTVStopJob();
+        job.setAgentId(AGENT_ID);
+        job.setTimeoutMillis(TimeUnit.DAYS.toMillis(1));
+        return job;
+    }
+
+    /*
+    Queues tasks until the test runs them
+     */
+    private static class ManualExecutor extends AbstractExecutorService {
+        private final Queue<Runnable> queued = new ArrayDeque<>();
+
+        void runQueued() {
+            Runnable task;
+            while ((task = queued.poll()) != null) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            queued.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return new ArrayList<>(queued);
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+
+    /*
+    Records every response the resource tries to send, and like the container only sends the first
+     */
+    private static class FakeAsyncResponse implements AsyncResponse {
+        private final List<Integer> statuses = new ArrayList<>();
+        private final List<Object> entities = new ArrayList<>();
+        private TimeoutHandler timeoutHandler;
+        private long timeoutMillis;
+
+        void timeOut() {
+            timeoutHandler.handleTimeout(this);
+        }
+
+        List<Integer> getStatuses() {
+            return statuses;
+        }
+
+        List<Object> getEntities() {
+            return entities;
+        }
+
+        TimeoutHandler getTimeoutHandler() {
+            return timeoutHandler;
+        }
+
+        long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        @Override
+        public boolean resume(Object response) {
+            if (isDone()) {
+                return false;
+            }
+            statuses.add(((Response) response).getStatus());
+            entities.add(((Response) response).getEntity());
+            return true;
+        }
+
+        @Override
+        public boolean resume(Throwable response) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean cancel() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean cancel(int retryAfter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean cancel(Date retryAfter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isSuspended() {
+            return !isDone();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return !statuses.isEmpty();
+        }
+
+        @Override
+        public boolean setTimeout(long time, TimeUnit unit) {
+            timeoutMillis = unit.toMillis(time);
+            return true;
+        }
+
+        @Override
+        public void setTimeoutHandler(TimeoutHandler handler) {
+            this.timeoutHandler = handler;
+        }
+
+        @Override
+        public Collection<Class<?>> register(Class<?> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<Class<?>> register(Object callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.tsd.tsdbot.tsdtv;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.tsd.rest.v1.tsdtv.*;
+import org.tsd.rest.v1.tsdtv.job.TSDTVPlayJob;
+import org.tsd.rest.v1.tsdtv.job.TSDTVPlayJobResult;
+import org.tsd.rest.v1.tsdtv.job.TSDTVStopJob;
+import org.tsd.rest.v1.tsdtv.job.TSDTVStopJobResult;
+import org.tsd.tsdbot.tsdtv.job.JobFactory;
+import org.tsd.tsdbot.tsdtv.job.JobQueue;
+import org.tsd.tsdbot.tsdtv.job.SubmittedJob;
+import org.tsd.tsdbot.tsdtv.library.MediaCatalog;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UT_AgentRegistry {
+
+    private static final String AGENT_ID = "agentId";
+
+    @Mock
+    private TSDTVAgentDao tsdtvAgentDao;
+
+    private AgentRegistry agentRegistry;
+
+    @Before
+    public void setup() {
+        Clock clock = Clock.fixed(Instant.parse("2018-03-01T20:00:00Z"), ZoneOffset.UTC);
+        JobQueue jobQueue = new JobQueue(new JobFactory() {
+            @Override
+            public SubmittedJob<TSDTVPlayJob, TSDTVPlayJobResult> createSubmittedTsdtvPlayJob(TSDTVPlayJob job) {
+                return new SubmittedJob<>(clock, job);
+            }
+
+            @Override
+            public SubmittedJob<TSDTVStopJob, TSDTVStopJobResult> createSubmittedTsdtvStopJob(TSDTVStopJob job) {
+                return new SubmittedJob<>(clock, job);
+            }
+        }, new MetricRegistry());
+        agentRegistry = new AgentRegistry(tsdtvAgentDao, jobQueue, clock, "rtmp://localhost/tsdtv");
+    }
+
+    @Test
+    public void testDeltaApplied() throws Exception {
+        Movie kept = movie(1);
+        Movie removed = movie(2);
+        HeartbeatResponse response = heartbeat(1, inventory(Arrays.asList(kept, removed), Arrays.asList(
+                series("A", 2),
+                series("B", 1))));
+        assertFalse(response.isSendInventory());
+        assertEquals(Long.valueOf(1), response.getInventoryVersion());
+
+        InventoryDelta delta = delta(1, 2);
+        Movie added = movie(3);
+        delta.getUpsertedMovies().add(added);
+        delta.getRemovedMovies().add(removed.getId());
+        Series grown = series("A", 3);
+        delta.getUpsertedSeries().add(grown);
+        delta.getRemovedSeries().add("B");
+        response = heartbeat(delta);
+
+        assertFalse(response.isSendInventory());
+        assertEquals(Long.valueOf(2), response.getInventoryVersion());
+        Inventory inventory = onlineAgent().getInventory();
+        assertEquals(Arrays.asList(kept.getId(), added.getId()), movieIds(inventory));
+        assertEquals(Arrays.asList("A"), seriesNames(inventory));
+        assertEquals(3, inventory.getSeries().get(0).getEpisodes().size());
+
+        MediaCatalog catalog = agentRegistry.getCatalog();
+        assertNotNull(catalog.find(AGENT_ID, added.getId()));
+        assertNull(catalog.find(AGENT_ID, removed.getId()));
+        assertNotNull(catalog.find(AGENT_ID, grown.getEpisodes().get(2).getId()));
+    }
+
+    @Test
+    public void testSeriesRenamedByName() throws Exception {
+        Series original = series("A", 2);
+        heartbeat(1, inventory(Arrays.asList(), Arrays.asList(original, series("B", 1))));
+
+        Series renamed = series("A", 2);
+        renamed.setName("A (Remastered)");
+        InventoryDelta delta = delta(1, 2);
+        delta.getRemovedSeries().add("A");
+        delta.getUpsertedSeries().add(renamed);
+        heartbeat(delta);
+
+        assertEquals(Arrays.asList("B", "A (Remastered)"), seriesNames(onlineAgent().getInventory()));
+    }
+
+    @Test
+    public void testDeltaOnWrongBaseRejected() throws Exception {
+        Movie movie = movie(1);
+        heartbeat(1, inventory(Arrays.asList(movie), Arrays.asList()));
+
+        // the server never acknowledged version 2, so a delta from it can't be applied
+        InventoryDelta delta = delta(2, 3);
+        delta.getRemovedMovies().add(movie.getId());
+        HeartbeatResponse response = heartbeat(delta);
+
+        assertTrue(response.isSendInventory());
+        assertEquals(Long.valueOf(1), response.getInventoryVersion());
+        assertEquals(Arrays.asList(movie.getId()), movieIds(onlineAgent().getInventory()));
+
+        // which the agent answers with its whole inventory
+        response = heartbeat(3, inventory(Arrays.asList(), Arrays.asList()));
+        assertFalse(response.isSendInventory());
+        assertEquals(Long.valueOf(3), response.getInventoryVersion());
+        assertTrue(onlineAgent().getInventory().getMovies().isEmpty());
+    }
+
+    @Test
+    public void testDeltaWithoutInventoryRejected() throws Exception {
+        HeartbeatResponse response = heartbeat(delta(1, 2));
+
+        assertTrue(response.isSendInventory());
+        assertNull(response.getInventoryVersion());
+        assertNull(onlineAgent().getInventory());
+        assertNotNull(onlineAgent().toString());
+    }
+
+    @Test
+    public void testVersionRoundTrip() throws Exception {
+        HeartbeatResponse response = heartbeat(1, inventory(Arrays.asList(), Arrays.asList()));
+
+        // each delta builds on the version the last response acknowledged
+        for (int i = 1; i <= 3; i++) {
+            InventoryDelta delta = delta(response.getInventoryVersion(), response.getInventoryVersion() + 1);
+            delta.getUpsertedMovies().add(movie(i));
+            response = heartbeat(delta);
+            assertFalse(response.isSendInventory());
+            assertEquals(Long.valueOf(1 + i), response.getInventoryVersion());
+        }
+        assertEquals(3, onlineAgent().getInventory().getMovies().size());
+
+        // an empty delta still moves the version on
+        response = heartbeat(delta(4, 5));
+        assertFalse(response.isSendInventory());
+        assertEquals(Long.valueOf(5), response.getInventoryVersion());
+    }
+
+    private HeartbeatResponse heartbeat(long version, Inventory inventory) throws Exception {
+        Heartbeat heartbeat = heartbeat();
+        heartbeat.setInventory(inventory);
+        heartbeat.setInventoryVersion(version);
+        return agentRegistry.handleHeartbeat(heartbeat, "10.0.0.1");
+    }
+
+    private HeartbeatResponse heartbeat(InventoryDelta delta) throws Exception {
+        Heartbeat heartbeat = heartbeat();
+        heartbeat.setInventoryDelta(delta);
+        return agentRegistry.handleHeartbeat(heartbeat, "10.0.0.1");
+    }
+
+    private static Heartbeat heartbeat() {
+        Heartbeat heartbeat = new Heartbeat();
+        heartbeat.setAgentId(AGENT_ID);
+        heartbeat.setUploadBitrate(1_000_000.0);
+        heartbeat.setHealthy(true);
+        return heartbeat;
+    }
+
+    private OnlineAgent onlineAgent() {
+        return agentRegistry.getOnlineAgents().iterator().next();
+    }
+
+    private static InventoryDelta delta(long baseVersion, long version) {
+        InventoryDelta delta = new InventoryDelta();
+        delta.setBaseVersion(baseVersion);
+        delta.setVersion(version);
+        return delta;
+    }
+
+    private static Inventory inventory(List<Movie> movies, List<Series> series) {
+        Inventory inventory = new Inventory();
+        inventory.getMovies().addAll(movies);
+        inventory.getSeries().addAll(series);
+        return inventory;
+    }
+
+    private static Movie movie(int n) {
+        Movie movie = new Movie(AGENT_ID, mediaInfo("/inventory/Movie " + n + ".mkv"));
+        movie.setName("Movie " + n);
+        return movie;
+    }
+
+    private static Series series(String name, int episodes) {
+        Series series = new Series();
+        series.setName(name);
+        for (int i = 1; i <= episodes; i++) {
+            series.getEpisodes().add(new Episode(AGENT_ID, mediaInfo("/inventory/" + name + "/" + i + ".mkv")));
+        }
+        return series;
+    }
+
+    private static MediaInfo mediaInfo(String filePath) {
+        MediaInfo mediaInfo = new MediaInfo();
+        mediaInfo.setFilePath(filePath);
+        return mediaInfo;
+    }
+
+    private static List<Integer> movieIds(Inventory inventory) {
+        return inventory.getMovies().stream().map(Movie::getId).collect(Collectors.toList());
+    }
+
+    private static List<String> seriesNames(Inventory inventory) {
+        return inventory.getSeries().stream().map(Series::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,292 @@
+package org.tsd.tsdbot.tsdtv;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
+import de.btobastian.javacord.entities.Channel;
+import de.btobastian.javacord.entities.Server;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.quartz.Scheduler;
+import org.tsd.Constants;
+import org.tsd.rest.v1.tsdtv.Episode;
+import org.tsd.rest.v1.tsdtv.Lineup;
+import org.tsd.rest.v1.tsdtv.MediaInfo;
+import org.tsd.rest.v1.tsdtv.job.*;
+import org.tsd.rest.v1.tsdtv.queue.QueuedItem;
+import org.tsd.tsdbot.tsdtv.job.JobFactory;
+import org.tsd.tsdbot.tsdtv.job.JobQueue;
+import org.tsd.tsdbot.tsdtv.job.SubmittedJob;
+import org.tsd.tsdbot.tsdtv.library.TSDTVLibrary;
+import org.tsd.tsdtv.TSDTVPlayer;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UT_TSDTV {
+
+    private static final Instant START = Instant.parse("2018-03-01T20:00:00Z");
+    private static final long FUDGE = Constants.TSDTV.SCHEDULING_FUDGE_FACTOR_MILLIS;
+
+    @Mock
+    private TSDTVLibrary library;
+
+    @Mock
+    private TSDTVEpisodicItemDao episodicItemDao;
+
+    @Mock
+    private TSDTVPlayer player;
+
+    @Mock
+    private Scheduler scheduler;
+
+    @Mock
+    private Server server;
+
+    @Mock
+    private Channel channel;
+
+    private VirtualEventLoop eventLoop;
+    private JobQueue jobQueue;
+    private TSDTV tsdtv;
+
+    @Before
+    public void setup() throws Exception {
+        eventLoop = new VirtualEventLoop(START);
+        jobQueue = new JobQueue(new JobFactory() {
+            @Override
+            public SubmittedJob<TSDTVPlayJob, TSDTVPlayJobResult> createSubmittedTsdtvPlayJob(TSDTVPlayJob job) {
+                return new SubmittedJob<>(eventLoop.clock(), job);
+            }
+
+            @Override
+            public SubmittedJob<TSDTVStopJob, TSDTVStopJobResult> createSubmittedTsdtvStopJob(TSDTVStopJob job) {
+                return new SubmittedJob<>(eventLoop.clock(), job);
+            }
+        }, new MetricRegistry());
+
+        when(channel.getName()).thenReturn("tsdtv");
+        when(server.getChannels()).thenReturn(Collections.singletonList(channel));
+        when(scheduler.getJobKeys(any())).thenReturn(Collections.emptySet());
+
+        tsdtv = new TSDTV(library,
+                episodicItemDao,
+                jobQueue,
+                player,
+                eventLoop,
+                MoreExecutors.newDirectExecutorService(),
+                eventLoop.clock(),
+                scheduler,
+                new URL("http://localhost"),
+                server,
+                "rtmp://localhost/tsdtv",
+                "tsdtv");
+    }
+
+    @Test
+    public void testPlayImmediatelyThenQueue() throws Exception {
+        episode("agent", 1, 600);
+        episode("agent", 2, 300);
+
+        assertTrue(tsdtv.playOrEnqueue("agent", 1));
+        TSDTVPlayJob play = (TSDTVPlayJob) jobQueue.pollForJob("agent");
+        assertEquals(1, play.getMediaId());
+        assertFalse(play.isCue());
+
+        eventLoop.advance(Duration.ofSeconds(2));
+        long started = eventLoop.now().toEpochMilli();
+        started(play, started);
+
+        assertFalse(tsdtv.playOrEnqueue("agent", 2));
+        Lineup lineup = tsdtv.getLineup();
+        assertEquals(started, lineup.getNowPlaying().getStartTime());
+        assertEquals(started + 600_000, lineup.getNowPlaying().getEndTime());
+        QueuedItem next = lineup.getQueue().get(0);
+        assertEquals(started + 600_000 + FUDGE, next.getStartTime());
+        assertEquals(started + 900_000 + FUDGE, next.getEndTime());
+    }
+
+    @Test(expected = DuplicateMediaQueuedException.class)
+    public void testDuplicateRejected() throws Exception {
+        episode("agent", 1, 600);
+        tsdtv.playOrEnqueue("agent", 1);
+        tsdtv.playOrEnqueue("agent", 1);
+    }
+
+    @Test
+    public void testCuedItemTakesOverWithoutPlayJob() throws Exception {
+        episode("agent", 1, 600);
+        episode("agent", 2, 300);
+
+        tsdtv.playOrEnqueue("agent", 1);
+        started((TSDTVPlayJob) jobQueue.pollForJob("agent"), eventLoop.now().toEpochMilli());
+        tsdtv.playOrEnqueue("agent", 2);
+
+        TSDTVPlayJob cue = (TSDTVPlayJob) jobQueue.pollForJob("agent");
+        assertEquals(2, cue.getMediaId());
+        assertTrue(cue.isCue());
+        cued(cue);
+
+        eventLoop.advance(Duration.ofSeconds(600));
+        long switched = eventLoop.now().toEpochMilli();
+        tsdtv.reportStopped(1, 2, switched);
+
+        Lineup lineup = tsdtv.getLineup();
+        assertEquals(2, lineup.getNowPlaying().getMedia().getId());
+        assertEquals(switched, lineup.getNowPlaying().getStartTime());
+        assertTrue(lineup.getQueue().isEmpty());
+        assertNull(jobQueue.pollForJob("agent"));
+    }
+
+    @Test
+    public void testNextPlayedAsSoonAsStopped() throws Exception {
+        episode("agent", 1, 600);
+        episode("other", 2, 300);
+
+        tsdtv.playOrEnqueue("agent", 1);
+        started((TSDTVPlayJob) jobQueue.pollForJob("agent"), eventLoop.now().toEpochMilli());
+        tsdtv.playOrEnqueue("other", 2);
+        // on another agent, so it can't be cued
+        assertNull(jobQueue.pollForJob("other"));
+
+        tsdtv.reportStopped(1, null, null);
+        TSDTVPlayJob play = (TSDTVPlayJob) jobQueue.pollForJob("other");
+        assertEquals(2, play.getMediaId());
+        assertFalse(play.isCue());
+    }
+
+    @Test
+    public void testQueueFollowsActualStart() throws Exception {
+        episode("agent", 1, 600);
+        episode("other", 2, 300);
+        episode("other", 3, 300);
+
+        long predicted = eventLoop.now().toEpochMilli();
+        tsdtv.playOrEnqueue("agent", 1);
+        tsdtv.playOrEnqueue("other", 2);
+        tsdtv.playOrEnqueue("other", 3);
+        assertEquals(predicted + 600_000 + FUDGE, tsdtv.getLineup().getQueue().get(0).getStartTime());
+
+        // the agent took five seconds longer than predicted
+        eventLoop.advance(Duration.ofSeconds(5));
+        started((TSDTVPlayJob) jobQueue.pollForJob("agent"), eventLoop.now().toEpochMilli());
+
+        Lineup lineup = tsdtv.getLineup();
+        assertEquals(predicted + 605_000 + FUDGE, lineup.getQueue().get(0).getStartTime());
+        assertEquals(predicted + 905_000 + 2 * FUDGE, lineup.getQueue().get(1).getStartTime());
+        assertEquals(predicted + 1_205_000 + 2 * FUDGE, lineup.getQueue().get(1).getEndTime());
+    }
+
+    @Test
+    public void testFailedPlayMovesOn() throws Exception {
+        episode("agent", 1, 600);
+        episode("other", 2, 300);
+
+        tsdtv.playOrEnqueue("agent", 1);
+        tsdtv.playOrEnqueue("other", 2);
+
+        TSDTVPlayJob play = (TSDTVPlayJob) jobQueue.pollForJob("agent");
+        TSDTVPlayJobResult result = new TSDTVPlayJobResult();
+        result.setJobId(play.getId());
+        result.setSuccess(false);
+        jobQueue.updateJobResult(result);
+
+        assertEquals(2, ((TSDTVPlayJob) jobQueue.pollForJob("other")).getMediaId());
+        assertNull(tsdtv.getLineup().getNowPlaying());
+    }
+
+    @Test
+    public void testStalledNowPlayingGivenUp() throws Exception {
+        episode("agent", 1, 600);
+        episode("other", 2, 300);
+
+        tsdtv.playOrEnqueue("agent", 1);
+        started((TSDTVPlayJob) jobQueue.pollForJob("agent"), eventLoop.now().toEpochMilli());
+        tsdtv.playOrEnqueue("other", 2);
+
+        eventLoop.advance(Duration.ofSeconds(600));
+        assertNull(jobQueue.pollForJob("agent"));
+
+        eventLoop.advance(Duration.ofMinutes(3));
+        assertTrue(jobQueue.pollForJob("agent") instanceof TSDTVStopJob);
+        assertEquals(2, ((TSDTVPlayJob) jobQueue.pollForJob("other")).getMediaId());
+    }
+
+    @Test
+    public void testFailedStopRetried() throws Exception {
+        episode("agent", 1, 600);
+
+        tsdtv.playOrEnqueue("agent", 1);
+        started((TSDTVPlayJob) jobQueue.pollForJob("agent"), eventLoop.now().toEpochMilli());
+        tsdtv.stopNowPlaying();
+
+        jobQueue.handleOfflineAgent("agent");
+        assertTrue(jobQueue.pollForJob("agent") instanceof TSDTVStopJob);
+    }
+
+    @Test
+    public void testFailedStopNotRetriedOncePlaybackMovesOn() throws Exception {
+        episode("agent", 1, 600);
+        episode("agent", 2, 300);
+
+        tsdtv.playOrEnqueue("agent", 1);
+        started((TSDTVPlayJob) jobQueue.pollForJob("agent"), eventLoop.now().toEpochMilli());
+        tsdtv.stopNowPlaying();
+        assertTrue(tsdtv.playOrEnqueue("agent", 2));
+        assertTrue(jobQueue.pollForJob("agent") instanceof TSDTVStopJob);
+        started((TSDTVPlayJob) jobQueue.pollForJob("agent"), eventLoop.now().toEpochMilli());
+
+        // the stop times out after the next stream started, and retrying it would stop that stream
+        jobQueue.handleOfflineAgent("agent");
+        assertNull(jobQueue.pollForJob("agent"));
+    }
+
+    @Test
+    public void testViewersReaped() {
+        tsdtv.reportViewer("10.0.0.1");
+        assertEquals(1, tsdtv.getViewerCount());
+
+        eventLoop.advance(Duration.ofSeconds(20));
+        tsdtv.reportViewer("10.0.0.2");
+        eventLoop.advance(Duration.ofSeconds(20));
+        assertEquals(2, tsdtv.getViewerCount());
+
+        eventLoop.advance(Duration.ofSeconds(TimeUnit.MINUTES.toSeconds(1)));
+        assertEquals(0, tsdtv.getViewerCount());
+    }
+
+    private Episode episode(String agentId, int id, int durationSeconds) throws TSDTVException {
+        MediaInfo mediaInfo = new MediaInfo();
+        mediaInfo.setFilePath("/tsdtv/" + agentId + "/" + id + ".mkv");
+        mediaInfo.setDurationSeconds(durationSeconds);
+        Episode episode = new Episode(agentId, mediaInfo);
+        episode.setId(id);
+        when(library.findMediaById(agentId, id)).thenReturn(episode);
+        return episode;
+    }
+
+    private void started(TSDTVPlayJob play, long timeStarted) {
+        TSDTVPlayJobResult result = new TSDTVPlayJobResult();
+        result.setJobId(play.getId());
+        result.setSuccess(true);
+        result.setTimeStarted(timeStarted);
+        jobQueue.updateJobResult(result);
+    }
+
+    private void cued(TSDTVPlayJob cue) {
+        TSDTVPlayJobResult result = new TSDTVPlayJobResult();
+        result.setJobId(cue.getId());
+        result.setSuccess(true);
+        jobQueue.updateJobResult(result);
+    }
+}
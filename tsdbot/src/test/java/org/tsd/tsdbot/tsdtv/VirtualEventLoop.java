@@ -0,0 +1,99 @@
+package org.tsd.tsdbot.tsdtv;
+
+import java.time.*;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link EventLoop} for tests. Events run on the thread that posts them, after any event already running, and
+ * timers only fire when the test advances the loop's clock, so a test sees exactly the same sequence every time.
+ */
+class VirtualEventLoop implements EventLoop {
+
+    private final Deque<Runnable> mailbox = new ArrayDeque<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>(
+            Comparator.comparing((Timer timer) -> timer.due).thenComparingLong(timer -> timer.sequence));
+
+    private Instant now;
+    private long sequence = 0;
+    private boolean running = false;
+
+    VirtualEventLoop(Instant start) {
+        this.now = start;
+    }
+
+    Clock clock() {
+        return new VirtualClock();
+    }
+
+    Instant now() {
+        return now;
+    }
+
+    @Override
+    public void post(Runnable event) {
+        mailbox.add(event);
+        if (running) {
+            return;
+        }
+        running = true;
+        try {
+            Runnable next;
+            while ((next = mailbox.poll()) != null) {
+                next.run();
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public void schedule(Runnable event, long delay, TimeUnit unit) {
+        timers.add(new Timer(now.plusNanos(unit.toNanos(delay)), sequence++, event));
+    }
+
+    /**
+     * Moves the clock forward, firing every timer that comes due on the way in order
+     */
+    void advance(Duration duration) {
+        Instant target = now.plus(duration);
+        while (!timers.isEmpty() && !timers.peek().due.isAfter(target)) {
+            Timer timer = timers.poll();
+            now = timer.due;
+            post(timer.event);
+        }
+        now = target;
+    }
+
+    private static class Timer {
+        final Instant due;
+        final long sequence;
+        final Runnable event;
+
+        Timer(Instant due, long sequence, Runnable event) {
+            this.due = due;
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+    private class VirtualClock extends Clock {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
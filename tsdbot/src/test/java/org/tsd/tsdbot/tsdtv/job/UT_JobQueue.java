@@ -0,0 +1,70 @@
+package org.tsd.tsdbot.tsdtv.job;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.tsd.rest.v1.tsdtv.job.*;
+
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UT_JobQueue {
+
+    private JobQueue jobQueue;
+
+    @Before
+    public void setup() {
+        jobQueue = new JobQueue(new JobFactory() {
+            @Override
+            public SubmittedJob<TSDTVPlayJob, TSDTVPlayJobResult> createSubmittedTsdtvPlayJob(TSDTVPlayJob job) {
+                return new SubmittedJob<>(Clock.systemUTC(), job);
+            }
+
+            @Override
+            public SubmittedJob<TSDTVStopJob, TSDTVStopJobResult> createSubmittedTsdtvStopJob(TSDTVStopJob job) {
+                return new SubmittedJob<>(Clock.systemUTC(), job);
+            }
+        }, new MetricRegistry());
+    }
+
+    @Test
+    public void testWaiterReceivesJob() throws Exception {
+        CompletableFuture<Job> waiter = jobQueue.awaitJob("agentId");
+        assertFalse(waiter.isDone());
+
+        TSDTVStopJob stopJob = stopJob("agentId");
+        jobQueue.submitTsdtvStopJob(stopJob);
+        assertSame(stopJob, waiter.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOfflineAgentReleasesWaiters() throws Exception {
+        CompletableFuture<Job> first = jobQueue.awaitJob("agentId");
+        CompletableFuture<Job> second = jobQueue.awaitJob("agentId");
+        CompletableFuture<Job> otherAgent = jobQueue.awaitJob("otherAgentId");
+
+        jobQueue.handleOfflineAgent("agentId");
+        assertNull(first.get(10, TimeUnit.SECONDS));
+        assertNull(second.get(10, TimeUnit.SECONDS));
+        assertFalse(otherAgent.isDone());
+    }
+
+    @Test
+    public void testOfflineAgentFailsJobs() throws Exception {
+        CompletableFuture<TSDTVStopJobResult> result = jobQueue.submitTsdtvStopJob(stopJob("agentId"));
+
+        jobQueue.handleOfflineAgent("agentId");
+        assertTrue(result.isCompletedExceptionally());
+        assertNull(jobQueue.pollForJob("agentId"));
+    }
+
+    private static TSDTVStopJob stopJob(String agentId) {
+        TSDTVStopJob job = new TSDTVStopJob();
+        job.setAgentId(agentId);
+        job.setTimeoutMillis(TimeUnit.DAYS.toMillis(1));
+        return job;
+    }
+}
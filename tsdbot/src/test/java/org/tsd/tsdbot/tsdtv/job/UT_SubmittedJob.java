@@ -9,10 +9,13 @@ import org.tsd.rest.v1.tsdtv.job.Job;
 import org.tsd.rest.v1.tsdtv.job.JobResult;
 
 import java.time.Clock;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.*;
+
 @RunWith(MockitoJUnitRunner.class)
 public class UT_SubmittedJob {
 
@@ -32,14 +35,31 @@ public class UT_SubmittedJob {
     }
 
     @Test
-    public void testLockUnlock() throws JobTimeoutException, InterruptedException {
+    public void testResultDeliveredToFuture() throws Exception {
+        SubmittedJob<FakeJob, FakeJobResult> submittedJob = new SubmittedJob<>(Clock.systemUTC(), fakeJob());
+        FakeJobResult result = new FakeJobResult();
+        executorService.submit(() -> submittedJob.updateResult(result));
+        assertSame(result, submittedJob.getResult().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testExpire() throws InterruptedException {
+        SubmittedJob<FakeJob, FakeJobResult> submittedJob = new SubmittedJob<>(Clock.systemUTC(), fakeJob());
+        submittedJob.expire();
+        submittedJob.updateResult(new FakeJobResult());
+        try {
+            submittedJob.getResult().get();
+            fail("Expected a timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof JobTimeoutException);
+        }
+    }
+
+    private FakeJob fakeJob() {
         FakeJob job = new FakeJob();
         job.setAgentId("agentId");
         job.setTimeoutMillis(TimeUnit.DAYS.toMillis(1));
-        SubmittedJob<FakeJob, FakeJobResult> submittedJob = new SubmittedJob<>(Clock.systemUTC(), job);
-        executorService.submit(submittedJob::waitForResult);
-        Thread.sleep(TimeUnit.SECONDS.toMillis(3));
-        submittedJob.updateResult(new FakeJobResult());
+        return job;
     }
 
     class FakeJob extends Job {
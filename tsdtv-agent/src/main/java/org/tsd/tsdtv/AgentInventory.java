@@ -2,16 +2,15 @@ package org.tsd.tsdtv;
 
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
-import net.bramp.ffmpeg.FFprobe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.rest.v1.tsdtv.*;
-import org.tsd.util.FfmpegUtil;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Singleton
@@ -20,76 +19,146 @@ public class AgentInventory {
     private static final Logger log = LoggerFactory.getLogger(AgentInventory.class);
 
     private final File inventoryDirectory;
-    private final FFprobe fFprobe;
+    private final MediaInfoCache mediaInfoCache;
     private final String agentId;
-    private final Map<Integer, Media> filesById = new HashMap<>();
 
-    private final Set<File> invalidFiles = new HashSet<>();
+    // only touched by scans and refreshes, which hold the lock, but kept concurrent so lookups can never corrupt it
+    private final Set<File> invalidFiles = ConcurrentHashMap.newKeySet();
 
-    private boolean forceOverride = false;
+    // replaced wholesale by every scan or refresh, so readers never need the lock
+    private volatile InventoryGeneration generation = InventoryGeneration.EMPTY;
+
+    // set while an InventoryWatcher is keeping this up to date, so there's no need to rescan
+    private volatile boolean watched = false;
+
+    private volatile boolean forceOverride = false;
 
     @Inject
     public AgentInventory(@Named("inventory") File inventoryDirectory,
                           @Named("agentId") String agentId,
-                          FFprobe fFprobe) {
+                          MediaInfoCache mediaInfoCache) {
         this.inventoryDirectory = inventoryDirectory;
-        this.fFprobe = fFprobe;
+        this.mediaInfoCache = mediaInfoCache;
         this.agentId = agentId;
     }
 
     public Media getFileByMediaId(int mediaId) {
-        return filesById.get(mediaId);
+        return generation.getFileById(mediaId);
     }
 
+    /**
+     * @return every episode and movie in the current inventory
+     */
+    public Collection<Media> getMedia() {
+        InventoryGeneration current = generation;
+        List<Media> media = new ArrayList<>(current.getFilesById().values());
+        media.addAll(current.getMoviesByFile().values());
+        return media;
+    }
+
+    /**
+     * @return the current inventory. The directory is only scanned the first time, or every time if it isn't
+     * being watched.
+     */
     public Inventory compileInventory() {
-        Inventory inventory = new Inventory();
-        filesById.clear();
+        InventoryGeneration current = generation;
+        if (current == InventoryGeneration.EMPTY || !watched) {
+            current = rescan();
+        }
 
-        List<File> seriesToEvaluate = new LinkedList<>();
-        List<File> moviesToEvaluate = new LinkedList<>();
+        Inventory inventory = current.toInventory();
+        log.debug("Built TSDTV inventory, generation {}: {}", current.getNumber(), inventory);
+        log.debug("Files by ID: {}", current.getFilesById());
+        return inventory;
+    }
 
-        for (File file : listFilesAlphabetically(inventoryDirectory)) {
-            if (file.isDirectory()) {
-                seriesToEvaluate.add(file);
-            } else {
-                moviesToEvaluate.add(file);
+    synchronized InventoryGeneration rescan() {
+        log.info("Scanning inventory directory: {}", inventoryDirectory.getAbsolutePath());
+        Map<File, Series> seriesByDirectory = new HashMap<>();
+        Map<File, Movie> moviesByFile = new HashMap<>();
+        List<File> mediaFiles = build(listFilesAlphabetically(inventoryDirectory), seriesByDirectory, moviesByFile);
+        mediaInfoCache.retain(mediaFiles);
+        return publish(seriesByDirectory, moviesByFile);
+    }
+
+    /**
+     * Rebuilds only the given series directories and movie files, which must be top-level entries of the
+     * inventory directory. Entries that no longer exist are removed.
+     */
+    synchronized void refresh(Collection<File> entries) {
+        InventoryGeneration current = generation;
+        if (current == InventoryGeneration.EMPTY) {
+            return;
+        }
+        log.info("Refreshing inventory entries: {}", entries);
+        Map<File, Series> seriesByDirectory = new HashMap<>(current.getSeriesByDirectory());
+        Map<File, Movie> moviesByFile = new HashMap<>(current.getMoviesByFile());
+        for (File entry : entries) {
+            seriesByDirectory.remove(entry);
+            moviesByFile.remove(entry);
+            // give files that failed to probe, e.g. because they were still being copied, another chance
+            invalidFiles.removeIf(file -> file.toPath().startsWith(entry.toPath()));
+        }
+        build(entries.stream()
+                        .filter(File::exists)
+                        .collect(Collectors.toList()),
+                seriesByDirectory,
+                moviesByFile);
+        publish(seriesByDirectory, moviesByFile);
+        forceOverride = true;
+    }
+
+    void setWatched(boolean watched) {
+        this.watched = watched;
+    }
+
+    private InventoryGeneration publish(Map<File, Series> seriesByDirectory, Map<File, Movie> moviesByFile) {
+        InventoryGeneration next
+                = new InventoryGeneration(generation.getNumber() + 1, seriesByDirectory, moviesByFile);
+        generation = next;
+        log.info("Published inventory generation {}: series={}, movies={}, episodes={}", next.getNumber(),
+                next.getSeriesByDirectory().size(), next.getMoviesByFile().size(), next.getFilesById().size());
+        return next;
+    }
+
+    /**
+     * Builds the given entries into the maps
+     * @return the media files under the given entries
+     */
+    private List<File> build(Collection<File> entries,
+                             Map<File, Series> seriesByDirectory,
+                             Map<File, Movie> moviesByFile) {
+        List<File> mediaFiles = new LinkedList<>();
+        for (File entry : entries) {
+            try {
+                mediaFiles.addAll(listMediaFiles(entry));
+            } catch (Exception e) {
+                log.error("Error listing media files: "+entry.getAbsolutePath(), e);
             }
         }
 
-        inventory.setSeries(
-                seriesToEvaluate
-                        .parallelStream()
-                        .map(file -> {
-                            try {
-                                return compileSeries(file);
-                            } catch (Exception e) {
-                                log.error("Error building series from directory: "+file.getAbsolutePath(), e);
-                                return null;
-                            }
-                        })
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toList()));
-
-        inventory.setMovies(
-                moviesToEvaluate
-                        .parallelStream()
-                        .map(file -> {
-                            try {
-                                return buildMovie(file);
-                            } catch (Exception e) {
-                                log.error("Error building movie from file: "+file.getAbsolutePath(), e);
-                                return null;
-                            }
-                        })
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toList()));
-
-        log.debug("Built TSDTV inventory: {}", inventory);
-        log.debug("Files by ID: {}", filesById);
-        return inventory;
+        // probing is the slow part and happens here, in parallel. Everything after is just lookups
+        Map<File, MediaInfo> mediaInfo = mediaInfoCache.getMediaInfo(mediaFiles);
+
+        for (File entry : entries) {
+            if (entry.isDirectory()) {
+                try {
+                    seriesByDirectory.put(entry, compileSeries(entry, mediaInfo));
+                } catch (Exception e) {
+                    log.error("Error building series from directory: "+entry.getAbsolutePath(), e);
+                }
+            } else {
+                try {
+                    moviesByFile.put(entry, buildMovie(entry, mediaInfo));
+                } catch (Exception e) {
+                    log.error("Error building movie from file: "+entry.getAbsolutePath(), e);
+                }
+            }
+        }
+        return mediaFiles;
     }
 
-    private Series compileSeries(File seriesDirectory) {
+    private Series compileSeries(File seriesDirectory, Map<File, MediaInfo> mediaInfo) {
         log.info("Compiling series: {}", seriesDirectory.getAbsolutePath());
         Series series = new Series();
         series.setName(seriesDirectory.getName());
@@ -99,13 +168,13 @@ public class AgentInventory {
         for (File file : files) {
             log.debug("Evaluating file: {}", file);
             if (file.isDirectory()) {
-                Season season = compileSeason(series.getName(), file);
+                Season season = compileSeason(series.getName(), file, mediaInfo);
                 season.setSeriesName(series.getName());
                 series.getSeasons().add(season);
             } else {
                 episodeNumber++;
                 try {
-                    Episode episode = buildEpisode(file, episodeNumber);
+                    Episode episode = buildEpisode(file, episodeNumber, mediaInfo);
                     episode.setSeriesName(series.getName());
                     series.getEpisodes().add(episode);
                 } catch (Exception e) {
@@ -118,7 +187,7 @@ public class AgentInventory {
         return series;
     }
 
-    private Season compileSeason(String seriesName, File seasonDirectory) {
+    private Season compileSeason(String seriesName, File seasonDirectory, Map<File, MediaInfo> mediaInfo) {
         log.info("Compiling season: {}", seasonDirectory.getAbsolutePath());
         Season season = new Season();
         season.setName(seasonDirectory.getName());
@@ -129,7 +198,7 @@ public class AgentInventory {
             if (!file.isDirectory()) {
                 episodeNumber++;
                 try {
-                    Episode episode = buildEpisode(file, episodeNumber);
+                    Episode episode = buildEpisode(file, episodeNumber, mediaInfo);
                     episode.setSeriesName(seriesName);
                     episode.setSeasonName(season.getName());
                     season.getEpisodes().add(episode);
@@ -143,25 +212,52 @@ public class AgentInventory {
         return season;
     }
 
-    private Episode buildEpisode(File file, int episodeNumber) throws IOException {
-        MediaInfo mediaInfo = FfmpegUtil.getMediaInfo(fFprobe, file);
-        Episode episode = new Episode(agentId, mediaInfo);
+    private Episode buildEpisode(File file, int episodeNumber, Map<File, MediaInfo> mediaInfo) throws IOException {
+        Episode episode = new Episode(agentId, getMediaInfo(file, mediaInfo));
         episode.setName(file.getName());
         episode.setEpisodeNumber(episodeNumber);
         log.debug("Built episode, file={}, episodeNumber={}: {}",
                 file.getAbsolutePath(), episodeNumber, episode);
-        filesById.put(episode.getId(), episode);
         return episode;
     }
 
-    private Movie buildMovie(File file) throws IOException {
-        MediaInfo mediaInfo = FfmpegUtil.getMediaInfo(fFprobe, file);
-        Movie movie = new Movie(agentId, mediaInfo);
+    private Movie buildMovie(File file, Map<File, MediaInfo> mediaInfo) throws IOException {
+        Movie movie = new Movie(agentId, getMediaInfo(file, mediaInfo));
         movie.setName(file.getName());
         log.debug("Built movie, file={}: {}", file.getAbsolutePath(), movie);
         return movie;
     }
 
+    private static MediaInfo getMediaInfo(File file, Map<File, MediaInfo> mediaInfo) throws IOException {
+        if (!mediaInfo.containsKey(file)) {
+            throw new IOException("Failed to probe file: " + file.getAbsolutePath());
+        }
+        return mediaInfo.get(file);
+    }
+
+    /*
+    A movie file, or the episodes of a series directory and of its season directories
+     */
+    private List<File> listMediaFiles(File entry) {
+        List<File> files = new LinkedList<>();
+        if (!entry.isDirectory()) {
+            files.add(entry);
+            return files;
+        }
+        for (File seriesFile : listFilesAlphabetically(entry)) {
+            if (!seriesFile.isDirectory()) {
+                files.add(seriesFile);
+                continue;
+            }
+            for (File seasonFile : listFilesAlphabetically(seriesFile)) {
+                if (!seasonFile.isDirectory()) {
+                    files.add(seasonFile);
+                }
+            }
+        }
+        return files;
+    }
+
     private List<File> listFilesAlphabetically(File directory) {
         if (!directory.isDirectory()) {
             throw new IllegalArgumentException(directory.getAbsolutePath()+" is not a directory");
@@ -172,7 +268,7 @@ public class AgentInventory {
         }
         return Arrays.stream(files)
                 .filter(file -> !invalidFiles.contains(file))
-                .sorted(Comparator.comparing(file -> file.getName().toLowerCase()))
+                .sorted(InventoryGeneration.ALPHABETICAL)
                 .collect(Collectors.toList());
     }
 
@@ -1,17 +1,21 @@
 package org.tsd.tsdtv;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.name.Named;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.Constants;
 import org.tsd.rest.v1.tsdtv.Heartbeat;
 import org.tsd.rest.v1.tsdtv.HeartbeatResponse;
-import org.tsd.rest.v1.tsdtv.Inventory;
+import org.tsd.rest.v1.tsdtv.InventoryDelta;
+import org.tsd.tsdtv.mezzanine.MezzanineEncoder;
+import org.tsd.util.BandwidthEstimator;
 
 import javax.inject.Inject;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
 public class HeartbeatThread implements Runnable {
@@ -26,8 +30,15 @@ public class HeartbeatThread implements Runnable {
     private final AgentInventory agentInventory;
     private final Clock clock;
     private final TSDTVPlayer tsdtvPlayer;
+    private final BandwidthEstimator bandwidthEstimator;
+    private final MezzanineEncoder mezzanineEncoder;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     private LocalDateTime inventoryLastSent = LocalDateTime.MIN;
+    private long inventoryVersion = 0;
+    // the last inventory the server confirmed it holds
+    private InventorySnapshot acknowledged = null;
     private boolean shutdown = false;
 
     @Inject
@@ -36,6 +47,8 @@ public class HeartbeatThread implements Runnable {
                            AgentInventory agentInventory,
                            Clock clock,
                            TSDTVPlayer tsdtvPlayer,
+                           BandwidthEstimator bandwidthEstimator,
+                           MezzanineEncoder mezzanineEncoder,
                            @Named("agentId") String agentId) {
         this.agentId = agentId;
         this.tsdBotClient = tsdBotClient;
@@ -43,25 +56,40 @@ public class HeartbeatThread implements Runnable {
         this.agentInventory = agentInventory;
         this.clock = clock;
         this.tsdtvPlayer = tsdtvPlayer;
+        this.bandwidthEstimator = bandwidthEstimator;
+        this.mezzanineEncoder = mezzanineEncoder;
     }
 
     public void run() {
         while (!shutdown) {
             log.debug("Building heartbeat...");
 
-            Inventory inventory = null;
+            Heartbeat heartbeat = new Heartbeat();
+            heartbeat.setAgentId(agentId);
+            heartbeat.setHealthy(true);
+
+            InventorySnapshot sent = null;
             if (shouldRefreshInventory()) {
                 log.info("Inventory last sent: {}, sending...", inventoryLastSent);
-                inventory = agentInventory.compileInventory();
+                try {
+                    sent = InventorySnapshot.of(++inventoryVersion, agentInventory.compileInventory(), objectMapper);
+                    if (acknowledged == null) {
+                        log.info("Sending full inventory, version={}", sent.getVersion());
+                        heartbeat.setInventory(sent.getInventory());
+                        heartbeat.setInventoryVersion(sent.getVersion());
+                    } else {
+                        InventoryDelta delta = sent.deltaFrom(acknowledged);
+                        log.info("Sending inventory delta: {}", delta);
+                        heartbeat.setInventoryDelta(delta);
+                    }
+                } catch (Exception e) {
+                    log.error("Error compiling inventory", e);
+                    sent = null;
+                }
                 inventoryLastSent = LocalDateTime.now(clock);
                 agentInventory.setForceOverride(false);
             }
 
-            Heartbeat heartbeat = new Heartbeat();
-            heartbeat.setAgentId(agentId);
-            heartbeat.setHealthy(true);
-            heartbeat.setInventory(inventory);
-
             Long uploadRateBitsPerSecond = networkMonitor.getUploadSpeedBitsPerSecond();
             if (uploadRateBitsPerSecond != null) {
                 heartbeat.setUploadBitrate(uploadRateBitsPerSecond.doubleValue());
@@ -73,6 +101,13 @@ public class HeartbeatThread implements Runnable {
                 heartbeat.setUploadBitrate(null);
             }
 
+            Long sustainedBitrate = bandwidthEstimator.getSustainedBitsPerSecond();
+            if (sustainedBitrate != null) {
+                heartbeat.setSustainedUploadBitrate(sustainedBitrate.doubleValue());
+            }
+
+            heartbeat.setMezzanineStatus(mezzanineEncoder.getStatus());
+
             long sleepSeconds;
             HeartbeatResponse response;
             try {
@@ -82,6 +117,7 @@ public class HeartbeatThread implements Runnable {
                     log.info("Agent should send inventory in next heartbeat");
                     inventoryLastSent = LocalDateTime.MIN;
                 }
+                handleInventoryVersion(sent, response.getInventoryVersion());
             } catch (Exception e ) {
                 log.error("Error sending heartbeat", e);
                 sleepSeconds = PERIOD_SECONDS;
@@ -98,6 +134,20 @@ public class HeartbeatThread implements Runnable {
         }
     }
 
+    /*
+    Deltas are only sent against a version the server has confirmed it holds. If the server holds anything else,
+    e.g. it restarted or missed a delta, fall back to a full inventory
+     */
+    private void handleInventoryVersion(InventorySnapshot sent, Long serverVersion) {
+        if (sent != null && Objects.equals(serverVersion, sent.getVersion())) {
+            acknowledged = sent;
+        } else if (acknowledged != null && !Objects.equals(serverVersion, acknowledged.getVersion())) {
+            log.warn("Server holds inventory version {}, expected {}, resyncing", serverVersion, acknowledged.getVersion());
+            acknowledged = null;
+            inventoryLastSent = LocalDateTime.MIN;
+        }
+    }
+
     private boolean shouldRefreshInventory() {
         return !tsdtvPlayer.isPlaying()
                 && (agentInventory.isForceOverride() || isInventoryStale());
@@ -0,0 +1,78 @@
+package org.tsd.tsdtv;
+
+import org.tsd.rest.v1.tsdtv.*;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * One complete build of the agent's inventory. A generation is never modified once it's built: a scan or refresh
+ * builds the next one off to the side and AgentInventory publishes it in a single write, so lookups never see a
+ * half-built inventory.
+ */
+final class InventoryGeneration {
+
+    static final Comparator<File> ALPHABETICAL = Comparator
+            .comparing((File file) -> file.getName().toLowerCase())
+            .thenComparing(File::getName);
+
+    // nothing has been scanned yet
+    static final InventoryGeneration EMPTY
+            = new InventoryGeneration(0, Collections.emptyMap(), Collections.emptyMap());
+
+    private final long number;
+
+    // the top-level entries of the inventory directory: a directory per series and a file per movie
+    private final SortedMap<File, Series> seriesByDirectory;
+    private final SortedMap<File, Movie> moviesByFile;
+
+    // mediaId -> episode
+    private final Map<Integer, Media> filesById;
+
+    InventoryGeneration(long number, Map<File, Series> seriesByDirectory, Map<File, Movie> moviesByFile) {
+        this.number = number;
+
+        SortedMap<File, Series> series = new TreeMap<>(ALPHABETICAL);
+        series.putAll(seriesByDirectory);
+        this.seriesByDirectory = Collections.unmodifiableSortedMap(series);
+
+        SortedMap<File, Movie> movies = new TreeMap<>(ALPHABETICAL);
+        movies.putAll(moviesByFile);
+        this.moviesByFile = Collections.unmodifiableSortedMap(movies);
+
+        Map<Integer, Media> files = new HashMap<>();
+        for (Series s : series.values()) {
+            s.getEpisodes().forEach(episode -> files.put(episode.getId(), episode));
+            s.getSeasons().forEach(season ->
+                    season.getEpisodes().forEach(episode -> files.put(episode.getId(), episode)));
+        }
+        this.filesById = Collections.unmodifiableMap(files);
+    }
+
+    long getNumber() {
+        return number;
+    }
+
+    SortedMap<File, Series> getSeriesByDirectory() {
+        return seriesByDirectory;
+    }
+
+    SortedMap<File, Movie> getMoviesByFile() {
+        return moviesByFile;
+    }
+
+    Media getFileById(int mediaId) {
+        return filesById.get(mediaId);
+    }
+
+    Map<Integer, Media> getFilesById() {
+        return filesById;
+    }
+
+    Inventory toInventory() {
+        Inventory inventory = new Inventory();
+        inventory.setSeries(new LinkedList<>(seriesByDirectory.values()));
+        inventory.setMovies(new LinkedList<>(moviesByFile.values()));
+        return inventory;
+    }
+}
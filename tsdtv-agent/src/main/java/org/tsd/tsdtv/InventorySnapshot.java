@@ -0,0 +1,100 @@
+package org.tsd.tsdtv;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.tsd.rest.v1.tsdtv.Inventory;
+import org.tsd.rest.v1.tsdtv.InventoryDelta;
+import org.tsd.rest.v1.tsdtv.Movie;
+import org.tsd.rest.v1.tsdtv.Series;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A compiled inventory with a content hash for every movie and series, so that two versions can be compared
+ * without walking their episodes.
+ */
+class InventorySnapshot {
+
+    private final long version;
+    private final Inventory inventory;
+
+    // movie id / series name -> hash of its serialized form
+    private final Map<Integer, HashCode> movieHashes;
+    private final Map<String, HashCode> seriesHashes;
+
+    private InventorySnapshot(long version,
+                              Inventory inventory,
+                              Map<Integer, HashCode> movieHashes,
+                              Map<String, HashCode> seriesHashes) {
+        this.version = version;
+        this.inventory = inventory;
+        this.movieHashes = movieHashes;
+        this.seriesHashes = seriesHashes;
+    }
+
+    static InventorySnapshot of(long version, Inventory inventory, ObjectMapper objectMapper)
+            throws JsonProcessingException {
+        Map<Integer, HashCode> movieHashes = new HashMap<>();
+        for (Movie movie : inventory.getMovies()) {
+            movieHashes.put(movie.getId(), hash(movie, objectMapper));
+        }
+        Map<String, HashCode> seriesHashes = new HashMap<>();
+        for (Series series : inventory.getSeries()) {
+            seriesHashes.put(series.getName(), hash(series, objectMapper));
+        }
+        return new InventorySnapshot(version,
+                inventory,
+                Collections.unmodifiableMap(movieHashes),
+                Collections.unmodifiableMap(seriesHashes));
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * @return what changed between base and this snapshot
+     */
+    InventoryDelta deltaFrom(InventorySnapshot base) {
+        InventoryDelta delta = new InventoryDelta();
+        delta.setBaseVersion(base.version);
+        delta.setVersion(version);
+
+        for (Movie movie : inventory.getMovies()) {
+            if (!Objects.equals(movieHashes.get(movie.getId()), base.movieHashes.get(movie.getId()))) {
+                delta.getUpsertedMovies().add(movie);
+            }
+        }
+        for (Integer id : base.movieHashes.keySet()) {
+            if (!movieHashes.containsKey(id)) {
+                delta.getRemovedMovies().add(id);
+            }
+        }
+
+        for (Series series : inventory.getSeries()) {
+            if (!Objects.equals(seriesHashes.get(series.getName()), base.seriesHashes.get(series.getName()))) {
+                delta.getUpsertedSeries().add(series);
+            }
+        }
+        for (String name : base.seriesHashes.keySet()) {
+            if (!seriesHashes.containsKey(name)) {
+                delta.getRemovedSeries().add(name);
+            }
+        }
+
+        return delta;
+    }
+
+    private static HashCode hash(Object value, ObjectMapper objectMapper) throws JsonProcessingException {
+        return Hashing.sha256().hashBytes(objectMapper.writeValueAsBytes(value));
+    }
+}
@@ -0,0 +1,182 @@
+package org.tsd.tsdtv;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the inventory directory, its series directories and their season directories, and refreshes just the
+ * series or movies that changed. Events are debounced so that a file being copied in is only probed once it's
+ * been quiet for a few seconds.
+ */
+@Singleton
+public class InventoryWatcher implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryWatcher.class);
+
+    private static final long QUIET_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    // refresh anyway if events keep arriving for this long
+    private static final long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    // inventory -> series -> season
+    private static final int MAX_DEPTH = 2;
+
+    private final Path inventoryDirectory;
+    private final AgentInventory agentInventory;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    private volatile boolean shutdown = false;
+    // closed on shutdown to wake the watching thread
+    private volatile WatchService watchService;
+
+    @Inject
+    public InventoryWatcher(@Named("inventory") File inventoryDirectory,
+                            AgentInventory agentInventory) {
+        this.inventoryDirectory = inventoryDirectory.toPath().toAbsolutePath();
+        this.agentInventory = agentInventory;
+    }
+
+    @Override
+    public void run() {
+        try (WatchService watchService = inventoryDirectory.getFileSystem().newWatchService()) {
+            this.watchService = watchService;
+            if (shutdown) {
+                return;
+            }
+            register(watchService, inventoryDirectory);
+            agentInventory.setWatched(true);
+            log.info("Watching {} directories under {}", watchedDirectories.size(), inventoryDirectory);
+            watch(watchService);
+        } catch (IOException e) {
+            log.error("Error watching inventory directory, falling back to periodic scans", e);
+        } catch (ClosedWatchServiceException e) {
+            log.info("Stopped watching inventory directory");
+        } catch (InterruptedException e) {
+            log.error("Interrupted");
+        } finally {
+            agentInventory.setWatched(false);
+        }
+    }
+
+    private void watch(WatchService watchService) throws IOException, InterruptedException {
+        Set<File> changedEntries = new HashSet<>();
+        boolean rescan = false;
+        long firstChangeNanos = 0;
+
+        while (!shutdown) {
+            boolean pending = rescan || !changedEntries.isEmpty();
+            WatchKey key = pending
+                    ? watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)
+                    : watchService.take();
+
+            if (key != null) {
+                if (!pending) {
+                    firstChangeNanos = System.nanoTime();
+                }
+                rescan |= handleEvents(watchService, key, changedEntries);
+            }
+
+            boolean quiet = key == null;
+            boolean overdue = System.nanoTime() - firstChangeNanos > MAX_DELAY_NANOS;
+            if ((quiet || overdue) && (rescan || !changedEntries.isEmpty())) {
+                try {
+                    if (rescan) {
+                        log.warn("Inventory events were lost, rescanning");
+                        // directories created during the overflow were never registered
+                        register(watchService, inventoryDirectory);
+                        agentInventory.rescan();
+                        agentInventory.setForceOverride(true);
+                    } else {
+                        agentInventory.refresh(new HashSet<>(changedEntries));
+                    }
+                } catch (RuntimeException e) {
+                    // the batch is dropped, the entries are picked up again when they next change
+                    log.error("Error refreshing inventory, rescan=" + rescan + ", entries=" + changedEntries, e);
+                }
+                changedEntries.clear();
+                rescan = false;
+            }
+        }
+    }
+
+    /**
+     * @return true if events were lost and the whole inventory needs to be rescanned
+     */
+    private boolean handleEvents(WatchService watchService, WatchKey key, Set<File> changedEntries)
+            throws IOException {
+        Path directory = watchedDirectories.get(key);
+        boolean overflow = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || directory == null) {
+                overflow = true;
+                continue;
+            }
+            Path changed = directory.resolve((Path) event.context());
+            log.debug("Inventory event: {} {}", event.kind(), changed);
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    register(watchService, changed);
+                } catch (IOException e) {
+                    // most likely deleted again already, which will have its own event
+                    log.warn("Failed to watch new directory: " + changed, e);
+                }
+            }
+            Path relative = inventoryDirectory.relativize(changed);
+            changedEntries.add(inventoryDirectory.resolve(relative.getName(0)).toFile());
+        }
+
+        if (!key.reset()) {
+            // the directory is gone. Its parent reports the deletion
+            log.debug("No longer watching {}", directory);
+            watchedDirectories.remove(key);
+            if (inventoryDirectory.equals(directory)) {
+                throw new IOException("Inventory directory is no longer accessible: " + inventoryDirectory);
+            }
+        }
+        return overflow;
+    }
+
+    private void register(WatchService watchService, Path directory) throws IOException {
+        int depth = directory.equals(inventoryDirectory)
+                ? 0
+                : inventoryDirectory.relativize(directory).getNameCount();
+        if (depth > MAX_DEPTH) {
+            return;
+        }
+        WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        watchedDirectories.put(key, directory);
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    register(watchService, child);
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        this.shutdown = true;
+        WatchService watchService = this.watchService;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Error closing inventory watch service", e);
+            }
+        }
+    }
+}
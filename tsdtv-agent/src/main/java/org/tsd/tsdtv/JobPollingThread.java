@@ -7,24 +7,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.rest.v1.tsdtv.Media;
 import org.tsd.rest.v1.tsdtv.job.*;
-import org.tsd.util.RetryInstructionFailedException;
-import org.tsd.util.RetryUtil;
+import org.tsd.tsdtv.mezzanine.MezzanineEncoder;
+import org.tsd.tsdtv.mezzanine.MezzanineLibrary;
 
+import java.io.File;
 import java.time.Instant;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 @Singleton
 public class JobPollingThread implements Runnable {
 
     private static final Logger log = LoggerFactory.getLogger(JobPollingThread.class);
 
-    private static final long PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    // the server holds each poll open this long waiting for a job
+    private static final long LONG_POLL_MILLIS = TimeUnit.SECONDS.toMillis(20);
+    private static final long ERROR_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(1);
 
     private final TSDBotClient tsdBotClient;
     private final TSDTVPlayer player;
     private final AgentInventory agentInventory;
     private final TSDBotClient client;
     private final NetworkMonitor networkMonitor;
+    private final MezzanineLibrary mezzanineLibrary;
+    private final MezzanineEncoder mezzanineEncoder;
 
     private boolean shutdown = false;
 
@@ -33,12 +39,16 @@ public class JobPollingThread implements Runnable {
                             NetworkMonitor networkMonitor,
                             TSDTVPlayer player,
                             AgentInventory agentInventory,
-                            TSDBotClient client) {
+                            TSDBotClient client,
+                            MezzanineLibrary mezzanineLibrary,
+                            MezzanineEncoder mezzanineEncoder) {
         this.tsdBotClient = tsdBotClient;
         this.player = player;
         this.agentInventory = agentInventory;
         this.client = client;
         this.networkMonitor = networkMonitor;
+        this.mezzanineLibrary = mezzanineLibrary;
+        this.mezzanineEncoder = mezzanineEncoder;
     }
 
     @Override
@@ -47,20 +57,19 @@ public class JobPollingThread implements Runnable {
             log.debug("Polling for jobs...");
 
             try {
-                Job job = tsdBotClient.pollForJob();
+                Job job = tsdBotClient.pollForJob(LONG_POLL_MILLIS);
                 if (job != null) {
                     handleJob(job);
                 }
             } catch (Exception e) {
                 log.error("Error polling for jobs", e);
-            }
-
-            try {
-                log.debug("Sleeping for {} ms", PERIOD_MILLIS);
-                Thread.sleep(PERIOD_MILLIS);
-            } catch (InterruptedException e) {
-                log.error("Interrupted", e);
-                shutdown = true;
+                try {
+                    log.debug("Sleeping for {} ms", ERROR_RETRY_MILLIS);
+                    Thread.sleep(ERROR_RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    log.error("Interrupted", ie);
+                    shutdown = true;
+                }
             }
         }
     }
@@ -68,8 +77,9 @@ public class JobPollingThread implements Runnable {
     private void handleJob(Job job) {
         log.warn("Received job: {}", job);
         if (job instanceof TSDTVPlayJob) {
-            int mediaId = ((TSDTVPlayJob) job).getMediaId();
-            String targetUrl = ((TSDTVPlayJob) job).getTargetUrl();
+            TSDTVPlayJob playJob = (TSDTVPlayJob) job;
+            int mediaId = playJob.getMediaId();
+            String targetUrl = playJob.getTargetUrl();
             TSDTVPlayJobResult result = new TSDTVPlayJobResult();
             result.setJobId(job.getId());
             try {
@@ -78,18 +88,17 @@ public class JobPollingThread implements Runnable {
                     throw new Exception("Could not find media in inventory with id "+mediaId);
                 }
                 log.info("Found media: {}", media);
-                player.play(media, targetUrl, getAvailableBandwidth(), state -> {
-                    boolean error = !FFmpegJob.State.FINISHED.equals(state);
-                    try {
-                        RetryUtil.executeWithRetry("SendMediaStoppedNotification",
-                                5,
-                                () -> client.sendMediaStoppedNotification(mediaId, error));
-                    } catch (RetryInstructionFailedException e) {
-                        log.error("Failed to report to TSDTV that the media has stopped");
-                    }
-                });
+                File mezzanine = mezzanineLibrary.find(media.getMediaInfo());
+                if (playJob.isCue()) {
+                    // started by the player when the current stream ends, and reported in its stopped notification
+                    player.cue(media, mezzanine, targetUrl, getAvailableBandwidth(), reportStopped(mediaId));
+                } else {
+                    // free up the CPU before the stream starts
+                    mezzanineEncoder.yieldToPlayback();
+                    player.play(media, mezzanine, targetUrl, getAvailableBandwidth(), reportStopped(mediaId));
+                    result.setTimeStarted(Instant.now().toEpochMilli());
+                }
                 result.setSuccess(true);
-                result.setTimeStarted(Instant.now().toEpochMilli());
             } catch (Exception e) {
                 log.error("Error playing media: " + mediaId, e);
                 result.setSuccess(false);
@@ -107,6 +116,19 @@ public class JobPollingThread implements Runnable {
         }
     }
 
+    private BiConsumer<FFmpegJob.State, Media> reportStopped(int mediaId) {
+        return (state, next) -> {
+            boolean error = !FFmpegJob.State.FINISHED.equals(state);
+            Integer nextMediaId = next != null ? next.getId() : null;
+            Long nextTimeStarted = next != null ? Instant.now().toEpochMilli() : null;
+            client.sendMediaStoppedNotification(mediaId, error, nextMediaId, nextTimeStarted).whenComplete((v, e) -> {
+                if (e != null) {
+                    log.error("Failed to report to TSDTV that the media has stopped", e);
+                }
+            });
+        };
+    }
+
     private Long getAvailableBandwidth() {
         Long availableBandwidth = networkMonitor.getUploadSpeedBitsPerSecond();
         if (availableBandwidth != null) {
@@ -0,0 +1,216 @@
+package org.tsd.tsdtv;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import net.bramp.ffmpeg.FFprobe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tsd.rest.v1.tsdtv.MediaInfo;
+import org.tsd.util.FfmpegUtil;
+import org.tsd.util.NamedExecutors;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * ffprobe results for the inventory, persisted to disk and keyed by absolute path, size and modification time, so
+ * that a refresh only spawns ffprobe for files that are new or have changed.
+ */
+@Singleton
+class MediaInfoCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaInfoCache.class);
+
+    private final File cacheFile;
+    private final FFprobe fFprobe;
+    private final ExecutorService probeExecutor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Timer probeTimer;
+    private final Meter hits;
+    private final Meter misses;
+
+    // absolute path -> entry
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Inject
+    MediaInfoCache(@Named("mediaInfoCache") File cacheFile,
+                   @Named("probeThreads") int probeThreads,
+                   FFprobe fFprobe,
+                   MetricRegistry metricRegistry) {
+        this.cacheFile = cacheFile;
+        this.fFprobe = fFprobe;
+        this.probeExecutor = NamedExecutors.fixed("ffprobe", probeThreads, metricRegistry);
+        this.probeTimer = metricRegistry.timer(MetricRegistry.name(MediaInfoCache.class, "probe"));
+        this.hits = metricRegistry.meter(MetricRegistry.name(MediaInfoCache.class, "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(MediaInfoCache.class, "misses"));
+        load();
+    }
+
+    /**
+     * @return media info for every file that could be read, probing the ones the cache doesn't hold. Files that
+     * ffprobe fails on are left out.
+     */
+    Map<File, MediaInfo> getMediaInfo(Collection<File> files) {
+        long start = System.nanoTime();
+        Map<File, MediaInfo> results = new HashMap<>();
+        Map<File, Future<Entry>> probes = new LinkedHashMap<>();
+
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            // stat before probing, so a file that changes mid-probe is probed again next time
+            long size = file.length();
+            long lastModified = file.lastModified();
+            Entry entry = entries.get(path);
+            if (entry != null && entry.getSize() == size && entry.getLastModified() == lastModified) {
+                results.put(file, entry.getMediaInfo());
+            } else {
+                probes.put(file, probeExecutor.submit(() -> probe(file, size, lastModified)));
+            }
+        }
+
+        int hitCount = results.size();
+        int failures = 0;
+        long probeNanos = 0;
+        for (Map.Entry<File, Future<Entry>> probe : probes.entrySet()) {
+            try {
+                Entry entry = probe.getValue().get();
+                entries.put(entry.getPath(), entry);
+                results.put(probe.getKey(), entry.getMediaInfo());
+                probeNanos += entry.probeNanos;
+            } catch (ExecutionException e) {
+                log.error("Error probing file: " + probe.getKey().getAbsolutePath(), e.getCause());
+                failures++;
+            } catch (InterruptedException e) {
+                log.error("Interrupted while probing inventory");
+                probes.values().forEach(future -> future.cancel(true));
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (!probes.isEmpty()) {
+            save();
+        }
+
+        hits.mark(hitCount);
+        misses.mark(probes.size());
+        log.info("Compiled media info: files={}, cacheHits={}, probed={}, failed={}, hitRate={}%, " +
+                        "probeMillis={}, elapsedMillis={}",
+                files.size(),
+                hitCount,
+                probes.size(),
+                failures,
+                files.isEmpty() ? 100 : (100 * hitCount) / files.size(),
+                TimeUnit.NANOSECONDS.toMillis(probeNanos),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return results;
+    }
+
+    /**
+     * Drops the entries for every file not in the given set, i.e. files that no longer exist
+     */
+    void retain(Collection<File> files) {
+        Set<String> paths = files.stream()
+                .map(File::getAbsolutePath)
+                .collect(Collectors.toSet());
+        if (entries.keySet().retainAll(paths)) {
+            save();
+        }
+    }
+
+    private Entry probe(File file, long size, long lastModified) throws IOException {
+        long start = System.nanoTime();
+        try (Timer.Context ignored = probeTimer.time()) {
+            Entry entry = new Entry();
+            entry.setPath(file.getAbsolutePath());
+            entry.setSize(size);
+            entry.setLastModified(lastModified);
+            entry.setMediaInfo(FfmpegUtil.getMediaInfo(fFprobe, file));
+            entry.probeNanos = System.nanoTime() - start;
+            return entry;
+        }
+    }
+
+    private void load() {
+        if (!cacheFile.exists()) {
+            log.info("No media info cache at {}, every file will be probed", cacheFile.getAbsolutePath());
+            return;
+        }
+        try {
+            List<Entry> loaded = objectMapper.readValue(cacheFile, new TypeReference<List<Entry>>() {});
+            loaded.forEach(entry -> entries.put(entry.getPath(), entry));
+            log.info("Loaded {} entries from media info cache: {}", entries.size(), cacheFile.getAbsolutePath());
+        } catch (Exception e) {
+            log.error("Error reading media info cache, starting empty: " + cacheFile.getAbsolutePath(), e);
+        }
+    }
+
+    private void save() {
+        File tempFile = new File(cacheFile.getAbsolutePath() + ".tmp");
+        try {
+            objectMapper.writeValue(tempFile, new ArrayList<>(entries.values()));
+            Files.move(tempFile.toPath(), cacheFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Saved {} entries to media info cache", entries.size());
+        } catch (Exception e) {
+            log.error("Error saving media info cache: " + cacheFile.getAbsolutePath(), e);
+        }
+    }
+
+    static class Entry {
+        private String path;
+        private long size;
+        private long lastModified;
+        private MediaInfo mediaInfo;
+
+        private transient long probeNanos;
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public void setLastModified(long lastModified) {
+            this.lastModified = lastModified;
+        }
+
+        public MediaInfo getMediaInfo() {
+            return mediaInfo;
+        }
+
+        public void setMediaInfo(MediaInfo mediaInfo) {
+            this.mediaInfo = mediaInfo;
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package org.tsd.tsdtv;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.http.HttpEntityEnclosingRequest;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.*;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.nio.client.HttpAsyncClient;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,32 +30,58 @@ import org.tsd.rest.v1.tsdtv.StoppedPlayingNotification;
 import org.tsd.rest.v1.tsdtv.job.Job;
 import org.tsd.rest.v1.tsdtv.job.JobResult;
 import org.tsd.tsdtv.release.Release;
+import org.tsd.util.Backoff;
+import org.tsd.util.NamedExecutors;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
+/**
+ * Non-blocking client for the TSDBot API. Traffic is split over two lanes, each with its own connection pool:
+ * job traffic (polls, results, stopped notifications) stays responsive while a heartbeat carrying a large inventory
+ * or a release notification is still in flight on the bulk lane.
+ *
+ * Requests that fail with an I/O error are retried with jittered exponential backoff, scheduled rather than slept
+ * so that no thread is held while waiting. HTTP error responses are not retried.
+ *
+ * Responses that may be large are parsed on the client's worker threads rather than on the async client's I/O
+ * dispatcher, which would stall every other connection on it until the parse finished.
+ */
 public class TSDBotClient {
 
     private static final Logger log = LoggerFactory.getLogger(TSDBotClient.class);
 
-    private static final int MAX_ATTEMPTS = 10;
-    private static final long ATTEMPT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final Backoff JOB_BACKOFF = new Backoff(100, TimeUnit.SECONDS.toMillis(5), 10);
+    private static final Backoff BULK_BACKOFF = new Backoff(500, TimeUnit.SECONDS.toMillis(30), 10);
 
-    private final HttpClient httpClient;
+    private static final int WORKER_THREADS = 2;
+
+    private final Lane jobLane;
+    private final Lane bulkLane;
+    private final ScheduledExecutorService retryScheduler;
+    private final ExecutorService workerExecutor;
     private final URL tsdbotUrl;
     private final ObjectMapper objectMapper;
     private final String agentId;
     private final String serviceAuthPassword;
 
-    public TSDBotClient(HttpClient httpClient,
+    public TSDBotClient(HttpAsyncClient jobClient,
+                        HttpAsyncClient bulkClient,
+                        MetricRegistry metricRegistry,
                         URL tsdbotUrl,
                         String agentId,
                         String serviceAuthPassword,
                         ObjectMapper objectMapper) {
-        this.httpClient = httpClient;
+        this.jobLane = new Lane("job", jobClient, JOB_BACKOFF, metricRegistry);
+        this.bulkLane = new Lane("bulk", bulkClient, BULK_BACKOFF, metricRegistry);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("tsdbot-client-retry").setDaemon(true).build());
+        this.workerExecutor = NamedExecutors.elastic("tsdbot-client", WORKER_THREADS, metricRegistry);
         this.tsdbotUrl = tsdbotUrl;
         this.agentId = agentId;
         this.serviceAuthPassword = serviceAuthPassword;
@@ -54,106 +90,118 @@ public class TSDBotClient {
     }
 
     public HeartbeatResponse sendTsdtvAgentHeartbeat(Heartbeat heartbeat) throws Exception {
-        URIBuilder uriBuilder = new URIBuilder(tsdbotUrl.toURI())
-                .setPath("/tsdtv/agent/"+heartbeat.getAgentId());
-        URI uri = uriBuilder.build();
-        log.info("Sending TSDTV agent heartbeat, URI={}", uri);
-
-        HttpPut put = new HttpPut(uri);
-        applyAuthHeader(put);
-        applyJsonEntity(put, heartbeat);
-        
-        try (CloseableHttpResponse response = getResponseWithRedundancy(httpClient, put)) {
-            if (response.getStatusLine().getStatusCode()/100 != 2) {
-                String msg = String.format("HTTP error %d: %s",
-                        response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
-                throw new Exception(msg);
-            }
-            String responseString = EntityUtils.toString(response.getEntity());
-            log.debug("Heartbeat successful, received response: {}", responseString);
-            return objectMapper.readValue(responseString, HeartbeatResponse.class);
+        return await(sendTsdtvAgentHeartbeatAsync(heartbeat));
+    }
+
+    public CompletableFuture<HeartbeatResponse> sendTsdtvAgentHeartbeatAsync(Heartbeat heartbeat) {
+        try {
+            URI uri = buildUri("/tsdtv/agent/" + heartbeat.getAgentId());
+            log.info("Sending TSDTV agent heartbeat, URI={}", uri);
+
+            HttpPut put = new HttpPut(uri);
+            applyAuthHeader(put);
+            applyJsonEntity(put, heartbeat);
+
+            return execute(bulkLane, put).thenApplyAsync(response -> {
+                String responseString = readSuccessfulResponse(response);
+                log.debug("Heartbeat successful, received response: {}", responseString);
+                return readValue(responseString, HeartbeatResponse.class);
+            }, workerExecutor);
+        } catch (Exception e) {
+            return failed(e);
         }
     }
 
-    public void sendMediaStoppedNotification(int mediaId, boolean error) throws Exception {
+    /**
+     * @param nextMediaId the cued media that started when this one stopped, or null
+     */
+    public CompletableFuture<Void> sendMediaStoppedNotification(int mediaId,
+                                                                boolean error,
+                                                                Integer nextMediaId,
+                                                                Long nextTimeStarted) {
         StoppedPlayingNotification notification = new StoppedPlayingNotification();
         notification.setAgentId(agentId);
         notification.setMediaId(mediaId);
         notification.setError(error);
+        notification.setNextMediaId(nextMediaId);
+        notification.setNextTimeStarted(nextTimeStarted);
 
-        URIBuilder uriBuilder = new URIBuilder(tsdbotUrl.toURI())
-                .setPath("/tsdtv/stopped");
-        URI uri = uriBuilder.build();
-        log.info("Sending TSDTV agent stopped notification, URI={}, entity={}", uri, notification);
+        try {
+            URI uri = buildUri("/tsdtv/stopped");
+            log.info("Sending TSDTV agent stopped notification, URI={}, entity={}", uri, notification);
 
-        HttpPost post = new HttpPost(uri);
-        applyAuthHeader(post);
-        applyJsonEntity(post, notification);
+            HttpPost post = new HttpPost(uri);
+            applyAuthHeader(post);
+            applyJsonEntity(post, notification);
 
-        try (CloseableHttpResponse response = getResponseWithRedundancy(httpClient, post)) {
-            if (response.getStatusLine().getStatusCode()/100 != 2) {
-                String msg = String.format("HTTP error %d: %s",
-                        response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
-                throw new Exception(msg);
-            }
+            return execute(jobLane, post).thenAccept(TSDBotClient::readSuccessfulResponse);
+        } catch (Exception e) {
+            return failed(e);
         }
     }
 
-    public Job pollForJob() throws Exception {
-        URIBuilder uriBuilder = new URIBuilder(tsdbotUrl.toURI())
-                .setPath("/job/"+agentId);
-        URI uri = uriBuilder.build();
-        log.debug("Sending job poll request, URI={}", uri);
+    public Job pollForJob(long waitMillis) throws Exception {
+        return await(pollForJobAsync(waitMillis));
+    }
 
-        HttpGet get = new HttpGet(uri);
-        applyAuthHeader(get);
+    /**
+     * @param waitMillis how long the server may hold the request open waiting for a job. The job lane's socket
+     *                   timeout must be longer than this.
+     */
+    public CompletableFuture<Job> pollForJobAsync(long waitMillis) {
+        try {
+            URI uri = new URIBuilder(tsdbotUrl.toURI())
+                    .setPath("/job/" + agentId)
+                    .addParameter("waitMillis", Long.toString(waitMillis))
+                    .build();
+            log.debug("Sending job poll request, URI={}", uri);
 
-        try (CloseableHttpResponse response = getResponseWithRedundancy(httpClient, get)) {
-            if (response.getStatusLine().getStatusCode()/100 != 2) {
-                String msg = String.format("HTTP error %d: %s",
-                        response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
-                throw new Exception(msg);
-            }
-            if (response.getStatusLine().getStatusCode() == Response.Status.OK.getStatusCode()) {
-                String responseString = EntityUtils.toString(response.getEntity());
-                Job job = objectMapper.readValue(responseString, Job.class);
-                log.debug("Received job from server: {}", job);
-                return job;
-            }
-            return null;
+            HttpGet get = new HttpGet(uri);
+            applyAuthHeader(get);
+
+            return execute(jobLane, get).thenApplyAsync(response -> {
+                String responseString = readSuccessfulResponse(response);
+                if (response.getStatusLine().getStatusCode() == Response.Status.OK.getStatusCode()) {
+                    Job job = readValue(responseString, Job.class);
+                    log.debug("Received job from server: {}", job);
+                    return job;
+                }
+                return null;
+            }, workerExecutor);
+        } catch (Exception e) {
+            return failed(e);
         }
     }
 
-    public void sendJobResult(JobResult result) {
+    public CompletableFuture<Void> sendJobResult(JobResult result) {
+        CompletableFuture<Void> future;
         try {
-            URIBuilder uriBuilder = new URIBuilder(tsdbotUrl.toURI())
-                    .setPath("/job/" + result.getJobId());
-            URI uri = uriBuilder.build();
-            log.debug("Sending job poll request, URI={}, result={}", uri, result);
+            URI uri = buildUri("/job/" + result.getJobId());
+            log.debug("Sending job result, URI={}, result={}", uri, result);
 
             HttpPut put = new HttpPut(uri);
             applyAuthHeader(put);
             applyJsonEntity(put, result);
 
-            try (CloseableHttpResponse response = getResponseWithRedundancy(httpClient, put)) {
-                if (response.getStatusLine().getStatusCode() / 100 != 2) {
-                    String msg = String.format("HTTP error %d: %s",
-                            response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
-                    throw new Exception(msg);
-                }
-                String responseString = EntityUtils.toString(response.getEntity());
+            future = execute(jobLane, put).thenAccept(response -> {
+                String responseString = readSuccessfulResponse(response);
                 log.debug("Job update successful, received response: {}", responseString);
-            }
+            });
         } catch (Exception e) {
-            log.error("Error sending job result: " + result, e);
+            future = failed(e);
         }
+
+        return future.whenComplete((v, e) -> {
+            if (e != null) {
+                log.error("Error sending job result: " + result, e);
+            }
+        });
     }
 
-    public void notifyNewRelease(Release release) {
+    public CompletableFuture<Void> notifyNewRelease(Release release) {
+        CompletableFuture<Void> future;
         try {
-            URIBuilder uriBuilder = new URIBuilder(tsdbotUrl.toURI())
-                    .setPath("/release");
-            URI uri = uriBuilder.build();
+            URI uri = buildUri("/release");
             log.debug("Sending new release notification, URI={}, release={}", uri, release);
 
             NewReleaseNotification notification = new NewReleaseNotification();
@@ -165,18 +213,25 @@ public class TSDBotClient {
             applyAuthHeader(put);
             applyJsonEntity(put, notification);
 
-            try (CloseableHttpResponse response = getResponseWithRedundancy(httpClient, put)) {
-                if (response.getStatusLine().getStatusCode() / 100 != 2) {
-                    String msg = String.format("HTTP error %d: %s",
-                            response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
-                    throw new Exception(msg);
-                }
-                String responseString = EntityUtils.toString(response.getEntity());
+            future = execute(bulkLane, put).thenAccept(response -> {
+                String responseString = readSuccessfulResponse(response);
                 log.debug("New release notification successful, received response: {}", responseString);
-            }
+            });
         } catch (Exception e) {
-            log.error("Error sending new notification release: " + release, e);
+            future = failed(e);
         }
+
+        return future.whenComplete((v, e) -> {
+            if (e != null) {
+                log.error("Error sending new notification release: " + release, e);
+            }
+        });
+    }
+
+    private URI buildUri(String path) throws URISyntaxException {
+        return new URIBuilder(tsdbotUrl.toURI())
+                .setPath(path)
+                .build();
     }
 
     private void applyAuthHeader(HttpUriRequest request) {
@@ -190,26 +245,103 @@ public class TSDBotClient {
         request.setHeader("Content-Type", MediaType.APPLICATION_JSON);
     }
 
-    private CloseableHttpResponse getResponseWithRedundancy(HttpClient client, HttpUriRequest request) throws Exception {
-        int attempts = 0;
-        Exception error = null;
-        while (attempts < MAX_ATTEMPTS) {
-            try {
-                return (CloseableHttpResponse) client.execute(request);
-            } catch (Exception e) {
-                log.error("Error during execution, retrying after " + ATTEMPT_INTERVAL_MILLIS + " ms");
-                log.error("Error", e);
-                try {
-                    error = e;
-                    attempts++;
-                    Thread.sleep(ATTEMPT_INTERVAL_MILLIS);
-                } catch (InterruptedException ie) {
-                    log.error("Interrupted");
+    private <T> T readValue(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /*
+    The async client buffers the whole response, so reading the entity here doesn't block on the network
+     */
+    private static String readSuccessfulResponse(HttpResponse response) {
+        StatusLine statusLine = response.getStatusLine();
+        if (statusLine.getStatusCode()/100 != 2) {
+            String msg = String.format("HTTP error %d: %s", statusLine.getStatusCode(), statusLine.getReasonPhrase());
+            throw new CompletionException(new Exception(msg));
+        }
+        try {
+            return response.getEntity() == null ? null : EntityUtils.toString(response.getEntity());
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private CompletableFuture<HttpResponse> execute(Lane lane, HttpUriRequest request) {
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        attempt(lane, request, 1, result);
+        return result;
+    }
+
+    private void attempt(Lane lane, HttpUriRequest request, int attempt, CompletableFuture<HttpResponse> result) {
+        Timer.Context timer = lane.latency.time();
+        try {
+            lane.client.execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    timer.stop();
+                    result.complete(response);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    timer.stop();
+                    retryOrFail(lane, request, attempt, e, result);
+                }
+
+                @Override
+                public void cancelled() {
+                    timer.stop();
+                    result.cancel(false);
                 }
+            });
+        } catch (RuntimeException e) {
+            // the client has been shut down
+            timer.stop();
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void retryOrFail(Lane lane,
+                             HttpUriRequest request,
+                             int attempt,
+                             Exception error,
+                             CompletableFuture<HttpResponse> result) {
+        if (attempt >= lane.backoff.getMaxAttempts()) {
+            log.error("Giving up on {} {} after {} attempts", request.getMethod(), request.getURI(), attempt);
+            lane.failures.mark();
+            result.completeExceptionally(error);
+            return;
+        }
+
+        long delayMillis = lane.backoff.delayMillis(attempt);
+        log.warn("Error during {} {} (attempt {} of {}), retrying after {} ms: {}",
+                request.getMethod(), request.getURI(), attempt, lane.backoff.getMaxAttempts(), delayMillis, error.toString());
+        lane.retries.mark();
+        try {
+            retryScheduler.schedule(() -> attempt(lane, request, attempt + 1, result), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
             }
+            throw e;
         }
+    }
 
-        throw error;
+    private static <T> CompletableFuture<T> failed(Throwable t) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
     }
 
     @Override
@@ -220,4 +352,20 @@ public class TSDBotClient {
                 .append("serviceAuthPassword", serviceAuthPassword)
                 .toString();
     }
+
+    private static class Lane {
+        private final HttpAsyncClient client;
+        private final Backoff backoff;
+        private final Timer latency;
+        private final Meter retries;
+        private final Meter failures;
+
+        Lane(String name, HttpAsyncClient client, Backoff backoff, MetricRegistry metricRegistry) {
+            this.client = client;
+            this.backoff = backoff;
+            this.latency = metricRegistry.timer(MetricRegistry.name(TSDBotClient.class, name, "latency"));
+            this.retries = metricRegistry.meter(MetricRegistry.name(TSDBotClient.class, name, "retries"));
+            this.failures = metricRegistry.meter(MetricRegistry.name(TSDBotClient.class, name, "failures"));
+        }
+    }
 }
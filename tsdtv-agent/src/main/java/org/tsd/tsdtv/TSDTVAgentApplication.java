@@ -1,5 +1,6 @@
 package org.tsd.tsdtv;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -7,14 +8,17 @@ import com.google.inject.Injector;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 import io.dropwizard.Application;
+import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.setup.Environment;
-import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tsd.app.module.FfmpegModule;
 import org.tsd.app.module.UtilityModule;
+import org.tsd.tsdtv.mezzanine.MezzanineConfig;
+import org.tsd.tsdtv.mezzanine.MezzanineEncoder;
 import org.tsd.tsdtv.module.TorrentModule;
+import org.tsd.util.PooledHttpClients;
 import org.tsd.tsdtv.release.ReleaseFetcherThread;
 import org.tsd.tsdtv.release.ReleaseSource;
 
@@ -44,9 +48,14 @@ public class TSDTVAgentApplication extends Application<TSDTVAgentConfiguration>
             @Override
             protected void configure() {
 
-                install(new UtilityModule());
+                install(new UtilityModule(tsdtvAgentConfiguration.getExecutors(),
+                        tsdtvAgentConfiguration.getHttp(),
+                        environment.metrics()));
                 install(new TorrentModule(tsdtvAgentConfiguration));
 
+                bind(MetricRegistry.class)
+                        .toInstance(environment.metrics());
+
                 log.info("Binding agentId: {}", tsdtvAgentConfiguration.getAgentId());
                 bind(String.class)
                         .annotatedWith(Names.named("agentId"))
@@ -84,8 +93,46 @@ public class TSDTVAgentApplication extends Application<TSDTVAgentConfiguration>
                     throw new RuntimeException("Failed to initialize TSDTV inventory", e);
                 }
 
-                HttpClient httpClient = HttpClients.createDefault();
-                TSDBotClient tsdBotClient = new TSDBotClient(httpClient,
+                File mediaInfoCache = new File(tsdtvAgentConfiguration.getMediaInfoCachePath());
+                log.info("Binding media info cache: {}", mediaInfoCache);
+                bind(File.class)
+                        .annotatedWith(Names.named("mediaInfoCache"))
+                        .toInstance(mediaInfoCache);
+                bind(Integer.class)
+                        .annotatedWith(Names.named("probeThreads"))
+                        .toInstance(tsdtvAgentConfiguration.getProbeThreads());
+
+                log.info("Binding mezzanine config, enabled={}, directory={}",
+                        tsdtvAgentConfiguration.getMezzanine().isEnabled(),
+                        tsdtvAgentConfiguration.getMezzanine().getDirectory());
+                bind(MezzanineConfig.class)
+                        .toInstance(tsdtvAgentConfiguration.getMezzanine());
+
+                CloseableHttpAsyncClient jobClient;
+                CloseableHttpAsyncClient bulkClient;
+                try {
+                    jobClient = PooledHttpClients.createAsync("tsdbot-job",
+                            tsdtvAgentConfiguration.getJobHttp(), environment.metrics());
+                    bulkClient = PooledHttpClients.createAsync("tsdbot",
+                            tsdtvAgentConfiguration.getHttp(), environment.metrics());
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to initialize TSDBot HTTP clients", e);
+                }
+                environment.lifecycle().manage(new Managed() {
+                    @Override
+                    public void start() {
+                    }
+
+                    @Override
+                    public void stop() throws Exception {
+                        jobClient.close();
+                        bulkClient.close();
+                    }
+                });
+
+                TSDBotClient tsdBotClient = new TSDBotClient(jobClient,
+                        bulkClient,
+                        environment.metrics(),
                         tsdbotUrl,
                         tsdtvAgentConfiguration.getAgentId(),
                         tsdtvAgentConfiguration.getPassword(),
@@ -102,10 +149,15 @@ public class TSDTVAgentApplication extends Application<TSDTVAgentConfiguration>
             }
         });
 
-        Stream.of(injector.getInstance(NetworkMonitor.class),
+        Stream<Runnable> mezzanineEncoder = tsdtvAgentConfiguration.getMezzanine().isEnabled()
+                ? Stream.of(injector.getInstance(MezzanineEncoder.class))
+                : Stream.empty();
+
+        Stream.concat(Stream.of(injector.getInstance(NetworkMonitor.class),
                 injector.getInstance(HeartbeatThread.class),
+                injector.getInstance(InventoryWatcher.class),
                 injector.getInstance(JobPollingThread.class),
-                injector.getInstance(ReleaseFetcherThread.class))
+                injector.getInstance(ReleaseFetcherThread.class)), mezzanineEncoder)
                 .map(runnable -> new Thread(runnable, runnable.getClass()+"-ServiceThread"))
                 .peek(thread -> log.warn("Starting thread: {}", thread.getName()))
                 .forEach(Thread::start);
@@ -2,10 +2,14 @@ package org.tsd.tsdtv;
 
 import io.dropwizard.Configuration;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.tsd.app.config.ExecutorConfig;
 import org.tsd.app.config.FfmpegConfig;
+import org.tsd.app.config.HttpClientConfig;
+import org.tsd.tsdtv.mezzanine.MezzanineConfig;
 import org.tsd.tsdtv.release.ReleaseSource;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +36,33 @@ public class TSDTVAgentConfiguration extends Configuration {
     @Valid
     private FfmpegConfig ffmpeg;
 
+    // ffprobe results for the inventory, so unchanged files aren't probed on every refresh
+    @NotNull
+    @NotEmpty
+    private String mediaInfoCachePath = "mediainfo-cache.json";
+
+    // ffprobe processes run at once while refreshing the inventory
+    @Min(1)
+    private int probeThreads = 4;
+
+    @NotNull
+    @Valid
+    private ExecutorConfig executors = new ExecutorConfig();
+
+    @NotNull
+    @Valid
+    private HttpClientConfig http = new HttpClientConfig();
+
+    // separate pool for job polls, job results and stopped notifications. The socket timeout has to outlast a
+    // job long-poll (20s)
+    @NotNull
+    @Valid
+    private HttpClientConfig jobHttp = new HttpClientConfig();
+
+    @NotNull
+    @Valid
+    private MezzanineConfig mezzanine = new MezzanineConfig();
+
     @NotNull
     @NotEmpty
     private String releasesDirectory;
@@ -55,6 +86,54 @@ public class TSDTVAgentConfiguration extends Configuration {
         this.releasesDirectory = releasesDirectory;
     }
 
+    public HttpClientConfig getHttp() {
+        return http;
+    }
+
+    public void setHttp(HttpClientConfig http) {
+        this.http = http;
+    }
+
+    public HttpClientConfig getJobHttp() {
+        return jobHttp;
+    }
+
+    public void setJobHttp(HttpClientConfig jobHttp) {
+        this.jobHttp = jobHttp;
+    }
+
+    public MezzanineConfig getMezzanine() {
+        return mezzanine;
+    }
+
+    public void setMezzanine(MezzanineConfig mezzanine) {
+        this.mezzanine = mezzanine;
+    }
+
+    public String getMediaInfoCachePath() {
+        return mediaInfoCachePath;
+    }
+
+    public void setMediaInfoCachePath(String mediaInfoCachePath) {
+        this.mediaInfoCachePath = mediaInfoCachePath;
+    }
+
+    public int getProbeThreads() {
+        return probeThreads;
+    }
+
+    public void setProbeThreads(int probeThreads) {
+        this.probeThreads = probeThreads;
+    }
+
+    public ExecutorConfig getExecutors() {
+        return executors;
+    }
+
+    public void setExecutors(ExecutorConfig executors) {
+        this.executors = executors;
+    }
+
     public String getPassword() {
         return password;
     }
@@ -0,0 +1,67 @@
+package org.tsd.tsdtv.mezzanine;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class MezzanineConfig {
+
+    // pre-encode the inventory into stream-ready mezzanines while nothing is playing
+    private boolean enabled = false;
+
+    @NotNull
+    @NotEmpty
+    private String directory = "mezzanines";
+
+    // disk space all mezzanines may use together
+    @Min(1)
+    private long quotaMegabytes = 50 * 1024;
+
+    // two passes hit the bitrate more evenly, at twice the encoding time
+    private boolean twoPass = true;
+
+    // how long the player has to be idle before encoding starts
+    @Min(0)
+    private long idleSeconds = 120;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getQuotaMegabytes() {
+        return quotaMegabytes;
+    }
+
+    public void setQuotaMegabytes(long quotaMegabytes) {
+        this.quotaMegabytes = quotaMegabytes;
+    }
+
+    public boolean isTwoPass() {
+        return twoPass;
+    }
+
+    public void setTwoPass(boolean twoPass) {
+        this.twoPass = twoPass;
+    }
+
+    public long getIdleSeconds() {
+        return idleSeconds;
+    }
+
+    public void setIdleSeconds(long idleSeconds) {
+        this.idleSeconds = idleSeconds;
+    }
+}
@@ -0,0 +1,303 @@
+package org.tsd.tsdtv.mezzanine;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Singleton;
+import net.bramp.ffmpeg.FFmpeg;
+import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.job.FFmpegJob;
+import net.bramp.ffmpeg.job.SinglePassFFmpegJob;
+import net.bramp.ffmpeg.job.TwoPassFFmpegJob;
+import net.bramp.ffmpeg.progress.Progress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tsd.rest.v1.tsdtv.Media;
+import org.tsd.rest.v1.tsdtv.MediaInfo;
+import org.tsd.rest.v1.tsdtv.MezzanineStatus;
+import org.tsd.tsdtv.AgentInventory;
+import org.tsd.tsdtv.TSDTVPlayer;
+import org.tsd.util.FfmpegUtil;
+import org.tsd.util.NamedExecutors;
+import org.tsd.util.StreamPlan;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Encodes the inventory into mezzanines while the player is idle, most recently added sources first, one at a time.
+ * An encode is stopped, and thrown away, as soon as anything plays.
+ */
+@Singleton
+public class MezzanineEncoder implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(MezzanineEncoder.class);
+
+    private static final long PERIOD_SECONDS = 10;
+
+    // room for the container, and for the encoder overshooting its bitrate
+    private static final double SIZE_ESTIMATE_MARGIN = 1.1;
+
+    private final MezzanineConfig config;
+    private final MezzanineLibrary library;
+    private final AgentInventory agentInventory;
+    private final TSDTVPlayer player;
+    private final FFmpeg fFmpeg;
+    private final Clock clock;
+    private final ExecutorService encodeExecutor;
+
+    // sources that failed to encode, which aren't tried again until they change
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+    // planned once per version of a source, empty if it needs no mezzanine
+    private final Map<String, Optional<StreamPlan>> plans = new HashMap<>();
+
+    private volatile Encode current = null;
+    private volatile Instant lastBusy = Instant.MIN;
+    private volatile int pending = 0;
+    private boolean shutdown = false;
+
+    @Inject
+    public MezzanineEncoder(MezzanineConfig config,
+                            MezzanineLibrary library,
+                            AgentInventory agentInventory,
+                            TSDTVPlayer player,
+                            FFmpeg fFmpeg,
+                            Clock clock,
+                            MetricRegistry metricRegistry) {
+        this.config = config;
+        this.library = library;
+        this.agentInventory = agentInventory;
+        this.player = player;
+        this.clock = clock;
+        this.encodeExecutor = NamedExecutors.fixed("mezzanine", 1, metricRegistry);
+        try {
+            // its own instance, since stopping an FFmpeg stops whatever it last ran, which may be the player's stream
+            this.fFmpeg = new FFmpeg(fFmpeg.getPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to initialize FFmpeg for mezzanines: " + fFmpeg.getPath(), e);
+        }
+    }
+
+    @Override
+    public void run() {
+        log.info("Starting mezzanine encoder, directory={}, quotaMegabytes={}, twoPass={}",
+                config.getDirectory(), config.getQuotaMegabytes(), config.isTwoPass());
+        while (!shutdown) {
+            try {
+                encodeIfIdle();
+            } catch (Exception e) {
+                log.error("Error encoding mezzanines", e);
+            }
+
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(PERIOD_SECONDS));
+            } catch (InterruptedException e) {
+                log.error("Interrupted", e);
+                yieldToPlayback();
+                shutdown = true;
+            }
+        }
+    }
+
+    /**
+     * Stops the running encode, if any, and holds off starting another until the player has been idle a while
+     */
+    public void yieldToPlayback() {
+        lastBusy = clock.instant();
+        Encode encode = current;
+        if (encode != null && !encode.future.isDone()) {
+            log.info("Stopping mezzanine encode for playback: {}", encode.source.getFilePath());
+            encode.stopped = true;
+            encode.job.stop();
+        }
+    }
+
+    /**
+     * @return the state of the mezzanines, or null if they're disabled
+     */
+    public MezzanineStatus getStatus() {
+        if (!library.isEnabled()) {
+            return null;
+        }
+        MezzanineStatus status = new MezzanineStatus();
+        status.setCount(library.getCount());
+        status.setUsedBytes(library.getUsedBytes());
+        status.setQuotaBytes(library.getQuotaBytes());
+        status.setPending(pending);
+        Encode encode = current;
+        if (encode != null && !encode.future.isDone()) {
+            status.setEncoding(encode.source.getFilePath());
+            status.setProgress(encode.progress);
+            status.setSpeed(encode.speed);
+        }
+        return status;
+    }
+
+    synchronized void encodeIfIdle() throws IOException {
+        if (player.isPlaying()) {
+            yieldToPlayback();
+            return;
+        }
+
+        Encode encode = current;
+        if (encode != null) {
+            if (!encode.future.isDone()) {
+                // stopping a two pass encode between its passes doesn't stop the second
+                if (encode.stopped) {
+                    encode.job.stop();
+                }
+                return;
+            }
+            finish(encode);
+            current = null;
+        }
+
+        if (clock.instant().isBefore(lastBusy.plusSeconds(config.getIdleSeconds()))) {
+            return;
+        }
+
+        Collection<Media> inventory = agentInventory.getMedia();
+        if (inventory.isEmpty()) {
+            // not scanned yet, and there's nothing to encode anyway
+            return;
+        }
+        library.retain(inventory.stream().map(Media::getMediaInfo).collect(Collectors.toList()));
+
+        List<Candidate> candidates = candidates(inventory);
+        pending = candidates.size();
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        // later candidates are wanted less, so if this one doesn't fit they won't either
+        Candidate next = candidates.get(0);
+        if (library.makeRoom(next.estimatedBytes, next.wanted)) {
+            start(next);
+        } else {
+            log.debug("No room for mezzanine of {}, {} bytes", next.media.getMediaInfo().getFilePath(), next.estimatedBytes);
+        }
+    }
+
+    private List<Candidate> candidates(Collection<Media> inventory) {
+        List<Candidate> candidates = new ArrayList<>();
+        Set<String> sourceKeys = new HashSet<>();
+        for (Media media : inventory) {
+            MediaInfo source = media.getMediaInfo();
+            if (source == null || source.getDurationSeconds() <= 0 || library.exists(source)) {
+                continue;
+            }
+            File sourceFile = new File(source.getFilePath());
+            String sourceKey = sourceKey(sourceFile);
+            sourceKeys.add(sourceKey);
+            if (failed.contains(sourceKey)) {
+                continue;
+            }
+            Optional<StreamPlan> plan
+                    = plans.computeIfAbsent(sourceKey, key -> Optional.ofNullable(FfmpegUtil.planMezzanine(source)));
+            if (plan.isPresent()) {
+                candidates.add(new Candidate(media, plan.get(), sourceFile.lastModified()));
+            }
+        }
+        plans.keySet().retainAll(sourceKeys);
+        candidates.sort(Comparator.comparingLong((Candidate candidate) -> candidate.wanted).reversed());
+        return candidates;
+    }
+
+    private void start(Candidate candidate) throws IOException {
+        MediaInfo source = candidate.media.getMediaInfo();
+        File part = library.partFileFor(source);
+        FFmpegBuilder builder = FfmpegUtil.buildMezzanine(candidate.media, candidate.plan, part.getAbsolutePath());
+
+        int passes = config.isTwoPass() ? 2 : 1;
+        Encode encode = new Encode(candidate, part);
+        long durationNanos = TimeUnit.SECONDS.toNanos(source.getDurationSeconds());
+        encode.job = config.isTwoPass()
+                ? new TwoPassFFmpegJob(fFmpeg, builder, progress -> encode.update(progress, durationNanos, passes))
+                : new SinglePassFFmpegJob(fFmpeg, builder, progress -> encode.update(progress, durationNanos, passes));
+
+        log.info("Encoding mezzanine: source={}, plan={}, passes={}", source.getFilePath(), candidate.plan, passes);
+        encode.future = encodeExecutor.submit(encode.job);
+        current = encode;
+    }
+
+    private void finish(Encode encode) {
+        MediaInfo source = encode.source;
+        try {
+            if (FFmpegJob.State.FINISHED.equals(encode.job.getState())) {
+                library.commit(encode.part, source, encode.wanted);
+                return;
+            }
+            if (encode.stopped) {
+                log.info("Mezzanine encode was stopped: {}", source.getFilePath());
+            } else {
+                log.error("Mezzanine encode failed, not retrying until the source changes: {}", source.getFilePath());
+                failed.add(sourceKey(new File(source.getFilePath())));
+            }
+        } catch (IOException e) {
+            log.error("Error adding mezzanine: " + source.getFilePath(), e);
+        } finally {
+            if (encode.part.exists() && !encode.part.delete()) {
+                log.warn("Failed to delete unfinished mezzanine: {}", encode.part);
+            }
+        }
+    }
+
+    private static String sourceKey(File source) {
+        return source.getAbsolutePath() + "-" + source.length() + "-" + source.lastModified();
+    }
+
+    private static class Candidate {
+        final Media media;
+        final StreamPlan plan;
+        // the source's modification time
+        final long wanted;
+        final long estimatedBytes;
+
+        Candidate(Media media, StreamPlan plan, long wanted) {
+            this.media = media;
+            this.plan = plan;
+            this.wanted = wanted;
+            StreamPlan.Rendition top = plan.getRenditions().get(0);
+            long bitrate = top.getVideoBitrate() + top.getAudioBitrate();
+            this.estimatedBytes
+                    = (long) (bitrate / 8.0 * media.getMediaInfo().getDurationSeconds() * SIZE_ESTIMATE_MARGIN);
+        }
+    }
+
+    private static class Encode {
+        final MediaInfo source;
+        final File part;
+        final long wanted;
+
+        FFmpegJob job;
+        Future<?> future;
+        volatile boolean stopped = false;
+
+        private int passesDone = 0;
+        volatile Double progress = 0.0;
+        volatile Double speed = null;
+
+        Encode(Candidate candidate, File part) {
+            this.source = candidate.media.getMediaInfo();
+            this.part = part;
+            this.wanted = candidate.wanted;
+        }
+
+        // called on the progress parser's thread
+        void update(Progress report, long durationNanos, int passes) {
+            if (report.isEnd()) {
+                passesDone++;
+            }
+            double pass = report.isEnd() ? 0 : Math.min(1.0, (double) report.out_time_ns / durationNanos);
+            progress = Math.min(1.0, (passesDone + pass) / passes);
+            speed = (double) report.speed;
+        }
+    }
+}
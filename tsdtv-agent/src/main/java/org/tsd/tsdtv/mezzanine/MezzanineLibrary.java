@@ -0,0 +1,175 @@
+package org.tsd.tsdtv.mezzanine;
+
+import com.google.common.hash.Hashing;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tsd.rest.v1.tsdtv.MediaInfo;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The mezzanines on disk, one per source file. A mezzanine is named after its source's path, size and modification
+ * time, so a changed source never plays a stale one.
+ *
+ * The modification time of a mezzanine is when it was last wanted: its source's modification time when it's
+ * encoded, and the time it was last played after that. Eviction removes the least recently wanted first, and only
+ * to make room for a source wanted more recently, so the encoder can't keep evicting and re-encoding the same files.
+ */
+@Singleton
+public class MezzanineLibrary {
+
+    private static final Logger log = LoggerFactory.getLogger(MezzanineLibrary.class);
+
+    static final String EXTENSION = ".mkv";
+    static final String PART_EXTENSION = ".part";
+
+    // left free on the disk whatever the quota
+    private static final long DISK_MARGIN_BYTES = 1024L * 1024 * 1024;
+
+    private final MezzanineConfig config;
+    private final File directory;
+    private final long quotaBytes;
+    private final Clock clock;
+
+    @Inject
+    public MezzanineLibrary(MezzanineConfig config, Clock clock) {
+        this.config = config;
+        this.directory = new File(config.getDirectory());
+        this.quotaBytes = config.getQuotaMegabytes() * 1024 * 1024;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * @return the mezzanine of the source, or null if there isn't one. Marks it as wanted now.
+     */
+    public File find(MediaInfo source) {
+        if (!isEnabled()) {
+            return null;
+        }
+        File mezzanine = fileFor(source);
+        if (!mezzanine.isFile()) {
+            return null;
+        }
+        if (!mezzanine.setLastModified(clock.millis())) {
+            log.warn("Failed to mark mezzanine as used: {}", mezzanine);
+        }
+        return mezzanine;
+    }
+
+    boolean exists(MediaInfo source) {
+        return fileFor(source).isFile();
+    }
+
+    File partFileFor(MediaInfo source) throws IOException {
+        Files.createDirectories(directory.toPath());
+        return new File(directory, nameOf(source) + PART_EXTENSION);
+    }
+
+    /**
+     * Evicts mezzanines wanted less recently than the given time, least recently wanted first, until the given
+     * number of bytes fit in the quota
+     *
+     * @return true if the bytes fit
+     */
+    synchronized boolean makeRoom(long bytes, long wanted) {
+        if (bytes > quotaBytes) {
+            return false;
+        }
+        List<File> mezzanines = list();
+        mezzanines.sort(Comparator.comparingLong(File::lastModified));
+        long used = mezzanines.stream().mapToLong(File::length).sum();
+
+        Iterator<File> leastRecent = mezzanines.iterator();
+        while (used + bytes > quotaBytes && leastRecent.hasNext()) {
+            File mezzanine = leastRecent.next();
+            if (mezzanine.lastModified() >= wanted) {
+                break;
+            }
+            long length = mezzanine.length();
+            if (mezzanine.delete()) {
+                log.info("Evicted mezzanine: {}, {} bytes", mezzanine, length);
+                used -= length;
+            }
+        }
+
+        if (used + bytes > quotaBytes) {
+            return false;
+        }
+        return directory.getUsableSpace() >= bytes + DISK_MARGIN_BYTES;
+    }
+
+    /**
+     * Makes a finished encode the source's mezzanine
+     */
+    synchronized void commit(File part, MediaInfo source, long wanted) throws IOException {
+        File mezzanine = fileFor(source);
+        Files.move(part.toPath(), mezzanine.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (!mezzanine.setLastModified(wanted)) {
+            log.warn("Failed to set mezzanine modification time: {}", mezzanine);
+        }
+        log.info("Added mezzanine: {}, {} bytes, source = {}", mezzanine, mezzanine.length(), source.getFilePath());
+    }
+
+    /**
+     * Deletes the mezzanines of every source not given, i.e. sources that were removed or changed, and any
+     * unfinished encodes. Must not be called while encoding.
+     */
+    synchronized void retain(Collection<MediaInfo> sources) {
+        Set<String> names = sources.stream()
+                .map(source -> nameOf(source) + EXTENSION)
+                .collect(Collectors.toSet());
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            boolean stale = file.getName().endsWith(EXTENSION) && !names.contains(file.getName());
+            if ((stale || file.getName().endsWith(PART_EXTENSION)) && file.delete()) {
+                log.info("Deleted stale mezzanine: {}", file);
+            }
+        }
+    }
+
+    int getCount() {
+        return list().size();
+    }
+
+    long getUsedBytes() {
+        return list().stream().mapToLong(File::length).sum();
+    }
+
+    long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    private List<File> list() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        return files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+    }
+
+    private File fileFor(MediaInfo source) {
+        return new File(directory, nameOf(source) + EXTENSION);
+    }
+
+    private static String nameOf(MediaInfo source) {
+        File file = new File(source.getFilePath());
+        String pathHash = Hashing.sha256()
+                .hashString(file.getAbsolutePath(), StandardCharsets.UTF_8)
+                .toString()
+                .substring(0, 16);
+        return pathHash + "-" + file.length() + "-" + file.lastModified();
+    }
+}
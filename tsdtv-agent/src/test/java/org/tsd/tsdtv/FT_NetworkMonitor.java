@@ -3,13 +3,16 @@ package org.tsd.tsdtv;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.tsd.util.BandwidthEstimator;
+
+import java.time.Clock;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FT_NetworkMonitor {
 
     @Test
     public void test() {
-        NetworkMonitor networkMonitor = new NetworkMonitor();
+        NetworkMonitor networkMonitor = new NetworkMonitor(new BandwidthEstimator(Clock.systemUTC()));
         networkMonitor.run();
     }
 }
@@ -0,0 +1,170 @@
+package org.tsd.tsdtv;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.tsd.rest.v1.tsdtv.Episode;
+import org.tsd.rest.v1.tsdtv.Inventory;
+import org.tsd.rest.v1.tsdtv.MediaInfo;
+import org.tsd.rest.v1.tsdtv.Series;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UT_AgentInventory {
+
+    private static final int SERIES = 5;
+    private static final int EPISODES = 10;
+    private static final long STRESS_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private MediaInfoCache mediaInfoCache;
+
+    private File inventoryDirectory;
+    private File stagingDirectory;
+    private AgentInventory agentInventory;
+
+    @Before
+    public void setup() throws IOException {
+        inventoryDirectory = folder.newFolder("inventory");
+        stagingDirectory = folder.newFolder("staging");
+        for (int i = 0; i < SERIES; i++) {
+            createSeries(new File(inventoryDirectory, "Series " + i));
+        }
+
+        when(mediaInfoCache.getMediaInfo(anyCollectionOf(File.class))).thenAnswer(invocation -> {
+            Collection<File> files = (Collection<File>) invocation.getArguments()[0];
+            Map<File, MediaInfo> results = new HashMap<>();
+            for (File file : files) {
+                MediaInfo mediaInfo = new MediaInfo();
+                mediaInfo.setFilePath(file.getAbsolutePath());
+                results.put(file, mediaInfo);
+            }
+            return results;
+        });
+
+        agentInventory = new AgentInventory(inventoryDirectory, "agentId", mediaInfoCache);
+        agentInventory.setWatched(true);
+    }
+
+    @Test
+    public void testRefreshRemovesOnlyChangedSeries() throws IOException {
+        Inventory inventory = agentInventory.compileInventory();
+        assertEquals(SERIES, inventory.getSeries().size());
+        Episode kept = inventory.getSeries().get(0).getEpisodes().get(0);
+        Episode removed = inventory.getSeries().get(1).getEpisodes().get(0);
+
+        File removedDirectory = new File(inventoryDirectory, inventory.getSeries().get(1).getName());
+        moveOut(removedDirectory);
+        agentInventory.refresh(Collections.singleton(removedDirectory));
+
+        assertEquals(SERIES - 1, agentInventory.compileInventory().getSeries().size());
+        assertSame(kept, agentInventory.getFileByMediaId(kept.getId()));
+        assertNull(agentInventory.getFileByMediaId(removed.getId()));
+        assertTrue(agentInventory.isForceOverride());
+    }
+
+    /*
+    Rescans and refreshes run flat out while readers look up episodes and compile inventories. Readers must never
+    miss an episode that exists throughout, and must never see a series with only some of its episodes.
+     */
+    @Test
+    public void testConcurrentScansAndLookups() throws Exception {
+        Inventory initial = agentInventory.compileInventory();
+        List<Integer> stableIds = new ArrayList<>();
+        for (Series series : initial.getSeries()) {
+            series.getEpisodes().forEach(episode -> stableIds.add(episode.getId()));
+        }
+        assertEquals(SERIES * EPISODES, stableIds.size());
+
+        File churnDirectory = new File(inventoryDirectory, "Churn");
+        AtomicBoolean running = new AtomicBoolean(true);
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<?>> workers = new LinkedList<>();
+
+        workers.add(executor.submit(() -> {
+            while (running.get()) {
+                agentInventory.rescan();
+            }
+            return null;
+        }));
+
+        workers.add(executor.submit(() -> {
+            File staged = new File(stagingDirectory, "Churn");
+            while (running.get()) {
+                createSeries(staged);
+                // moves are atomic, so a scan sees the whole series or none of it
+                Files.move(staged.toPath(), churnDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                agentInventory.refresh(Collections.singleton(churnDirectory));
+                moveOut(churnDirectory);
+                agentInventory.refresh(Collections.singleton(churnDirectory));
+            }
+            return null;
+        }));
+
+        for (int i = 0; i < 4; i++) {
+            workers.add(executor.submit(() -> {
+                Random random = new Random();
+                while (running.get()) {
+                    int id = stableIds.get(random.nextInt(stableIds.size()));
+                    if (agentInventory.getFileByMediaId(id) == null) {
+                        failures.add("Missing episode " + id);
+                    }
+                    Inventory inventory = agentInventory.compileInventory();
+                    if (inventory.getSeries().size() < SERIES || inventory.getSeries().size() > SERIES + 1) {
+                        failures.add("Unexpected series count " + inventory.getSeries().size());
+                    }
+                    for (Series series : inventory.getSeries()) {
+                        if (series.getEpisodes().size() != EPISODES) {
+                            failures.add("Partial series " + series.getName() + ": " + series.getEpisodes().size());
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        Thread.sleep(STRESS_MILLIS);
+        running.set(false);
+        for (Future<?> worker : workers) {
+            worker.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertTrue("Failures: " + failures, failures.isEmpty());
+    }
+
+    private static void createSeries(File directory) throws IOException {
+        assertTrue(directory.mkdir());
+        for (int i = 1; i <= EPISODES; i++) {
+            assertTrue(new File(directory, String.format("Episode %02d.mkv", i)).createNewFile());
+        }
+    }
+
+    private void moveOut(File directory) throws IOException {
+        File trash = new File(stagingDirectory, "trash-" + UUID.randomUUID());
+        Files.move(directory.toPath(), trash.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        for (File file : trash.listFiles()) {
+            assertTrue(file.delete());
+        }
+        assertTrue(trash.delete());
+    }
+}
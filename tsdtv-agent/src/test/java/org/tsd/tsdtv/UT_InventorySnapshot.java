@@ -0,0 +1,127 @@
+package org.tsd.tsdtv;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.tsd.rest.v1.tsdtv.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class UT_InventorySnapshot {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testUnchangedInventory() throws Exception {
+        InventorySnapshot base = snapshot(1, inventory(movies(movie(1), movie(2)), series(series("A", 3))));
+        InventorySnapshot next = snapshot(2, inventory(movies(movie(1), movie(2)), series(series("A", 3))));
+
+        InventoryDelta delta = next.deltaFrom(base);
+        assertTrue(delta.isEmpty());
+        assertEquals(1, delta.getBaseVersion());
+        assertEquals(2, delta.getVersion());
+    }
+
+    @Test
+    public void testUpsertsAndRemovals() throws Exception {
+        InventorySnapshot base = snapshot(1, inventory(
+                movies(movie(1), movie(2)),
+                series(series("A", 3), series("B", 2))));
+
+        Movie renamed = movie(1);
+        renamed.setName("Movie 1, Director's Cut");
+        InventorySnapshot next = snapshot(2, inventory(
+                movies(renamed, movie(3)),
+                series(series("A", 3), series("B", 3), series("C", 1))));
+
+        InventoryDelta delta = next.deltaFrom(base);
+        assertEquals(Arrays.asList(renamed.getId(), movie(3).getId()), movieIds(delta.getUpsertedMovies()));
+        assertEquals(Collections.singletonList(movie(2).getId()), delta.getRemovedMovies());
+        // a series with a new episode is sent whole, one that's unchanged isn't sent at all
+        assertEquals(Arrays.asList("B", "C"), seriesNames(delta.getUpsertedSeries()));
+        assertEquals(3, delta.getUpsertedSeries().get(0).getEpisodes().size());
+        assertTrue(delta.getRemovedSeries().isEmpty());
+    }
+
+    @Test
+    public void testRenamedSeries() throws Exception {
+        InventorySnapshot base = snapshot(1, inventory(movies(), series(series("A", 2), series("B", 1))));
+        Series renamed = series("A", 2);
+        renamed.setName("A (Remastered)");
+        InventorySnapshot next = snapshot(2, inventory(movies(), series(renamed, series("B", 1))));
+
+        // series are keyed by name, so a rename is a removal of the old name and an upsert of the new one
+        InventoryDelta delta = next.deltaFrom(base);
+        assertEquals(Collections.singletonList("A (Remastered)"), seriesNames(delta.getUpsertedSeries()));
+        assertEquals(Collections.singletonList("A"), delta.getRemovedSeries());
+        assertTrue(delta.getUpsertedMovies().isEmpty());
+        assertTrue(delta.getRemovedMovies().isEmpty());
+    }
+
+    @Test
+    public void testDeltaSurvivesSerialization() throws Exception {
+        InventorySnapshot base = snapshot(4, inventory(movies(movie(1)), series(series("A", 1))));
+        InventorySnapshot next = snapshot(5, inventory(movies(movie(2)), series(series("A", 2))));
+
+        InventoryDelta delta = objectMapper.readValue(
+                objectMapper.writeValueAsBytes(next.deltaFrom(base)), InventoryDelta.class);
+        assertEquals(4, delta.getBaseVersion());
+        assertEquals(5, delta.getVersion());
+        assertEquals(Collections.singletonList(movie(2).getId()), movieIds(delta.getUpsertedMovies()));
+        assertEquals(Collections.singletonList(movie(1).getId()), delta.getRemovedMovies());
+        assertEquals(Collections.singletonList("A"), seriesNames(delta.getUpsertedSeries()));
+    }
+
+    private InventorySnapshot snapshot(long version, Inventory inventory) throws Exception {
+        return InventorySnapshot.of(version, inventory, objectMapper);
+    }
+
+    private static Inventory inventory(List<Movie> movies, List<Series> series) {
+        Inventory inventory = new Inventory();
+        inventory.setMovies(movies);
+        inventory.setSeries(series);
+        return inventory;
+    }
+
+    private static List<Movie> movies(Movie... movies) {
+        return Arrays.asList(movies);
+    }
+
+    private static List<Series> series(Series... series) {
+        return Arrays.asList(series);
+    }
+
+    private static Movie movie(int n) {
+        Movie movie = new Movie("agentId", mediaInfo("/inventory/Movie " + n + ".mkv"));
+        movie.setName("Movie " + n);
+        return movie;
+    }
+
+    private static Series series(String name, int episodes) {
+        Series series = new Series();
+        series.setName(name);
+        for (int i = 1; i <= episodes; i++) {
+            series.getEpisodes().add(new Episode("agentId", mediaInfo("/inventory/" + name + "/" + i + ".mkv")));
+        }
+        return series;
+    }
+
+    private static MediaInfo mediaInfo(String filePath) {
+        MediaInfo mediaInfo = new MediaInfo();
+        mediaInfo.setFilePath(filePath);
+        mediaInfo.setDurationSeconds(1440);
+        return mediaInfo;
+    }
+
+    private static List<Integer> movieIds(List<Movie> movies) {
+        return movies.stream().map(Movie::getId).collect(Collectors.toList());
+    }
+
+    private static List<String> seriesNames(List<Series> series) {
+        return series.stream().map(Series::getName).collect(Collectors.toList());
+    }
+}
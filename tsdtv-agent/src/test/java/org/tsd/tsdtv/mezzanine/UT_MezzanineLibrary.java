@@ -0,0 +1,152 @@
+package org.tsd.tsdtv.mezzanine;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tsd.rest.v1.tsdtv.MediaInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class UT_MezzanineLibrary {
+
+    private static final int KB = 1024;
+    private static final Instant NOW = Instant.parse("2018-03-01T12:00:00Z");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File sources;
+    private MezzanineConfig config;
+    private MezzanineLibrary library;
+
+    @Before
+    public void setup() throws IOException {
+        sources = folder.newFolder("sources");
+        config = new MezzanineConfig();
+        config.setEnabled(true);
+        config.setDirectory(folder.newFolder("mezzanines").getAbsolutePath());
+        config.setQuotaMegabytes(1);
+        library = new MezzanineLibrary(config, Clock.fixed(NOW, ZoneId.of("UTC")));
+    }
+
+    @Test
+    public void testFindMarksMezzanineWanted() throws IOException {
+        MediaInfo source = source("episode.mkv");
+        assertNull(library.find(source));
+
+        addMezzanine(source, 100 * KB, 1000);
+        File mezzanine = library.find(source);
+        assertNotNull(mezzanine);
+        assertEquals(NOW.toEpochMilli(), mezzanine.lastModified());
+    }
+
+    @Test
+    public void testNothingFoundWhenDisabled() throws IOException {
+        MediaInfo source = source("episode.mkv");
+        addMezzanine(source, 100 * KB, 1000);
+        config.setEnabled(false);
+        assertNull(library.find(source));
+    }
+
+    @Test
+    public void testChangedSourceHasNoMezzanine() throws IOException {
+        MediaInfo source = source("episode.mkv");
+        addMezzanine(source, 100 * KB, 1000);
+        assertTrue(library.exists(source));
+
+        Files.write(new File(source.getFilePath()).toPath(), new byte[2 * KB]);
+        assertFalse(library.exists(source));
+        assertNull(library.find(source));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyWantedFirst() throws IOException {
+        MediaInfo oldest = source("oldest.mkv");
+        MediaInfo older = source("older.mkv");
+        MediaInfo newer = source("newer.mkv");
+        addMezzanine(oldest, 400 * KB, 1000);
+        addMezzanine(older, 400 * KB, 2000);
+        assertTrue(library.makeRoom(200 * KB, 3000));
+        addMezzanine(newer, 200 * KB, 3000);
+
+        assertTrue(library.makeRoom(400 * KB, 4000));
+        assertFalse(library.exists(oldest));
+        assertTrue(library.exists(older));
+        assertTrue(library.exists(newer));
+        assertEquals(2, library.getCount());
+        assertEquals(600 * KB, library.getUsedBytes());
+    }
+
+    @Test
+    public void testDoesNotEvictMoreRecentlyWanted() throws IOException {
+        MediaInfo older = source("older.mkv");
+        MediaInfo newer = source("newer.mkv");
+        addMezzanine(older, 400 * KB, 2000);
+        addMezzanine(newer, 400 * KB, 3000);
+
+        assertFalse(library.makeRoom(400 * KB, 1000));
+        assertTrue(library.exists(older));
+        assertTrue(library.exists(newer));
+    }
+
+    @Test
+    public void testNeverFitsBeyondQuota() throws IOException {
+        MediaInfo source = source("episode.mkv");
+        addMezzanine(source, 100 * KB, 1000);
+
+        assertFalse(library.makeRoom(2 * 1024 * KB, 2000));
+        assertTrue(library.exists(source));
+    }
+
+    @Test
+    public void testRetainDeletesStaleMezzaninesAndParts() throws IOException {
+        MediaInfo kept = source("kept.mkv");
+        MediaInfo removed = source("removed.mkv");
+        addMezzanine(kept, 100 * KB, 1000);
+        addMezzanine(removed, 100 * KB, 1000);
+        File part = library.partFileFor(source("unfinished.mkv"));
+        Files.write(part.toPath(), new byte[KB]);
+
+        library.retain(Collections.singletonList(kept));
+        assertTrue(library.exists(kept));
+        assertFalse(library.exists(removed));
+        assertFalse(part.exists());
+        assertEquals(1, library.getCount());
+    }
+
+    @Test
+    public void testRetainAll() throws IOException {
+        MediaInfo first = source("first.mkv");
+        MediaInfo second = source("second.mkv");
+        addMezzanine(first, 100 * KB, 1000);
+        addMezzanine(second, 100 * KB, 1000);
+
+        library.retain(Arrays.asList(first, second));
+        assertEquals(2, library.getCount());
+    }
+
+    private MediaInfo source(String name) throws IOException {
+        File file = new File(sources, name);
+        Files.write(file.toPath(), new byte[KB]);
+        MediaInfo mediaInfo = new MediaInfo();
+        mediaInfo.setFilePath(file.getAbsolutePath());
+        mediaInfo.setDurationSeconds(60);
+        return mediaInfo;
+    }
+
+    private void addMezzanine(MediaInfo source, int bytes, long wanted) throws IOException {
+        File part = library.partFileFor(source);
+        Files.write(part.toPath(), new byte[bytes]);
+        library.commit(part, source, wanted);
+    }
+}